@@ -1,5 +1,7 @@
 plugins {
     id("java")
+    id("java-test-fixtures")
+    id("me.champeau.jmh") version "0.7.2"
 	id("org.jetbrains.intellij") version "1.17.4"
     id("org.jetbrains.kotlin.jvm") version "1.9.21"
 }
@@ -18,6 +20,12 @@ dependencies {
     // Testing
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.0")
     testImplementation("org.mockito:mockito-core:5.5.0")
+    // The IntelliJ test framework's fixtures are JUnit 3/4 based
+    testImplementation("junit:junit:4.13.2")
+    testRuntimeOnly("org.junit.vintage:junit-vintage-engine:5.10.0")
+
+    // Stand-in backend (FakeGardener) for integration and load tests
+    testFixturesImplementation("com.google.code.gson:gson:2.10.1")
 }
 
 // Exclude Kotlin stdlib to avoid conflicts with IntelliJ Platform version
@@ -25,6 +33,21 @@ configurations.all {
     exclude(group = "org.jetbrains.kotlin", module = "kotlin-stdlib-jdk8")
 }
 
+// JMH benchmarks of the communication layer (src/jmh): ./gradlew jmh, or -PjmhInclude=<regex> for a subset
+sourceSets.named("jmh") {
+    // The platform classes the plugin's own classes link against, plus FakeGardener
+    compileClasspath += sourceSets["test"].compileClasspath
+    runtimeClasspath += sourceSets["test"].runtimeClasspath
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    // Adds gc.alloc.rate.norm (bytes allocated per operation) next to every score
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    includes.add(providers.gradleProperty("jmhInclude").getOrElse(".*"))
+}
+
 // Configure Gradle IntelliJ Plugin
 intellij {
     version.set("2023.3")
@@ -79,7 +102,41 @@ tasks {
         token.set(System.getenv("PUBLISH_TOKEN"))
     }
 
+    named<Jar>("jmhJar") {
+        duplicatesStrategy = DuplicatesStrategy.EXCLUDE
+    }
+
     test {
         useJUnitPlatform()
+        exclude("**/benchmark/**")
+        exclude("**/soak/**")
+    }
+
+    // Benchmarks need a quiet machine and take a while; run them on demand only
+    register<Test>("benchmarkTest") {
+        description = "Runs the startup and performance benchmarks."
+        group = "verification"
+        testClassesDirs = sourceSets["test"].output.classesDirs
+        classpath = sourceSets["test"].runtimeClasspath
+        useJUnitPlatform()
+        include("**/benchmark/**")
+        testLogging.showStandardStreams = true
+        // Pass -Dcodeawareness.* options given to Gradle on to the test JVM
+        System.getProperties().stringPropertyNames().filter { it.startsWith("codeawareness.") }
+            .forEach { systemProperty(it, System.getProperty(it)) }
+    }
+
+    // Sustained traffic against the stand-in backend, checking the footprint stays bounded
+    register<Test>("soakTest") {
+        description = "Runs the soak test against a stand-in backend."
+        group = "verification"
+        testClassesDirs = sourceSets["test"].output.classesDirs
+        classpath = sourceSets["test"].runtimeClasspath
+        useJUnitPlatform()
+        include("**/soak/**")
+        maxHeapSize = "1g"
+        testLogging.showStandardStreams = true
+        System.getProperties().stringPropertyNames().filter { it.startsWith("codeawareness.") }
+            .forEach { systemProperty(it, System.getProperty(it)) }
     }
 }
@@ -0,0 +1,91 @@
+package com.codeawareness.pycharm.benchmark;
+
+import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.events.EventDispatcher;
+import com.codeawareness.pycharm.events.EventHandler;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing messages to handlers with many actions registered, several handlers per action as
+ * with several projects open. Handlers run inline, so only dispatching is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventDispatcherBenchmark {
+
+    private static final int HANDLERS_PER_ACTION = 4;
+
+    @Param({"10", "100", "1000"})
+    public int actions;
+
+    private EventDispatcher dispatcher;
+    private Message byFullAction;
+    private Message byAction;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        dispatcher = new EventDispatcher(Runnable::run);
+        for (int i = 0; i < actions; i++) {
+            String action = "code:action-" + i;
+            for (int j = 0; j < HANDLERS_PER_ACTION; j++) {
+                dispatcher.registerHandler(new ConsumingHandler(action, blackhole));
+            }
+        }
+        dispatcher.registerHandler(new ConsumingHandler("auth:info", blackhole));
+
+        String last = "action-" + (actions - 1);
+        byFullAction = new Message(Message.Flow.RES, "code", last, new JsonObject(), "benchmark-client");
+        byAction = new Message(Message.Flow.RES, "*", "auth:info", new JsonObject(), "benchmark-client");
+    }
+
+    @Benchmark
+    public boolean dispatchByFullAction() {
+        return dispatcher.dispatch(byFullAction);
+    }
+
+    /**
+     * Falls back to the action alone, as for the {@code *} domain.
+     */
+    @Benchmark
+    public boolean dispatchByAction() {
+        return dispatcher.dispatch(byAction);
+    }
+
+    private static final class ConsumingHandler implements EventHandler {
+        private final String action;
+        private final Blackhole blackhole;
+
+        ConsumingHandler(String action, Blackhole blackhole) {
+            this.action = action;
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public String getAction() {
+            return action;
+        }
+
+        @Override
+        public void handle(Message message) {
+            blackhole.consume(message);
+        }
+    }
+}
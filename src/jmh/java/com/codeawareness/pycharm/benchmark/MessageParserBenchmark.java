@@ -0,0 +1,74 @@
+package com.codeawareness.pycharm.benchmark;
+
+import com.codeawareness.pycharm.communication.MessageParser;
+import com.codeawareness.pycharm.communication.MessageProtocol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting a stream of messages as it comes off the socket: one large message in small
+ * fragments, and many small messages coalesced into each read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageParserBenchmark {
+
+    private static final int COALESCED_MESSAGES = 100;
+
+    /**
+     * Bytes per read; 8192 matches the IPC reader's buffer.
+     */
+    @Param({"64", "8192"})
+    public int chunkSize;
+
+    private List<String> fragments;
+    private String coalesced;
+
+    @Setup
+    public void setUp() {
+        String large = MessageProtocol.serialize(Payloads.HL_50K.message());
+        fragments = new ArrayList<>();
+        for (int start = 0; start < large.length(); start += chunkSize) {
+            fragments.add(large.substring(start, Math.min(large.length(), start + chunkSize)));
+        }
+
+        StringBuilder stream = new StringBuilder();
+        String small = MessageProtocol.serialize(Payloads.HL_100.message());
+        for (int i = 0; i < COALESCED_MESSAGES; i++) {
+            stream.append(small);
+        }
+        coalesced = stream.toString();
+    }
+
+    @Benchmark
+    public void fragmented(Blackhole blackhole) {
+        MessageParser parser = new MessageParser();
+        for (String fragment : fragments) {
+            blackhole.consume(parser.parse(fragment));
+        }
+    }
+
+    @Benchmark
+    public void coalesced(Blackhole blackhole) {
+        MessageParser parser = new MessageParser();
+        blackhole.consume(parser.parse(coalesced));
+    }
+}
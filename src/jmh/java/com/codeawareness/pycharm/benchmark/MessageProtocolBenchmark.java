@@ -0,0 +1,51 @@
+package com.codeawareness.pycharm.benchmark;
+
+import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.communication.MessageProtocol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization of whole messages, across payload sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageProtocolBenchmark {
+
+    @Param({"EMPTY", "HL_100", "HL_50K", "DATA_1MB"})
+    public Payloads payload;
+
+    private Message message;
+    private String serialized;
+
+    @Setup
+    public void setUp() {
+        message = payload.message();
+        serialized = MessageProtocol.serialize(message);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return MessageProtocol.serialize(message);
+    }
+
+    @Benchmark
+    public Message deserialize() {
+        return MessageProtocol.deserialize(serialized);
+    }
+}
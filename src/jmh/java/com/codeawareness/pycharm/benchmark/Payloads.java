@@ -0,0 +1,55 @@
+package com.codeawareness.pycharm.benchmark;
+
+import com.codeawareness.pycharm.communication.Message;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Message payloads of the sizes seen in practice, from a bare notification to a whole
+ * file's worth of data.
+ */
+public enum Payloads {
+    EMPTY,
+    HL_100,
+    HL_50K,
+    DATA_1MB;
+
+    /**
+     * Build a code:active-path response carrying this payload.
+     */
+    public Message message() {
+        JsonObject data = new JsonObject();
+        switch (this) {
+            case HL_100:
+                data.add("hl", highlights(100));
+                break;
+            case HL_50K:
+                data.add("hl", highlights(50_000));
+                break;
+            case DATA_1MB:
+                data.addProperty("content", content(1024 * 1024));
+                break;
+            default:
+                break;
+        }
+        return new Message(Message.Flow.RES, "code", "active-path", data, "benchmark-client");
+    }
+
+    private static JsonArray highlights(int count) {
+        JsonArray lines = new JsonArray();
+        for (int i = 0; i < count; i++) {
+            lines.add(i * 3);
+        }
+        return lines;
+    }
+
+    private static String content(int size) {
+        StringBuilder content = new StringBuilder(size + 64);
+        int line = 0;
+        while (content.length() < size) {
+            content.append("line ").append(line++).append(": def handler(self, message): pass\n");
+        }
+        content.setLength(size);
+        return content.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.codeawareness.pycharm.benchmark;
+
+import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.communication.MessageBuilder;
+import com.codeawareness.pycharm.communication.MessageProtocol;
+import com.codeawareness.pycharm.communication.SocketManager;
+import com.codeawareness.pycharm.testing.FakeGardener;
+import com.codeawareness.pycharm.utils.PathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request and response over a real Unix domain socket, against a {@link FakeGardener}
+ * answering without added latency: serialization, the socket adapter and parsing together.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketRoundTripBenchmark {
+
+    private static final String GUID = "benchmark-client";
+
+    /**
+     * Highlighted lines in each active-path response.
+     */
+    @Param({"100", "50000"})
+    public int highlightLines;
+
+    private FakeGardener gardener;
+    private SocketManager catalog;
+    private SocketManager ipc;
+    private String authInfo;
+    private String activePath;
+
+    @Setup
+    public void setUp() throws Exception {
+        if (PathUtils.isWindows()) {
+            throw new IllegalStateException("Unix domain sockets only");
+        }
+        gardener = FakeGardener.builder().highlightLines(highlightLines).build().start();
+        System.setProperty(PathUtils.SOCKET_DIR_PROPERTY, gardener.getSocketDirectory().toString());
+
+        catalog = new SocketManager(PathUtils.getCatalogSocketPath());
+        catalog.connect();
+        catalog.write(MessageProtocol.serialize(MessageBuilder.buildClientId(GUID)));
+
+        Path ipcSocket = Path.of(PathUtils.getIpcSocketPath(GUID));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.exists(ipcSocket)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("IPC socket not created: " + ipcSocket);
+            }
+            Thread.sleep(10);
+        }
+        ipc = new SocketManager(ipcSocket.toString());
+        ipc.connect();
+
+        authInfo = MessageProtocol.serialize(MessageBuilder.buildAuthInfo(GUID));
+        activePath = MessageProtocol.serialize(MessageBuilder.buildActivePath(GUID, "/project/main.py", "main.py"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        ipc.close();
+        catalog.close();
+        gardener.close();
+        System.clearProperty(PathUtils.SOCKET_DIR_PROPERTY);
+    }
+
+    @Benchmark
+    public Message authInfo() throws IOException {
+        return roundTrip(authInfo);
+    }
+
+    @Benchmark
+    public Message activePath() throws IOException {
+        return roundTrip(activePath);
+    }
+
+    private Message roundTrip(String request) throws IOException {
+        ipc.write(request);
+        return MessageProtocol.deserialize(ipc.readUntilDelimiter(MessageProtocol.DELIMITER));
+    }
+}
@@ -1,14 +1,46 @@
 package com.codeawareness.pycharm;
 
+import com.codeawareness.pycharm.communication.AuthSessionCache;
 import com.codeawareness.pycharm.communication.CatalogConnection;
+import com.codeawareness.pycharm.communication.ConnectionState;
+import com.codeawareness.pycharm.communication.ConnectionStateListener;
+import com.codeawareness.pycharm.communication.ConnectionSupervisor;
 import com.codeawareness.pycharm.communication.IpcConnection;
+import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.communication.MessageBuilder;
+import com.codeawareness.pycharm.communication.OutboundJournal;
+import com.codeawareness.pycharm.communication.SessionRecorder;
+import com.codeawareness.pycharm.communication.SocketWatcher;
+import com.codeawareness.pycharm.diff.DiffPeerRequests;
+import com.codeawareness.pycharm.diff.TempFileManager;
 import com.codeawareness.pycharm.events.EventDispatcher;
 import com.codeawareness.pycharm.events.ResponseHandlerRegistry;
+import com.codeawareness.pycharm.events.handlers.AuthInfoHandler;
+import com.codeawareness.pycharm.events.handlers.AuthLogoutHandler;
+import com.codeawareness.pycharm.events.handlers.DiffPeerHandler;
+import com.codeawareness.pycharm.monitoring.AdaptiveDebounceController;
+import com.codeawareness.pycharm.scheduling.CodeAwarenessScheduler;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
 import com.codeawareness.pycharm.utils.GuidGenerator;
 import com.codeawareness.pycharm.utils.Logger;
+import com.codeawareness.pycharm.utils.PathUtils;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.Service;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Application-level service for Code Awareness plugin.
  * Manages global state including client GUID, catalog connection, and IPC connection.
@@ -17,17 +49,43 @@ import com.intellij.openapi.components.Service;
 @Service
 public final class CodeAwarenessApplicationService implements Disposable {
 
+    // The catalog creates the IPC socket right after registration; longer means something is wrong
+    private static final long IPC_SOCKET_TIMEOUT_MS = 10000;
+
     private final String clientGuid;
     private CatalogConnection catalogConnection;
     private IpcConnection ipcConnection;
     private final ResponseHandlerRegistry responseHandlerRegistry;
     private final EventDispatcher eventDispatcher;
+    private final SocketWatcher socketWatcher;
+    private final Executor connectExecutor;
+    private final ConnectionSupervisor supervisor;
+    private final OutboundJournal outboundJournal;
+    private final AuthSessionCache authSessionCache;
+    private final DiffPeerRequests diffPeerRequests = new DiffPeerRequests();
+    private final List<ConnectionStateListener> connectionStateListeners = new CopyOnWriteArrayList<>();
     private volatile boolean connected = false;
+    private volatile ConnectionState connectionState = ConnectionState.DISCONNECTED;
+    private CompletableFuture<Void> connectAttempt;
+    private volatile SessionRecorder sessionRecorder;
 
     public CodeAwarenessApplicationService() {
         this.clientGuid = GuidGenerator.generate();
         this.responseHandlerRegistry = new ResponseHandlerRegistry();
         this.eventDispatcher = new EventDispatcher();
+        this.socketWatcher = new SocketWatcher(CodeAwarenessScheduler.getInstance());
+        this.connectExecutor = action -> CodeAwarenessScheduler.getInstance().submit(SchedulerLane.CONNECT, action);
+        this.supervisor = new ConnectionSupervisor(this::connectAsync, CodeAwarenessScheduler.getInstance());
+        this.outboundJournal = openOutboundJournal();
+        this.authSessionCache = new AuthSessionCache(this::sendAuthInfoRequest);
+        // Auth state is the same for every project, so it is handled once here
+        eventDispatcher.registerHandler(new AuthInfoHandler(authSessionCache));
+        eventDispatcher.registerHandler(new AuthLogoutHandler(authSessionCache));
+        // Every project sees every diff-peer response; this one handler routes each to its requester
+        eventDispatcher.registerHandler(new DiffPeerHandler(diffPeerRequests));
+        // Earlier IDE sessions may have left peer files behind; clear them once, not per project
+        CodeAwarenessScheduler.getInstance().submit(SchedulerLane.STARTUP,
+            () -> TempFileManager.getInstance().sweepOrphanedSessions());
         Logger.info("Code Awareness Application Service initialized with GUID: " + clientGuid);
     }
 
@@ -80,6 +138,20 @@ public final class CodeAwarenessApplicationService implements Disposable {
         return eventDispatcher;
     }
 
+    /**
+     * Get the auth session shared by all projects.
+     */
+    public AuthSessionCache getAuthSessionCache() {
+        return authSessionCache;
+    }
+
+    /**
+     * Get the diff-peer requests in flight from all projects.
+     */
+    public DiffPeerRequests getDiffPeerRequests() {
+        return diffPeerRequests;
+    }
+
     /**
      * Check if connected to Code Awareness backend.
      */
@@ -94,54 +166,324 @@ public final class CodeAwarenessApplicationService implements Disposable {
         this.connected = connected;
     }
 
+    private boolean sendAuthInfoRequest() {
+        IpcConnection ipc = ipcConnection;
+        if (!connected || ipc == null) {
+            return false;
+        }
+        try {
+            ipc.sendMessage(MessageBuilder.buildAuthInfo(clientGuid));
+            return true;
+        } catch (IOException e) {
+            Logger.warn("Failed to request auth info", e);
+            return false;
+        }
+    }
+
     /**
-     * Initialize and connect to Code Awareness backend.
-     * Connection flow:
-     * 1. Connect to catalog service
-     * 2. Register client with catalog
-     * 3. Wait for IPC socket to become available
-     * 4. Connect to IPC service
+     * Start recording every IPC frame to a new session file under the IDE log directory,
+     * for replay with {@link com.codeawareness.pycharm.communication.SessionReplayer}.
+     * Recording continues across reconnects until stopped.
+     *
+     * @return The session file
+     */
+    public synchronized Path startSessionRecording() throws IOException {
+        stopSessionRecording();
+        String name = "session-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".cawsession";
+        SessionRecorder recorder = new SessionRecorder(Path.of(PathManager.getLogPath(), "codeawareness-sessions", name));
+        sessionRecorder = recorder;
+        IpcConnection ipc = ipcConnection;
+        if (ipc != null) {
+            ipc.setSessionRecorder(recorder);
+        }
+        return recorder.getFile();
+    }
+
+    /**
+     * Stop recording, if a recording is in progress.
+     *
+     * @return The finished session file, or null if nothing was being recorded
+     */
+    public synchronized Path stopSessionRecording() {
+        SessionRecorder recorder = sessionRecorder;
+        if (recorder == null) {
+            return null;
+        }
+        sessionRecorder = null;
+        IpcConnection ipc = ipcConnection;
+        if (ipc != null) {
+            ipc.setSessionRecorder(null);
+        }
+        recorder.close();
+        return recorder.getFile();
+    }
+
+    public boolean isRecordingSession() {
+        return sessionRecorder != null;
+    }
+
+    private static OutboundJournal openOutboundJournal() {
+        Path file = Path.of(PathManager.getSystemPath(), "codeawareness", "outbound.journal");
+        try {
+            return new OutboundJournal(file);
+        } catch (IOException e) {
+            Logger.warn("Cannot open outbound journal, notifications sent while disconnected will be lost: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Record a notification that could not be sent because the backend is not connected.
+     * Recorded notifications are replayed, compacted, right after the next connection is established.
+     */
+    public void recordUnsent(OutboundJournal.Kind kind, String filePath, String fileName) {
+        if (outboundJournal != null) {
+            outboundJournal.append(kind, filePath, fileName);
+        }
+    }
+
+    /**
+     * Send what was recorded while disconnected in a single write.
+     * If the write fails, the notifications are kept for the next connection.
+     */
+    private void replayOutboundJournal(IpcConnection ipc) {
+        if (outboundJournal == null || outboundJournal.isEmpty()) {
+            return;
+        }
+        List<OutboundJournal.Entry> entries = outboundJournal.drain();
+        List<Message> messages = new ArrayList<>();
+        for (OutboundJournal.Entry entry : entries) {
+            messages.add(entry.getKind() == OutboundJournal.Kind.FILE_SAVED
+                ? MessageBuilder.buildFileSaved(clientGuid, entry.getFilePath(), entry.getFileName())
+                : MessageBuilder.buildActivePath(clientGuid, entry.getFilePath(), entry.getFileName()));
+        }
+        try {
+            ipc.sendMessages(messages);
+            Logger.info("Replayed " + messages.size() + " notification(s) recorded while disconnected");
+        } catch (IOException e) {
+            for (OutboundJournal.Entry entry : entries) {
+                outboundJournal.append(entry.getKind(), entry.getFilePath(), entry.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Get the current step of connecting to the backend.
+     */
+    public ConnectionState getConnectionState() {
+        return connectionState;
+    }
+
+    private void setConnectionState(ConnectionState state) {
+        if (connectionState == state) {
+            return;
+        }
+        Logger.info("Connection state: " + connectionState.getDisplayName() + " -> " + state.getDisplayName());
+        connectionState = state;
+        for (ConnectionStateListener listener : connectionStateListeners) {
+            try {
+                listener.onConnectionStateChanged(state);
+            } catch (Exception e) {
+                Logger.warn("Error in connection state listener", e);
+            }
+        }
+    }
+
+    /**
+     * Register a connection state listener, e.g. to render the state or re-send state after reconnecting.
+     */
+    public void addConnectionStateListener(ConnectionStateListener listener) {
+        if (!connectionStateListeners.contains(listener)) {
+            connectionStateListeners.add(listener);
+        }
+    }
+
+    /**
+     * Unregister a connection state listener.
+     */
+    public void removeConnectionStateListener(ConnectionStateListener listener) {
+        connectionStateListeners.remove(listener);
+    }
+
+    /**
+     * Initialize and connect to Code Awareness backend, blocking until connected.
+     * Prefer {@link #connectAsync()}; this waits as long as the backend is not running.
      */
     public void connect() {
+        try {
+            connectAsync().join();
+        } catch (CompletionException | CancellationException e) {
+            throw new RuntimeException("Failed to connect to Code Awareness", e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * Connect to the Code Awareness backend without blocking.
+     * Connection flow, each step started by the previous one:
+     * 1. Wait for the catalog socket to appear
+     * 2. Connect to the catalog and register the client; if the socket is stale, wait for it to be recreated
+     * 3. Wait for the IPC socket the catalog creates for this client
+     * 4. Connect to the IPC service
+     * No thread sleeps or polls in between; waits are driven by the {@link SocketWatcher}.
+     *
+     * @return A future completed once connected. Concurrent calls share one attempt.
+     */
+    public synchronized CompletableFuture<Void> connectAsync() {
         if (connected) {
-            Logger.warn("Already connected to Code Awareness");
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+        if (connectAttempt != null && !connectAttempt.isDone()) {
+            return connectAttempt;
         }
 
         Logger.info("Connecting to Code Awareness backend...");
+        CompletableFuture<Void> attempt = new CompletableFuture<>();
+        connectAttempt = attempt;
+        awaitCatalog(attempt, false);
+        return attempt;
+    }
 
-        try {
-            // Step 1: Connect to catalog and register
-            catalogConnection = new CatalogConnection(clientGuid);
-            catalogConnection.connect();
+    private void awaitCatalog(CompletableFuture<Void> attempt, boolean stale) {
+        if (attempt.isDone()) {
+            return;
+        }
+        setConnectionState(ConnectionState.WAITING_FOR_CATALOG);
+        String catalogPath = PathUtils.getCatalogSocketPath();
+        CompletableFuture<Void> ready = stale
+            ? socketWatcher.awaitRecreated(catalogPath)
+            : socketWatcher.awaitSocket(catalogPath);
+        // Stop waiting when the attempt is abandoned
+        attempt.whenComplete((result, error) -> ready.cancel(false));
+        ready.whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                failAttempt(attempt, error);
+            } else {
+                registerWithCatalog(attempt);
+            }
+        }, connectExecutor);
+    }
 
-            // Step 2: Connect to IPC service (will wait for socket)
-            ipcConnection = new IpcConnection(clientGuid, responseHandlerRegistry);
+    private void registerWithCatalog(CompletableFuture<Void> attempt) {
+        if (attempt.isDone()) {
+            return;
+        }
+        setConnectionState(ConnectionState.REGISTERING);
+        CatalogConnection catalog = new CatalogConnection(clientGuid);
+        try {
+            catalog.connect();
+        } catch (IOException e) {
+            // A socket file left behind by a backend that is not running; it is recreated on start
+            Logger.info("Catalog not accepting connections, waiting for Kawa Code to start");
+            awaitCatalog(attempt, true);
+            return;
+        }
+        catalogConnection = catalog;
 
-            // Set up message callback to use event dispatcher
-            ipcConnection.setMessageCallback(message -> {
-                eventDispatcher.dispatch(message);
-            });
+        setConnectionState(ConnectionState.WAITING_FOR_IPC);
+        CompletableFuture<Void> ready = socketWatcher.awaitSocket(PathUtils.getIpcSocketPath(clientGuid))
+            .orTimeout(IPC_SOCKET_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        attempt.whenComplete((result, error) -> ready.cancel(false));
+        ready.whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                failAttempt(attempt, error);
+            } else {
+                connectIpc(attempt);
+            }
+        }, connectExecutor);
+    }
 
-            ipcConnection.connect();
+    private void connectIpc(CompletableFuture<Void> attempt) {
+        if (attempt.isDone()) {
+            return;
+        }
+        setConnectionState(ConnectionState.CONNECTING);
+        IpcConnection ipc = new IpcConnection(clientGuid, responseHandlerRegistry,
+            AdaptiveDebounceController.getInstance());
+        ipc.setMessageCallback(eventDispatcher::dispatch);
+        ipc.setConnectionLostListener(error -> onConnectionLost(ipc, error));
+        ipc.setSessionRecorder(sessionRecorder);
+        try {
+            ipc.connect();
+        } catch (IOException e) {
+            failAttempt(attempt, e);
+            return;
+        }
 
+        synchronized (this) {
+            if (attempt.isDone()) {
+                // Disconnected while connecting
+                ipc.close();
+                return;
+            }
+            ipcConnection = ipc;
             connected = true;
-            Logger.info("Successfully connected to Code Awareness backend");
+        }
+        // Before announcing the connection, so listeners' fresh state is sent after the recorded one
+        replayOutboundJournal(ipc);
+        // The backend may have restarted or changed users; the first project to ask fetches it again
+        authSessionCache.invalidate();
+        supervisor.start();
+        setConnectionState(ConnectionState.CONNECTED);
+        Logger.info("Successfully connected to Code Awareness backend");
+        attempt.complete(null);
+    }
+
+    /**
+     * Clean up after the IPC connection broke and let the supervisor reconnect.
+     * The same client GUID is registered again, so the backend sees the same client.
+     */
+    private void onConnectionLost(IpcConnection ipc, Throwable error) {
+        synchronized (this) {
+            if (ipcConnection != ipc || !connected) {
+                return;
+            }
+            connected = false;
+        }
+        ipc.close();
+        if (catalogConnection != null) {
+            catalogConnection.close();
+            catalogConnection = null;
+        }
+        setConnectionState(ConnectionState.RECONNECTING);
+        supervisor.connectionLost(error);
+    }
 
-        } catch (Exception e) {
-            Logger.error("Failed to connect to Code Awareness backend", e);
-            // Clean up on failure
-            disconnect();
-            throw new RuntimeException("Failed to connect to Code Awareness", e);
+    private void failAttempt(CompletableFuture<Void> attempt, Throwable error) {
+        if (attempt.isDone()) {
+            return;
         }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        Logger.warn("Failed to connect to Code Awareness backend: " + cause);
+        if (catalogConnection != null) {
+            catalogConnection.close();
+            catalogConnection = null;
+        }
+        setConnectionState(supervisor.isActive() ? ConnectionState.RECONNECTING : ConnectionState.DISCONNECTED);
+        attempt.completeExceptionally(cause);
     }
 
     /**
      * Disconnect from Code Awareness backend.
      */
     public void disconnect() {
+        supervisor.stop();
+        CompletableFuture<Void> attempt;
+        synchronized (this) {
+            attempt = connectAttempt;
+            connectAttempt = null;
+        }
+        if (attempt != null && !attempt.isDone()) {
+            Logger.info("Abandoning connection attempt");
+            attempt.cancel(false);
+            if (catalogConnection != null) {
+                catalogConnection.close();
+            }
+            setConnectionState(ConnectionState.DISCONNECTED);
+        }
         if (!connected) {
-            Logger.warn("Not connected to Code Awareness");
+            // Also ends a pending reconnect
+            setConnectionState(ConnectionState.DISCONNECTED);
+            Logger.debug("Not connected to Code Awareness");
             return;
         }
 
@@ -156,6 +498,7 @@ public final class CodeAwarenessApplicationService implements Disposable {
         }
 
         connected = false;
+        setConnectionState(ConnectionState.DISCONNECTED);
         Logger.info("Disconnected from Code Awareness");
     }
 
@@ -163,5 +506,10 @@ public final class CodeAwarenessApplicationService implements Disposable {
     public void dispose() {
         Logger.info("Disposing Code Awareness Application Service");
         disconnect();
+        socketWatcher.close();
+        stopSessionRecording();
+        if (outboundJournal != null) {
+            outboundJournal.close();
+        }
     }
 }
@@ -1,35 +1,54 @@
 package com.codeawareness.pycharm;
 
+import com.codeawareness.pycharm.communication.AuthSession;
+import com.codeawareness.pycharm.communication.ConnectionState;
+import com.codeawareness.pycharm.communication.ConnectionStateListener;
 import com.codeawareness.pycharm.communication.Message;
 import com.codeawareness.pycharm.communication.MessageBuilder;
 import com.codeawareness.pycharm.diff.DiffViewerManager;
+import com.codeawareness.pycharm.diff.PeerContentCache;
+import com.codeawareness.pycharm.diff.PeerContentLoader;
+import com.codeawareness.pycharm.diff.PeerDiffChainManager;
+import com.codeawareness.pycharm.diff.PeerDiffService;
+import com.codeawareness.pycharm.diff.PeerFileReader;
+import com.codeawareness.pycharm.diff.PeerPrefetcher;
 import com.codeawareness.pycharm.diff.TempFileManager;
 import com.codeawareness.pycharm.events.EventHandler;
 import com.codeawareness.pycharm.events.handlers.ActivePathHandler;
-import com.codeawareness.pycharm.events.handlers.AuthInfoHandler;
 import com.codeawareness.pycharm.events.handlers.BranchSelectHandler;
-import com.codeawareness.pycharm.events.handlers.DiffPeerHandler;
 import com.codeawareness.pycharm.events.handlers.OpenPeerFileHandler;
 import com.codeawareness.pycharm.events.handlers.PeerSelectHandler;
 import com.codeawareness.pycharm.events.handlers.PeerUnselectHandler;
+import com.codeawareness.pycharm.highlighting.ActivePathCache;
 import com.codeawareness.pycharm.highlighting.HighlightManager;
 import com.codeawareness.pycharm.monitoring.ActiveFileTracker;
+import com.codeawareness.pycharm.monitoring.ActivePathPrefetcher;
 import com.codeawareness.pycharm.monitoring.FileMonitor;
+import com.codeawareness.pycharm.monitoring.VisibleEditorTracker;
+import com.codeawareness.pycharm.scheduling.CodeAwarenessScheduler;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
 import com.codeawareness.pycharm.settings.CodeAwarenessSettings;
 import com.codeawareness.pycharm.settings.SettingsChangeListener;
 import com.codeawareness.pycharm.utils.Logger;
+import com.codeawareness.pycharm.vfs.FileResolver;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.RangeMarker;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Project-level service for Code Awareness plugin.
@@ -37,42 +56,131 @@ import java.util.concurrent.ConcurrentHashMap;
  * Each project has its own instance of this service.
  */
 @Service(Service.Level.PROJECT)
-public final class CodeAwarenessProjectService implements Disposable, SettingsChangeListener {
+public final class CodeAwarenessProjectService implements Disposable, SettingsChangeListener, ConnectionStateListener {
 
     private final Project project;
+    private final TaskGroup projectTasks;
     private final FileMonitor fileMonitor;
     private final ActiveFileTracker activeFileTracker;
+    private final VisibleEditorTracker visibleEditorTracker;
+    private final FileResolver fileResolver;
     private final HighlightManager highlightManager;
-    private final TempFileManager tempFileManager;
-    private final DiffViewerManager diffViewerManager;
+    private final ActivePathCache activePathCache;
+    private final ActivePathPrefetcher activePathPrefetcher;
+    private final PeerDiffService peerDiffService;
+    // Created on first use; many projects are never diffed against a peer
+    private volatile PeerDiffComponents peerDiff;
     private VirtualFile activeFile;
     private String selectedPeer;
     private String selectedBranch;
-    private boolean authenticated = false;
-    private String userName;
-    private String userEmail;
-    private String tmpDir;
     private final Map<String, Object> highlighters = new ConcurrentHashMap<>();
     private final List<EventHandler> registeredHandlers = new ArrayList<>();
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private boolean disposed = false;
 
     public CodeAwarenessProjectService(Project project) {
         this.project = project;
-        this.fileMonitor = new FileMonitor(project);
-        this.activeFileTracker = new ActiveFileTracker(project);
-        this.highlightManager = new HighlightManager(project);
-        this.tempFileManager = new TempFileManager(null); // Will be updated when tmpDir is received
-        this.diffViewerManager = new DiffViewerManager(project, tempFileManager);
-        Logger.info("Code Awareness Project Service initialized for project: " + project.getName());
+        this.projectTasks = CodeAwarenessScheduler.getInstance().createGroup("project:" + project.getName());
+        this.fileMonitor = new FileMonitor(project, projectTasks);
+        this.activeFileTracker = new ActiveFileTracker(project, projectTasks);
+        this.visibleEditorTracker = new VisibleEditorTracker(project, activeFileTracker);
+        this.fileResolver = new FileResolver(project, projectTasks);
+        this.highlightManager = new HighlightManager(project, fileResolver);
+        this.activePathCache = new ActivePathCache();
+        this.activePathPrefetcher = new ActivePathPrefetcher(project, projectTasks, activePathCache);
+        this.peerDiffService = new PeerDiffService(project, projectTasks);
+
+        // Everything that looks up other services, registers listeners, touches the disk or talks
+        // to the backend runs in the background, so getting the service (often on the EDT) stays cheap
+        projectTasks.submit(SchedulerLane.STARTUP, this::initialize);
+    }
 
-        // Register event handlers
-        registerEventHandlers();
+    /**
+     * Collaborators for diffing against a peer. They share the application's temp file store
+     * and diff-peer requests, so creating them looks up application services.
+     */
+    private static final class PeerDiffComponents {
+        final DiffViewerManager diffViewerManager;
+        final PeerContentCache peerContentCache;
+        final PeerContentLoader peerContentLoader;
+        final PeerDiffChainManager peerDiffChainManager;
+        final PeerPrefetcher peerPrefetcher;
+
+        PeerDiffComponents(Project project, TaskGroup tasks, PeerContentLoader.Requester requester) {
+            TempFileManager tempFileManager = TempFileManager.getInstance();
+            PeerFileReader peerFileReader = new PeerFileReader();
+            this.diffViewerManager = new DiffViewerManager(project, tempFileManager, peerFileReader);
+            this.peerContentCache = new PeerContentCache(tempFileManager);
+            this.peerContentLoader = new PeerContentLoader(peerContentCache, peerFileReader, tasks, requester,
+                ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class).getDiffPeerRequests());
+            this.peerDiffChainManager = new PeerDiffChainManager(project, peerContentLoader);
+            this.peerPrefetcher = new PeerPrefetcher(project, tasks, peerContentCache, peerContentLoader);
+        }
+    }
 
-        // Register for settings change notifications
-        CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
-        settings.addSettingsChangeListener(this);
+    private PeerDiffComponents peerDiff() {
+        PeerDiffComponents components = peerDiff;
+        if (components == null) {
+            synchronized (this) {
+                components = peerDiff;
+                if (components == null) {
+                    components = new PeerDiffComponents(project, projectTasks, this::sendDiffPeerRequest);
+                    peerDiff = components;
+                }
+            }
+        }
+        return components;
+    }
 
-        // Request authentication info
-        requestAuthInfo();
+    /**
+     * Second phase of construction: hook the service up to the IDE and the backend.
+     */
+    private void initialize() {
+        long startNanos = System.nanoTime();
+        try {
+            synchronized (this) {
+                if (disposed) {
+                    ready.cancel(false);
+                    return;
+                }
+                // Register event handlers
+                registerEventHandlers();
+                activeFileTracker.trackSelectedFile();
+
+                // Register for settings change notifications
+                CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
+                settings.addSettingsChangeListener(this);
+
+                // Re-send this project's state whenever the backend connection is (re-)established
+                CodeAwarenessApplicationService appService =
+                    ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+                if (appService != null) {
+                    appService.addConnectionStateListener(this);
+                }
+            }
+
+            // Request authentication info
+            requestAuthInfo();
+
+            ready.complete(null);
+            Logger.info("Code Awareness Project Service initialized for project: " + project.getName() +
+                " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + "ms");
+        } catch (Exception e) {
+            Logger.warn("Failed to initialize Code Awareness for project: " + project.getName(), e);
+            ready.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Get a future completed once the service is hooked up to the IDE and the backend,
+     * i.e. its event handlers and listeners are registered.
+     */
+    public CompletableFuture<Void> whenReady() {
+        return ready;
+    }
+
+    public boolean isReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
     }
 
     /**
@@ -84,28 +192,22 @@ public final class CodeAwarenessProjectService implements Disposable, SettingsCh
 
         if (appService != null) {
             // Create and register handlers for this project
-            EventHandler authInfoHandler = new AuthInfoHandler(project);
             EventHandler peerSelectHandler = new PeerSelectHandler(project);
             EventHandler peerUnselectHandler = new PeerUnselectHandler(project);
             EventHandler branchSelectHandler = new BranchSelectHandler(project);
-            EventHandler diffPeerHandler = new DiffPeerHandler(project, diffViewerManager);
             EventHandler activePathHandler = new ActivePathHandler(project, highlightManager);
-            EventHandler openPeerFileHandler = new OpenPeerFileHandler(project, diffViewerManager);
+            EventHandler openPeerFileHandler = new OpenPeerFileHandler(project);
 
-            appService.getEventDispatcher().registerHandler(authInfoHandler);
             appService.getEventDispatcher().registerHandler(peerSelectHandler);
             appService.getEventDispatcher().registerHandler(peerUnselectHandler);
             appService.getEventDispatcher().registerHandler(branchSelectHandler);
-            appService.getEventDispatcher().registerHandler(diffPeerHandler);
             appService.getEventDispatcher().registerHandler(activePathHandler);
             appService.getEventDispatcher().registerHandler(openPeerFileHandler);
 
             // Keep references to unregister later
-            registeredHandlers.add(authInfoHandler);
             registeredHandlers.add(peerSelectHandler);
             registeredHandlers.add(peerUnselectHandler);
             registeredHandlers.add(branchSelectHandler);
-            registeredHandlers.add(diffPeerHandler);
             registeredHandlers.add(activePathHandler);
             registeredHandlers.add(openPeerFileHandler);
 
@@ -114,46 +216,76 @@ public final class CodeAwarenessProjectService implements Disposable, SettingsCh
     }
 
     /**
-     * Request authentication info from the backend.
+     * Make sure the auth session is known. All projects share it, so this costs at most one
+     * auth:info round-trip however many projects ask at once.
      */
     public void requestAuthInfo() {
-        try {
-            CodeAwarenessApplicationService appService =
-                ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
-
-            if (appService == null || !appService.isConnected()) {
-                Logger.debug("Cannot request auth info: not connected");
-                return;
+        CodeAwarenessApplicationService appService =
+            ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+        if (appService == null || !appService.isConnected()) {
+            Logger.debug("Cannot request auth info: not connected");
+            return;
+        }
+        appService.getAuthSessionCache().get().whenComplete((session, error) -> {
+            if (error != null) {
+                Logger.debug("Auth info not available: " + error.getMessage());
             }
+        });
+    }
 
-            // Build auth:info request
-            Message message = MessageBuilder.buildAuthInfo(appService.getClientGuid());
+    /**
+     * Request a diff with a peer for a specific file.
+     * Served from the peer content cache when possible. May read from disk, so do not call on the EDT.
+     *
+     * @param filePath Path to the file, relative to the project base directory
+     * @param peerGuid GUID of the peer
+     */
+    public void requestDiffWithPeer(String filePath, String peerGuid) {
+        // Toggling back to a peer whose version of the file we already have needs no round-trip
+        PeerContentCache.CachedContent cached = getPeerContentCache().get(peerGuid, filePath);
+        if (cached != null && project.getBasePath() != null) {
+            Logger.debug("Showing cached peer content for: " + filePath);
+            String localPath = new java.io.File(project.getBasePath(), filePath).getPath().replace('\\', '/');
+            showPeerDiff(peerGuid, cached.getTitle(), filePath, localPath, null, cached.getContent(), true);
+            return;
+        }
 
-            // Send via IPC connection
-            if (appService.getIpcConnection() != null) {
-                appService.getIpcConnection().sendMessage(message);
-                Logger.debug("Sent auth:info request");
-            }
+        getPeerContentLoader().requestForUser(filePath, peerGuid);
+    }
 
-        } catch (Exception e) {
-            Logger.warn("Failed to request auth info", e);
+    /**
+     * Show a peer's version of a file next to the local one and diff them in the background.
+     * In-memory mode shows it in the peer's reusable diff tab; temp-file mode opens a diff window.
+     *
+     * @param peerFilePath File the backend extracted the peer's version to, or null if it came from the cache
+     * @param complete false if the content is only a preview of a large file, which is not worth a line diff
+     */
+    public void showPeerDiff(String peerGuid, String peerName, String relativePath, String localPath,
+                             String peerFilePath, String peerContent, boolean complete) {
+        CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
+        if (peerGuid != null && relativePath != null && (settings == null || settings.inMemoryDiffs)) {
+            getPeerDiffChainManager().show(peerGuid, peerName, relativePath, localPath, peerFilePath);
+        } else {
+            getDiffViewerManager().showDiff(localPath, peerName, peerContent);
+        }
+        if (complete) {
+            peerDiffService.computeDiff(localPath, peerName, peerContent);
         }
     }
 
     /**
-     * Request a diff with a peer for a specific file.
+     * Send a diff-peer request to the backend.
      *
-     * @param filePath Path to the file
-     * @param peerGuid GUID of the peer
+     * @return true if the request was sent
      */
-    public void requestDiffWithPeer(String filePath, String peerGuid) {
+    private boolean sendDiffPeerRequest(String filePath, String peerGuid) {
         try {
             CodeAwarenessApplicationService appService =
                 ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
 
             if (appService == null || !appService.isConnected()) {
                 Logger.debug("Cannot request diff: not connected");
-                return;
+                return false;
             }
 
             // Build diff-peer request
@@ -168,11 +300,13 @@ public final class CodeAwarenessProjectService implements Disposable, SettingsCh
             if (appService.getIpcConnection() != null) {
                 appService.getIpcConnection().sendMessage(message);
                 Logger.debug("Sent diff-peer request for: " + filePath);
+                return true;
             }
 
         } catch (Exception e) {
             Logger.warn("Failed to request diff", e);
         }
+        return false;
     }
 
     public Project getProject() {
@@ -204,35 +338,28 @@ public final class CodeAwarenessProjectService implements Disposable, SettingsCh
     }
 
     public boolean isAuthenticated() {
-        return authenticated;
-    }
-
-    public void setAuthenticated(boolean authenticated) {
-        this.authenticated = authenticated;
+        return getAuthSession().isAuthenticated();
     }
 
     public String getUserName() {
-        return userName;
-    }
-
-    public void setUserName(String userName) {
-        this.userName = userName;
+        return getAuthSession().getUserName();
     }
 
     public String getUserEmail() {
-        return userEmail;
-    }
-
-    public void setUserEmail(String userEmail) {
-        this.userEmail = userEmail;
+        return getAuthSession().getUserEmail();
     }
 
     public String getTmpDir() {
-        return tmpDir;
+        return getAuthSession().getTmpDir();
     }
 
-    public void setTmpDir(String tmpDir) {
-        this.tmpDir = tmpDir;
+    /**
+     * Get the last known auth session, shared by all projects.
+     */
+    private AuthSession getAuthSession() {
+        CodeAwarenessApplicationService appService =
+            ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+        return appService != null ? appService.getAuthSessionCache().getSnapshot() : AuthSession.NOT_AUTHENTICATED;
     }
 
     public Map<String, Object> getHighlighters() {
@@ -251,16 +378,112 @@ public final class CodeAwarenessProjectService implements Disposable, SettingsCh
         return activeFileTracker;
     }
 
+    public VisibleEditorTracker getVisibleEditorTracker() {
+        return visibleEditorTracker;
+    }
+
+    public FileResolver getFileResolver() {
+        return fileResolver;
+    }
+
     public HighlightManager getHighlightManager() {
         return highlightManager;
     }
 
+    public ActivePathCache getActivePathCache() {
+        return activePathCache;
+    }
+
+    public ActivePathPrefetcher getActivePathPrefetcher() {
+        return activePathPrefetcher;
+    }
+
+    /**
+     * Build the active-path cache key for the current state of a file:
+     * its document modification stamp and the selected peer/branch.
+     */
+    public ActivePathCache.Key createActivePathCacheKey(VirtualFile file) {
+        if (file == null) {
+            return null;
+        }
+        return new ActivePathCache.Key(file.getPath(), getModificationStamp(file), getHighlightContext());
+    }
+
+    /**
+     * Build the active-path cache key for the current state of a file given by path.
+     * Files unknown to the VFS are keyed with a zero stamp.
+     */
+    public ActivePathCache.Key createActivePathCacheKey(String filePath) {
+        if (filePath == null) {
+            return null;
+        }
+        FileResolver.ResolvedFile resolved = fileResolver.getIfResolved(filePath);
+        VirtualFile file = resolved != null ? resolved.getFile() : LocalFileSystem.getInstance().findFileByPath(filePath);
+        long stamp = (file != null && file.isValid()) ? getModificationStamp(file) : 0;
+        return new ActivePathCache.Key(filePath, stamp, getHighlightContext());
+    }
+
+    /**
+     * Get the stamp of unsaved edits when the document is loaded, else the stamp of the file on disk.
+     */
+    private static long getModificationStamp(VirtualFile file) {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        return document != null ? document.getModificationStamp() : file.getModificationStamp();
+    }
+
+    /**
+     * Describe the peer/branch selection highlights are currently computed against.
+     */
+    private String getHighlightContext() {
+        return "peer=" + (selectedPeer != null ? selectedPeer : "") +
+            ";branch=" + (selectedBranch != null ? selectedBranch : "");
+    }
+
     public DiffViewerManager getDiffViewerManager() {
-        return diffViewerManager;
+        return peerDiff().diffViewerManager;
+    }
+
+    public PeerContentCache getPeerContentCache() {
+        return peerDiff().peerContentCache;
+    }
+
+    public PeerContentLoader getPeerContentLoader() {
+        return peerDiff().peerContentLoader;
+    }
+
+    /**
+     * Check if a loader is this project's, without creating the peer diff components to find out.
+     */
+    public boolean ownsPeerContentLoader(PeerContentLoader loader) {
+        PeerDiffComponents components = peerDiff;
+        return components != null && components.peerContentLoader == loader;
+    }
+
+    public PeerDiffChainManager getPeerDiffChainManager() {
+        return peerDiff().peerDiffChainManager;
+    }
+
+    public PeerPrefetcher getPeerPrefetcher() {
+        return peerDiff().peerPrefetcher;
+    }
+
+    public PeerDiffService getPeerDiffService() {
+        return peerDiffService;
     }
 
+    /**
+     * Get the application's temp file store, which this project's peer files are written to.
+     */
     public TempFileManager getTempFileManager() {
-        return tempFileManager;
+        return TempFileManager.getInstance();
+    }
+
+    /**
+     * Get the task group holding all scheduled work of this project.
+     * Everything in it is cancelled when the project service is disposed.
+     */
+    public TaskGroup getProjectTasks() {
+        return projectTasks;
     }
 
     @Override
@@ -277,30 +500,68 @@ public final class CodeAwarenessProjectService implements Disposable, SettingsCh
         highlightManager.setHighlightsEnabled(enabled);
     }
 
+    @Override
+    public void onConnectionStateChanged(ConnectionState state) {
+        if (state != ConnectionState.CONNECTED || project.isDisposed()) {
+            return;
+        }
+        // A new connection, or the backend restarted: it knows nothing about this project yet
+        Logger.info("Connected, sending state of project: " + project.getName());
+        requestAuthInfo();
+        activeFileTracker.refreshVisibleEditors();
+        if (selectedPeer != null) {
+            getPeerPrefetcher().start(selectedPeer);
+        }
+    }
+
     @Override
     public void dispose() {
         Logger.info("Disposing Code Awareness Project Service for project: " + project.getName());
 
-        // Unregister settings change listener
-        CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
-        settings.removeSettingsChangeListener(this);
+        // Nothing gets registered after this; initialization that has not run yet won't
+        PeerDiffComponents components;
+        synchronized (this) {
+            disposed = true;
+            components = peerDiff;
 
-        // Unregister event handlers
-        CodeAwarenessApplicationService appService =
-            ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+            // Unregister settings change listener
+            CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
+            settings.removeSettingsChangeListener(this);
 
-        if (appService != null && !registeredHandlers.isEmpty()) {
-            Logger.info("Unregistering " + registeredHandlers.size() + " event handlers for project: " + project.getName());
-            for (EventHandler handler : registeredHandlers) {
-                appService.getEventDispatcher().unregisterHandler(handler);
+            // Unregister event handlers
+            CodeAwarenessApplicationService appService =
+                ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+            if (appService != null) {
+                appService.removeConnectionStateListener(this);
+                if (components != null) {
+                    appService.getDiffPeerRequests().removeAll(components.peerContentLoader);
+                }
+            }
+
+            if (appService != null && !registeredHandlers.isEmpty()) {
+                Logger.info("Unregistering " + registeredHandlers.size() + " event handlers for project: " + project.getName());
+                for (EventHandler handler : registeredHandlers) {
+                    appService.getEventDispatcher().unregisterHandler(handler);
+                }
+                registeredHandlers.clear();
             }
-            registeredHandlers.clear();
         }
+        ready.cancel(false);
 
         clearHighlighters();
         highlightManager.clearAllHighlights();
-        diffViewerManager.cleanupAll();
+        peerDiffService.clear();
+        if (components != null) {
+            components.peerContentCache.invalidateAll();
+            components.peerPrefetcher.cancel();
+            components.peerDiffChainManager.clear();
+            components.diffViewerManager.cleanupAll();
+        }
         fileMonitor.shutdown();
         activeFileTracker.shutdown();
+        activePathPrefetcher.cancel();
+        activePathCache.invalidateAll();
+        fileResolver.invalidateAll();
+        projectTasks.cancelAll();
     }
 }
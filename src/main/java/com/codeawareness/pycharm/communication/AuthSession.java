@@ -0,0 +1,94 @@
+package com.codeawareness.pycharm.communication;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of the backend's authentication state, shared by all projects.
+ */
+public final class AuthSession {
+
+    /**
+     * Session of a backend with no logged in user.
+     */
+    public static final AuthSession NOT_AUTHENTICATED = new AuthSession(false, null, null, null);
+
+    private final boolean authenticated;
+    private final String userName;
+    private final String userEmail;
+    private final String tmpDir;
+
+    public AuthSession(boolean authenticated, String userName, String userEmail, String tmpDir) {
+        this.authenticated = authenticated;
+        this.userName = userName;
+        this.userEmail = userEmail;
+        this.tmpDir = tmpDir;
+    }
+
+    /**
+     * Build a session from the data of an auth:info message.
+     * No user object means not authenticated.
+     */
+    public static AuthSession fromAuthInfo(JsonObject data) {
+        if (data == null) {
+            return NOT_AUTHENTICATED;
+        }
+        String tmpDir = getString(data, "tmpDir");
+        if (data.has("user") && data.get("user").isJsonObject()) {
+            JsonObject user = data.getAsJsonObject("user");
+            return new AuthSession(true, getString(user, "name"), getString(user, "email"), tmpDir);
+        }
+        return new AuthSession(false, null, null, tmpDir);
+    }
+
+    private static String getString(JsonObject object, String key) {
+        JsonElement element = object.get(key);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    public boolean isAuthenticated() {
+        return authenticated;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    /**
+     * Get the directory the backend extracts peer files to, or null if it did not say.
+     */
+    public String getTmpDir() {
+        return tmpDir;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AuthSession)) {
+            return false;
+        }
+        AuthSession session = (AuthSession) o;
+        return authenticated == session.authenticated
+            && Objects.equals(userName, session.userName)
+            && Objects.equals(userEmail, session.userEmail)
+            && Objects.equals(tmpDir, session.tmpDir);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(authenticated, userName, userEmail, tmpDir);
+    }
+
+    @Override
+    public String toString() {
+        return authenticated ? "authenticated as " + userName + " (" + userEmail + ")" : "not authenticated";
+    }
+}
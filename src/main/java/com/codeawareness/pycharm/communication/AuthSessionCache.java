@@ -0,0 +1,121 @@
+package com.codeawareness.pycharm.communication;
+
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Application-wide cache of the backend's {@link AuthSession}.
+ *
+ * All projects read the same snapshot, and while it is unknown a single auth:info request
+ * serves every caller. The session is fetched again only when something says it may have
+ * changed: a new connection, which may be to a restarted backend, or the backend signalling
+ * a logout. An auth:info the backend pushes on its own replaces the snapshot directly.
+ */
+public class AuthSessionCache {
+
+    private static final long REQUEST_TIMEOUT_MS = 10000;
+
+    private final BooleanSupplier requestSender;
+    private final long requestTimeoutMs;
+    private AuthSession session;
+    private boolean stale = true;
+    private CompletableFuture<AuthSession> inFlight;
+
+    /**
+     * @param requestSender Sends an auth:info request; returns false if it could not be sent
+     */
+    public AuthSessionCache(BooleanSupplier requestSender) {
+        this(requestSender, REQUEST_TIMEOUT_MS);
+    }
+
+    AuthSessionCache(BooleanSupplier requestSender, long requestTimeoutMs) {
+        this.requestSender = requestSender;
+        this.requestTimeoutMs = requestTimeoutMs;
+    }
+
+    /**
+     * Get the session, requesting it from the backend only if it is not known or is stale.
+     *
+     * @return A future completed with the session, or failed if it could not be requested or
+     *         the backend did not answer in time
+     */
+    public CompletableFuture<AuthSession> get() {
+        CompletableFuture<AuthSession> request;
+        synchronized (this) {
+            if (!stale) {
+                return CompletableFuture.completedFuture(session);
+            }
+            if (inFlight != null) {
+                return inFlight;
+            }
+            request = new CompletableFuture<>();
+            inFlight = request;
+        }
+
+        // Release the slot if no answer comes, so a later caller can try again
+        request.orTimeout(requestTimeoutMs, TimeUnit.MILLISECONDS)
+            .whenComplete((result, error) -> release(request));
+
+        Logger.debug("Requesting auth info");
+        if (!requestSender.getAsBoolean()) {
+            request.completeExceptionally(new IOException("Cannot request auth info: not connected"));
+        }
+        return request;
+    }
+
+    /**
+     * Get the last known session without requesting anything.
+     *
+     * @return The session, possibly stale, or {@link AuthSession#NOT_AUTHENTICATED} if none is known
+     */
+    public synchronized AuthSession getSnapshot() {
+        return session != null ? session : AuthSession.NOT_AUTHENTICATED;
+    }
+
+    /**
+     * Store a session received from the backend and complete the pending request, if any.
+     */
+    public void update(AuthSession newSession) {
+        CompletableFuture<AuthSession> request;
+        boolean changed;
+        synchronized (this) {
+            changed = !newSession.equals(session);
+            session = newSession;
+            stale = false;
+            request = inFlight;
+            inFlight = null;
+        }
+        if (changed) {
+            Logger.info("Auth session: " + newSession);
+        }
+        if (request != null) {
+            request.complete(newSession);
+        }
+    }
+
+    /**
+     * Mark the session stale, so the next {@link #get()} fetches it again. The snapshot stays
+     * readable meanwhile.
+     */
+    public synchronized void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Fetch the session again, e.g. after the backend signalled a change.
+     */
+    public CompletableFuture<AuthSession> refresh() {
+        invalidate();
+        return get();
+    }
+
+    private synchronized void release(CompletableFuture<AuthSession> request) {
+        if (inFlight == request) {
+            inFlight = null;
+        }
+    }
+}
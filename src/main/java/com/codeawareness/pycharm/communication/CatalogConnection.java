@@ -31,7 +31,6 @@ public class CatalogConnection {
         socketManager = new SocketManager(catalogPath);
 
         try {
-            // Connect to catalog socket with retry
             Logger.info("Attempting to connect to catalog socket...");
             socketManager.connect();
             connected = true;
@@ -43,7 +42,9 @@ public class CatalogConnection {
             Logger.info("Successfully connected and registered with catalog service (GUID: " + clientGuid + ")");
         } catch (IOException e) {
             connected = false;
-            Logger.error("Failed to connect to catalog service at: " + catalogPath, e);
+            // Expected while the backend is not running, so not an error
+            Logger.warn("Failed to connect to catalog service at: " + catalogPath + ": " + e.getMessage());
+            socketManager.close();
             throw e;
         }
     }
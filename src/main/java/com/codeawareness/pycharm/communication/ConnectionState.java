@@ -0,0 +1,24 @@
+package com.codeawareness.pycharm.communication;
+
+/**
+ * Steps of connecting to the Code Awareness backend.
+ */
+public enum ConnectionState {
+    DISCONNECTED("Disconnected"),
+    RECONNECTING("Reconnecting"),                   // Connection lost; waiting to try again
+    WAITING_FOR_CATALOG("Waiting for Kawa Code"),   // Catalog socket missing or not accepting connections
+    REGISTERING("Registering"),                     // Connecting to the catalog and sending the client GUID
+    WAITING_FOR_IPC("Waiting for IPC socket"),      // Catalog has not created this client's socket yet
+    CONNECTING("Connecting"),                       // Connecting to the IPC socket
+    CONNECTED("Connected");
+
+    private final String displayName;
+
+    ConnectionState(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,15 @@
+package com.codeawareness.pycharm.communication;
+
+/**
+ * Listener interface for changes of the backend connection state.
+ * Called on the thread that changed the state, which is never the EDT.
+ */
+public interface ConnectionStateListener {
+
+    /**
+     * Called when the connection moves to a new state.
+     *
+     * @param state The new state
+     */
+    void onConnectionStateChanged(ConnectionState state);
+}
@@ -0,0 +1,122 @@
+package com.codeawareness.pycharm.communication;
+
+import com.codeawareness.pycharm.scheduling.CodeAwarenessScheduler;
+import com.codeawareness.pycharm.scheduling.ScheduledTask;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Reconnects to the backend after the connection is lost.
+ *
+ * Failed attempts are retried with exponential backoff and jitter, so several IDE instances
+ * losing the same backend do not all come back at the same moment. Supervision starts once
+ * connected and ends when the user disconnects.
+ */
+public class ConnectionSupervisor {
+
+    private static final long DEFAULT_INITIAL_DELAY_MS = 500;
+    private static final long DEFAULT_MAX_DELAY_MS = 30000;
+
+    private final Supplier<CompletableFuture<Void>> connector;
+    private final CodeAwarenessScheduler scheduler;
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final Random random;
+    private final AtomicReference<ScheduledTask> pendingReconnect = new AtomicReference<>(null);
+    private final AtomicInteger failedAttempts = new AtomicInteger();
+    private volatile boolean active = false;
+
+    /**
+     * @param connector Starts a connection attempt, e.g. {@code appService::connectAsync}
+     */
+    public ConnectionSupervisor(Supplier<CompletableFuture<Void>> connector, CodeAwarenessScheduler scheduler) {
+        this(connector, scheduler, DEFAULT_INITIAL_DELAY_MS, DEFAULT_MAX_DELAY_MS, new Random());
+    }
+
+    ConnectionSupervisor(Supplier<CompletableFuture<Void>> connector, CodeAwarenessScheduler scheduler,
+                         long initialDelayMs, long maxDelayMs, Random random) {
+        this.connector = connector;
+        this.scheduler = scheduler;
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.random = random;
+    }
+
+    /**
+     * Start supervising an established connection.
+     */
+    public void start() {
+        active = true;
+        failedAttempts.set(0);
+    }
+
+    /**
+     * Stop supervising, e.g. because the user disconnected. A pending reconnect is cancelled.
+     */
+    public void stop() {
+        active = false;
+        ScheduledTask task = pendingReconnect.getAndSet(null);
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Report that the connection was lost. Schedules a reconnect if supervising.
+     */
+    public void connectionLost(Throwable cause) {
+        if (!active) {
+            return;
+        }
+        Logger.warn("Connection to Code Awareness backend lost: " + cause);
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        long delayMs = getDelayMs(failedAttempts.get());
+        Logger.info("Reconnecting in " + delayMs + "ms");
+        ScheduledTask task = scheduler.schedule(SchedulerLane.CONNECT, this::reconnect, delayMs);
+        ScheduledTask previous = pendingReconnect.getAndSet(task);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void reconnect() {
+        if (!active) {
+            return;
+        }
+        connector.get().whenComplete((result, error) -> {
+            if (error == null) {
+                failedAttempts.set(0);
+                Logger.info("Reconnected to Code Awareness backend");
+            } else if (active) {
+                failedAttempts.incrementAndGet();
+                scheduleReconnect();
+            }
+        });
+    }
+
+    /**
+     * Get the delay before a reconnect: exponential in the number of failed attempts,
+     * capped, with the upper half randomized.
+     */
+    long getDelayMs(int failedAttempts) {
+        long ceiling = initialDelayMs << Math.min(failedAttempts, 20);
+        if (ceiling <= 0 || ceiling > maxDelayMs) {
+            ceiling = maxDelayMs;
+        }
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half));
+    }
+}
@@ -0,0 +1,9 @@
+package com.codeawareness.pycharm.communication;
+
+/**
+ * Direction of a frame on the IPC connection.
+ */
+public enum FrameDirection {
+    INBOUND,  // From the backend
+    OUTBOUND  // To the backend
+}
@@ -0,0 +1,208 @@
+package com.codeawareness.pycharm.communication;
+
+import com.intellij.openapi.application.ApplicationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size, lock-free record of the most recent frames sent and received over the IPC
+ * connection, for the protocol inspector.
+ *
+ * Frames are only kept while someone is looking (see {@link #addViewer()}); otherwise
+ * recording a frame is a single counter update. Writers claim a slot by sequence number
+ * and never wait for each other or for readers; once the buffer is full, each new frame
+ * replaces the oldest.
+ */
+public class FrameRingBuffer {
+
+    public static final int DEFAULT_CAPACITY = 512;
+    private static final int MAX_PAYLOAD_LENGTH = 16 * 1024;
+
+    private final int mask;
+    private final AtomicReferenceArray<Frame> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLongArray frameCounts = new AtomicLongArray(FrameDirection.values().length);
+    private final AtomicInteger viewers = new AtomicInteger();
+    private volatile long clearedBefore = 0;
+    private volatile boolean capturePayloads = false;
+
+    /**
+     * A recorded frame.
+     */
+    public static final class Frame {
+        private final long sequence;
+        private final long timestamp;
+        private final FrameDirection direction;
+        private final String domain;
+        private final String action;
+        private final Message.Flow flow;
+        private final int size;
+        private final String payload;
+
+        Frame(long sequence, long timestamp, FrameDirection direction, String domain, String action,
+              Message.Flow flow, int size, String payload) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.direction = direction;
+            this.domain = domain;
+            this.action = action;
+            this.flow = flow;
+            this.size = size;
+            this.payload = payload;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Get the time the frame was recorded, in milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public FrameDirection getDirection() {
+            return direction;
+        }
+
+        /**
+         * Get the full action, e.g. {@code code:active-path}.
+         */
+        public String getAction() {
+            return domain != null && !"*".equals(domain) ? domain + ":" + action : action;
+        }
+
+        public Message.Flow getFlow() {
+            return flow;
+        }
+
+        /**
+         * Get the size of the serialized frame, in characters.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Get the serialized frame, cut to a bounded length, or null if payloads were not captured.
+         */
+        public String getPayload() {
+            return payload;
+        }
+    }
+
+    public FrameRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Number of frames kept; rounded up to a power of two
+     */
+    FrameRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Get the application-level instance.
+     */
+    public static FrameRingBuffer getInstance() {
+        return ApplicationManager.getApplication().getService(FrameRingBuffer.class);
+    }
+
+    /**
+     * Record a frame. Only counts it when nobody is viewing.
+     *
+     * @param serialized The frame as sent or received
+     */
+    public void record(FrameDirection direction, Message message, String serialized) {
+        frameCounts.incrementAndGet(direction.ordinal());
+        if (viewers.get() == 0) {
+            return;
+        }
+
+        long sequence = nextSequence.getAndIncrement();
+        String payload = null;
+        if (capturePayloads && serialized != null) {
+            payload = serialized.length() > MAX_PAYLOAD_LENGTH ? serialized.substring(0, MAX_PAYLOAD_LENGTH) : serialized;
+        }
+        Frame frame = new Frame(sequence, System.currentTimeMillis(), direction,
+            message.getDomain(), message.getAction(), message.getFlow(),
+            serialized != null ? serialized.length() : 0, payload);
+        slots.set((int) (sequence & mask), frame);
+    }
+
+    /**
+     * Get the kept frames, oldest first.
+     */
+    public List<Frame> snapshot() {
+        long end = nextSequence.get();
+        long start = Math.max(Math.max(0, end - slots.length()), clearedBefore);
+        List<Frame> frames = new ArrayList<>((int) Math.max(0, end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            Frame frame = slots.get((int) (sequence & mask));
+            // Skip slots not written yet, or already reused by a newer frame
+            if (frame != null && frame.sequence == sequence) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Drop the kept frames. Counters are not reset.
+     */
+    public void clear() {
+        clearedBefore = nextSequence.get();
+    }
+
+    /**
+     * Get the number of frames seen in a direction since startup, kept or not.
+     */
+    public long getFrameCount(FrameDirection direction) {
+        return frameCounts.get(direction.ordinal());
+    }
+
+    /**
+     * Start keeping frames, until the matching {@link #removeViewer()}.
+     */
+    public void addViewer() {
+        viewers.incrementAndGet();
+    }
+
+    public void removeViewer() {
+        viewers.updateAndGet(count -> Math.max(0, count - 1));
+    }
+
+    /**
+     * Check if frames are being kept.
+     */
+    public boolean isCapturing() {
+        return viewers.get() > 0;
+    }
+
+    /**
+     * Set whether kept frames include their serialized content.
+     */
+    public void setCapturePayloads(boolean capturePayloads) {
+        this.capturePayloads = capturePayloads;
+    }
+
+    public boolean isCapturePayloads() {
+        return capturePayloads;
+    }
+
+    /**
+     * Get the number of frames kept at most.
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+}
@@ -1,6 +1,11 @@
 package com.codeawareness.pycharm.communication;
 
 import com.codeawareness.pycharm.events.ResponseHandlerRegistry;
+import com.codeawareness.pycharm.monitoring.AdaptiveDebounceController;
+import com.codeawareness.pycharm.scheduling.CodeAwarenessScheduler;
+import com.codeawareness.pycharm.scheduling.ScheduledTask;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.utils.LogCategory;
 import com.codeawareness.pycharm.utils.Logger;
 import com.codeawareness.pycharm.utils.PathUtils;
 import com.intellij.openapi.application.ApplicationManager;
@@ -14,7 +19,7 @@ import java.util.function.Consumer;
  * Manages connection to the Code Awareness IPC service.
  * This is the main communication channel with the backend after initial
  * registration with the catalog service.
- * Handles async message reading in a background thread.
+ * Reads messages on a thread of its own, labelled with the shared scheduler's IPC reader lane.
  */
 public class IpcConnection {
 
@@ -22,15 +27,25 @@ public class IpcConnection {
     private final String clientGuid;
     private final ResponseHandlerRegistry responseHandlerRegistry;
     private final MessageParser messageParser;
+    private final FrameRingBuffer frames;
+    private final AdaptiveDebounceController debounceController;
     private final AtomicBoolean connected = new AtomicBoolean(false);
     private final AtomicBoolean running = new AtomicBoolean(false);
-    private Thread readerThread;
+    private ScheduledTask readerTask;
     private Consumer<Message> messageCallback;
+    private Consumer<IOException> connectionLostListener;
+    private volatile SessionRecorder sessionRecorder;
 
-    public IpcConnection(String clientGuid, ResponseHandlerRegistry responseHandlerRegistry) {
+    /**
+     * @param debounceController Controller to report request round trips to
+     */
+    public IpcConnection(String clientGuid, ResponseHandlerRegistry responseHandlerRegistry,
+                         AdaptiveDebounceController debounceController) {
         this.clientGuid = clientGuid;
         this.responseHandlerRegistry = responseHandlerRegistry;
+        this.debounceController = debounceController;
         this.messageParser = new MessageParser();
+        this.frames = FrameRingBuffer.getInstance();
     }
 
     /**
@@ -40,8 +55,25 @@ public class IpcConnection {
         this.messageCallback = callback;
     }
 
+    /**
+     * Set a listener called once when the connection breaks, i.e. reading or writing fails
+     * while connected. Not called after {@link #close()}.
+     */
+    public void setConnectionLostListener(Consumer<IOException> listener) {
+        this.connectionLostListener = listener;
+    }
+
+    /**
+     * Set a recorder to write every frame sent and received to, or null to stop recording.
+     */
+    public void setSessionRecorder(SessionRecorder recorder) {
+        this.sessionRecorder = recorder;
+    }
+
     /**
      * Connect to the IPC service and start listening for messages.
+     * The catalog creates the IPC socket after registration; callers wait for it to appear
+     * (see {@link SocketWatcher}) before connecting.
      */
     public void connect() throws IOException {
         Logger.info("Connecting to IPC service...");
@@ -49,15 +81,6 @@ public class IpcConnection {
         String ipcPath = PathUtils.getIpcSocketPath(clientGuid);
         Logger.info("IPC socket path: " + ipcPath);
 
-        // Wait for IPC socket to be available (catalog creates it)
-        long maxWaitMs = 10000; // 10 seconds
-        Logger.info("Waiting for IPC socket to become available (max " + maxWaitMs + "ms)...");
-        if (!SocketManager.waitForSocket(ipcPath, maxWaitMs)) {
-            Logger.error("IPC socket not available after waiting: " + ipcPath);
-            throw new IOException("IPC socket not available: " + ipcPath);
-        }
-
-        Logger.info("IPC socket found, creating socket manager...");
         socketManager = new SocketManager(ipcPath);
 
         try {
@@ -73,44 +96,43 @@ public class IpcConnection {
             Logger.info("Successfully connected to IPC service (GUID: " + clientGuid + ")");
         } catch (IOException e) {
             connected.set(false);
-            Logger.error("Failed to connect to IPC service at: " + ipcPath, e);
+            Logger.warn("Failed to connect to IPC service at: " + ipcPath, e);
             throw e;
         }
     }
 
     /**
-     * Start background thread to read messages from IPC socket.
+     * Start the background reader task for the IPC socket.
+     * The reader blocks on the socket while connected, so it runs outside the bounded worker pool.
      */
     private void startMessageReader() {
         running.set(true);
-        readerThread = new Thread(() -> {
-            Logger.info("IPC message reader thread started");
+        readerTask = CodeAwarenessScheduler.getInstance().submitBlocking(SchedulerLane.IPC_READER, () -> {
+            Logger.info("IPC message reader started");
 
             while (running.get() && connected.get()) {
                 try {
                     // Read until delimiter
-                    Logger.debug("Waiting for message from IPC socket...");
+                    Logger.trace(LogCategory.IPC, "Waiting for message from IPC socket...");
                     String data = socketManager.readUntilDelimiter(MessageProtocol.DELIMITER);
 
                     if (data != null && !data.isEmpty()) {
-                        Logger.info("Received data from IPC socket (length: " + data.length() + " bytes)");
-                        Logger.debug("Raw IPC data: " + data.substring(0, Math.min(200, data.length())));
-
-                        // Log bytes for debugging encoding issues
-                        if (data.contains("\"hl\"")) {
-                            int hlIndex = data.indexOf("\"hl\"");
-                            int endIndex = Math.min(hlIndex + 100, data.length());
-                            String hlSection = data.substring(hlIndex, endIndex);
-                            Logger.info("HL SECTION IN RAW DATA: " + hlSection);
-                            Logger.info("HL SECTION BYTES: " + bytesToHex(hlSection.getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+                        SessionRecorder recorder = sessionRecorder;
+                        if (recorder != null) {
+                            recorder.record(FrameDirection.INBOUND, data);
                         }
+                        Logger.debug(LogCategory.IPC, "Received {} bytes from IPC socket", data.length());
+                        Logger.payload(LogCategory.IPC, "Raw IPC data", data);
+                        // Bytes of the hl section, for debugging encoding issues
+                        Logger.payload(LogCategory.IPC, "HL section bytes", IpcConnection::hlSectionHex, data);
 
                         // Parse messages
                         List<Message> messages = messageParser.parse(data + MessageProtocol.DELIMITER);
-                        Logger.info("Parsed " + messages.size() + " message(s) from IPC");
+                        Logger.debug(LogCategory.IPC, "Parsed {} message(s) from IPC", messages.size());
 
                         // Handle each message
                         for (Message message : messages) {
+                            frames.record(FrameDirection.INBOUND, message, data);
                             handleMessage(message);
                         }
                     } else {
@@ -118,9 +140,8 @@ public class IpcConnection {
                     }
                 } catch (IOException e) {
                     if (running.get() && connected.get()) {
-                        Logger.error("Error reading from IPC socket", e);
-                        // Connection lost
-                        connected.set(false);
+                        Logger.warn("Error reading from IPC socket: " + e.getMessage());
+                        onConnectionLost(e);
                         break;
                     } else {
                         Logger.debug("IPC reader stopped (running=" + running.get() + ", connected=" + connected.get() + ")");
@@ -130,30 +151,30 @@ public class IpcConnection {
                 }
             }
 
-            Logger.info("IPC message reader thread stopped");
-        }, "CodeAwareness-IPC-Reader");
-
-        readerThread.setDaemon(true);
-        readerThread.start();
+            Logger.info("IPC message reader stopped");
+        });
     }
 
     /**
      * Handle an incoming message.
      */
     private void handleMessage(Message message) {
-        Logger.info("Handling message: " + message.getDomain() + ":" + message.getAction() + 
-                   " (flow: " + message.getFlow() + ")");
+        Logger.debug(LogCategory.IPC, "Handling message: {}:{} (flow: {})",
+            message.getDomain(), message.getAction(), message.getFlow());
+
+        // Measure backend latency for the adaptive debounce windows
+        debounceController.onMessageReceived(message);
 
         // Try response handler first
         String handlerKey = message.getDomain() + ":" + message.getAction();
         if (responseHandlerRegistry.handle(handlerKey, message)) {
-            Logger.info("Message handled by response handler: " + handlerKey);
+            Logger.debug(LogCategory.IPC, "Message handled by response handler: {}", handlerKey);
             return;
         }
 
         // Use callback if set
         if (messageCallback != null) {
-            Logger.debug("Dispatching message to callback");
+            Logger.trace(LogCategory.IPC, "Dispatching message to callback");
             ApplicationManager.getApplication().executeOnPooledThread(() -> {
                 try {
                     messageCallback.accept(message);
@@ -176,12 +197,70 @@ public class IpcConnection {
         }
 
         String serialized = MessageProtocol.serialize(message);
-        Logger.info("Sending message to IPC: " + message.getDomain() + ":" + message.getAction() + 
-                   " (length: " + serialized.length() + " bytes)");
-        Logger.debug("Message details - flow: " + message.getFlow() + ", caw: " + message.getCaw());
-        
-        socketManager.write(serialized);
-        Logger.info("Successfully sent message: " + message.getDomain() + ":" + message.getAction());
+        recordOutbound(message, serialized);
+        Logger.debug(LogCategory.IPC, "Sending message to IPC: {}:{} (flow: {})",
+            message.getDomain(), message.getAction(), message.getFlow());
+
+        // Recorded before writing so a fast response cannot arrive ahead of its send time
+        debounceController.onMessageSent(message);
+        write(serialized);
+        Logger.trace(LogCategory.IPC, "Sent {} bytes", serialized.length());
+    }
+
+    /**
+     * Send several messages in a single socket write, preserving their order.
+     */
+    public void sendMessages(List<Message> messages) throws IOException {
+        if (!connected.get()) {
+            Logger.warn("Cannot send messages: not connected to IPC service");
+            throw new IOException("Not connected to IPC service");
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        StringBuilder batch = new StringBuilder();
+        for (Message message : messages) {
+            String serialized = MessageProtocol.serialize(message);
+            recordOutbound(message, serialized);
+            batch.append(serialized);
+        }
+        Logger.debug(LogCategory.IPC, "Sending {} message(s) to IPC", messages.size());
+
+        for (Message message : messages) {
+            debounceController.onMessageSent(message);
+        }
+        write(batch.toString());
+        Logger.trace(LogCategory.IPC, "Sent {} bytes", batch.length());
+    }
+
+    private void recordOutbound(Message message, String serialized) {
+        frames.record(FrameDirection.OUTBOUND, message, serialized);
+        SessionRecorder recorder = sessionRecorder;
+        if (recorder != null) {
+            recorder.record(FrameDirection.OUTBOUND, serialized);
+        }
+    }
+
+    private void write(String data) throws IOException {
+        try {
+            socketManager.write(data);
+        } catch (IOException e) {
+            onConnectionLost(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Mark the connection as lost and tell the listener, once.
+     */
+    private void onConnectionLost(IOException error) {
+        if (running.get() && connected.compareAndSet(true, false)) {
+            Consumer<IOException> listener = connectionLostListener;
+            if (listener != null) {
+                listener.accept(error);
+            }
+        }
     }
 
     /**
@@ -200,18 +279,14 @@ public class IpcConnection {
      * Close the IPC connection.
      */
     public void close() {
-        if (connected.get()) {
+        // A lost connection is no longer connected, but its socket still needs closing
+        boolean wasRunning = running.getAndSet(false);
+        if (wasRunning || connected.get()) {
             Logger.info("Closing IPC connection");
 
-            // Stop reader thread
-            running.set(false);
-            if (readerThread != null) {
-                readerThread.interrupt();
-                try {
-                    readerThread.join(1000); // Wait up to 1 second
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+            // Stop reader task; closing the socket unblocks a reader waiting for data
+            if (readerTask != null) {
+                readerTask.cancel();
             }
 
             // Close socket
@@ -241,6 +316,15 @@ public class IpcConnection {
     /**
      * Helper method to convert bytes to hex string for debugging.
      */
+    private static String hlSectionHex(String data) {
+        int hlIndex = data.indexOf("\"hl\"");
+        if (hlIndex < 0) {
+            return "(none)";
+        }
+        String hlSection = data.substring(hlIndex, Math.min(hlIndex + 100, data.length()));
+        return hlSection + " = " + bytesToHex(hlSection.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
     private static String bytesToHex(byte[] bytes) {
         StringBuilder sb = new StringBuilder();
         for (byte b : bytes) {
@@ -1,5 +1,6 @@
 package com.codeawareness.pycharm.communication;
 
+import com.codeawareness.pycharm.utils.LogCategory;
 import com.codeawareness.pycharm.utils.Logger;
 
 import java.util.ArrayList;
@@ -48,12 +49,12 @@ public class MessageParser {
             try {
                 Message message = MessageProtocol.deserialize(messageJson);
                 messages.add(message);
-                Logger.debug("Parsed message: " + message.getAction());
+                Logger.trace(LogCategory.IPC, "Parsed message: {}", message.getAction());
             } catch (Exception e) {
                 // Invalid messages are skipped - this is expected behavior
                 // Use warn instead of error since we handle it gracefully
                 Logger.warn("Skipping invalid message: " + e.getMessage());
-                Logger.debug("Invalid message content: " + messageJson);
+                Logger.payload(LogCategory.IPC, "Invalid message content", messageJson);
                 // Continue processing other messages
             }
         }
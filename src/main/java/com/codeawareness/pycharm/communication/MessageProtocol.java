@@ -1,5 +1,6 @@
 package com.codeawareness.pycharm.communication;
 
+import com.codeawareness.pycharm.utils.LogCategory;
 import com.codeawareness.pycharm.utils.Logger;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -53,7 +54,7 @@ public class MessageProtocol {
             String jsonString = GSON.toJson(json);
             String result = jsonString + DELIMITER;
 
-            Logger.trace("Serialized message: " + jsonString);
+            Logger.payload(LogCategory.IPC, "Serialized message", jsonString);
             return result;
         } catch (Exception e) {
             Logger.error("Failed to serialize message", e);
@@ -108,7 +109,7 @@ public class MessageProtocol {
                 message.setCaw(jsonObject.get("caw").getAsString());
             }
 
-            Logger.trace("Deserialized message: " + message);
+            Logger.trace(LogCategory.IPC, "Deserialized message: {}", message);
             return message;
         } catch (JsonSyntaxException e) {
             // Invalid JSON is an expected error condition, don't log as error
@@ -0,0 +1,265 @@
+package com.codeawareness.pycharm.communication;
+
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Append-only, memory-mapped journal of notifications that could not be sent because the
+ * backend was not connected. On reconnect it is drained, compacted to the latest intent per
+ * file, and replayed in one write.
+ *
+ * Layout: a header holding a magic number and the end offset of the last complete record,
+ * followed by records of {@code kind, pathLength, path, nameLength, name}. A record counts
+ * only once the end offset in the header moves past it, so a record torn by a crash is
+ * ignored when the journal is reopened. When the journal is full it is compacted in place;
+ * if it is still full, new intents are dropped.
+ */
+public class OutboundJournal {
+
+    private static final int MAGIC = 0x43415731; // "CAW1"
+    private static final int HEADER_BYTES = 8;    // magic, end offset
+    private static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+    private final Path file;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int end;
+
+    /**
+     * Kind of notification recorded in the journal.
+     */
+    public enum Kind {
+        FILE_SAVED,
+        ACTIVE_PATH
+    }
+
+    /**
+     * A recorded notification.
+     */
+    public static final class Entry {
+        private final Kind kind;
+        private final String filePath;
+        private final String fileName;
+
+        public Entry(Kind kind, String filePath, String fileName) {
+            this.kind = kind;
+            this.filePath = filePath != null ? filePath : "";
+            this.fileName = fileName != null ? fileName : "";
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Get the file path; empty for an active-path with no active file.
+         */
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return kind == entry.kind && filePath.equals(entry.filePath) && fileName.equals(entry.fileName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, filePath, fileName);
+        }
+
+        @Override
+        public String toString() {
+            return kind + ":" + filePath;
+        }
+    }
+
+    /**
+     * Open a journal with the default capacity, keeping records left by a previous session.
+     */
+    public OutboundJournal(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Size of the journal file in bytes
+     */
+    public OutboundJournal(Path file, int capacity) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        int storedEnd = buffer.getInt(4);
+        if (buffer.getInt(0) != MAGIC || storedEnd < HEADER_BYTES || storedEnd > capacity) {
+            reset();
+        } else {
+            end = storedEnd;
+            Logger.debug("Opened outbound journal with " + (end - HEADER_BYTES) + " bytes pending: " + file);
+        }
+    }
+
+    /**
+     * Record a notification.
+     *
+     * @return false if the journal is full even after compaction and the intent was dropped
+     */
+    public synchronized boolean append(Kind kind, String filePath, String fileName) {
+        Entry entry = new Entry(kind, filePath, fileName);
+        if (write(entry)) {
+            return true;
+        }
+        compactInPlace();
+        if (write(entry)) {
+            return true;
+        }
+        Logger.warn("Outbound journal full, dropping " + entry);
+        return false;
+    }
+
+    /**
+     * Take all recorded notifications, compacted, and empty the journal.
+     */
+    public synchronized List<Entry> drain() {
+        List<Entry> entries = compact(readAll());
+        reset();
+        return entries;
+    }
+
+    /**
+     * Check if nothing is recorded.
+     */
+    public synchronized boolean isEmpty() {
+        return end == HEADER_BYTES;
+    }
+
+    /**
+     * Close the journal. Recorded notifications stay in the file for the next session.
+     */
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Logger.warn("Error closing outbound journal: " + file, e);
+        }
+    }
+
+    /**
+     * Compact notifications to what the backend needs to catch up: the last file-saved per file,
+     * in the order of their last occurrence, followed by the last active-path.
+     */
+    static List<Entry> compact(List<Entry> entries) {
+        Map<String, Entry> saved = new LinkedHashMap<>();
+        Entry activePath = null;
+        for (Entry entry : entries) {
+            if (entry.getKind() == Kind.ACTIVE_PATH) {
+                activePath = entry;
+            } else {
+                // Re-insert so the order follows the latest save
+                saved.remove(entry.getFilePath());
+                saved.put(entry.getFilePath(), entry);
+            }
+        }
+        List<Entry> compacted = new ArrayList<>(saved.values());
+        if (activePath != null) {
+            compacted.add(activePath);
+        }
+        return compacted;
+    }
+
+    private void compactInPlace() {
+        List<Entry> entries = compact(readAll());
+        reset();
+        for (Entry entry : entries) {
+            write(entry);
+        }
+        Logger.debug("Compacted outbound journal to " + entries.size() + " record(s)");
+    }
+
+    private boolean write(Entry entry) {
+        byte[] path = entry.getFilePath().getBytes(StandardCharsets.UTF_8);
+        byte[] name = entry.getFileName().getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + path.length + 4 + name.length;
+        if (end + length > capacity) {
+            return false;
+        }
+
+        int position = end;
+        buffer.put(position, (byte) entry.getKind().ordinal());
+        buffer.putInt(position + 1, path.length);
+        buffer.put(position + 5, path);
+        buffer.putInt(position + 5 + path.length, name.length);
+        buffer.put(position + 9 + path.length, name);
+
+        // Publishing the new end commits the record
+        end = position + length;
+        buffer.putInt(4, end);
+        return true;
+    }
+
+    private List<Entry> readAll() {
+        List<Entry> entries = new ArrayList<>();
+        Kind[] kinds = Kind.values();
+        int position = HEADER_BYTES;
+        while (position < end) {
+            int kind = buffer.get(position);
+            if (kind < 0 || kind >= kinds.length || position + 5 > end) {
+                break;
+            }
+            int pathLength = buffer.getInt(position + 1);
+            if (pathLength < 0 || position + 9 + pathLength > end) {
+                break;
+            }
+            int nameLength = buffer.getInt(position + 5 + pathLength);
+            if (nameLength < 0 || position + 9 + pathLength + nameLength > end) {
+                break;
+            }
+            String path = readString(position + 5, pathLength);
+            String name = readString(position + 9 + pathLength, nameLength);
+            entries.add(new Entry(kinds[kind], path, name));
+            position += 9 + pathLength + nameLength;
+        }
+        if (position != end) {
+            Logger.warn("Ignoring corrupt tail of outbound journal at offset " + position);
+        }
+        return entries;
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void reset() {
+        buffer.putInt(0, MAGIC);
+        end = HEADER_BYTES;
+        buffer.putInt(4, end);
+    }
+}
@@ -0,0 +1,107 @@
+package com.codeawareness.pycharm.communication;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a session journal written by {@link SessionRecorder}, one frame at a time.
+ */
+public class SessionReader implements AutoCloseable {
+
+    private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    private final DataInputStream in;
+    private final long startTimeMillis;
+    private final FrameDirection[] directions = FrameDirection.values();
+
+    /**
+     * A recorded frame.
+     */
+    public static final class RecordedFrame {
+        private final long offsetNanos;
+        private final FrameDirection direction;
+        private final String frame;
+
+        RecordedFrame(long offsetNanos, FrameDirection direction, String frame) {
+            this.offsetNanos = offsetNanos;
+            this.direction = direction;
+            this.frame = frame;
+        }
+
+        /**
+         * Get the time the frame was recorded, in nanoseconds since the recording started.
+         */
+        public long getOffsetNanos() {
+            return offsetNanos;
+        }
+
+        public FrameDirection getDirection() {
+            return direction;
+        }
+
+        /**
+         * Get the frame as read from or written to the socket, without the delimiter.
+         */
+        public String getFrame() {
+            return frame;
+        }
+    }
+
+    /**
+     * @throws IOException If the file cannot be read or is not a session journal
+     */
+    public SessionReader(Path file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        try {
+            if (in.readInt() != SessionRecorder.MAGIC) {
+                throw new IOException("Not a session recording: " + file);
+            }
+            short version = in.readShort();
+            if (version != SessionRecorder.VERSION) {
+                throw new IOException("Unsupported session recording version " + version + ": " + file);
+            }
+            this.startTimeMillis = in.readLong();
+        } catch (IOException e) {
+            in.close();
+            throw e instanceof EOFException ? new IOException("Not a session recording: " + file, e) : e;
+        }
+    }
+
+    /**
+     * Get the wall-clock time the recording started, in milliseconds since the epoch.
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * Read the next frame.
+     *
+     * @return The frame, or null at the end of the recording, including at a record cut short
+     */
+    public RecordedFrame next() throws IOException {
+        try {
+            long offsetNanos = in.readLong();
+            int direction = in.readUnsignedByte();
+            int length = in.readInt();
+            if (direction >= directions.length || length < 0 || length > MAX_FRAME_LENGTH) {
+                throw new IOException("Corrupt session recording record");
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new RecordedFrame(offsetNanos, directions[direction], new String(bytes, StandardCharsets.UTF_8));
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,107 @@
+package com.codeawareness.pycharm.communication;
+
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+/**
+ * Records every IPC frame of a session, with its direction and timing, to a compact binary
+ * journal that {@link SessionReplayer} can feed back through the plugin.
+ *
+ * Layout: a header of {@code magic, version, start time (epoch millis)}, followed by records of
+ * {@code nanos since start, direction, length, UTF-8 frame}. Frames are recorded as read from
+ * or written to the socket, without the delimiter. A record cut short by a crash is ignored
+ * when reading.
+ */
+public class SessionRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x43415753; // "CAWS"
+    static final short VERSION = 1;
+
+    private final Path file;
+    private final DataOutputStream out;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private long frameCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Start recording to a file, replacing it if it exists.
+     */
+    public SessionRecorder(Path file) throws IOException {
+        this(file, System::nanoTime);
+    }
+
+    SessionRecorder(Path file, LongSupplier nanoClock) throws IOException {
+        this.file = file;
+        this.nanoClock = nanoClock;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        this.startNanos = nanoClock.getAsLong();
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        Logger.info("Recording IPC session to: " + file);
+    }
+
+    /**
+     * Record a frame. Errors stop the recording rather than the connection.
+     */
+    public synchronized void record(FrameDirection direction, String frame) {
+        if (closed || frame == null) {
+            return;
+        }
+        // Outbound frames come serialized with their delimiter
+        int length = frame.length();
+        if (length > 0 && frame.charAt(length - 1) == MessageProtocol.DELIMITER) {
+            frame = frame.substring(0, length - 1);
+        }
+        byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+        try {
+            out.writeLong(nanoClock.getAsLong() - startNanos);
+            out.writeByte(direction.ordinal());
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            frameCount++;
+        } catch (IOException e) {
+            Logger.warn("Failed to record IPC frame, stopping session recording: " + file, e);
+            close();
+        }
+    }
+
+    /**
+     * Get the number of frames recorded so far.
+     */
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Stop recording and flush the journal.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+            Logger.info("Recorded " + frameCount + " IPC frame(s) to: " + file);
+        } catch (IOException e) {
+            Logger.warn("Error closing session recording: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.codeawareness.pycharm.communication;
+
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Feeds a recorded session back through the plugin: every inbound frame goes through a
+ * {@link MessageParser} and each parsed message to a consumer, normally
+ * {@link com.codeawareness.pycharm.events.EventDispatcher#dispatch}. Outbound frames are what
+ * the plugin sent at the time and are only counted.
+ *
+ * Replaying at {@link Speed#ORIGINAL} keeps the recorded gaps between frames, so timing-dependent
+ * behavior (debouncing, coalescing) is reproduced; {@link Speed#AS_FAST_AS_POSSIBLE} turns the
+ * session into a throughput benchmark.
+ */
+public class SessionReplayer {
+
+    private final Consumer<Message> dispatcher;
+
+    /**
+     * How fast to replay.
+     */
+    public enum Speed {
+        ORIGINAL,
+        AS_FAST_AS_POSSIBLE
+    }
+
+    /**
+     * Outcome of a replay.
+     */
+    public static final class Result {
+        private final long inboundFrames;
+        private final long outboundFrames;
+        private final long messages;
+        private final long elapsedNanos;
+
+        Result(long inboundFrames, long outboundFrames, long messages, long elapsedNanos) {
+            this.inboundFrames = inboundFrames;
+            this.outboundFrames = outboundFrames;
+            this.messages = messages;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getInboundFrames() {
+            return inboundFrames;
+        }
+
+        public long getOutboundFrames() {
+            return outboundFrames;
+        }
+
+        /**
+         * Get the number of messages delivered to the dispatcher.
+         */
+        public long getMessages() {
+            return messages;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return messages + " message(s) from " + inboundFrames + " inbound frame(s) in "
+                + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms (" + outboundFrames + " outbound skipped)";
+        }
+    }
+
+    /**
+     * @param dispatcher Receives each replayed message, on the replaying thread
+     */
+    public SessionReplayer(Consumer<Message> dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Replay a recording on the calling thread.
+     *
+     * @throws InterruptedException If interrupted while waiting for the next frame's time
+     */
+    public Result replay(Path file, Speed speed) throws IOException, InterruptedException {
+        MessageParser parser = new MessageParser();
+        long inbound = 0;
+        long outbound = 0;
+        long messages = 0;
+        long start = System.nanoTime();
+
+        try (SessionReader reader = new SessionReader(file)) {
+            SessionReader.RecordedFrame frame;
+            while ((frame = reader.next()) != null) {
+                if (frame.getDirection() == FrameDirection.OUTBOUND) {
+                    outbound++;
+                    continue;
+                }
+                if (speed == Speed.ORIGINAL) {
+                    long wait = frame.getOffsetNanos() - (System.nanoTime() - start);
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                inbound++;
+                List<Message> parsed = parser.parse(frame.getFrame() + MessageProtocol.DELIMITER);
+                for (Message message : parsed) {
+                    dispatcher.accept(message);
+                    messages++;
+                }
+            }
+        }
+
+        Result result = new Result(inbound, outbound, messages, System.nanoTime() - start);
+        Logger.info("Replayed session " + file + ": " + result);
+        return result;
+    }
+}
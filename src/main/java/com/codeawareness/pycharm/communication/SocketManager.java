@@ -4,18 +4,15 @@ import com.codeawareness.pycharm.utils.Logger;
 import com.codeawareness.pycharm.utils.PathUtils;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Cross-platform socket manager.
- * Handles socket connections with retry logic, timeouts, and error handling.
+ * Handles socket connections with timeouts and error handling.
  * Automatically selects Unix domain sockets or Windows named pipes based on platform.
  */
 public class SocketManager {
 
     private static final int DEFAULT_TIMEOUT_MS = 5000;
-    private static final int MAX_RETRY_ATTEMPTS = 10;
-    private static final long INITIAL_RETRY_DELAY_MS = 500;
 
     private SocketAdapter adapter;
     private final String socketPath;
@@ -56,55 +53,15 @@ public class SocketManager {
     }
 
     /**
-     * Connect to the socket with retry logic.
+     * Connect to the socket. Makes a single attempt; callers wait for the socket to appear
+     * (see {@link SocketWatcher}) and decide when to try again.
      *
-     * @throws IOException If connection fails after all retries
+     * @throws IOException If the connection fails
      */
     public void connect() throws IOException {
-        connect(MAX_RETRY_ATTEMPTS);
-    }
-
-    /**
-     * Connect to the socket with specified number of retries.
-     *
-     * @param maxAttempts Maximum number of connection attempts
-     * @throws IOException If connection fails after all retries
-     */
-    public void connect(int maxAttempts) throws IOException {
-        IOException lastException = null;
-        long retryDelay = INITIAL_RETRY_DELAY_MS;
-
-        Logger.info("Starting connection attempts to: " + socketPath + " (max attempts: " + maxAttempts + ")");
-
-        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
-            try {
-                Logger.info("Connection attempt " + attempt + "/" + maxAttempts + " to: " + socketPath);
-                adapter.connect();
-                Logger.info("Successfully connected to: " + socketPath);
-                return;
-            } catch (IOException e) {
-                lastException = e;
-                Logger.warn("Connection attempt " + attempt + " failed: " + e.getMessage());
-                Logger.debug("Connection failure details", e);
-
-                if (attempt < maxAttempts) {
-                    try {
-                        Logger.debug("Retrying in " + retryDelay + "ms...");
-                        TimeUnit.MILLISECONDS.sleep(retryDelay);
-                        // Exponential backoff: double the delay each time
-                        retryDelay = Math.min(retryDelay * 2, 8000);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new IOException("Connection interrupted", ie);
-                    }
-                }
-            }
-        }
-
-        // All attempts failed
-        String message = "Failed to connect after " + maxAttempts + " attempts to: " + socketPath;
-        Logger.error(message + " (last error: " + (lastException != null ? lastException.getMessage() : "unknown") + ")");
-        throw new IOException(message, lastException);
+        Logger.info("Connecting to: " + socketPath);
+        adapter.connect();
+        Logger.info("Successfully connected to: " + socketPath);
     }
 
     /**
@@ -180,41 +137,4 @@ public class SocketManager {
     public String getSocketPath() {
         return socketPath;
     }
-
-    /**
-     * Wait for a socket to become available.
-     *
-     * @param maxWaitMs Maximum time to wait in milliseconds
-     * @return true if socket exists, false if timeout
-     */
-    public static boolean waitForSocket(String socketPath, long maxWaitMs) {
-        Logger.debug("Waiting for socket: " + socketPath);
-
-        if (PathUtils.isWindows()) {
-            // Windows named pipes don't have file system presence
-            // We'll just try to connect
-            return true;
-        }
-
-        long startTime = System.currentTimeMillis();
-        long retryDelay = 100;
-
-        while (System.currentTimeMillis() - startTime < maxWaitMs) {
-            if (PathUtils.exists(socketPath)) {
-                Logger.debug("Socket found: " + socketPath);
-                return true;
-            }
-
-            try {
-                TimeUnit.MILLISECONDS.sleep(retryDelay);
-                retryDelay = Math.min(retryDelay * 2, 1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return false;
-            }
-        }
-
-        Logger.warn("Timeout waiting for socket: " + socketPath);
-        return false;
-    }
 }
@@ -0,0 +1,235 @@
+package com.codeawareness.pycharm.communication;
+
+import com.codeawareness.pycharm.scheduling.CodeAwarenessScheduler;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.utils.Logger;
+import com.codeawareness.pycharm.utils.PathUtils;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tells when backend sockets appear in the socket directory, so connecting never polls.
+ *
+ * The directory is watched with a {@link WatchService} only while someone is waiting; the
+ * watch blocks a scheduler thread of its own and ends when the last waiter is done. Windows named
+ * pipes have no file system presence, so on Windows every socket counts as present and a
+ * recreated one is simply assumed after a delay kept by the scheduler's timer.
+ */
+public class SocketWatcher {
+
+    private static final long UNWATCHABLE_RETRY_DELAY_MS = 2000;
+
+    private final Path directory;
+    private final CodeAwarenessScheduler scheduler;
+    private final Object lock = new Object();
+    private final Map<Path, List<CompletableFuture<Void>>> waiters = new HashMap<>();
+    private WatchService watchService;
+
+    /**
+     * Watch the Code Awareness socket directory.
+     */
+    public SocketWatcher(CodeAwarenessScheduler scheduler) {
+        this(PathUtils.isWindows() ? null : Path.of(PathUtils.getSocketDirectory()), scheduler);
+    }
+
+    /**
+     * @param directory Directory the sockets are created in, or null if sockets are not files
+     */
+    public SocketWatcher(Path directory, CodeAwarenessScheduler scheduler) {
+        this.directory = directory;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Wait for a socket to exist.
+     *
+     * @return A future completed as soon as the socket exists, right away if it already does.
+     *         Cancelling it stops the wait.
+     */
+    public CompletableFuture<Void> awaitSocket(String socketPath) {
+        if (directory == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Path path = Path.of(socketPath);
+        // Watch before checking, so a socket created in between is not missed
+        CompletableFuture<Void> future = addWaiter(path);
+        if (Files.exists(path)) {
+            Logger.debug("Socket already present: " + socketPath);
+            future.complete(null);
+        }
+        return future;
+    }
+
+    /**
+     * Wait for a socket to be created again, e.g. when the existing file was left behind
+     * by a backend that is no longer running.
+     *
+     * @return A future completed when the socket file is next created. Cancelling it stops the wait.
+     */
+    public CompletableFuture<Void> awaitRecreated(String socketPath) {
+        if (directory == null) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            scheduler.schedule(SchedulerLane.CONNECT, () -> future.complete(null), UNWATCHABLE_RETRY_DELAY_MS);
+            return future;
+        }
+        return addWaiter(Path.of(socketPath));
+    }
+
+    /**
+     * Stop watching and cancel every pending wait.
+     */
+    public void close() {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        synchronized (lock) {
+            waiters.values().forEach(pending::addAll);
+            waiters.clear();
+            stopWatching();
+        }
+        pending.forEach(future -> future.cancel(false));
+    }
+
+    /**
+     * Check if the directory is currently being watched.
+     */
+    public boolean isWatching() {
+        synchronized (lock) {
+            return watchService != null;
+        }
+    }
+
+    private CompletableFuture<Void> addWaiter(Path path) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (lock) {
+            if (watchService == null) {
+                try {
+                    startWatching();
+                } catch (IOException e) {
+                    Logger.warn("Cannot watch socket directory: " + directory, e);
+                    future.completeExceptionally(e);
+                    return future;
+                }
+            }
+            waiters.computeIfAbsent(path, p -> new ArrayList<>()).add(future);
+        }
+        // Completed, cancelled or timed out: either way it no longer needs the watch
+        future.whenComplete((result, error) -> removeWaiter(path, future));
+        return future;
+    }
+
+    private void removeWaiter(Path path, CompletableFuture<Void> future) {
+        synchronized (lock) {
+            List<CompletableFuture<Void>> pathWaiters = waiters.get(path);
+            if (pathWaiters != null && pathWaiters.remove(future) && pathWaiters.isEmpty()) {
+                waiters.remove(path);
+            }
+            if (waiters.isEmpty()) {
+                stopWatching();
+            }
+        }
+    }
+
+    /**
+     * Start the watch. Must hold the lock.
+     */
+    private void startWatching() throws IOException {
+        // The backend creates the directory on first start; watching needs it to exist already
+        Files.createDirectories(directory);
+        WatchService service = FileSystems.getDefault().newWatchService();
+        try {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+        watchService = service;
+        scheduler.submitBlocking(SchedulerLane.SOCKET_WATCH, () -> watch(service));
+        Logger.debug("Watching socket directory: " + directory);
+    }
+
+    /**
+     * Stop the watch. Must hold the lock. Closing the service ends the watch loop.
+     */
+    private void stopWatching() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            Logger.debug("Error closing socket directory watch", e);
+        }
+        watchService = null;
+        Logger.debug("Stopped watching socket directory: " + directory);
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost; whatever exists now may be what someone waits for
+                        completeExisting();
+                    } else {
+                        completeWaiters(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    failAll(new IOException("Socket directory is no longer accessible: " + directory));
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Nobody is waiting anymore
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failAll(new CancellationException("Socket directory watch interrupted"));
+        }
+    }
+
+    private void completeWaiters(Path path) {
+        List<CompletableFuture<Void>> pathWaiters;
+        synchronized (lock) {
+            pathWaiters = waiters.get(path);
+            pathWaiters = pathWaiters != null ? new ArrayList<>(pathWaiters) : List.of();
+        }
+        if (!pathWaiters.isEmpty()) {
+            Logger.debug("Socket created: " + path);
+        }
+        pathWaiters.forEach(future -> future.complete(null));
+    }
+
+    private void completeExisting() {
+        List<Path> paths;
+        synchronized (lock) {
+            paths = new ArrayList<>(waiters.keySet());
+        }
+        for (Path path : paths) {
+            if (Files.exists(path)) {
+                completeWaiters(path);
+            }
+        }
+    }
+
+    private void failAll(Throwable error) {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        synchronized (lock) {
+            waiters.values().forEach(pending::addAll);
+        }
+        pending.forEach(future -> future.completeExceptionally(error));
+    }
+}
@@ -0,0 +1,92 @@
+package com.codeawareness.pycharm.diff;
+
+import java.util.Objects;
+
+/**
+ * A contiguous range of lines that differs between the local and the peer version of a file.
+ * Ranges are 0-based and half-open: local lines [localStart, localEnd) are replaced
+ * by peer lines [peerStart, peerEnd).
+ */
+public final class ChangeBlock {
+
+    /**
+     * Kind of change, seen from the local file.
+     */
+    public enum Type {
+        INSERTED,  // Lines only the peer has
+        DELETED,   // Lines only the local file has
+        MODIFIED   // Lines that differ on both sides
+    }
+
+    private final int localStart;
+    private final int localEnd;
+    private final int peerStart;
+    private final int peerEnd;
+
+    public ChangeBlock(int localStart, int localEnd, int peerStart, int peerEnd) {
+        this.localStart = localStart;
+        this.localEnd = localEnd;
+        this.peerStart = peerStart;
+        this.peerEnd = peerEnd;
+    }
+
+    public int getLocalStart() {
+        return localStart;
+    }
+
+    public int getLocalEnd() {
+        return localEnd;
+    }
+
+    public int getPeerStart() {
+        return peerStart;
+    }
+
+    public int getPeerEnd() {
+        return peerEnd;
+    }
+
+    public Type getType() {
+        if (localStart == localEnd) {
+            return Type.INSERTED;
+        }
+        return peerStart == peerEnd ? Type.DELETED : Type.MODIFIED;
+    }
+
+    /**
+     * Get the number of lines this block accounts for in a "N lines differ" summary.
+     */
+    public int getLineCount() {
+        return Math.max(localEnd - localStart, peerEnd - peerStart);
+    }
+
+    /**
+     * Move the block by the given number of lines on each side.
+     */
+    ChangeBlock shift(int localDelta, int peerDelta) {
+        return new ChangeBlock(localStart + localDelta, localEnd + localDelta, peerStart + peerDelta, peerEnd + peerDelta);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChangeBlock)) {
+            return false;
+        }
+        ChangeBlock that = (ChangeBlock) o;
+        return localStart == that.localStart && localEnd == that.localEnd &&
+            peerStart == that.peerStart && peerEnd == that.peerEnd;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(localStart, localEnd, peerStart, peerEnd);
+    }
+
+    @Override
+    public String toString() {
+        return getType() + " local[" + localStart + "," + localEnd + ") peer[" + peerStart + "," + peerEnd + ")";
+    }
+}
@@ -0,0 +1,166 @@
+package com.codeawareness.pycharm.diff;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Diff-peer requests in flight from every open project, so each response reaches only the
+ * project that asked for it.
+ *
+ * Responses are matched to requests by the file and peer they report, not by arrival order:
+ * handlers for back-to-back responses run on different threads and may take their requests
+ * in either order.
+ */
+public class DiffPeerRequests {
+
+    private static final long EXPIRY_MS = TimeUnit.SECONDS.toMillis(60);
+
+    // Oldest first. Guarded by itself.
+    private final List<PendingRequest> pending = new ArrayList<>();
+
+    /**
+     * A diff-peer request waiting for its response.
+     */
+    public static final class PendingRequest {
+        private final PeerContentLoader owner;
+        private final String peerId;
+        private final String relativePath;
+        private final boolean load;
+        private final long sentAt;
+
+        PendingRequest(PeerContentLoader owner, String peerId, String relativePath, boolean load, long sentAt) {
+            this.owner = owner;
+            this.peerId = peerId;
+            this.relativePath = relativePath;
+            this.load = load;
+            this.sentAt = sentAt;
+        }
+
+        /**
+         * Get the loader of the project that sent the request.
+         */
+        public PeerContentLoader getOwner() {
+            return owner;
+        }
+
+        public String getPeerId() {
+            return peerId;
+        }
+
+        /**
+         * Get the repo-relative path the request was sent for.
+         */
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        /**
+         * Check if a load is waiting for the content; otherwise the user asked for a diff.
+         */
+        public boolean isLoad() {
+            return load;
+        }
+    }
+
+    /**
+     * Send a request and remember it. Stays locked while sending, so even an immediate response
+     * finds its request.
+     *
+     * @param sender Sends the request; returns false if it could not
+     * @return true if the request was sent
+     */
+    public boolean send(PeerContentLoader owner, String peerId, String relativePath, boolean load, BooleanSupplier sender) {
+        synchronized (pending) {
+            if (!sender.getAsBoolean()) {
+                return false;
+            }
+            pending.add(new PendingRequest(owner, peerId, relativePath, load, System.currentTimeMillis()));
+            return true;
+        }
+    }
+
+    /**
+     * Take the request a diff-peer response or error answers.
+     *
+     * Matches the file and peer the response reports. A response that reports neither, such as
+     * an error, takes the oldest request; one whose file is reported in a form that matches no
+     * request falls back to the only request for its peer. The backend may identify a peer by
+     * another id than the one the request was sent with, so a peer that matches no request is
+     * ignored: the file alone is matched, and failing that the oldest request is taken.
+     * Requests that got no answer at all are dropped after a while.
+     *
+     * @param fpath File reported by the response, repo-relative or absolute, or null
+     * @param reportedUserId Peer reported by the response, or null
+     * @return The request, or null if no project sent one the response answers
+     */
+    public PendingRequest take(String fpath, String reportedUserId) {
+        long expiredBefore = System.currentTimeMillis() - EXPIRY_MS;
+        synchronized (pending) {
+            pending.removeIf(request -> request.sentAt < expiredBefore);
+            if (pending.isEmpty()) {
+                return null;
+            }
+            String userId = reportedUserId;
+            if (userId != null && pending.stream().noneMatch(request -> reportedUserId.equals(request.peerId))) {
+                userId = null;
+            }
+            if (fpath == null && userId == null) {
+                return pending.remove(0);
+            }
+
+            PendingRequest onlyForPeer = null;
+            int forPeer = 0;
+            for (Iterator<PendingRequest> it = pending.iterator(); it.hasNext(); ) {
+                PendingRequest request = it.next();
+                boolean peerMatches = userId == null || userId.equals(request.peerId);
+                if (peerMatches && (fpath == null || pathMatches(request.relativePath, fpath))) {
+                    it.remove();
+                    return request;
+                }
+                if (peerMatches) {
+                    onlyForPeer = request;
+                    forPeer++;
+                }
+            }
+            if (userId == null) {
+                // Neither the peer nor the file identifies the request
+                return pending.remove(0);
+            }
+            if (forPeer == 1) {
+                pending.remove(onlyForPeer);
+                return onlyForPeer;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Forget the requests of a project that is closing.
+     */
+    public void removeAll(PeerContentLoader owner) {
+        synchronized (pending) {
+            pending.removeIf(request -> request.owner == owner);
+        }
+    }
+
+    /**
+     * Get the number of requests waiting for a response.
+     */
+    public int size() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Check if a reported file is the requested one; the backend may report it absolute.
+     */
+    static boolean pathMatches(String relativePath, String fpath) {
+        String reported = fpath.replace('\\', '/');
+        String requested = relativePath.replace('\\', '/');
+        return reported.equals(requested) || reported.endsWith("/" + requested);
+    }
+}
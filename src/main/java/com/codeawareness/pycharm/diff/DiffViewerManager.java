@@ -1,31 +1,85 @@
 package com.codeawareness.pycharm.diff;
 
+import com.codeawareness.pycharm.settings.CodeAwarenessSettings;
+import com.codeawareness.pycharm.ui.NotificationHelper;
 import com.codeawareness.pycharm.utils.Logger;
 import com.intellij.diff.DiffContentFactory;
 import com.intellij.diff.DiffManager;
 import com.intellij.diff.contents.DiffContent;
 import com.intellij.diff.requests.SimpleDiffRequest;
+import com.intellij.ide.actions.RevealFileAction;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.LightVirtualFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.UUID;
 
 /**
  * Manages diff viewer operations for peer code comparison.
  * Opens side-by-side diffs between local and peer versions.
+ *
+ * By default the peer side is an in-memory document, so no temp file is written.
+ * When in-memory diffs are turned off, temp files are written and refreshed into the VFS
+ * on a pooled thread; the EDT is only used to open the viewer.
  */
 public class DiffViewerManager {
 
     private final Project project;
     private final TempFileManager tempFileManager;
+    private final PeerFileReader peerFileReader;
+    // Keeps this manager's temp files apart from other projects' in the shared store
+    private final String tempFileOwner = UUID.randomUUID().toString();
 
     public DiffViewerManager(Project project, TempFileManager tempFileManager) {
+        this(project, tempFileManager, new PeerFileReader());
+    }
+
+    public DiffViewerManager(Project project, TempFileManager tempFileManager, PeerFileReader peerFileReader) {
         this.project = project;
         this.tempFileManager = tempFileManager;
+        this.peerFileReader = peerFileReader;
+    }
+
+    /**
+     * Read a peer file extracted by the backend. Must not be called on the EDT.
+     * Large files are only read up to a preview; binary files yield no text.
+     *
+     * @param peerFilePath Path to the peer's version of the file
+     * @return The file content
+     */
+    public PeerFileReader.PeerFileContent readPeerFile(String peerFilePath) throws IOException {
+        return peerFileReader.read(Paths.get(peerFilePath));
+    }
+
+    /**
+     * Tell the user when a peer file could not be shown in full, offering to open it externally.
+     *
+     * @return true if the content can still be diffed (possibly as a preview)
+     */
+    public boolean notifyIfIncomplete(PeerFileReader.PeerFileContent content, String peerFilePath) {
+        String fileName = new File(peerFilePath).getName();
+        Runnable openExternally = () -> RevealFileAction.openFile(new File(peerFilePath));
+        if (content.isBinary()) {
+            NotificationHelper.showWarning("Code Awareness",
+                "The peer's version of " + fileName + " is binary and cannot be diffed.",
+                project, "Open externally", openExternally);
+            return false;
+        }
+        if (content.isTruncated()) {
+            NotificationHelper.showWarning("Code Awareness",
+                "The peer's version of " + fileName + " is too large (" + (content.getFileSize() / (1024 * 1024)) +
+                    " MB); showing only its beginning.",
+                project, "Open externally", openExternally);
+        }
+        return true;
     }
 
     /**
@@ -36,52 +90,97 @@ public class DiffViewerManager {
      * @param peerContent Content of peer's version
      */
     public void showDiff(String localFilePath, String peerName, String peerContent) {
-        ApplicationManager.getApplication().invokeLater(() -> {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
             try {
-                // Get local file
+                // Get local file (no refresh: it is open in the IDE, so the VFS already knows it)
                 VirtualFile localFile = LocalFileSystem.getInstance().findFileByPath(localFilePath);
                 if (localFile == null || !localFile.exists()) {
                     Logger.warn("Local file not found: " + localFilePath);
                     return;
                 }
 
-                // Create temp file for peer content
                 String fileName = localFile.getName();
-                File peerFile = tempFileManager.createTempFile(fileName, peerName, peerContent);
-
-                // Refresh VFS to recognize new temp file
-                VirtualFile peerVirtualFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(peerFile);
-                if (peerVirtualFile == null) {
-                    Logger.warn("Failed to create virtual file for peer content");
+                boolean inMemory = isInMemoryMode();
+                VirtualFile peerVirtualFile = inMemory ? null : writePeerFile(fileName, peerName, peerContent);
+                if (!inMemory && peerVirtualFile == null) {
                     return;
                 }
 
-                // Create diff contents
-                DiffContentFactory contentFactory = DiffContentFactory.getInstance();
-                DiffContent localContent = contentFactory.create(project, localFile);
-                DiffContent peerDiffContent = contentFactory.create(project, peerVirtualFile);
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (project.isDisposed()) {
+                        return;
+                    }
 
-                // Create diff request
-                String title = "Code Awareness: " + fileName + " - " + peerName;
-                SimpleDiffRequest request = new SimpleDiffRequest(
-                    title,
-                    localContent,
-                    peerDiffContent,
-                    "Your Version",
-                    peerName + "'s Version"
-                );
+                    // Create diff contents
+                    DiffContentFactory contentFactory = DiffContentFactory.getInstance();
+                    DiffContent localContent = contentFactory.create(project, localFile);
+                    DiffContent peerDiffContent = peerVirtualFile != null
+                        ? contentFactory.create(project, peerVirtualFile)
+                        : contentFactory.create(project, peerContent, localFile.getFileType());
 
-                // Show diff
-                DiffManager.getInstance().showDiff(project, request);
+                    // Create diff request
+                    String title = "Code Awareness: " + fileName + " - " + peerName;
+                    SimpleDiffRequest request = new SimpleDiffRequest(
+                        title,
+                        localContent,
+                        peerDiffContent,
+                        "Your Version",
+                        peerName + "'s Version"
+                    );
 
-                Logger.info("Opened diff viewer: " + fileName + " vs " + peerName);
+                    // Show diff
+                    DiffManager.getInstance().showDiff(project, request);
 
-            } catch (IOException e) {
+                    Logger.info("Opened diff viewer: " + fileName + " vs " + peerName);
+                });
+
+            } catch (Exception e) {
                 Logger.warn("Failed to show diff", e);
             }
         });
     }
 
+    /**
+     * Open a diff viewer for a file that only exists on the peer's side:
+     * an empty document on the left and the peer's version on the right.
+     *
+     * @param peerFilePath Path to the peer's version of the file
+     * @param title Title of the diff window
+     */
+    public void showNewFileDiff(String peerFilePath, String title) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                PeerFileReader.PeerFileContent content = readPeerFile(peerFilePath);
+                if (!notifyIfIncomplete(content, peerFilePath)) {
+                    return;
+                }
+                String peerContent = content.getText();
+                FileType fileType = FileTypeManager.getInstance().getFileTypeByFileName(new File(peerFilePath).getName());
+
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (project.isDisposed()) {
+                        return;
+                    }
+
+                    DiffContentFactory contentFactory = DiffContentFactory.getInstance();
+                    SimpleDiffRequest request = new SimpleDiffRequest(
+                        title,
+                        contentFactory.create(project, "", fileType),
+                        contentFactory.create(project, peerContent, fileType),
+                        "Your Version (not present)",
+                        "Peer's Version"
+                    );
+                    DiffManager.getInstance().showDiff(project, request);
+
+                    Logger.info("Opened new-file diff viewer for: " + peerFilePath);
+                });
+
+            } catch (Exception e) {
+                Logger.warn("Failed to show diff for peer file: " + peerFilePath, e);
+            }
+        });
+    }
+
     /**
      * Open a peer file in the editor (read-only).
      *
@@ -90,29 +189,59 @@ public class DiffViewerManager {
      * @param peerContent Peer's file content
      */
     public void openPeerFile(String fileName, String peerName, String peerContent) {
-        ApplicationManager.getApplication().invokeLater(() -> {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
             try {
-                // Create temp file for peer content
-                File peerFile = tempFileManager.createTempFile(fileName, peerName, peerContent);
-
-                // Refresh VFS to recognize new temp file
-                VirtualFile peerVirtualFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(peerFile);
-                if (peerVirtualFile == null) {
-                    Logger.warn("Failed to create virtual file for peer content");
-                    return;
+                VirtualFile peerVirtualFile;
+                if (isInMemoryMode()) {
+                    FileType fileType = FileTypeManager.getInstance().getFileTypeByFileName(fileName);
+                    LightVirtualFile lightFile = new LightVirtualFile(fileName + " (" + peerName + ")", fileType, peerContent);
+                    lightFile.setWritable(false);
+                    peerVirtualFile = lightFile;
+                } else {
+                    peerVirtualFile = writePeerFile(fileName, peerName, peerContent);
+                    if (peerVirtualFile == null) {
+                        return;
+                    }
                 }
 
-                // Open in editor
-                FileEditorManager.getInstance(project).openFile(peerVirtualFile, true);
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (project.isDisposed()) {
+                        return;
+                    }
 
-                Logger.info("Opened peer file: " + fileName + " from " + peerName);
+                    // Open in editor
+                    FileEditorManager.getInstance(project).openFile(peerVirtualFile, true);
 
-            } catch (IOException e) {
+                    Logger.info("Opened peer file: " + fileName + " from " + peerName);
+                });
+
+            } catch (Exception e) {
                 Logger.warn("Failed to open peer file", e);
             }
         });
     }
 
+    /**
+     * Write peer content to a temp file and make it known to the VFS.
+     * Runs on a pooled thread, so the synchronous refresh does not block the UI.
+     *
+     * @return The virtual file, or null if it could not be created
+     */
+    private VirtualFile writePeerFile(String fileName, String peerName, String peerContent) throws IOException {
+        File peerFile = tempFileManager.createTempFile(tempFileOwner, fileName, peerName, peerContent);
+
+        VirtualFile peerVirtualFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(peerFile);
+        if (peerVirtualFile == null) {
+            Logger.warn("Failed to create virtual file for peer content");
+        }
+        return peerVirtualFile;
+    }
+
+    private static boolean isInMemoryMode() {
+        CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
+        return settings == null || settings.inMemoryDiffs;
+    }
+
     /**
      * Clean up temp files for a specific peer.
      *
@@ -120,13 +249,13 @@ public class DiffViewerManager {
      * @param peerName Peer name
      */
     public void cleanup(String fileName, String peerName) {
-        tempFileManager.cleanupTempFile(fileName, peerName);
+        tempFileManager.cleanupTempFile(tempFileOwner, fileName, peerName);
     }
 
     /**
-     * Clean up all temp files.
+     * Clean up all temp files written by this manager.
      */
     public void cleanupAll() {
-        tempFileManager.cleanupAll();
+        tempFileManager.cleanupOwner(tempFileOwner);
     }
 }
@@ -0,0 +1,310 @@
+package com.codeawareness.pycharm.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable line diff between a local document and a peer's version of it, computed with
+ * the linear-space variant of Myers' O((N+M)D) algorithm after trimming the common prefix
+ * and suffix.
+ *
+ * After a local edit, {@link #withEdit} re-diffs only the edited region between the nearest
+ * unchanged lines and splices the result into the existing blocks, so typing in a large file
+ * does not re-diff the whole file.
+ */
+public final class LineDiff {
+
+    private static final int MAX_EDIT_DISTANCE = 2000; // Beyond this, the middle is reported as one block
+
+    private final List<String> localLines;
+    private final List<String> peerLines;
+    private final List<ChangeBlock> blocks;
+
+    private LineDiff(List<String> localLines, List<String> peerLines, List<ChangeBlock> blocks) {
+        this.localLines = localLines;
+        this.peerLines = peerLines;
+        this.blocks = Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * Diff two texts line by line.
+     */
+    public static LineDiff compute(String localText, String peerText) {
+        return compute(splitLines(localText), splitLines(peerText));
+    }
+
+    /**
+     * Diff two lists of lines.
+     */
+    public static LineDiff compute(List<String> localLines, List<String> peerLines) {
+        List<String> local = Collections.unmodifiableList(new ArrayList<>(localLines));
+        List<String> peer = Collections.unmodifiableList(new ArrayList<>(peerLines));
+        return new LineDiff(local, peer, diffRange(local, 0, local.size(), peer, 0, peer.size()));
+    }
+
+    /**
+     * Split text into lines the way a document counts them: n line breaks make n + 1 lines.
+     */
+    public static List<String> splitLines(String text) {
+        return Arrays.asList(text.split("\n", -1));
+    }
+
+    /**
+     * Apply a local edit and return the updated diff.
+     * Local lines [startLine, oldEndLine) were replaced by {@code newLines}.
+     * Blocks away from the edit are kept as they are, so after many edits the result can be
+     * slightly larger than a fresh {@link #compute} would give, but it is always a valid diff.
+     */
+    public LineDiff withEdit(int startLine, int oldEndLine, List<String> newLines) {
+        if (startLine < 0 || oldEndLine < startLine || oldEndLine > localLines.size()) {
+            throw new IllegalArgumentException("Edit [" + startLine + "," + oldEndLine + ") outside of " +
+                localLines.size() + " lines");
+        }
+
+        List<String> newLocal = new ArrayList<>(localLines.size() + newLines.size() - (oldEndLine - startLine));
+        newLocal.addAll(localLines.subList(0, startLine));
+        newLocal.addAll(newLines);
+        newLocal.addAll(localLines.subList(oldEndLine, localLines.size()));
+        newLocal = Collections.unmodifiableList(newLocal);
+        int delta = newLines.size() - (oldEndLine - startLine);
+
+        // Blocks touching the edit are merged into the region to re-diff
+        List<ChangeBlock> before = new ArrayList<>();
+        List<ChangeBlock> after = new ArrayList<>();
+        int regionLo = startLine;
+        int regionHi = oldEndLine;
+        int peerOffsetLo = 0;
+        int peerOffsetHi = 0;
+        for (ChangeBlock block : blocks) {
+            if (block.getLocalEnd() < startLine) {
+                before.add(block);
+                peerOffsetLo = block.getPeerEnd() - block.getLocalEnd();
+                peerOffsetHi = peerOffsetLo;
+            } else if (block.getLocalStart() > oldEndLine) {
+                after.add(block.shift(delta, 0));
+            } else {
+                regionLo = Math.min(regionLo, block.getLocalStart());
+                regionHi = Math.max(regionHi, block.getLocalEnd());
+                peerOffsetHi = block.getPeerEnd() - block.getLocalEnd();
+            }
+        }
+
+        // Outside of blocks, local line x matches peer line x + offset
+        int peerLo = regionLo + peerOffsetLo;
+        int peerHi = regionHi + peerOffsetHi;
+        int newRegionHi = regionHi + delta;
+        if (peerLo > peerHi || peerHi > peerLines.size() || newRegionHi > newLocal.size()) {
+            return compute(newLocal, peerLines);
+        }
+
+        List<ChangeBlock> result = new ArrayList<>(before);
+        result.addAll(diffRange(newLocal, regionLo, newRegionHi, peerLines, peerLo, peerHi));
+        result.addAll(after);
+        return new LineDiff(newLocal, peerLines, result);
+    }
+
+    public List<ChangeBlock> getBlocks() {
+        return blocks;
+    }
+
+    public List<String> getLocalLines() {
+        return localLines;
+    }
+
+    public List<String> getPeerLines() {
+        return peerLines;
+    }
+
+    /**
+     * Get the number of differing lines, e.g. for "N lines differ from alice".
+     */
+    public int getChangedLineCount() {
+        int count = 0;
+        for (ChangeBlock block : blocks) {
+            count += block.getLineCount();
+        }
+        return count;
+    }
+
+    /**
+     * Diff local lines [localLo, localHi) against peer lines [peerLo, peerHi).
+     * Returned blocks use absolute line numbers.
+     */
+    private static List<ChangeBlock> diffRange(List<String> local, int localLo, int localHi,
+                                               List<String> peer, int peerLo, int peerHi) {
+        // Trim common prefix and suffix; most real diffs are small islands in a large file
+        while (localLo < localHi && peerLo < peerHi && local.get(localLo).equals(peer.get(peerLo))) {
+            localLo++;
+            peerLo++;
+        }
+        while (localLo < localHi && peerLo < peerHi && local.get(localHi - 1).equals(peer.get(peerHi - 1))) {
+            localHi--;
+            peerHi--;
+        }
+
+        List<ChangeBlock> blocks = new ArrayList<>();
+        if (localLo == localHi && peerLo == peerHi) {
+            return blocks;
+        }
+        if (localLo == localHi || peerLo == peerHi) {
+            blocks.add(new ChangeBlock(localLo, localHi, peerLo, peerHi));
+            return blocks;
+        }
+
+        // Map lines to ids so the inner loop compares ints
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = new int[localHi - localLo];
+        int[] b = new int[peerHi - peerLo];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = ids.computeIfAbsent(local.get(localLo + i), line -> ids.size());
+        }
+        for (int i = 0; i < b.length; i++) {
+            b[i] = ids.computeIfAbsent(peer.get(peerLo + i), line -> ids.size());
+        }
+
+        List<int[]> snakes = myers(a, b);
+        if (snakes == null) {
+            blocks.add(new ChangeBlock(localLo, localHi, peerLo, peerHi));
+            return blocks;
+        }
+
+        int x = 0;
+        int y = 0;
+        for (int[] snake : snakes) {
+            if (snake[0] > x || snake[1] > y) {
+                blocks.add(new ChangeBlock(localLo + x, localLo + snake[0], peerLo + y, peerLo + snake[1]));
+            }
+            x = snake[0] + snake[2];
+            y = snake[1] + snake[2];
+        }
+        if (x < a.length || y < b.length) {
+            blocks.add(new ChangeBlock(localLo + x, localLo + a.length, peerLo + y, peerLo + b.length));
+        }
+        return blocks;
+    }
+
+    /**
+     * Find the matching diagonals ("snakes") of a shortest edit script, using the linear-space
+     * variant of Myers' algorithm: find the middle snake of the edit path from both ends, then
+     * solve the two halves on either side of it. Memory stays O(N + M) whatever the distance.
+     *
+     * @return Snakes as {x, y, length} in ascending order, or null if the edit distance exceeds the limit
+     */
+    private static List<int[]> myers(int[] a, int[] b) {
+        List<int[]> snakes = new ArrayList<>();
+        return findSnakes(a, 0, a.length, b, 0, b.length, MAX_EDIT_DISTANCE, snakes) ? snakes : null;
+    }
+
+    /**
+     * Add the snakes of a[aLo, aHi) against b[bLo, bHi) in ascending order.
+     *
+     * @return false if the edit distance exceeds {@code limit}
+     */
+    private static boolean findSnakes(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, int limit,
+                                      List<int[]> snakes) {
+        int prefix = 0;
+        while (aLo + prefix < aHi && bLo + prefix < bHi && a[aLo + prefix] == b[bLo + prefix]) {
+            prefix++;
+        }
+        if (prefix > 0) {
+            snakes.add(new int[] {aLo, bLo, prefix});
+            aLo += prefix;
+            bLo += prefix;
+        }
+        int suffix = 0;
+        while (aHi - suffix > aLo && bHi - suffix > bLo && a[aHi - suffix - 1] == b[bHi - suffix - 1]) {
+            suffix++;
+        }
+        aHi -= suffix;
+        bHi -= suffix;
+
+        if (aLo < aHi && bLo < bHi) {
+            int[] middle = middleSnake(a, aLo, aHi, b, bLo, bHi, limit);
+            if (middle == null) {
+                return false;
+            }
+            // Each half has a shorter edit path than the whole, so no further limit is needed
+            findSnakes(a, aLo, middle[0], b, bLo, middle[1], Integer.MAX_VALUE, snakes);
+            if (middle[2] > middle[0]) {
+                snakes.add(new int[] {middle[0], middle[1], middle[2] - middle[0]});
+            }
+            findSnakes(a, middle[2], aHi, b, middle[3], bHi, Integer.MAX_VALUE, snakes);
+        }
+
+        if (suffix > 0) {
+            snakes.add(new int[] {aHi, bHi, suffix});
+        }
+        return true;
+    }
+
+    /**
+     * Find the middle snake of a shortest edit path between two non-empty ranges that differ
+     * at both ends, by running Myers' search forward from the start and backward from the end
+     * until the two meet.
+     *
+     * @return {startX, startY, endX, endY} in absolute indexes, or null if the edit distance exceeds {@code limit}
+     */
+    private static int[] middleSnake(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, int limit) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int maxD = (int) Math.min((n + m + 1) / 2, ((long) limit + 1) / 2);
+        int offset = maxD + 1;
+        // Furthest x reached per diagonal; backward ones count from the end of both ranges
+        int[] forward = new int[2 * maxD + 3];
+        int[] backward = new int[2 * maxD + 3];
+
+        for (int d = 0; d <= maxD; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1]))
+                    ? forward[offset + k + 1]
+                    : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+
+                // Backward diagonal c ends where forward diagonal delta - c does
+                int c = delta - k;
+                if (odd && c >= -(d - 1) && c <= d - 1 && x + backward[offset + c] >= n) {
+                    if (2 * d - 1 > limit) {
+                        return null;
+                    }
+                    return new int[] {aLo + startX, bLo + startY, aLo + x, bLo + y};
+                }
+            }
+
+            for (int c = -d; c <= d; c += 2) {
+                int x = (c == -d || (c != d && backward[offset + c - 1] < backward[offset + c + 1]))
+                    ? backward[offset + c + 1]
+                    : backward[offset + c - 1] + 1;
+                int y = x - c;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                backward[offset + c] = x;
+
+                int k = delta - c;
+                if (!odd && k >= -d && k <= d && x + forward[offset + k] >= n) {
+                    if (2 * d > limit) {
+                        return null;
+                    }
+                    return new int[] {aHi - x, bHi - y, aHi - startX, bHi - startY};
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,289 @@
+package com.codeawareness.pycharm.diff;
+
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * LRU cache of peer file contents received through diff-peer responses, so toggling
+ * between peers on the same file does not need another backend round-trip.
+ *
+ * Entries are keyed by (peer, repo-relative path) and remember the peer revision they were
+ * extracted at; when the backend reports a different revision for a peer, its entries are
+ * dropped. Because Gardener does not always report revisions, entries also expire after a
+ * fixed time. Small contents are kept in memory within a byte budget; large contents are
+ * stored on disk through the {@link TempFileManager} and only their location is kept.
+ */
+public class PeerContentCache {
+
+    private static final long DEFAULT_MEMORY_BUDGET_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_SPILL_THRESHOLD_BYTES = 256L * 1024;
+    private static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+
+    private final TempFileManager diskStore;
+    // Token under which this cache's contents are stored, apart from other projects'
+    private final String diskOwner = UUID.randomUUID().toString();
+    private final long memoryBudgetBytes;
+    private final long spillThresholdBytes;
+    private final long ttlMs;
+    // Access-ordered: least recently used entry first
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    /**
+     * Identifies a peer's version of a file.
+     */
+    private static final class Key {
+        final String peerId;
+        final String relativePath;
+
+        Key(String peerId, String relativePath) {
+            this.peerId = peerId;
+            this.relativePath = relativePath;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return peerId.equals(key.peerId) && relativePath.equals(key.relativePath);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(peerId, relativePath);
+        }
+    }
+
+    /**
+     * A cached peer version: the content in memory, or the file it was stored in.
+     */
+    private static final class Entry {
+        final String revision;
+        final String title;
+        final String content;
+        final File storedFile;
+        final long sizeBytes;
+        final long createdAt;
+
+        Entry(String revision, String title, String content, File storedFile, long sizeBytes, long createdAt) {
+            this.revision = revision;
+            this.title = title;
+            this.content = content;
+            this.storedFile = storedFile;
+            this.sizeBytes = sizeBytes;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * A cache hit.
+     */
+    public static final class CachedContent {
+        private final String title;
+        private final String content;
+
+        CachedContent(String title, String content) {
+            this.title = title;
+            this.content = content;
+        }
+
+        /**
+         * Get the diff title reported by the backend when the content was fetched.
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        public String getContent() {
+            return content;
+        }
+    }
+
+    public PeerContentCache(TempFileManager diskStore) {
+        this(diskStore, DEFAULT_MEMORY_BUDGET_BYTES, DEFAULT_SPILL_THRESHOLD_BYTES, DEFAULT_TTL_MS);
+    }
+
+    /**
+     * @param diskStore Store for large contents, or null to never cache them
+     * @param memoryBudgetBytes Maximum size of contents kept in memory
+     * @param spillThresholdBytes Contents larger than this go to the disk store
+     * @param ttlMs Time after which an entry is considered stale
+     */
+    public PeerContentCache(TempFileManager diskStore, long memoryBudgetBytes, long spillThresholdBytes, long ttlMs) {
+        this.diskStore = diskStore;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillThresholdBytes = spillThresholdBytes;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Get a peer's cached version of a file. May read from disk, so do not call on the EDT.
+     *
+     * @return The cached content, or null if missing, expired or no longer readable
+     */
+    public CachedContent get(String peerId, String relativePath) {
+        if (peerId == null || relativePath == null) {
+            return null;
+        }
+
+        Key key = new Key(peerId, relativePath);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && System.currentTimeMillis() - entry.createdAt > ttlMs) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.content != null) {
+            return new CachedContent(entry.title, entry.content);
+        }
+
+        try {
+            String content = new String(Files.readAllBytes(entry.storedFile.toPath()), StandardCharsets.UTF_8);
+            return new CachedContent(entry.title, content);
+        } catch (IOException e) {
+            // The disk store may have evicted the file
+            Logger.debug("Stored peer content no longer readable: " + entry.storedFile);
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    remove(key);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Cache a peer's version of a file.
+     *
+     * @param peerId Peer the content belongs to
+     * @param relativePath Repo-relative path of the file
+     * @param revision Peer revision the file was extracted at, or null if unknown
+     * @param title Diff title reported by the backend
+     * @param content The peer's file content
+     */
+    public void put(String peerId, String relativePath, String revision, String title, String content) {
+        if (peerId == null || relativePath == null || content == null) {
+            return;
+        }
+
+        long sizeBytes = (long) content.length() * Character.BYTES;
+        long now = System.currentTimeMillis();
+        Entry entry;
+        if (sizeBytes > spillThresholdBytes) {
+            if (diskStore == null) {
+                return;
+            }
+            try {
+                // Flatten the path so files with the same name in different directories do not collide
+                String storedName = relativePath.replace('/', '_').replace('\\', '_');
+                File stored = diskStore.createTempFile(diskOwner, storedName, "cache-" + peerId, content);
+                entry = new Entry(revision, title, null, stored, 0, now);
+            } catch (IOException e) {
+                Logger.warn("Failed to store large peer content for: " + relativePath, e);
+                return;
+            }
+        } else {
+            entry = new Entry(revision, title, content, null, sizeBytes, now);
+        }
+
+        synchronized (this) {
+            Key key = new Key(peerId, relativePath);
+            remove(key);
+            entries.put(key, entry);
+            memoryBytes += entry.sizeBytes;
+            evictOverBudget(key);
+        }
+    }
+
+    /**
+     * Drop a peer's entries that were extracted at a different revision.
+     * Call when the backend reports the peer's current revision.
+     */
+    public synchronized void onPeerRevision(String peerId, String revision) {
+        if (peerId == null || revision == null) {
+            return;
+        }
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().peerId.equals(peerId) && !revision.equals(e.getValue().revision)) {
+                memoryBytes -= e.getValue().sizeBytes;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the revision a cached entry was extracted at.
+     *
+     * @return The revision, or null if unknown or not cached
+     */
+    public synchronized String getRevision(String peerId, String relativePath) {
+        Entry entry = entries.get(new Key(peerId, relativePath));
+        return entry != null ? entry.revision : null;
+    }
+
+    /**
+     * Remove all cached contents.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        memoryBytes = 0;
+        if (diskStore != null) {
+            diskStore.cleanupOwner(diskOwner);
+        }
+    }
+
+    /**
+     * Get the number of cached entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the bytes of content held in memory.
+     */
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            memoryBytes -= removed.sizeBytes;
+        }
+    }
+
+    private void evictOverBudget(Key keep) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (memoryBytes > memoryBudgetBytes && it.hasNext()) {
+            Map.Entry<Key, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            memoryBytes -= eldest.getValue().sizeBytes;
+            it.remove();
+        }
+    }
+}
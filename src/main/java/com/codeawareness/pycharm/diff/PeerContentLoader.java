@@ -0,0 +1,182 @@
+package com.codeawareness.pycharm.diff;
+
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads peer versions of files on demand for the peer diff chain.
+ *
+ * Contents come from the {@link PeerContentCache} when possible, from a peer file already
+ * extracted by the backend, or else from a new diff-peer request. Requests are tracked in the
+ * application's {@link DiffPeerRequests}, which routes their responses back to {@link #complete}.
+ * Concurrent loads of the same file share one future, so prefetching and navigating to an entry
+ * never fetch it twice.
+ */
+public class PeerContentLoader {
+
+    private static final long LOAD_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Sends a diff-peer request for a repo-relative path.
+     */
+    public interface Requester {
+        /**
+         * @return true if the request was sent
+         */
+        boolean requestDiffPeer(String relativePath, String peerId);
+    }
+
+    private final PeerContentCache cache;
+    private final PeerFileReader reader;
+    private final TaskGroup tasks;
+    private final Requester requester;
+    private final DiffPeerRequests requests;
+    private final Map<String, CompletableFuture<String>> loads = new ConcurrentHashMap<>();
+    // Loads someone is waiting for, as opposed to prefetches
+    private final Set<String> waitedFor = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param requests Requests in flight from all projects, shared so responses find their project
+     */
+    public PeerContentLoader(PeerContentCache cache, PeerFileReader reader, TaskGroup tasks, Requester requester,
+                             DiffPeerRequests requests) {
+        this.cache = cache;
+        this.reader = reader;
+        this.tasks = tasks;
+        this.requester = requester;
+        this.requests = requests;
+    }
+
+    /**
+     * Load a peer's version of a file.
+     *
+     * @param peerId Peer the content belongs to
+     * @param relativePath Repo-relative path of the file
+     * @param peerFilePath File the backend already extracted the content to, or null to request it
+     * @return A future completed with the content; it fails if the content cannot be read or does not arrive in time
+     */
+    public CompletableFuture<String> load(String peerId, String relativePath, String peerFilePath) {
+        String key = key(peerId, relativePath);
+        CompletableFuture<String> future = prefetch(peerId, relativePath, peerFilePath);
+        if (waitedFor.add(key)) {
+            future.whenComplete((content, error) -> waitedFor.remove(key));
+        }
+        return future;
+    }
+
+    /**
+     * Start loading a file in the background. Problems with it are not reported to the user
+     * unless a {@link #load} of the same file is waiting for it by then.
+     *
+     * @return A future completed with the content, like {@link #load}
+     */
+    public CompletableFuture<String> prefetch(String peerId, String relativePath, String peerFilePath) {
+        String key = key(peerId, relativePath);
+        CompletableFuture<String> existing = loads.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        existing = loads.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        future.whenComplete((content, error) -> loads.remove(key, future));
+
+        tasks.submit(SchedulerLane.DIFF, () -> {
+            PeerContentCache.CachedContent cached = cache.get(peerId, relativePath);
+            if (cached != null) {
+                future.complete(cached.getContent());
+                return;
+            }
+
+            if (peerFilePath != null) {
+                try {
+                    PeerFileReader.PeerFileContent content = reader.read(Paths.get(peerFilePath));
+                    if (content.isBinary()) {
+                        future.completeExceptionally(new IOException("The peer's version is a binary file"));
+                    } else {
+                        future.complete(content.getText());
+                    }
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+                return;
+            }
+
+            if (!send(relativePath, peerId, true)) {
+                future.completeExceptionally(new IOException("Not connected to the Code Awareness backend"));
+                return;
+            }
+            future.orTimeout(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            Logger.debug("Requested peer content for: " + relativePath);
+        });
+        return future;
+    }
+
+    /**
+     * Check if a load, rather than only a prefetch, is waiting for a file.
+     */
+    public boolean isWaitedFor(String peerId, String relativePath) {
+        return waitedFor.contains(key(peerId, relativePath));
+    }
+
+    /**
+     * Send a diff-peer request on the user's behalf. Its response opens the diff; it goes
+     * through here so the response is routed to this project.
+     *
+     * @return true if the request was sent
+     */
+    public boolean requestForUser(String relativePath, String peerId) {
+        return send(relativePath, peerId, false);
+    }
+
+    private boolean send(String relativePath, String peerId, boolean load) {
+        return requests.send(this, peerId, relativePath, load, () -> requester.requestDiffPeer(relativePath, peerId));
+    }
+
+    /**
+     * Complete a pending load with content received from the backend.
+     */
+    public void complete(String peerId, String relativePath, String content) {
+        CompletableFuture<String> future = loads.get(key(peerId, relativePath));
+        if (future != null) {
+            future.complete(content);
+        }
+    }
+
+    /**
+     * Fail a pending load, e.g. when the backend answered its request with an error.
+     */
+    public void fail(String peerId, String relativePath, String reason) {
+        CompletableFuture<String> future = loads.get(key(peerId, relativePath));
+        if (future != null) {
+            future.completeExceptionally(new IOException(reason));
+        }
+    }
+
+    /**
+     * Fail all pending loads, e.g. when the peer is unselected.
+     * Requests already sent stay tracked so their responses are still told apart.
+     */
+    public void cancelAll() {
+        for (CompletableFuture<String> future : loads.values()) {
+            future.cancel(false);
+        }
+        loads.clear();
+    }
+
+    private static String key(String peerId, String relativePath) {
+        return peerId + "\n" + relativePath;
+    }
+}
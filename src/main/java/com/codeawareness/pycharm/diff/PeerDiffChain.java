@@ -0,0 +1,170 @@
+package com.codeawareness.pycharm.diff;
+
+import com.intellij.diff.DiffContentFactory;
+import com.intellij.diff.chains.DiffRequestChain;
+import com.intellij.diff.chains.DiffRequestProducer;
+import com.intellij.diff.chains.DiffRequestProducerException;
+import com.intellij.diff.contents.DiffContent;
+import com.intellij.diff.requests.DiffRequest;
+import com.intellij.diff.requests.SimpleDiffRequest;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.UserDataHolder;
+import com.intellij.openapi.util.UserDataHolderBase;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The files a peer has changed, as one navigable diff chain.
+ *
+ * The diff viewer calls {@link Entry#process} on a background thread when the user navigates
+ * to an entry, so a peer's content is only loaded when it is looked at. Loading an entry also
+ * starts loading the next one, which is usually where the user goes next.
+ */
+public class PeerDiffChain extends UserDataHolderBase implements DiffRequestChain {
+
+    private final Project project;
+    private final String peerId;
+    private final String peerName;
+    private final PeerContentLoader loader;
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+    private volatile int index = 0;
+
+    public PeerDiffChain(Project project, String peerId, String peerName, PeerContentLoader loader) {
+        this.project = project;
+        this.peerId = peerId;
+        this.peerName = peerName;
+        this.loader = loader;
+    }
+
+    /**
+     * Add a file to the chain. An entry already listing the file is replaced only when a newly
+     * extracted peer file is given.
+     *
+     * @param relativePath Repo-relative path of the file
+     * @param localFilePath Absolute path of the local file, or null if it only exists on the peer's side
+     * @param peerFilePath File the backend extracted the peer's version to, or null to request it on demand
+     * @return Index of the entry
+     */
+    public synchronized int addEntry(String relativePath, String localFilePath, String peerFilePath) {
+        Entry entry = new Entry(relativePath, localFilePath, peerFilePath);
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).relativePath.equals(relativePath)) {
+                if (peerFilePath != null) {
+                    entries.set(i, entry);
+                }
+                return i;
+            }
+        }
+        entries.add(entry);
+        return entries.size() - 1;
+    }
+
+    public String getPeerId() {
+        return peerId;
+    }
+
+    public String getPeerName() {
+        return peerName;
+    }
+
+    @Override
+    public List<? extends DiffRequestProducer> getRequests() {
+        return entries;
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * One file of the chain. Its contents are loaded when the viewer shows it.
+     */
+    private final class Entry implements DiffRequestProducer {
+        private final String relativePath;
+        private final String localFilePath;
+        private final String peerFilePath;
+
+        Entry(String relativePath, String localFilePath, String peerFilePath) {
+            this.relativePath = relativePath;
+            this.localFilePath = localFilePath;
+            this.peerFilePath = peerFilePath;
+        }
+
+        @Override
+        public String getName() {
+            return relativePath;
+        }
+
+        @Override
+        public DiffRequest process(UserDataHolder context, ProgressIndicator indicator)
+            throws DiffRequestProducerException, ProcessCanceledException {
+            String peerContent = await(loader.load(peerId, relativePath, peerFilePath), indicator);
+            prefetchNext();
+
+            DiffContentFactory contentFactory = DiffContentFactory.getInstance();
+            VirtualFile localFile = localFilePath != null
+                ? LocalFileSystem.getInstance().findFileByPath(localFilePath)
+                : null;
+            FileType fileType = localFile != null
+                ? localFile.getFileType()
+                : FileTypeManager.getInstance().getFileTypeByFileName(new File(relativePath).getName());
+            DiffContent localContent = localFile != null
+                ? contentFactory.create(project, localFile)
+                : contentFactory.create(project, "", fileType);
+
+            return new SimpleDiffRequest(
+                "Code Awareness: " + relativePath + " - " + peerName,
+                localContent,
+                contentFactory.create(project, peerContent, fileType),
+                localFile != null ? "Your Version" : "Your Version (not present)",
+                peerName + "'s Version"
+            );
+        }
+
+        private void prefetchNext() {
+            int position = entries.indexOf(this);
+            if (position >= 0 && position + 1 < entries.size()) {
+                Entry next = entries.get(position + 1);
+                loader.prefetch(peerId, next.relativePath, next.peerFilePath);
+            }
+        }
+    }
+
+    /**
+     * Wait for a load while honouring cancellation of the viewer's progress indicator.
+     */
+    private static String await(CompletableFuture<String> future, ProgressIndicator indicator)
+        throws DiffRequestProducerException {
+        while (true) {
+            indicator.checkCanceled();
+            try {
+                return future.get(50, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Check for cancellation again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException();
+            } catch (ExecutionException | CancellationException e) {
+                throw new DiffRequestProducerException("Could not load the peer's version: " + e.getMessage());
+            }
+        }
+    }
+}
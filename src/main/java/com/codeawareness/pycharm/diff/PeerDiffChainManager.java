@@ -0,0 +1,110 @@
+package com.codeawareness.pycharm.diff;
+
+import com.codeawareness.pycharm.utils.Logger;
+import com.intellij.diff.editor.ChainDiffVirtualFile;
+import com.intellij.diff.editor.DiffRequestProcessorEditor;
+import com.intellij.diff.impl.CacheDiffRequestChainProcessor;
+import com.intellij.diff.impl.DiffRequestProcessor;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shows peer diffs in one reusable diff tab per peer instead of a new window per file.
+ * Each peer gets a {@link PeerDiffChain} listing every file of theirs the user has looked at;
+ * showing another file adds it to the chain and moves the existing tab to it.
+ */
+public class PeerDiffChainManager {
+
+    private final Project project;
+    private final PeerContentLoader loader;
+    private final Map<String, ChainTab> tabs = new ConcurrentHashMap<>();
+
+    /**
+     * A peer's chain and the editor tab showing it.
+     */
+    private static final class ChainTab {
+        final PeerDiffChain chain;
+        final ChainDiffVirtualFile file;
+
+        ChainTab(PeerDiffChain chain) {
+            this.chain = chain;
+            this.file = new ChainDiffVirtualFile(chain, "Code Awareness: " + chain.getPeerName());
+        }
+    }
+
+    public PeerDiffChainManager(Project project, PeerContentLoader loader) {
+        this.project = project;
+        this.loader = loader;
+    }
+
+    /**
+     * Add a file to a peer's chain and show it in the peer's diff tab.
+     *
+     * @param peerId Peer the version belongs to
+     * @param peerName Name shown in the tab and diff titles
+     * @param relativePath Repo-relative path of the file
+     * @param localFilePath Absolute path of the local file, or null if it only exists on the peer's side
+     * @param peerFilePath File the backend extracted the peer's version to, or null if it is cached
+     */
+    public void show(String peerId, String peerName, String relativePath, String localFilePath, String peerFilePath) {
+        ChainTab tab = getTab(peerId, peerName);
+        int index = tab.chain.addEntry(relativePath, localFilePath, peerFilePath);
+
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+            FileEditorManager editorManager = FileEditorManager.getInstance(project);
+            tab.chain.setIndex(index);
+            CacheDiffRequestChainProcessor processor = findProcessor(editorManager, tab.file);
+            if (processor != null) {
+                // Move the open viewer, which keeps its scroll position and settings
+                processor.setCurrentRequest(index);
+            } else if (editorManager.isFileOpen(tab.file)) {
+                // Without a viewer to move, only a new one reads the chain index
+                editorManager.closeFile(tab.file);
+            }
+            editorManager.openFile(tab.file, true);
+            Logger.info("Showing " + relativePath + " in diff chain of " + peerName);
+        });
+    }
+
+    /**
+     * Get the processor of the viewer showing a chain tab, if the tab is open.
+     */
+    private static CacheDiffRequestChainProcessor findProcessor(FileEditorManager editorManager, ChainDiffVirtualFile file) {
+        for (FileEditor editor : editorManager.getEditors(file)) {
+            if (editor instanceof DiffRequestProcessorEditor) {
+                DiffRequestProcessor processor = ((DiffRequestProcessorEditor) editor).getProcessor();
+                if (processor instanceof CacheDiffRequestChainProcessor && !processor.isDisposed()) {
+                    return (CacheDiffRequestChainProcessor) processor;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a file to a peer's chain without showing it, e.g. for files the peer is known to have changed.
+     */
+    public void addEntry(String peerId, String peerName, String relativePath, String localFilePath) {
+        getTab(peerId, peerName).chain.addEntry(relativePath, localFilePath, null);
+    }
+
+    private ChainTab getTab(String peerId, String peerName) {
+        return tabs.computeIfAbsent(peerId, id -> new ChainTab(new PeerDiffChain(project, id, peerName, loader)));
+    }
+
+    /**
+     * Forget all chains. Open tabs keep working with the entries they had.
+     */
+    public void clear() {
+        tabs.clear();
+        loader.cancelAll();
+    }
+}
@@ -0,0 +1,15 @@
+package com.codeawareness.pycharm.diff;
+
+/**
+ * Listener interface for changes of the background diffs kept by {@link PeerDiffService}.
+ * Called on the DIFF lane or the thread that cleared the diffs, which is usually not the EDT.
+ */
+public interface PeerDiffListener {
+
+    /**
+     * Called when the diff of a file was computed, updated after an edit, or dropped.
+     *
+     * @param localFilePath Absolute path of the local file, or null if all diffs were dropped
+     */
+    void onPeerDiffChanged(String localFilePath);
+}
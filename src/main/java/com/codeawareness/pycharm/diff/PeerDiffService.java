@@ -0,0 +1,323 @@
+package com.codeawareness.pycharm.diff;
+
+import com.codeawareness.pycharm.scheduling.ScheduledTask;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
+import com.codeawareness.pycharm.utils.Logger;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps a line diff between open documents and the selected peer's version of them,
+ * without opening a diff window. The status bar widget shows the summary of the selected
+ * file ("N lines differ from alice") and hears about updates through {@link PeerDiffListener}.
+ *
+ * Diffs are computed on the DIFF lane. Local edits are recorded as line-range replacements
+ * and applied incrementally after a short pause in typing; a full recompute only happens when
+ * the recorded edits no longer line up with the document or too many have piled up. The
+ * service only listens to document changes while it has a diff to keep up to date.
+ */
+public class PeerDiffService implements DocumentListener {
+
+    private static final long EDIT_DEBOUNCE_MS = 300;
+    private static final int MAX_INCREMENTAL_EDITS = 50; // Above this, one full diff is cheaper
+
+    private final Project project;
+    private final TaskGroup tasks;
+    private final Map<String, FileDiff> diffs = new ConcurrentHashMap<>();
+    private final List<PeerDiffListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object listenerLock = new Object();
+    // Set while registered as a document listener; disposing it unregisters
+    private Disposable listenerRegistration;
+    // Line range of the change in progress, between beforeDocumentChange and documentChanged (EDT only)
+    private int pendingStartLine = -1;
+    private int pendingOldEndLine = -1;
+
+    /**
+     * A local line-range replacement: lines [startLine, oldEndLine) became {@code newLines}.
+     */
+    private static final class Edit {
+        final int startLine;
+        final int oldEndLine;
+        final List<String> newLines;
+
+        Edit(int startLine, int oldEndLine, List<String> newLines) {
+            this.startLine = startLine;
+            this.oldEndLine = oldEndLine;
+            this.newLines = newLines;
+        }
+    }
+
+    /**
+     * Diff state of one local file. The diff is guarded by the instance itself.
+     */
+    private static final class FileDiff {
+        final String peerName;
+        final List<String> peerLines;
+        final Queue<Edit> pendingEdits = new ConcurrentLinkedQueue<>();
+        volatile LineDiff diff;
+        volatile ScheduledTask drainTask;
+
+        FileDiff(String peerName, List<String> peerLines) {
+            this.peerName = peerName;
+            this.peerLines = peerLines;
+        }
+    }
+
+    public PeerDiffService(Project project, TaskGroup tasks) {
+        this.project = project;
+        this.tasks = tasks;
+    }
+
+    /**
+     * Diff a local file against a peer's version of it in the background.
+     * Replaces any diff previously computed for the file.
+     *
+     * @param localFilePath Absolute path of the local file
+     * @param peerName Name of the peer, used in summaries
+     * @param peerContent The peer's version of the file
+     */
+    public void computeDiff(String localFilePath, String peerName, String peerContent) {
+        if (localFilePath == null || peerContent == null) {
+            return;
+        }
+
+        // Track the file right away so edits made while the diff is computed are not lost
+        startListening();
+        FileDiff fileDiff = new FileDiff(peerName, LineDiff.splitLines(peerContent));
+        FileDiff previous = diffs.put(localFilePath, fileDiff);
+        cancelDrain(previous);
+
+        tasks.submit(SchedulerLane.DIFF, () -> {
+            if (diffs.get(localFilePath) != fileDiff) {
+                return;
+            }
+            recompute(localFilePath, fileDiff);
+            drainEdits(localFilePath, fileDiff);
+        });
+    }
+
+    /**
+     * Get the current diff of a local file against the peer.
+     *
+     * @return The diff, or null if none has been computed yet
+     */
+    public LineDiff getDiff(String localFilePath) {
+        FileDiff fileDiff = localFilePath != null ? diffs.get(localFilePath) : null;
+        return fileDiff != null ? fileDiff.diff : null;
+    }
+
+    /**
+     * Get a short summary such as "3 lines differ from alice".
+     *
+     * @return The summary, or null if no diff has been computed for the file
+     */
+    public String getSummary(String localFilePath) {
+        FileDiff fileDiff = localFilePath != null ? diffs.get(localFilePath) : null;
+        LineDiff diff = fileDiff != null ? fileDiff.diff : null;
+        if (diff == null) {
+            return null;
+        }
+        int count = diff.getChangedLineCount();
+        return count + (count == 1 ? " line differs" : " lines differ") + " from " + fileDiff.peerName;
+    }
+
+    /**
+     * Drop all diffs, e.g. when the peer is unselected.
+     */
+    public void clear() {
+        for (FileDiff fileDiff : diffs.values()) {
+            cancelDrain(fileDiff);
+        }
+        boolean hadDiffs = !diffs.isEmpty();
+        diffs.clear();
+        stopListening();
+        if (hadDiffs) {
+            notifyListeners(null);
+        }
+    }
+
+    public void addListener(PeerDiffListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PeerDiffListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(String localFilePath) {
+        for (PeerDiffListener listener : listeners) {
+            try {
+                listener.onPeerDiffChanged(localFilePath);
+            } catch (Exception e) {
+                Logger.warn("Peer diff listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Check whether the service is registered for document changes.
+     */
+    public boolean isListening() {
+        synchronized (listenerLock) {
+            return listenerRegistration != null;
+        }
+    }
+
+    private void startListening() {
+        synchronized (listenerLock) {
+            if (listenerRegistration != null || project.isDisposed()) {
+                return;
+            }
+            listenerRegistration = Disposer.newDisposable(project, "Code Awareness peer diff listener");
+            EditorFactory.getInstance().getEventMulticaster().addDocumentListener(this, listenerRegistration);
+        }
+    }
+
+    private void stopListening() {
+        synchronized (listenerLock) {
+            if (listenerRegistration != null) {
+                Disposer.dispose(listenerRegistration);
+                listenerRegistration = null;
+            }
+        }
+    }
+
+    @Override
+    public void beforeDocumentChange(DocumentEvent event) {
+        pendingStartLine = -1;
+        if (diffs.isEmpty() || getTrackedPath(event.getDocument()) == null) {
+            return;
+        }
+        Document document = event.getDocument();
+        pendingStartLine = document.getLineNumber(event.getOffset());
+        pendingOldEndLine = document.getLineNumber(event.getOffset() + event.getOldLength()) + 1;
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        if (pendingStartLine < 0) {
+            return;
+        }
+        Document document = event.getDocument();
+        String path = getTrackedPath(document);
+        FileDiff fileDiff = path != null ? diffs.get(path) : null;
+        if (fileDiff == null) {
+            return;
+        }
+
+        // Only the touched lines are copied; the document itself is read on the EDT here
+        int newEndLine = document.getLineNumber(event.getOffset() + event.getNewLength()) + 1;
+        String text = document.getText(new TextRange(
+            document.getLineStartOffset(pendingStartLine), document.getLineEndOffset(newEndLine - 1)));
+        fileDiff.pendingEdits.add(new Edit(pendingStartLine, pendingOldEndLine, LineDiff.splitLines(text)));
+        pendingStartLine = -1;
+
+        cancelDrain(fileDiff);
+        fileDiff.drainTask = tasks.schedule(SchedulerLane.DIFF, () -> drainEdits(path, fileDiff), EDIT_DEBOUNCE_MS);
+    }
+
+    /**
+     * Apply queued edits to the diff, falling back to a full recompute when they do not fit.
+     */
+    private void drainEdits(String path, FileDiff fileDiff) {
+        synchronized (fileDiff) {
+            if (fileDiff.diff == null || fileDiff.pendingEdits.isEmpty() || diffs.get(path) != fileDiff) {
+                return;
+            }
+
+            if (fileDiff.pendingEdits.size() > MAX_INCREMENTAL_EDITS) {
+                recompute(path, fileDiff);
+                return;
+            }
+
+            LineDiff diff = fileDiff.diff;
+            Edit edit;
+            try {
+                while ((edit = fileDiff.pendingEdits.poll()) != null) {
+                    diff = diff.withEdit(edit.startLine, edit.oldEndLine, edit.newLines);
+                }
+            } catch (IllegalArgumentException e) {
+                Logger.debug("Edits out of sync with diff of " + path + ", recomputing");
+                recompute(path, fileDiff);
+                return;
+            }
+            fileDiff.diff = diff;
+        }
+        notifyListeners(path);
+    }
+
+    /**
+     * Diff the current document text against the peer lines from scratch.
+     */
+    private void recompute(String path, FileDiff fileDiff) {
+        // Edits cannot happen during the read action, so clearing the queue here loses none
+        String localText = ApplicationManager.getApplication().runReadAction((Computable<String>) () -> {
+            fileDiff.pendingEdits.clear();
+            return readLocalText(path);
+        });
+        if (localText == null) {
+            if (diffs.remove(path, fileDiff)) {
+                notifyListeners(path);
+            }
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        LineDiff diff = LineDiff.compute(LineDiff.splitLines(localText), fileDiff.peerLines);
+        synchronized (fileDiff) {
+            fileDiff.diff = diff;
+        }
+        Logger.debug("Diffed " + path + " against " + fileDiff.peerName + " in " +
+            (System.currentTimeMillis() - start) + "ms: " + diff.getChangedLineCount() + " lines differ");
+        notifyListeners(path);
+    }
+
+    /**
+     * Read the local file through its document, so unsaved edits are included. Needs a read action.
+     */
+    private String readLocalText(String path) {
+        if (project.isDisposed()) {
+            return null;
+        }
+        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+        if (file == null || !file.isValid()) {
+            return null;
+        }
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        return document != null ? document.getText() : null;
+    }
+
+    private String getTrackedPath(Document document) {
+        VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+        if (file == null || !diffs.containsKey(file.getPath())) {
+            return null;
+        }
+        return file.getPath();
+    }
+
+    private static void cancelDrain(FileDiff fileDiff) {
+        ScheduledTask task = fileDiff != null ? fileDiff.drainTask : null;
+        if (task != null) {
+            task.cancel();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.codeawareness.pycharm.diff;
+
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads peer files extracted by the backend without loading huge files into memory.
+ *
+ * Files up to a threshold are read whole. Larger files are memory-mapped and only a preview
+ * from their start is decoded, cut at a line break. The charset is detected from a byte order
+ * mark, else the bytes are tried as UTF-8 and fall back to ISO-8859-1, which never fails.
+ * Files that look binary yield no text at all, so callers can offer to open them externally.
+ */
+public class PeerFileReader {
+
+    private static final long DEFAULT_MAX_FULL_BYTES = 4L * 1024 * 1024;
+    private static final int DEFAULT_PREVIEW_BYTES = 512 * 1024;
+    private static final int BINARY_SNIFF_BYTES = 8 * 1024;
+
+    private final long maxFullBytes;
+    private final int previewBytes;
+
+    /**
+     * Text read from a peer file.
+     */
+    public static final class PeerFileContent {
+        private final String text;
+        private final Charset charset;
+        private final long fileSize;
+        private final boolean truncated;
+
+        PeerFileContent(String text, Charset charset, long fileSize, boolean truncated) {
+            this.text = text;
+            this.charset = charset;
+            this.fileSize = fileSize;
+            this.truncated = truncated;
+        }
+
+        /**
+         * Get the decoded text: the whole file, or a preview if truncated.
+         *
+         * @return The text, or null if the file is binary
+         */
+        public String getText() {
+            return text;
+        }
+
+        public Charset getCharset() {
+            return charset;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        /**
+         * Check if only the start of the file was read.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public boolean isBinary() {
+            return text == null;
+        }
+    }
+
+    public PeerFileReader() {
+        this(DEFAULT_MAX_FULL_BYTES, DEFAULT_PREVIEW_BYTES);
+    }
+
+    /**
+     * @param maxFullBytes Files up to this size are read whole
+     * @param previewBytes Bytes decoded from the start of larger files
+     */
+    public PeerFileReader(long maxFullBytes, int previewBytes) {
+        this.maxFullBytes = maxFullBytes;
+        this.previewBytes = previewBytes;
+    }
+
+    /**
+     * Read a peer file. Must not be called on the EDT.
+     */
+    public PeerFileContent read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            boolean truncated = size > maxFullBytes;
+            ByteBuffer bytes;
+            if (truncated) {
+                // Only the mapped preview pages are ever touched
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, previewBytes));
+                bytes = mapped;
+                Logger.debug("Reading preview of large peer file (" + size + " bytes): " + path);
+            } else {
+                bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+            }
+
+            if (looksBinary(bytes)) {
+                return new PeerFileContent(null, null, size, truncated);
+            }
+
+            Charset charset = detectCharset(bytes);
+            skipBom(bytes, charset);
+            if (truncated) {
+                cutAtLastLineBreak(bytes, charset);
+            }
+            return new PeerFileContent(decode(bytes, charset), charset, size, truncated);
+        }
+    }
+
+    /**
+     * Detect the charset of a file start: a byte order mark wins, then valid UTF-8, else ISO-8859-1.
+     */
+    static Charset detectCharset(ByteBuffer bytes) {
+        int p = bytes.position();
+        int remaining = bytes.remaining();
+        if (remaining >= 3 && (bytes.get(p) & 0xFF) == 0xEF && (bytes.get(p + 1) & 0xFF) == 0xBB
+            && (bytes.get(p + 2) & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (remaining >= 2 && (bytes.get(p) & 0xFF) == 0xFE && (bytes.get(p + 1) & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (remaining >= 2 && (bytes.get(p) & 0xFF) == 0xFF && (bytes.get(p + 1) & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return isValidUtf8(bytes.duplicate()) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+    }
+
+    private static boolean isValidUtf8(ByteBuffer bytes) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer out = CharBuffer.allocate(8 * 1024);
+        while (true) {
+            out.clear();
+            CoderResult result = decoder.decode(bytes, out, true);
+            if (result.isError()) {
+                // A sequence cut off at the end of a preview is not an error
+                return result.isMalformed() && bytes.remaining() < 4 && bytes.remaining() == result.length();
+            }
+            if (result.isUnderflow()) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Treat content with NUL bytes near the start as binary, like most diff tools do.
+     * UTF-16 text has NUL bytes too, but starts with a byte order mark.
+     */
+    static boolean looksBinary(ByteBuffer bytes) {
+        Charset charset = detectCharset(bytes);
+        if (charset == StandardCharsets.UTF_16BE || charset == StandardCharsets.UTF_16LE) {
+            return false;
+        }
+        int end = bytes.position() + Math.min(bytes.remaining(), BINARY_SNIFF_BYTES);
+        for (int i = bytes.position(); i < end; i++) {
+            if (bytes.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void skipBom(ByteBuffer bytes, Charset charset) {
+        int bomLength = 0;
+        int p = bytes.position();
+        if (charset == StandardCharsets.UTF_8) {
+            if (bytes.remaining() >= 3 && (bytes.get(p) & 0xFF) == 0xEF && (bytes.get(p + 1) & 0xFF) == 0xBB
+                && (bytes.get(p + 2) & 0xFF) == 0xBF) {
+                bomLength = 3;
+            }
+        } else if (charset == StandardCharsets.UTF_16BE || charset == StandardCharsets.UTF_16LE) {
+            bomLength = 2;
+        }
+        bytes.position(p + bomLength);
+    }
+
+    /**
+     * Drop the partial last line of a preview, so it does not end in the middle of a line or character.
+     */
+    private static void cutAtLastLineBreak(ByteBuffer bytes, Charset charset) {
+        // In UTF-16LE a line break is 0A 00, so the cut goes after the second byte
+        int after = charset == StandardCharsets.UTF_16LE ? 2 : 1;
+        for (int i = bytes.limit() - after; i > bytes.position(); i--) {
+            if (bytes.get(i) == '\n') {
+                bytes.limit(i + after);
+                return;
+            }
+        }
+    }
+
+    private static String decode(ByteBuffer bytes, Charset charset) throws CharacterCodingException {
+        return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .decode(bytes)
+            .toString();
+    }
+}
@@ -0,0 +1,141 @@
+package com.codeawareness.pycharm.diff;
+
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.monitoring.ActiveFileTracker;
+import com.codeawareness.pycharm.scheduling.ScheduledTask;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
+import com.codeawareness.pycharm.utils.Logger;
+import com.codeawareness.pycharm.utils.PathUtils;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fetches a newly selected peer's versions of the open editor tabs and recently used files
+ * into the {@link PeerContentCache}, so a diff with any of them opens without a round-trip.
+ *
+ * One file is fetched at a time, with a pause between files, so the backend keeps serving
+ * the user's own requests first. Selecting another peer or unselecting abandons the pass.
+ */
+public class PeerPrefetcher {
+
+    private static final long START_DELAY_MS = 500;      // Let the active file's diff go first
+    private static final long REQUEST_INTERVAL_MS = 300; // Pause between prefetched files
+    private static final int MAX_FILES_PER_PASS = 10;
+
+    private final Project project;
+    private final TaskGroup tasks;
+    private final PeerContentCache cache;
+    private final PeerContentLoader loader;
+    private final AtomicReference<ScheduledTask> pendingTask = new AtomicReference<>(null);
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public PeerPrefetcher(Project project, TaskGroup tasks, PeerContentCache cache, PeerContentLoader loader) {
+        this.project = project;
+        this.tasks = tasks;
+        this.cache = cache;
+        this.loader = loader;
+    }
+
+    /**
+     * Start prefetching a peer's versions of the files the user is likely to diff next.
+     * Any pass already in progress is abandoned.
+     */
+    public void start(String peerId) {
+        int passGeneration = cancelAndAdvance();
+        schedule(() -> runPass(passGeneration, peerId), START_DELAY_MS);
+    }
+
+    /**
+     * Abandon the current pass, if any.
+     */
+    public void cancel() {
+        cancelAndAdvance();
+    }
+
+    private int cancelAndAdvance() {
+        int next = generation.incrementAndGet();
+        ScheduledTask task = pendingTask.getAndSet(null);
+        if (task != null) {
+            task.cancel();
+        }
+        return next;
+    }
+
+    private void schedule(Runnable action, long delayMs) {
+        ScheduledTask task = tasks.schedule(SchedulerLane.PREFETCH, action, delayMs);
+        ScheduledTask previous = pendingTask.getAndSet(task);
+        if (previous != null && previous != task) {
+            previous.cancel();
+        }
+    }
+
+    private void runPass(int passGeneration, String peerId) {
+        if (passGeneration != generation.get() || project.isDisposed()) {
+            return;
+        }
+
+        List<String> candidates = collectCandidates(peerId);
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Logger.debug("Prefetching " + candidates.size() + " file(s) of peer " + peerId);
+        fetchNext(passGeneration, peerId, candidates, 0);
+    }
+
+    private void fetchNext(int passGeneration, String peerId, List<String> candidates, int index) {
+        if (passGeneration != generation.get() || project.isDisposed() || index >= candidates.size()) {
+            return;
+        }
+
+        String relativePath = candidates.get(index);
+        if (cache.get(peerId, relativePath) != null) {
+            fetchNext(passGeneration, peerId, candidates, index + 1);
+            return;
+        }
+
+        Logger.trace("Prefetching peer content for: " + relativePath);
+        // Wait for each file before the next, whether it arrived or not
+        loader.prefetch(peerId, relativePath, null).whenComplete((content, error) ->
+            schedule(() -> fetchNext(passGeneration, peerId, candidates, index + 1), REQUEST_INTERVAL_MS));
+    }
+
+    /**
+     * Collect repo-relative paths worth prefetching: open tabs, then recently used files.
+     * The active file is left out; its diff is requested directly.
+     */
+    private List<String> collectCandidates(String peerId) {
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+        if (projectService == null || project.getBasePath() == null) {
+            return new ArrayList<>();
+        }
+        ActiveFileTracker tracker = projectService.getActiveFileTracker();
+        String activePath = tracker.getCurrentActiveFile();
+
+        Map<String, String> candidates = new LinkedHashMap<>();
+        List<VirtualFile> files = new ArrayList<>(List.of(FileEditorManager.getInstance(project).getOpenFiles()));
+        files.addAll(tracker.getRecentFiles());
+        for (VirtualFile file : files) {
+            if (candidates.size() >= MAX_FILES_PER_PASS) {
+                break;
+            }
+            if (file == null || !file.isValid() || file.isDirectory() || file.getPath().equals(activePath)
+                || !tracker.isProjectFile(file)) {
+                continue;
+            }
+            String relativePath = PathUtils.getRelativePath(project.getBasePath(), file.getPath());
+            if (relativePath != null && cache.get(peerId, relativePath) == null) {
+                candidates.putIfAbsent(file.getPath(), relativePath);
+            }
+        }
+        return new ArrayList<>(candidates.values());
+    }
+}
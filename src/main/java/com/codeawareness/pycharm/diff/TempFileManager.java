@@ -1,47 +1,122 @@
 package com.codeawareness.pycharm.diff;
 
 import com.codeawareness.pycharm.utils.Logger;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 /**
  * Manages temporary files for peer code diffs.
  * Creates, tracks, and cleans up temp files.
+ *
+ * Files are content-addressed: each distinct content is stored once in a directory named
+ * after its SHA-256 hash, and every peer/file name pointing at that content is a hard link
+ * (or a copy where links are unsupported) inside it. Writing the same peer version again
+ * reuses the existing file. Total disk use is capped; the least recently used contents are
+ * evicted first. Each IDE process writes into its own session directory
+ * ({@code <pid>-<random>}) so sessions of crashed processes can be swept later.
+ *
+ * One store is shared by all projects, so the budget and the session directory are per IDE,
+ * not per project. Names are kept apart per owner: each user of the store passes an owner
+ * token and only ever replaces or cleans up its own files.
  */
-public class TempFileManager {
+@Service
+public final class TempFileManager implements Disposable {
+
+    private static final String STORE_DIR_NAME = "codeawareness-peers";
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
 
     private final String tmpDir;
-    private final Map<String, File> tempFiles = new HashMap<>();
+    private final Path storeDir;
+    private final Path sessionDir;
+    private final long maxBytes;
+    private final Map<String, File> tempFiles = new ConcurrentHashMap<>();
+    // Access-ordered: least recently used content first. Guarded by this.
+    private final Map<String, ContentEntry> contents = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    /**
+     * A stored content and the named files linked to it.
+     */
+    private static final class ContentEntry {
+        final Path dir;
+        final long size;
+        final List<String> keys = new ArrayList<>();
+
+        ContentEntry(Path dir, long size) {
+            this.dir = dir;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Create the application's store in the system temp directory.
+     */
+    public TempFileManager() {
+        this(null);
+    }
 
     public TempFileManager(String tmpDir) {
+        this(tmpDir, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param tmpDir Base temp directory, or null for the system temp directory
+     * @param maxBytes Disk budget for stored peer contents
+     */
+    public TempFileManager(String tmpDir, long maxBytes) {
         this.tmpDir = tmpDir != null ? tmpDir : System.getProperty("java.io.tmpdir");
-        ensureTempDirectoryExists();
+        this.maxBytes = maxBytes;
+        this.storeDir = Paths.get(this.tmpDir, STORE_DIR_NAME);
+        this.sessionDir = storeDir.resolve(ProcessHandle.current().pid() + "-" +
+            UUID.randomUUID().toString().substring(0, 8));
+        // The session directory is created on first write, keeping construction free of I/O
     }
 
     /**
-     * Ensure the temp directory exists.
+     * Get the application-level store instance.
+     */
+    public static TempFileManager getInstance() {
+        return ApplicationManager.getApplication().getService(TempFileManager.class);
+    }
+
+    /**
+     * Ensure the session directory exists.
      */
     private void ensureTempDirectoryExists() {
         try {
-            Path dir = Paths.get(tmpDir);
-            if (!Files.exists(dir)) {
-                Files.createDirectories(dir);
-                Logger.debug("Created temp directory: " + tmpDir);
+            if (!Files.exists(sessionDir)) {
+                Files.createDirectories(sessionDir);
+                Logger.debug("Created temp directory: " + sessionDir);
             }
         } catch (IOException e) {
-            Logger.warn("Failed to create temp directory: " + tmpDir, e);
+            Logger.warn("Failed to create temp directory: " + sessionDir, e);
         }
     }
 
     /**
      * Create a temporary file with peer content.
+     * If the same content was stored before, no new bytes are written.
      *
      * @param fileName Original file name
      * @param peerName Peer name for identification
@@ -50,36 +125,127 @@ public class TempFileManager {
      * @throws IOException if file creation fails
      */
     public File createTempFile(String fileName, String peerName, String content) throws IOException {
-        // Generate temp file name: original_name.peer_name.ext
+        return createTempFile(null, fileName, peerName, content);
+    }
+
+    /**
+     * Create a temporary file with peer content on behalf of an owner.
+     * Other owners' files of the same name and peer are left alone.
+     *
+     * @param owner Token of the store's user, e.g. one per project, or null
+     */
+    public synchronized File createTempFile(String owner, String fileName, String peerName, String content)
+        throws IOException {
+        String key = key(owner, fileName, peerName);
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String hash = sha256(bytes);
         String tempFileName = generateTempFileName(fileName, peerName);
-        File tempFile = new File(tmpDir, tempFileName);
 
-        // If file exists and is read-only, make it writable and delete it
-        if (tempFile.exists()) {
-            if (!tempFile.canWrite()) {
-                Logger.debug("Making existing temp file writable before deletion: " + tempFile.getAbsolutePath());
-                tempFile.setWritable(true);
-            }
-            if (!tempFile.delete()) {
-                Logger.warn("Failed to delete existing temp file: " + tempFile.getAbsolutePath());
-                // Try to overwrite anyway
+        // The name may currently point at an older version of the peer's file
+        File previous = tempFiles.get(key);
+        if (previous != null && !previous.toPath().getParent().getFileName().toString().equals(hash)) {
+            releaseKey(key);
+        }
+
+        ContentEntry entry = contents.get(hash);
+        if (entry == null) {
+            ensureTempDirectoryExists();
+            Path dir = sessionDir.resolve(hash);
+            Files.createDirectories(dir);
+            entry = new ContentEntry(dir, bytes.length);
+            contents.put(hash, entry);
+            totalBytes += bytes.length;
+        }
+
+        Path target = entry.dir.resolve(tempFileName);
+        if (!Files.exists(target)) {
+            File existing = entry.keys.isEmpty() ? null : tempFiles.get(entry.keys.get(0));
+            if (existing != null && existing.exists()) {
+                linkOrCopy(existing.toPath(), target);
+                Logger.debug("Reused stored content for: " + target);
+            } else {
+                Files.write(target, bytes);
+                Logger.debug("Created temp file: " + target);
             }
+            // Mark as read-only
+            target.toFile().setReadOnly();
+        } else {
+            Logger.trace("Temp file already up to date: " + target);
         }
 
-        // Write content
-        try (FileWriter writer = new FileWriter(tempFile)) {
-            writer.write(content);
+        if (!entry.keys.contains(key)) {
+            entry.keys.add(key);
         }
+        tempFiles.put(key, target.toFile());
 
-        // Mark as read-only
-        tempFile.setReadOnly();
+        evictIfOverBudget(hash);
+        return target.toFile();
+    }
 
-        // Track for cleanup
-        String key = fileName + ":" + peerName;
-        tempFiles.put(key, tempFile);
+    private static void linkOrCopy(Path existing, Path target) throws IOException {
+        try {
+            Files.createLink(target, existing);
+        } catch (FileAlreadyExistsException e) {
+            // Another name already resolved to the same target
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(existing, target);
+        }
+    }
+
+    /**
+     * Evict least recently used contents until the store fits its budget.
+     * The content just written is never evicted, even if it alone exceeds the budget.
+     */
+    private void evictIfOverBudget(String keepHash) {
+        Iterator<Map.Entry<String, ContentEntry>> it = contents.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, ContentEntry> eldest = it.next();
+            if (eldest.getKey().equals(keepHash)) {
+                continue;
+            }
+            ContentEntry entry = eldest.getValue();
+            it.remove();
+            totalBytes -= entry.size;
+            for (String key : entry.keys) {
+                tempFiles.remove(key);
+            }
+            deleteRecursively(entry.dir);
+            Logger.debug("Evicted peer content " + eldest.getKey() + " (" + entry.size + " bytes)");
+        }
+    }
+
+    /**
+     * Drop a name from its content; the content is deleted once no name refers to it.
+     */
+    private void releaseKey(String key) {
+        File file = tempFiles.remove(key);
+        if (file == null) {
+            return;
+        }
+        String hash = file.toPath().getParent().getFileName().toString();
+        ContentEntry entry = contents.get(hash);
+        if (entry == null) {
+            return;
+        }
+
+        entry.keys.remove(key);
+        boolean nameStillUsed = false;
+        for (String other : entry.keys) {
+            File otherFile = tempFiles.get(other);
+            if (otherFile != null && otherFile.equals(file)) {
+                nameStillUsed = true;
+                break;
+            }
+        }
+        if (!nameStillUsed) {
+            deleteFile(file.toPath());
+        }
 
-        Logger.debug("Created temp file: " + tempFile.getAbsolutePath());
-        return tempFile;
+        if (entry.keys.isEmpty()) {
+            contents.remove(hash);
+            totalBytes -= entry.size;
+            deleteRecursively(entry.dir);
+        }
     }
 
     /**
@@ -114,8 +280,16 @@ public class TempFileManager {
      * @return The temp file, or null if not found
      */
     public File getTempFile(String fileName, String peerName) {
-        String key = fileName + ":" + peerName;
-        return tempFiles.get(key);
+        return getTempFile(null, fileName, peerName);
+    }
+
+    /**
+     * Get an owner's temp file for a specific file and peer.
+     *
+     * @return The temp file, or null if not found
+     */
+    public File getTempFile(String owner, String fileName, String peerName) {
+        return tempFiles.get(key(owner, fileName, peerName));
     }
 
     /**
@@ -125,38 +299,142 @@ public class TempFileManager {
      * @param peerName Peer name
      */
     public void cleanupTempFile(String fileName, String peerName) {
-        String key = fileName + ":" + peerName;
-        File tempFile = tempFiles.remove(key);
-        if (tempFile != null && tempFile.exists()) {
-            // Make writable if read-only
-            if (!tempFile.canWrite()) {
-                tempFile.setWritable(true);
-            }
-            if (tempFile.delete()) {
-                Logger.debug("Deleted temp file: " + tempFile.getAbsolutePath());
-            } else {
-                Logger.warn("Failed to delete temp file: " + tempFile.getAbsolutePath());
+        cleanupTempFile(null, fileName, peerName);
+    }
+
+    /**
+     * Clean up an owner's temp file for a specific file and peer.
+     */
+    public synchronized void cleanupTempFile(String owner, String fileName, String peerName) {
+        releaseKey(key(owner, fileName, peerName));
+    }
+
+    /**
+     * Clean up every temp file of an owner, e.g. when its project closes.
+     * Contents still used by other owners are kept.
+     */
+    public synchronized void cleanupOwner(String owner) {
+        String prefix = owner + "/";
+        List<String> keys = new ArrayList<>();
+        for (String key : tempFiles.keySet()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
             }
         }
+        keys.forEach(this::releaseKey);
+        if (!keys.isEmpty()) {
+            Logger.debug("Cleaned up " + keys.size() + " temp files of: " + owner);
+        }
+    }
+
+    private static String key(String owner, String fileName, String peerName) {
+        String key = fileName + ":" + peerName;
+        return owner != null ? owner + "/" + key : key;
     }
 
     /**
-     * Clean up all temp files.
+     * Clean up all temp files of this session.
      */
-    public void cleanupAll() {
+    public synchronized void cleanupAll() {
         Logger.debug("Cleaning up " + tempFiles.size() + " temp files");
-        for (File tempFile : tempFiles.values()) {
-            if (tempFile != null && tempFile.exists()) {
-                // Make writable if read-only
-                if (!tempFile.canWrite()) {
-                    tempFile.setWritable(true);
+        tempFiles.clear();
+        contents.clear();
+        totalBytes = 0;
+        deleteRecursively(sessionDir);
+    }
+
+    /**
+     * Delete session directories left behind by IDE processes that are no longer running.
+     * Meant to run once in the background at startup.
+     *
+     * @return Number of session directories deleted
+     */
+    public int sweepOrphanedSessions() {
+        if (!Files.isDirectory(storeDir)) {
+            return 0;
+        }
+
+        int swept = 0;
+        try (DirectoryStream<Path> sessions = Files.newDirectoryStream(storeDir)) {
+            for (Path session : sessions) {
+                if (session.equals(sessionDir) || !Files.isDirectory(session)) {
+                    continue;
                 }
-                if (!tempFile.delete()) {
-                    Logger.warn("Failed to delete temp file: " + tempFile.getAbsolutePath());
+                Long pid = parseSessionPid(session.getFileName().toString());
+                if (pid != null && ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                    continue;
                 }
+                deleteRecursively(session);
+                swept++;
             }
+        } catch (IOException e) {
+            Logger.warn("Failed to sweep orphaned temp files in: " + storeDir, e);
+        }
+
+        if (swept > 0) {
+            Logger.info("Swept " + swept + " orphaned peer temp directories from: " + storeDir);
+        }
+        return swept;
+    }
+
+    /**
+     * Extract the owning process id from a session directory name ({@code <pid>-<random>}).
+     *
+     * @return The pid, or null if the name does not follow the session format
+     */
+    static Long parseSessionPid(String dirName) {
+        int dash = dirName.indexOf('-');
+        if (dash <= 0) {
+            return null;
+        }
+        try {
+            return Long.parseLong(dirName.substring(0, dash));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void deleteFile(Path path) {
+        File file = path.toFile();
+        if (!file.exists()) {
+            return;
+        }
+        // Make writable if read-only
+        if (!file.canWrite()) {
+            file.setWritable(true);
+        }
+        if (!file.delete()) {
+            Logger.warn("Failed to delete temp file: " + file.getAbsolutePath());
         }
-        tempFiles.clear();
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(TempFileManager::deleteFile);
+        } catch (IOException e) {
+            Logger.warn("Failed to delete temp directory: " + dir, e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        cleanupAll();
     }
 
     /**
@@ -166,10 +444,24 @@ public class TempFileManager {
         return tmpDir;
     }
 
+    /**
+     * Get the directory this session stores its peer files in.
+     */
+    public Path getSessionDir() {
+        return sessionDir;
+    }
+
     /**
      * Get the count of tracked temp files.
      */
     public int getTempFileCount() {
         return tempFiles.size();
     }
+
+    /**
+     * Get the number of bytes stored, counting shared content once.
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
 }
@@ -1,6 +1,7 @@
 package com.codeawareness.pycharm.events;
 
 import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.utils.LogCategory;
 import com.codeawareness.pycharm.utils.Logger;
 import com.intellij.openapi.application.ApplicationManager;
 
@@ -9,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * Event dispatcher for routing incoming messages to registered handlers.
@@ -18,6 +20,22 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class EventDispatcher {
 
     private final Map<String, List<EventHandler>> handlers = new ConcurrentHashMap<>();
+    private final Executor handlerExecutor;
+
+    /**
+     * Create a dispatcher that runs handlers on the IDE's pooled threads.
+     */
+    public EventDispatcher() {
+        this(task -> ApplicationManager.getApplication().executeOnPooledThread(task));
+    }
+
+    /**
+     * Create a dispatcher that runs handlers on the given executor; benchmarks and tests pass
+     * {@code Runnable::run} to invoke them inline, without an IDE.
+     */
+    public EventDispatcher(Executor handlerExecutor) {
+        this.handlerExecutor = handlerExecutor;
+    }
 
     /**
      * Register an event handler.
@@ -86,7 +104,7 @@ public class EventDispatcher {
 
     /**
      * Dispatch a message to the appropriate handlers.
-     * All matching handlers are invoked asynchronously on background threads.
+     * All matching handlers are invoked on the dispatcher's executor.
      *
      * @param message The message to dispatch
      * @return true if at least one handler was found and invoked, false otherwise
@@ -134,12 +152,12 @@ public class EventDispatcher {
             return false;
         }
 
-        // Invoke all matched handlers asynchronously
-        Logger.info("Dispatching message to " + matchedHandlers.size() + " handler(s) for: " + fullAction);
+        // Invoke all matched handlers on the executor
+        Logger.debug(LogCategory.EVENTS, "Dispatching {} to {} handler(s)", fullAction, matchedHandlers.size());
         for (EventHandler handler : matchedHandlers) {
             final EventHandler finalHandler = handler;
-            Logger.info("  -> Invoking handler: " + finalHandler.getClass().getSimpleName());
-            ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            Logger.trace(LogCategory.EVENTS, "  -> Invoking handler: {}", finalHandler.getClass().getSimpleName());
+            handlerExecutor.execute(() -> {
                 try {
                     finalHandler.handle(message);
                 } catch (Exception e) {
@@ -167,6 +185,16 @@ public class EventDispatcher {
         return handlers.values().stream().mapToInt(List::size).sum();
     }
 
+    /**
+     * Get every registered handler instance, e.g. to register the same handlers with a
+     * dispatcher that runs them differently.
+     */
+    public List<EventHandler> getHandlers() {
+        List<EventHandler> all = new ArrayList<>();
+        handlers.values().forEach(all::addAll);
+        return all;
+    }
+
     /**
      * Get the number of unique actions with handlers registered.
      */
@@ -3,7 +3,9 @@ package com.codeawareness.pycharm.events.handlers;
 import com.codeawareness.pycharm.CodeAwarenessProjectService;
 import com.codeawareness.pycharm.communication.Message;
 import com.codeawareness.pycharm.events.EventHandler;
+import com.codeawareness.pycharm.highlighting.ActivePathCache;
 import com.codeawareness.pycharm.highlighting.HighlightManager;
+import com.codeawareness.pycharm.utils.LogCategory;
 import com.codeawareness.pycharm.utils.Logger;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -11,6 +13,7 @@ import com.google.gson.JsonObject;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -37,37 +40,32 @@ public class ActivePathHandler implements EventHandler {
     public void handle(Message message) {
         // Only process RES (response) flow messages
         if (message.getFlow() != Message.Flow.RES) {
-            Logger.debug("Ignoring active-path " + message.getFlow() + " flow message (only processing RES)");
+            Logger.debug(LogCategory.EVENTS, "Ignoring active-path {} flow message (only processing RES)", message.getFlow());
             return;
         }
 
-        Logger.info("ActivePathHandler.handle() called for project: " + project.getName() +
-                   ", flow: " + message.getFlow() + ", domain: " + message.getDomain() +
-                   ", action: " + message.getAction());
+        Logger.debug(LogCategory.EVENTS, "Handling active-path response for project: {}", project.getName());
+
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+        if (projectService == null) {
+            return;
+        }
 
         JsonObject data = message.getDataAsObject();
-        if (data == null) {
-            Logger.debug("active-path response has no data");
+        String namedPath = data != null ? getNamedFilePath(data) : null;
+        if (namedPath != null && !isInProject(namedPath)) {
+            Logger.debug("active-path response for another project: " + namedPath);
             return;
         }
+        // Every response of this project is counted, in order, so the prefetcher knows which
+        // of its requests are answered
+        boolean speculative = projectService.getActivePathPrefetcher().onActivePathResponse();
 
-        // Log the ENTIRE raw JSON to see what we're actually receiving
-        Logger.info("=== FULL DATA OBJECT ===");
-        Logger.info(data.toString());
-        Logger.info("=== END FULL DATA ===");
-
-        // Log the data structure for debugging
-        Logger.info("active-path response data keys: " + data.keySet());
-        if (data.has("hl")) {
-            Logger.info("hl field RAW: " + data.get("hl"));
-            Logger.info("hl field toString: " + data.get("hl").toString());
-
-            // Try to get the raw JSON string before Gson parses it
-            JsonArray hlArray = data.get("hl").getAsJsonArray();
-            for (int i = 0; i < hlArray.size(); i++) {
-                Logger.info("hl[" + i + "] raw element: " + hlArray.get(i) + ", as int: " + hlArray.get(i).getAsInt() + ", as long: " + hlArray.get(i).getAsLong());
-            }
+        if (data == null) {
+            Logger.debug("active-path response has no data");
+            return;
         }
+        Logger.payload(LogCategory.EVENTS, "active-path data", data);
 
         // Extract the hl (highlight) array
         if (!data.has("hl")) {
@@ -76,7 +74,6 @@ public class ActivePathHandler implements EventHandler {
         }
 
         JsonElement hlElement = data.get("hl");
-        Logger.info("hl element type: " + hlElement.getClass().getName() + ", value: " + hlElement);
 
         if (!hlElement.isJsonArray()) {
             Logger.warn("active-path hl field is not an array: " + hlElement);
@@ -89,37 +86,90 @@ public class ActivePathHandler implements EventHandler {
         // Parse line numbers from the array
         for (JsonElement element : hlArray) {
             if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber()) {
-                int lineNumber = element.getAsInt();
-                Logger.debug("Parsed line number from hl array: " + lineNumber + " (raw: " + element + ")");
-                highlightLines.add(lineNumber);
+                highlightLines.add(element.getAsInt());
             } else {
                 Logger.warn("Skipping non-numeric element in hl array: " + element);
             }
         }
 
-        Logger.info("Received " + highlightLines.size() + " highlight lines for project: " + project.getName());
-        Logger.info("Line numbers: " + highlightLines);
+        Logger.debug(LogCategory.HIGHLIGHTS, "Received {} highlight lines for project: {}",
+            highlightLines.size(), project.getName());
+        Logger.trace(LogCategory.HIGHLIGHTS, "Line numbers: {}", highlightLines);
 
-        // Get the currently active file
-        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
-        VirtualFile activeFile = projectService != null ? projectService.getActiveFile() : null;
+        // Visible editors are only requested together from backends whose answers say which file they are for
+        projectService.getActiveFileTracker().onActivePathResponse(namedPath != null);
 
-        if (activeFile == null) {
-            Logger.warn("No active file to apply highlights to");
+        String filePath = namedPath != null ? namedPath : resolveUnattributed(projectService, speculative);
+        if (filePath == null) {
             return;
         }
 
-        String filePath = activeFile.getPath();
-        Logger.info("Applying highlights to file: " + filePath);
+        // Remember the answer so switching back to this file paints immediately. It is stored
+        // under the version the request was sent for; later edits will miss and re-request.
+        ActivePathCache cache = projectService.getActivePathCache();
+        ActivePathCache.Key requestedKey = cache.takeRequest(filePath);
+        cache.put(requestedKey != null ? requestedKey : projectService.createActivePathCacheKey(filePath),
+            highlightLines);
+
+        // Replace existing highlights for this file (hl array uses 0-based line numbers,
+        // which matches IntelliJ's API). Files without an open editor are only cached.
+        highlightManager.setHighlights(filePath, highlightLines);
+        Logger.debug(LogCategory.HIGHLIGHTS, "Applied highlights to: {}", filePath);
+    }
+
+    /**
+     * Get the file a response names. Gardener reports it as root + activePath.
+     *
+     * @return Absolute path, or null if the response does not say which file it is for
+     */
+    private static String getNamedFilePath(JsonObject data) {
+        String activePath = getString(data, "activePath");
+        if (activePath == null || activePath.isEmpty()) {
+            return null;
+        }
+        String root = getString(data, "root");
+        String filePath = (root == null || new File(activePath).isAbsolute())
+            ? activePath
+            : new File(root, activePath).getPath();
+        return filePath.replace('\\', '/');
+    }
+
+    /**
+     * Check if a path is inside this project; a sibling directory sharing its name prefix is not.
+     */
+    private boolean isInProject(String filePath) {
+        String basePath = project.getBasePath();
+        if (basePath == null) {
+            return true;
+        }
+        String base = basePath.replace('\\', '/');
+        return filePath.equals(base) || filePath.startsWith(base.endsWith("/") ? base : base + "/");
+    }
 
-        // Clear existing highlights for this file first
-        highlightManager.clearHighlights(filePath);
+    /**
+     * Determine which file a response that names none belongs to. Backends that don't name
+     * the file are only asked about the focused file, so their responses are attributed to it,
+     * unless the response answers a speculative request.
+     *
+     * @param speculative Whether the response answers a prefetch request
+     * @return Absolute path of the focused file, or null if the response cannot be attributed
+     */
+    private String resolveUnattributed(CodeAwarenessProjectService projectService, boolean speculative) {
+        if (speculative) {
+            Logger.debug("Ignoring unattributed answer to a prefetch request");
+            return null;
+        }
 
-        // Apply new highlights (hl array uses 0-based line numbers, which matches IntelliJ's API)
-        for (Integer lineNumber : highlightLines) {
-            highlightManager.addHighlight(filePath, lineNumber);
+        VirtualFile activeFile = projectService.getActiveFile();
+        if (activeFile == null) {
+            Logger.warn("No active file to apply highlights to");
+            return null;
         }
+        return activeFile.getPath();
+    }
 
-        Logger.info("Applied " + highlightLines.size() + " highlights to: " + filePath);
+    private static String getString(JsonObject data, String key) {
+        JsonElement element = data.get(key);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
     }
 }
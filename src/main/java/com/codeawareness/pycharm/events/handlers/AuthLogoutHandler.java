@@ -0,0 +1,34 @@
+package com.codeawareness.pycharm.events.handlers;
+
+import com.codeawareness.pycharm.communication.AuthSessionCache;
+import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.events.EventHandler;
+import com.codeawareness.pycharm.utils.Logger;
+
+/**
+ * Handles auth:logout events from the Code Awareness backend.
+ * The user logged out, so the shared auth session is fetched again.
+ */
+public class AuthLogoutHandler implements EventHandler {
+
+    private final AuthSessionCache authSessionCache;
+
+    public AuthLogoutHandler(AuthSessionCache authSessionCache) {
+        this.authSessionCache = authSessionCache;
+    }
+
+    @Override
+    public String getAction() {
+        return "auth:logout";
+    }
+
+    @Override
+    public void handle(Message message) {
+        Logger.info("Backend signalled logout, refreshing auth session");
+        authSessionCache.refresh().whenComplete((session, error) -> {
+            if (error != null) {
+                Logger.debug("Could not refresh auth session after logout: " + error.getMessage());
+            }
+        });
+    }
+}
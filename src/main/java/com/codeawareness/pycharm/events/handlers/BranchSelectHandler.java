@@ -42,6 +42,7 @@ public class BranchSelectHandler implements EventHandler {
             CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
             if (projectService != null) {
                 projectService.setSelectedBranch(branchName);
+                projectService.getActivePathCache().invalidateAll();
                 Logger.info("Selected branch: " + branchName);
 
                 // TODO: Request highlights for the selected branch
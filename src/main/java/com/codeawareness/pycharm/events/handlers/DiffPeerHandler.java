@@ -2,28 +2,33 @@ package com.codeawareness.pycharm.events.handlers;
 
 import com.codeawareness.pycharm.CodeAwarenessProjectService;
 import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.diff.DiffPeerRequests;
 import com.codeawareness.pycharm.diff.DiffViewerManager;
+import com.codeawareness.pycharm.diff.PeerContentCache;
+import com.codeawareness.pycharm.diff.PeerContentLoader;
+import com.codeawareness.pycharm.diff.PeerFileReader;
 import com.codeawareness.pycharm.events.EventHandler;
+import com.codeawareness.pycharm.utils.LogCategory;
 import com.codeawareness.pycharm.utils.Logger;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 
 /**
- * Handles diff-peer response events from the Code Awareness backend.
- * Opens a diff viewer comparing local and peer versions.
+ * Handles diff-peer responses from the Code Awareness backend.
+ * Registered once for the application: every response is matched to the request it answers and
+ * handled in the project that sent it; responses no project asked for are ignored. Opens a diff
+ * viewer comparing local and peer versions, or hands the content to the peer diff tab when it
+ * requested the file itself.
  */
 public class DiffPeerHandler implements EventHandler {
 
-    private final Project project;
-    private final DiffViewerManager diffViewerManager;
+    private final DiffPeerRequests requests;
 
-    public DiffPeerHandler(Project project, DiffViewerManager diffViewerManager) {
-        this.project = project;
-        this.diffViewerManager = diffViewerManager;
+    public DiffPeerHandler(DiffPeerRequests requests) {
+        this.requests = requests;
     }
 
     @Override
@@ -33,67 +38,145 @@ public class DiffPeerHandler implements EventHandler {
 
     @Override
     public void handle(Message message) {
-        Logger.info("DiffPeerHandler.handle() called for project: " + project.getName() +
-                   ", flow: " + message.getFlow() + ", domain: " + message.getDomain() +
-                   ", action: " + message.getAction());
+        JsonObject data = message.getDataAsObject();
+        DiffPeerRequests.PendingRequest request = requests.take(getString(data, "fpath"), getString(data, "userId"));
+        if (request == null) {
+            Logger.debug(LogCategory.EVENTS, "Ignoring diff-peer {} no project requested", message.getFlow());
+            return;
+        }
+        CodeAwarenessProjectService projectService = findProjectService(request.getOwner());
+        if (projectService == null) {
+            Logger.debug(LogCategory.EVENTS, "Ignoring diff-peer {} for a closed project", message.getFlow());
+            return;
+        }
+        Project project = projectService.getProject();
+        PeerContentLoader loader = request.getOwner();
+        String peerId = request.getPeerId();
+        String relativePath = request.getRelativePath();
+        String loadPath = request.isLoad() ? relativePath : null;
+        Logger.debug(LogCategory.EVENTS, "Handling diff-peer {} for project: {}", message.getFlow(), project.getName());
+
+        if (message.getFlow() == Message.Flow.ERR) {
+            // Let a waiting diff tab show the failure
+            if (loadPath != null) {
+                loader.fail(peerId, loadPath, "Backend could not extract the peer's version");
+            }
+            return;
+        }
 
         // Only process RES (response) flow messages
         if (message.getFlow() != Message.Flow.RES) {
-            Logger.debug("Ignoring diff-peer " + message.getFlow() + " flow message (only processing RES)");
+            Logger.debug(LogCategory.EVENTS, "Ignoring diff-peer {} flow message (only processing RES)", message.getFlow());
             return;
         }
 
-        Logger.info("Handling diff-peer response (flow: " + message.getFlow() + ") for project: " + project.getName());
-
-        JsonObject data = message.getDataAsObject();
         if (data == null) {
             Logger.warn("diff-peer response has no data");
             return;
         }
 
-        // Log the actual data structure for debugging
-        Logger.info("diff-peer response data structure: " + data.toString());
+        Logger.payload(LogCategory.DIFF, "diff-peer data", data);
 
         // Extract diff data from Gardener response
         // Response format: { title, extractDir, peerFile, userId, fpath }
-        String peerFile = data.has("peerFile") ? data.get("peerFile").getAsString() : null;
-        String userId = data.has("userId") ? data.get("userId").getAsString() : null;
-        String title = data.has("title") ? data.get("title").getAsString() : null;
-
-        // Get the currently active file path (don't use fpath from response as it may be incorrect)
-        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
-        com.intellij.openapi.vfs.VirtualFile activeFile = projectService != null ? projectService.getActiveFile() : null;
-        String filePath = activeFile != null ? activeFile.getPath() : null;
-
-        Logger.info("Extracted diff data - filePath: " + filePath + ", peerFile: " + peerFile +
-                   ", userId: " + userId + ", title: " + title);
+        String peerFile = getString(data, "peerFile");
+        String userId = getString(data, "userId");
+        String title = getString(data, "title");
 
-        if (filePath == null) {
-            Logger.warn("No active file to diff with peer");
+        if (project.getBasePath() == null) {
             return;
         }
+        String filePath = new java.io.File(project.getBasePath(), relativePath).getPath().replace('\\', '/');
+
+        Logger.debug(LogCategory.DIFF, "Extracted diff data - filePath: {}, peerFile: {}, userId: {}",
+            filePath, peerFile, userId);
 
         if (peerFile == null) {
             Logger.warn("diff-peer response missing peerFile field - cannot read peer file content");
+            if (loadPath != null) {
+                loader.fail(peerId, loadPath, "Backend did not extract the peer's version");
+            }
             return;
         }
 
-        // Read the peer file content from the extracted file path
-        String peerContent = null;
+        // Read the peer file content from the extracted file path (handlers run on a pooled thread)
+        DiffViewerManager diffViewerManager = projectService.getDiffViewerManager();
+        PeerFileReader.PeerFileContent content;
         try {
-            peerContent = new String(Files.readAllBytes(Paths.get(peerFile)));
-            Logger.info("Read peer file content from: " + peerFile + " (length: " + peerContent.length() + " bytes)");
+            content = diffViewerManager.readPeerFile(peerFile);
+            Logger.debug("Read peer file from: " + peerFile + " (" + content.getFileSize() + " bytes, " +
+                content.getCharset() + (content.isTruncated() ? ", preview only" : "") + ")");
         } catch (IOException e) {
-            Logger.error("Failed to read peer file: " + peerFile, e);
+            Logger.warn("Failed to read peer file: " + peerFile, e);
+            if (loadPath != null) {
+                loader.fail(peerId, loadPath, "Could not read " + peerFile);
+            }
+            return;
+        }
+        // Files only prefetched were not asked for by the user, so they raise no balloons
+        boolean background = loadPath != null && !loader.isWaitedFor(peerId, loadPath);
+        boolean usable = background ? !content.isBinary() : diffViewerManager.notifyIfIncomplete(content, peerFile);
+        if (!usable) {
+            if (loadPath != null) {
+                loader.fail(peerId, loadPath, "The peer's version is a binary file");
+            }
             return;
         }
+        String peerContent = content.getText();
 
         // Use title as peer name, or fallback to userId or "Peer"
         String peerName = title != null ? title : 
                          (userId != null ? "Peer " + userId : "Peer");
 
+        // Remember the peer's version so selecting this peer again is instant
+        String revision = getRevision(data);
+        PeerContentCache cache = projectService.getPeerContentCache();
+        cache.onPeerRevision(peerId, revision);
+        if (!content.isTruncated()) {
+            // A preview is cheap to read again, and caching it would hide that it is incomplete
+            cache.put(peerId, relativePath, revision, peerName, peerContent);
+        }
+
+        if (loadPath != null) {
+            // The diff tab is waiting for this content and shows it itself
+            loader.complete(peerId, loadPath, peerContent);
+            return;
+        }
+
         // Show diff
         Logger.info("Showing diff for " + filePath + " with peer " + peerName);
-        diffViewerManager.showDiff(filePath, peerName, peerContent);
+        projectService.showPeerDiff(peerId, peerName, relativePath, filePath, peerFile, peerContent, !content.isTruncated());
+    }
+
+    /**
+     * Find the open project whose loader sent a request.
+     */
+    private static CodeAwarenessProjectService findProjectService(PeerContentLoader owner) {
+        for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+            if (project.isDisposed()) {
+                continue;
+            }
+            CodeAwarenessProjectService service = project.getServiceIfCreated(CodeAwarenessProjectService.class);
+            if (service != null && service.ownsPeerContentLoader(owner)) {
+                return service;
+            }
+        }
+        return null;
+    }
+
+    private static String getString(JsonObject data, String field) {
+        return data != null && data.has(field) && data.get(field).isJsonPrimitive() ? data.get(field).getAsString() : null;
+    }
+
+    /**
+     * Get the peer revision the file was extracted at, if the backend reports one.
+     */
+    static String getRevision(JsonObject data) {
+        for (String field : new String[] {"revision", "sha", "commit"}) {
+            if (data.has(field) && data.get(field).isJsonPrimitive()) {
+                return data.get(field).getAsString();
+            }
+        }
+        return null;
     }
 }
@@ -1,15 +1,16 @@
 package com.codeawareness.pycharm.events.handlers;
 
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
 import com.codeawareness.pycharm.communication.Message;
-import com.codeawareness.pycharm.diff.DiffViewerManager;
 import com.codeawareness.pycharm.events.EventHandler;
+import com.codeawareness.pycharm.settings.CodeAwarenessSettings;
 import com.codeawareness.pycharm.utils.Logger;
+import com.codeawareness.pycharm.utils.PathUtils;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 
 import java.io.File;
@@ -25,11 +26,9 @@ import java.io.File;
 public class OpenPeerFileHandler implements EventHandler {
 
     private final Project project;
-    private final DiffViewerManager diffViewerManager;
 
-    public OpenPeerFileHandler(Project project, DiffViewerManager diffViewerManager) {
+    public OpenPeerFileHandler(Project project) {
         this.project = project;
-        this.diffViewerManager = diffViewerManager;
     }
 
     @Override
@@ -75,61 +74,69 @@ public class OpenPeerFileHandler implements EventHandler {
             openFileInEditor(filePath);
         } else {
             // File doesn't exist locally - show diff with peer version
-            if (emptyFilePath == null) {
-                Logger.warn("open-peer-file response missing emptyFilePath for non-existent file");
-                return;
-            }
             openDiffView(emptyFilePath, filePath, peerId);
         }
     }
 
     /**
      * Open a file directly in the editor.
+     * The file is resolved in the background through the project's FileResolver;
+     * only opening happens on the EDT.
      */
     private void openFileInEditor(String filePath) {
-        ApplicationManager.getApplication().invokeLater(() -> {
-            try {
-                File file = new File(filePath);
-                if (!file.exists()) {
-                    Logger.warn("File does not exist: " + filePath);
-                    return;
-                }
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+        if (projectService == null) {
+            return;
+        }
 
-                VirtualFile virtualFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(file);
-                if (virtualFile == null) {
-                    Logger.warn("Could not find virtual file: " + filePath);
+        projectService.getFileResolver().resolve(filePath).thenAccept(resolved -> {
+            if (resolved == null) {
+                Logger.warn("File does not exist: " + filePath);
+                return;
+            }
+
+            VirtualFile virtualFile = resolved.getFile();
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (project.isDisposed()) {
                     return;
                 }
-
-                // Open the file in the editor
-                FileEditorManager fileEditorManager = FileEditorManager.getInstance(project);
-                OpenFileDescriptor descriptor = new OpenFileDescriptor(project, virtualFile);
-                fileEditorManager.openTextEditor(descriptor, true);
-
-                Logger.info("Opened file in editor: " + filePath);
-            } catch (Exception e) {
-                Logger.error("Failed to open file: " + filePath, e);
-            }
+                try {
+                    // Open the file in the editor
+                    FileEditorManager fileEditorManager = FileEditorManager.getInstance(project);
+                    OpenFileDescriptor descriptor = new OpenFileDescriptor(project, virtualFile);
+                    fileEditorManager.openTextEditor(descriptor, true);
+
+                    Logger.info("Opened file in editor: " + filePath);
+                } catch (Exception e) {
+                    Logger.error("Failed to open file: " + filePath, e);
+                }
+            });
         });
     }
 
     /**
      * Open a diff view comparing empty file with peer file.
+     * The empty side is built in memory, so emptyFilePath is only logged.
      */
     private void openDiffView(String emptyFilePath, String peerFilePath, String peerId) {
-        ApplicationManager.getApplication().invokeLater(() -> {
-            try {
-                String title = "New File (Peer: " + peerId + ")";
+        String title = "New File (Peer: " + peerId + ")";
 
-                Logger.info("Opening diff view: " + emptyFilePath + " vs " + peerFilePath);
+        Logger.info("Opening diff view: " + (emptyFilePath != null ? emptyFilePath : "<empty>") + " vs " + peerFilePath);
 
-                // Use the DiffViewerManager to show the diff
-                diffViewerManager.showDiff(emptyFilePath, peerFilePath, title);
+        // In-memory mode adds the file to the peer's diff tab, which loads it when shown
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+        CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
+        if (projectService == null) {
+            return;
+        }
+        if (settings == null || settings.inMemoryDiffs) {
+            String relativePath = PathUtils.getRelativePath(project.getBasePath(), peerFilePath);
+            String entryName = relativePath != null ? relativePath : new File(peerFilePath).getName();
+            projectService.getPeerDiffChainManager().show(peerId, "Peer " + peerId, entryName, null, peerFilePath);
+            return;
+        }
 
-                Logger.info("Opened diff view for peer file");
-            } catch (Exception e) {
-                Logger.error("Failed to open diff view for peer file", e);
-            }
-        });
+        // The DiffViewerManager reads the peer file off the EDT and opens the viewer on it
+        projectService.getDiffViewerManager().showNewFileDiff(peerFilePath, title);
     }
 }
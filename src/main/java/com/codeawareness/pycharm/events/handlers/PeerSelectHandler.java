@@ -4,6 +4,8 @@ import com.codeawareness.pycharm.CodeAwarenessProjectService;
 import com.codeawareness.pycharm.communication.Message;
 import com.codeawareness.pycharm.events.EventHandler;
 import com.codeawareness.pycharm.utils.Logger;
+import com.codeawareness.pycharm.utils.PathUtils;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.project.Project;
 
@@ -32,12 +34,8 @@ public class PeerSelectHandler implements EventHandler {
         String basePath = project.getBasePath();
         String filePath = file.getPath();
 
-        if (basePath != null && filePath.startsWith(basePath)) {
-            // Remove base path and leading slash
-            String relativePath = filePath.substring(basePath.length());
-            if (relativePath.startsWith("/") || relativePath.startsWith("\\")) {
-                relativePath = relativePath.substring(1);
-            }
+        String relativePath = PathUtils.getRelativePath(basePath, filePath);
+        if (relativePath != null) {
             return relativePath;
         }
 
@@ -46,6 +44,28 @@ public class PeerSelectHandler implements EventHandler {
         return filePath;
     }
 
+    /**
+     * List the files the peer has changed in the peer's diff tab, when the response names them.
+     * Contents are only fetched once the user navigates to a file.
+     */
+    private void addChangedFiles(CodeAwarenessProjectService projectService, JsonObject data,
+                                 String peerGuid, String peerName) {
+        JsonObject source = data.has("peer") && data.get("peer").isJsonObject() ? data.getAsJsonObject("peer") : data;
+        if (!source.has("files") || !source.get("files").isJsonArray()) {
+            return;
+        }
+        for (JsonElement file : source.getAsJsonArray("files")) {
+            if (!file.isJsonPrimitive()) {
+                continue;
+            }
+            String relativePath = file.getAsString();
+            String localPath = project.getBasePath() != null
+                ? new java.io.File(project.getBasePath(), relativePath).getPath().replace('\\', '/')
+                : null;
+            projectService.getPeerDiffChainManager().addEntry(peerGuid, peerName, relativePath, localPath);
+        }
+    }
+
     @Override
     public void handle(Message message) {
         // Only process RES (response) flow messages - REQ is the request we send, RES is the response from Gardener
@@ -96,7 +116,17 @@ public class PeerSelectHandler implements EventHandler {
             // Update project state
             CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
             if (projectService != null) {
+                // A newer peer revision makes previously fetched contents of this peer stale
+                String peerRevision = data.has("peer") && data.get("peer").isJsonObject()
+                    ? DiffPeerHandler.getRevision(data.getAsJsonObject("peer"))
+                    : DiffPeerHandler.getRevision(data);
+                projectService.getPeerContentCache().onPeerRevision(peerGuid, peerRevision);
+
                 projectService.setSelectedPeer(peerGuid);
+                // Highlights cached against the previous peer no longer apply
+                projectService.getActivePathCache().invalidateAll();
+                projectService.getPeerDiffService().clear();
+                addChangedFiles(projectService, data, peerGuid, peerName != null ? peerName : "Peer " + peerGuid);
                 Logger.info("Selected peer: " + (peerName != null ? peerName : "unknown") + " (" + peerGuid + ")");
 
                 // Request diff for the active file with the selected peer
@@ -123,6 +153,9 @@ public class PeerSelectHandler implements EventHandler {
                         Logger.warn("No file selected in editor to diff with peer");
                     }
                 }
+
+                // Fetch the peer's versions of the other open and recent files in the background
+                projectService.getPeerPrefetcher().start(peerGuid);
             }
         } else {
             Logger.warn("peer:select message has invalid peer data - could not extract peer GUID. Data: " + data.toString());
@@ -31,6 +31,10 @@ public class PeerUnselectHandler implements EventHandler {
         CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
         if (projectService != null) {
             projectService.setSelectedPeer(null);
+            projectService.getActivePathCache().invalidateAll();
+            projectService.getPeerDiffService().clear();
+            projectService.getPeerPrefetcher().cancel();
+            projectService.getPeerDiffChainManager().clear();
             Logger.info("Peer unselected");
 
             // TODO: Clear highlights for the peer
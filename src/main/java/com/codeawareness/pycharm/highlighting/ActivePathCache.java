@@ -0,0 +1,170 @@
+package com.codeawareness.pycharm.highlighting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versioned LRU cache of the highlight lines the backend reported for each file.
+ * Entries are keyed by file path, document modification stamp and the selected
+ * peer/branch, so a hit is only returned for the exact state the backend answered for.
+ * Lets the plugin paint highlights for a file as soon as it is selected,
+ * before the fresh active-path response arrives.
+ */
+public class ActivePathCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 200;
+
+    private final int maxEntries;
+    private final Map<Key, List<Integer>> entries;
+    private final Map<String, Key> pendingRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Identifies the state of a file the backend computed highlights for.
+     */
+    public static final class Key {
+
+        private final String filePath;
+        private final long modificationStamp;
+        private final String context;
+
+        /**
+         * @param filePath Absolute path to the file
+         * @param modificationStamp Document (or file) modification stamp
+         * @param context Selected peer/branch the highlights were computed against
+         */
+        public Key(String filePath, long modificationStamp, String context) {
+            this.filePath = filePath;
+            this.modificationStamp = modificationStamp;
+            this.context = context;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public long getModificationStamp() {
+            return modificationStamp;
+        }
+
+        public String getContext() {
+            return context;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return modificationStamp == key.modificationStamp &&
+                Objects.equals(filePath, key.filePath) &&
+                Objects.equals(context, key.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(filePath, modificationStamp, context);
+        }
+
+        @Override
+        public String toString() {
+            return filePath + "@" + modificationStamp + " [" + context + "]";
+        }
+    }
+
+    public ActivePathCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ActivePathCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        // Access-ordered so iteration order is least recently used first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<Integer>> eldest) {
+                return size() > ActivePathCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the cached highlight lines for an exact file state.
+     *
+     * @return Unmodifiable list of 0-based line numbers, or null if not cached
+     */
+    public synchronized List<Integer> get(Key key) {
+        if (key == null) {
+            return null;
+        }
+        return entries.get(key);
+    }
+
+    /**
+     * Store the highlight lines for a file state.
+     *
+     * @param key File state the lines were computed for
+     * @param lines 0-based line numbers to highlight
+     */
+    public synchronized void put(Key key, List<Integer> lines) {
+        if (key == null || key.getFilePath() == null || lines == null) {
+            return;
+        }
+        entries.put(key, Collections.unmodifiableList(new ArrayList<>(lines)));
+    }
+
+    /**
+     * Check if highlights for an exact file state are cached (does not affect LRU order).
+     */
+    public synchronized boolean contains(Key key) {
+        return key != null && entries.containsKey(key);
+    }
+
+    /**
+     * Remember the file state an active-path request was sent for,
+     * so the response can be stored under the state the backend actually saw.
+     */
+    public void recordRequest(Key key) {
+        if (key != null && key.getFilePath() != null) {
+            pendingRequests.put(key.getFilePath(), key);
+        }
+    }
+
+    /**
+     * Take the file state of the last request sent for a file, if any.
+     */
+    public Key takeRequest(String filePath) {
+        return filePath != null ? pendingRequests.remove(filePath) : null;
+    }
+
+    /**
+     * Remove all cached versions of a single file.
+     */
+    public synchronized void invalidate(String filePath) {
+        if (filePath != null) {
+            entries.keySet().removeIf(key -> filePath.equals(key.getFilePath()));
+        }
+    }
+
+    /**
+     * Remove all cached highlights, e.g. when the selected peer or branch changes.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        pendingRequests.clear();
+    }
+
+    /**
+     * Get the number of cached file states.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
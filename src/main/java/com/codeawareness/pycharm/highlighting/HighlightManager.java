@@ -1,9 +1,11 @@
 package com.codeawareness.pycharm.highlighting;
 
 import com.codeawareness.pycharm.utils.Logger;
+import com.codeawareness.pycharm.vfs.FileResolver;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.impl.DocumentMarkupModel;
 import com.intellij.openapi.editor.markup.HighlighterLayer;
 import com.intellij.openapi.editor.markup.HighlighterTargetArea;
 import com.intellij.openapi.editor.markup.MarkupModel;
@@ -13,12 +15,14 @@ import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.TextEditor;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Manages code highlighting for Code Awareness.
@@ -27,11 +31,23 @@ import java.util.concurrent.ConcurrentHashMap;
 public class HighlightManager {
 
     private final Project project;
+    private final FileResolver fileResolver;
     private final Map<String, List<RangeHighlighter>> highlightersByFile = new ConcurrentHashMap<>();
+    // Latest lines per file still waiting for the file to be resolved
+    private final Map<String, List<Integer>> pendingLines = new ConcurrentHashMap<>();
     private boolean highlightsEnabled = true;
 
     public HighlightManager(Project project) {
+        this(project, null);
+    }
+
+    /**
+     * @param fileResolver Resolves paths off the UI thread; without one, files are looked up
+     *                     on the UI thread from what the VFS already knows
+     */
+    public HighlightManager(Project project, FileResolver fileResolver) {
         this.project = project;
+        this.fileResolver = fileResolver;
     }
 
     /**
@@ -41,54 +57,126 @@ public class HighlightManager {
      * @param lineNumber Line number (0-indexed)
      */
     public void addHighlight(String filePath, int lineNumber) {
-        runOnUiThread(() -> {
+        withResolvedFile(filePath, file -> {
             try {
-                VirtualFile file = com.intellij.openapi.vfs.VfsUtil.findFileByIoFile(
-                    new java.io.File(filePath), true
-                );
-
-                if (file == null || !file.isValid()) {
-                    Logger.warn("Cannot highlight: file not found: " + filePath);
-                    return;
+                Editor editor = findEditor(file, filePath);
+                if (editor != null) {
+                    addLineHighlight(editor, filePath, lineNumber);
                 }
+            } catch (Exception e) {
+                Logger.warn("Failed to add highlight", e);
+            }
+        });
+    }
 
-                Editor editor = getEditorForFile(file);
+    /**
+     * Replace all highlights of a file with the given lines in a single UI update.
+     * The file and its editor are resolved once instead of once per line.
+     * If several updates arrive while the file is being resolved, only the latest is applied.
+     *
+     * @param filePath Absolute path to the file
+     * @param lineNumbers Line numbers (0-indexed)
+     */
+    public void setHighlights(String filePath, List<Integer> lineNumbers) {
+        pendingLines.put(filePath, lineNumbers);
+        withResolvedFile(filePath, file -> {
+            List<Integer> latestLines = pendingLines.remove(filePath);
+            if (latestLines == null) {
+                return; // Already applied by an earlier resolution
+            }
+            try {
+                disposeHighlighters(highlightersByFile.remove(filePath));
+
+                Editor editor = findEditor(file, filePath);
                 if (editor == null) {
-                    Logger.debug("No editor open for file: " + filePath);
                     return;
                 }
 
-                Document document = editor.getDocument();
-                if (lineNumber < 0 || lineNumber >= document.getLineCount()) {
-                    Logger.warn("Invalid line number: " + lineNumber + " for file: " + filePath);
-                    return;
+                for (Integer lineNumber : latestLines) {
+                    addLineHighlight(editor, filePath, lineNumber);
                 }
+            } catch (Exception e) {
+                Logger.warn("Failed to set highlights", e);
+            }
+        });
+    }
 
-                // Calculate line offsets
-                int lineStartOffset = document.getLineStartOffset(lineNumber);
-                int lineEndOffset = document.getLineEndOffset(lineNumber);
+    /**
+     * Run an action on the UI thread with the file at a path, or null if there is no such file.
+     * With a resolver, the lookup happens off the UI thread and the UI only sees resolved files.
+     */
+    private void withResolvedFile(String filePath, Consumer<VirtualFile> action) {
+        if (fileResolver == null) {
+            runOnUiThread(() -> action.accept(LocalFileSystem.getInstance().findFileByPath(filePath)));
+            return;
+        }
 
-                // Create highlight attributes
-                TextAttributes attributes = new TextAttributes();
-                attributes.setBackgroundColor(ColorSchemeProvider.getHighlightJBColor());
+        FileResolver.ResolvedFile resolved = fileResolver.getIfResolved(filePath);
+        if (resolved != null) {
+            runOnUiThread(() -> action.accept(resolved.getFile()));
+            return;
+        }
+        fileResolver.resolve(filePath).thenAccept(file ->
+            runOnUiThread(() -> action.accept(file != null ? file.getFile() : null)));
+    }
 
-                // Add highlight
-                MarkupModel markupModel = editor.getMarkupModel();
-                RangeHighlighter highlighter = markupModel.addRangeHighlighter(
-                    lineStartOffset,
-                    lineEndOffset,
-                    HighlighterLayer.SELECTION - 1,  // Just below selection layer
-                    attributes,
-                    HighlighterTargetArea.LINES_IN_RANGE  // Full-width highlighting
-                );
+    /**
+     * Find the text editor showing a file, or null if the file is not open.
+     */
+    private Editor findEditor(VirtualFile file, String filePath) {
+        if (file == null || !file.isValid()) {
+            Logger.warn("Cannot highlight: file not found: " + filePath);
+            return null;
+        }
 
-                // Store highlighter
-                highlightersByFile.computeIfAbsent(filePath, k -> new ArrayList<>()).add(highlighter);
+        Editor editor = getEditorForFile(file);
+        if (editor == null) {
+            Logger.debug("No editor open for file: " + filePath);
+        }
+        return editor;
+    }
 
-            } catch (Exception e) {
-                Logger.warn("Failed to add highlight", e);
+    /**
+     * Add a single full-width line highlight. Must be called on the UI thread.
+     */
+    private void addLineHighlight(Editor editor, String filePath, int lineNumber) {
+        Document document = editor.getDocument();
+        if (lineNumber < 0 || lineNumber >= document.getLineCount()) {
+            Logger.warn("Invalid line number: " + lineNumber + " for file: " + filePath);
+            return;
+        }
+
+        // Calculate line offsets
+        int lineStartOffset = document.getLineStartOffset(lineNumber);
+        int lineEndOffset = document.getLineEndOffset(lineNumber);
+
+        // Create highlight attributes
+        TextAttributes attributes = new TextAttributes();
+        attributes.setBackgroundColor(ColorSchemeProvider.getHighlightJBColor());
+
+        // Add highlight to the document's markup so every editor showing the file (e.g. split panes) gets it
+        MarkupModel markupModel = DocumentMarkupModel.forDocument(document, project, true);
+        RangeHighlighter highlighter = markupModel.addRangeHighlighter(
+            lineStartOffset,
+            lineEndOffset,
+            HighlighterLayer.SELECTION - 1,  // Just below selection layer
+            attributes,
+            HighlighterTargetArea.LINES_IN_RANGE  // Full-width highlighting
+        );
+
+        // Store highlighter
+        highlightersByFile.computeIfAbsent(filePath, k -> new ArrayList<>()).add(highlighter);
+    }
+
+    private static void disposeHighlighters(List<RangeHighlighter> highlighters) {
+        if (highlighters == null) {
+            return;
+        }
+        for (RangeHighlighter highlighter : highlighters) {
+            if (highlighter.isValid()) {
+                highlighter.dispose();
             }
-        });
+        }
     }
 
     /**
@@ -97,6 +185,7 @@ public class HighlightManager {
      * @param filePath Absolute path to the file
      */
     public void clearHighlights(String filePath) {
+        pendingLines.remove(filePath);
         runOnUiThread(() -> {
             List<RangeHighlighter> highlighters = highlightersByFile.remove(filePath);
             if (highlighters != null) {
@@ -114,6 +203,7 @@ public class HighlightManager {
      * Remove all highlights from all files.
      */
     public void clearAllHighlights() {
+        pendingLines.clear();
         runOnUiThread(() -> {
             int totalCleared = 0;
             for (Map.Entry<String, List<RangeHighlighter>> entry : highlightersByFile.entrySet()) {
@@ -11,6 +11,7 @@ import org.jetbrains.annotations.NotNull;
 /**
  * Listens for active file changes in the editor.
  * Detects when the user switches between files and notifies the Code Awareness backend via ActiveFileTracker.
+ * Opening, closing and switching files in any splitter also refreshes the VisibleEditorTracker.
  */
 public class ActiveFileListener implements FileEditorManagerListener {
 
@@ -34,6 +35,30 @@ public class ActiveFileListener implements FileEditorManagerListener {
                 // No file selected (all files closed)
                 projectService.getActiveFileTracker().notifyActiveFileChanged(null);
             }
+
+            // Other splitters may show files that need highlights too
+            projectService.getVisibleEditorTracker().onVisibleEditorsChanged();
+        }
+    }
+
+    @Override
+    public void fileOpened(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+        notifyVisibleEditorsChanged(source.getProject());
+    }
+
+    @Override
+    public void fileClosed(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+        notifyVisibleEditorsChanged(source.getProject());
+    }
+
+    private void notifyVisibleEditorsChanged(Project project) {
+        if (project == null || project.isDisposed()) {
+            return;
+        }
+
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+        if (projectService != null) {
+            projectService.getVisibleEditorTracker().onVisibleEditorsChanged();
         }
     }
 }
@@ -1,24 +1,45 @@
 package com.codeawareness.pycharm.listeners;
 
 import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.vfs.FileResolver;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.BulkFileListener;
 import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Listens for file changes in the virtual file system.
  * Detects file saves and notifies the Code Awareness backend via FileMonitor.
+ * Deletes, moves and renames drop the affected paths from each project's FileResolver, and
+ * any change lets the resolvers look up paths they found missing again.
  */
 public class FileChangeListener implements BulkFileListener {
 
+    @Override
+    public void before(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+            // Before the event is applied, getPath() is still the old path
+            if (event instanceof VFileDeleteEvent || event instanceof VFileMoveEvent
+                || (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename())) {
+                invalidateResolvedPath(event.getPath());
+            }
+        }
+    }
+
     @Override
     public void after(@NotNull List<? extends VFileEvent> events) {
+        if (!events.isEmpty()) {
+            forEachFileResolver(FileResolver::onVfsChanged);
+        }
         for (VFileEvent event : events) {
             // We're interested in content changes (file saves)
             if (event instanceof VFileContentChangeEvent) {
@@ -47,6 +68,26 @@ public class FileChangeListener implements BulkFileListener {
         }
     }
 
+    /**
+     * Drop a path from every project's resolver. Peer temp files live outside the projects,
+     * so this does not look for the owning project.
+     */
+    private void invalidateResolvedPath(String path) {
+        forEachFileResolver(resolver -> resolver.invalidate(path));
+    }
+
+    private void forEachFileResolver(Consumer<FileResolver> action) {
+        for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+            if (project.isDisposed()) {
+                continue;
+            }
+            CodeAwarenessProjectService projectService = project.getServiceIfCreated(CodeAwarenessProjectService.class);
+            if (projectService != null) {
+                action.accept(projectService.getFileResolver());
+            }
+        }
+    }
+
     /**
      * Find the project that contains the given file.
      */
@@ -3,6 +3,10 @@ package com.codeawareness.pycharm.monitoring;
 import com.codeawareness.pycharm.CodeAwarenessApplicationService;
 import com.codeawareness.pycharm.communication.Message;
 import com.codeawareness.pycharm.communication.MessageBuilder;
+import com.codeawareness.pycharm.communication.OutboundJournal;
+import com.codeawareness.pycharm.scheduling.ScheduledTask;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
 import com.codeawareness.pycharm.utils.Logger;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Editor;
@@ -14,10 +18,13 @@ import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 /**
  * Tracks the currently active file in the editor.
@@ -25,33 +32,46 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class ActiveFileTracker implements FileEditorManagerListener {
 
+    private static final int MAX_RECENT_FILES = 10;
+
     private final Project project;
-    private final ScheduledExecutorService scheduler;
-    private final long debounceDelayMs;
+    private final TaskGroup tasks;
+    private final LongSupplier debounceDelayMs;
     private final AtomicReference<String> currentActiveFile = new AtomicReference<>(null);
-    private final AtomicReference<Runnable> pendingNotification = new AtomicReference<>(null);
+    private final AtomicReference<ScheduledTask> pendingNotification = new AtomicReference<>(null);
+    private final Deque<VirtualFile> recentFiles = new ArrayDeque<>();
+    // Whether active-path responses name their file; until they do, answers to a batch can't be told apart
+    private final AtomicBoolean responsesNameFiles = new AtomicBoolean(false);
 
     /**
-     * Create a new active file tracker with default debounce delay (300ms).
+     * Create a new active file tracker whose debounce delay follows the {@link AdaptiveDebounceController}.
      */
-    public ActiveFileTracker(Project project) {
-        this(project, 300);
+    public ActiveFileTracker(Project project, TaskGroup tasks) {
+        this(project, tasks,
+            () -> AdaptiveDebounceController.getInstance().getDelayMs(AdaptiveDebounceController.Channel.ACTIVE_PATH));
     }
 
     /**
      * Create a new active file tracker with custom debounce delay.
      */
-    public ActiveFileTracker(Project project, long debounceDelayMs) {
+    public ActiveFileTracker(Project project, TaskGroup tasks, long debounceDelayMs) {
+        this(project, tasks, () -> debounceDelayMs);
+    }
+
+    private ActiveFileTracker(Project project, TaskGroup tasks, LongSupplier debounceDelayMs) {
         this.project = project;
+        this.tasks = tasks;
         this.debounceDelayMs = debounceDelayMs;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread thread = new Thread(r, "ActiveFileTracker-" + project.getName());
-            thread.setDaemon(true);
-            return thread;
-        });
+    }
 
-        // Track the currently selected file on initialization
+    /**
+     * Start tracking the file that is already selected, which no selection event will report.
+     */
+    public void trackSelectedFile() {
         ApplicationManager.getApplication().invokeLater(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
             VirtualFile[] selectedFiles = FileEditorManager.getInstance(project).getSelectedFiles();
             if (selectedFiles.length > 0) {
                 notifyActiveFileChanged(selectedFiles[0]);
@@ -100,25 +120,121 @@ public class ActiveFileTracker implements FileEditorManagerListener {
         if (projectService != null) {
             projectService.setActiveFile(file);
             Logger.debug("Updated active file in project service: " + (filePath != null ? filePath : "<none>"));
+
+            // The user is switching tabs: speculative requests must not compete with the real one
+            projectService.getActivePathPrefetcher().cancel();
+
+            // Paint cached highlights right away; the fresh response reconciles them when it arrives
+            List<Integer> cachedLines = projectService.getActivePathCache()
+                .get(projectService.createActivePathCacheKey(file));
+            if (cachedLines != null) {
+                Logger.debug("Applying " + cachedLines.size() + " cached highlights to: " + filePath);
+                projectService.getHighlightManager().setHighlights(filePath, cachedLines);
+            }
+        }
+
+        if (file != null) {
+            rememberRecentFile(file);
+        }
+
+        scheduleNotification(filePath, file != null ? file.getName() : null);
+    }
+
+    /**
+     * Re-send active-path for the focused file and every other visible editor,
+     * e.g. after a split pane started showing a file with no cached highlights.
+     */
+    public void refreshVisibleEditors() {
+        String filePath = currentActiveFile.get();
+        if (filePath != null) {
+            scheduleNotification(filePath, new java.io.File(filePath).getName());
+        }
+    }
+
+    /**
+     * Called for every active-path response with whether it named the file it is for.
+     * Other visible editors are only requested along with the focused file while responses
+     * do; the first such response asks for the editors left out until then.
+     */
+    public void onActivePathResponse(boolean namesFile) {
+        if (!namesFile) {
+            responsesNameFiles.set(false);
+            return;
+        }
+        if (responsesNameFiles.getAndSet(true)) {
+            return;
         }
+        com.codeawareness.pycharm.CodeAwarenessProjectService projectService =
+            project.getService(com.codeawareness.pycharm.CodeAwarenessProjectService.class);
+        if (projectService != null &&
+            !projectService.getVisibleEditorTracker().getUncachedFiles(currentActiveFile.get()).isEmpty()) {
+            refreshVisibleEditors();
+        }
+    }
+
+    /**
+     * Check if other visible editors are requested along with the focused file.
+     */
+    public boolean isRequestingVisibleEditors() {
+        return responsesNameFiles.get();
+    }
+
+    /**
+     * Schedule a debounced active-path notification, replacing any pending one.
+     */
+    private void scheduleNotification(String filePath, String fileName) {
+        com.codeawareness.pycharm.CodeAwarenessProjectService projectService =
+            project.getService(com.codeawareness.pycharm.CodeAwarenessProjectService.class);
+
+        AtomicReference<ScheduledTask> self = new AtomicReference<>();
+        ScheduledTask notificationTask = tasks.schedule(SchedulerLane.ACTIVE_PATH, () -> {
+            pendingNotification.compareAndSet(self.get(), null);
+            if (filePath != null) {
+                sendVisibleActivePathMessages(filePath, fileName);
+            } else {
+                sendActivePathMessage(null, null);
+            }
+
+            // Once the user settled on a file, warm the cache for the files they are likely to visit next
+            if (projectService != null && filePath != null) {
+                projectService.getActivePathPrefetcher().schedulePass();
+            }
+        }, debounceDelayMs.getAsLong());
+        self.set(notificationTask);
 
         // Cancel any pending notification
-        Runnable existingTask = pendingNotification.getAndSet(null);
+        ScheduledTask existingTask = pendingNotification.getAndSet(notificationTask);
+        if (existingTask != null) {
+            existingTask.cancel();
+        }
+    }
 
-        // Schedule new notification with debounce
-        Runnable notificationTask = () -> {
-            pendingNotification.set(null);
-            sendActivePathMessage(filePath, file != null ? file.getName() : null);
-        };
+    /**
+     * Move a file to the front of the most-recently-used list.
+     */
+    private void rememberRecentFile(VirtualFile file) {
+        synchronized (recentFiles) {
+            recentFiles.removeIf(f -> f.equals(file));
+            recentFiles.addFirst(file);
+            while (recentFiles.size() > MAX_RECENT_FILES) {
+                recentFiles.removeLast();
+            }
+        }
+    }
 
-        pendingNotification.set(notificationTask);
-        scheduler.schedule(notificationTask, debounceDelayMs, TimeUnit.MILLISECONDS);
+    /**
+     * Get the most recently used files, most recent first.
+     */
+    public List<VirtualFile> getRecentFiles() {
+        synchronized (recentFiles) {
+            return new ArrayList<>(recentFiles);
+        }
     }
 
     /**
      * Check if the file belongs to this project.
      */
-    private boolean isProjectFile(VirtualFile file) {
+    public boolean isProjectFile(VirtualFile file) {
         String projectBasePath = project.getBasePath();
         if (projectBasePath == null) {
             return false;
@@ -147,13 +263,16 @@ public class ActiveFileTracker implements FileEditorManagerListener {
     /**
      * Send active-path message to backend.
      */
-    private void sendActivePathMessage(String filePath, String fileName) {
+    void sendActivePathMessage(String filePath, String fileName) {
+        CodeAwarenessApplicationService appService =
+            ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+        if (appService == null) {
+            return;
+        }
         try {
-            CodeAwarenessApplicationService appService =
-                ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
-
-            if (appService == null || !appService.isConnected()) {
-                Logger.debug("Cannot send active-path: not connected");
+            if (!appService.isConnected()) {
+                Logger.debug("Not connected - recording active-path for later");
+                appService.recordUnsent(OutboundJournal.Kind.ACTIVE_PATH, filePath, fileName);
                 return;
             }
 
@@ -166,15 +285,116 @@ public class ActiveFileTracker implements FileEditorManagerListener {
 
             // Send via IPC connection
             if (appService.getIpcConnection() != null) {
+                recordRequestedVersion(filePath);
                 appService.getIpcConnection().sendMessage(message);
                 Logger.debug("Sent active-path message: " + (filePath != null ? filePath : "<none>"));
             }
 
+        } catch (IOException e) {
+            Logger.warn("Failed to send active-path message: " + e.getMessage());
+            appService.recordUnsent(OutboundJournal.Kind.ACTIVE_PATH, filePath, fileName);
         } catch (Exception e) {
             Logger.warn("Failed to send active-path message", e);
         }
     }
 
+    /**
+     * Send an active-path request that is only worth sending right now, such as a prefetch.
+     * Unlike {@link #sendActivePathMessage}, nothing is journaled for replay after a reconnect.
+     *
+     * @return true if the request was written to the backend
+     */
+    boolean sendSpeculativeActivePathMessage(String filePath, String fileName) {
+        CodeAwarenessApplicationService appService =
+            ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+        if (appService == null || !appService.isConnected() || appService.getIpcConnection() == null) {
+            return false;
+        }
+        try {
+            recordRequestedVersion(filePath);
+            appService.getIpcConnection().sendMessage(
+                MessageBuilder.buildActivePath(appService.getClientGuid(), filePath, fileName));
+            Logger.debug("Sent speculative active-path message: " + filePath);
+            return true;
+        } catch (IOException e) {
+            Logger.debug("Failed to send speculative active-path message: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Check whether the backend connection is up, so requests are sent rather than journaled.
+     */
+    boolean isConnected() {
+        CodeAwarenessApplicationService appService =
+            ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+        return appService != null && appService.isConnected();
+    }
+
+    /**
+     * Send active-path for every visible editor that has no cached highlights for its
+     * current version, followed by the focused file, in a single write to the backend.
+     * Backends that don't name the file in their responses are only asked about the focused file.
+     */
+    void sendVisibleActivePathMessages(String filePath, String fileName) {
+        CodeAwarenessApplicationService appService =
+            ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+        if (appService == null) {
+            return;
+        }
+        try {
+            if (!appService.isConnected()) {
+                // Other visible editors are re-sent on reconnect; only the focused file is worth recording
+                Logger.debug("Not connected - recording active-path for later");
+                appService.recordUnsent(OutboundJournal.Kind.ACTIVE_PATH, filePath, fileName);
+                return;
+            }
+
+            com.codeawareness.pycharm.CodeAwarenessProjectService projectService =
+                project.getService(com.codeawareness.pycharm.CodeAwarenessProjectService.class);
+            if (projectService == null || appService.getIpcConnection() == null) {
+                return;
+            }
+
+            List<Message> messages = new ArrayList<>();
+            if (responsesNameFiles.get()) {
+                for (VirtualFile file : projectService.getVisibleEditorTracker().getUncachedFiles(filePath)) {
+                    recordRequestedVersion(file.getPath());
+                    messages.add(MessageBuilder.buildActivePath(appService.getClientGuid(), file.getPath(), file.getName()));
+                }
+            }
+
+            // The focused file goes last so the backend ends up treating it as the active one
+            recordRequestedVersion(filePath);
+            messages.add(MessageBuilder.buildActivePath(appService.getClientGuid(), filePath,
+                fileName != null ? fileName : ""));
+
+            appService.getIpcConnection().sendMessages(messages);
+            Logger.debug("Sent active-path for " + messages.size() + " visible editor(s), focused: " + filePath);
+
+        } catch (IOException e) {
+            Logger.warn("Failed to send active-path messages: " + e.getMessage());
+            appService.recordUnsent(OutboundJournal.Kind.ACTIVE_PATH, filePath, fileName);
+        } catch (Exception e) {
+            Logger.warn("Failed to send active-path messages", e);
+        }
+    }
+
+    /**
+     * Remember which version of the file the backend is asked about,
+     * so its answer is cached against that version even if the document changes meanwhile.
+     */
+    private void recordRequestedVersion(String filePath) {
+        if (filePath == null) {
+            return;
+        }
+        com.codeawareness.pycharm.CodeAwarenessProjectService projectService =
+            project.getService(com.codeawareness.pycharm.CodeAwarenessProjectService.class);
+        if (projectService != null) {
+            projectService.getActivePathCache().recordRequest(projectService.createActivePathCacheKey(filePath));
+        }
+    }
+
     /**
      * Get the currently active file path.
      */
@@ -189,17 +409,9 @@ public class ActiveFileTracker implements FileEditorManagerListener {
         Logger.debug("Shutting down ActiveFileTracker for project: " + project.getName());
 
         // Cancel any pending notification
-        pendingNotification.set(null);
-
-        // Shutdown scheduler
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
+        ScheduledTask existingTask = pendingNotification.getAndSet(null);
+        if (existingTask != null) {
+            existingTask.cancel();
         }
     }
 }
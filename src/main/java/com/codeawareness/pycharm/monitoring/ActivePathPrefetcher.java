@@ -0,0 +1,253 @@
+package com.codeawareness.pycharm.monitoring;
+
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.highlighting.ActivePathCache;
+import com.codeawareness.pycharm.scheduling.ScheduledTask;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
+import com.codeawareness.pycharm.utils.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Speculatively requests highlight data for files the user is likely to switch to next:
+ * open-but-unfocused editor tabs (nearest neighbours of the selected tab first) and
+ * the most recently used files. Responses land in the {@link ActivePathCache}, so
+ * switching to one of those files paints highlights without waiting for the backend.
+ *
+ * Prefetching runs at low priority: a pass starts only after the user has settled on a
+ * file, sends at most one request per interval, and is abandoned on the next tab switch.
+ * Passes only run while connected to a backend whose responses name their file; any other
+ * answer to a speculative request could not be told apart from the focused file's. Until
+ * the speculative requests are answered (or time out), the handler is told which responses
+ * belong to them.
+ */
+public class ActivePathPrefetcher {
+
+    private static final long IDLE_DELAY_MS = 1000;       // Wait for the user to settle on a file
+    private static final long REQUEST_INTERVAL_MS = 250;  // Rate limit between prefetch requests
+    private static final int MAX_REQUESTS_PER_PASS = 8;
+    private static final long RESPONSE_TIMEOUT_MS = 5000; // Stop waiting for answers the backend dropped
+
+    private final Project project;
+    private final TaskGroup tasks;
+    private final ActivePathCache cache;
+    private final AtomicReference<ScheduledTask> pendingTask = new AtomicReference<>(null);
+    private final AtomicInteger generation = new AtomicInteger();
+    private final long responseTimeoutMs;
+    // Speculative requests sent but not answered yet; responses come back in request order
+    private int awaitingResponses = 0;
+    private long awaitingUntil = 0;
+
+    public ActivePathPrefetcher(Project project, TaskGroup tasks, ActivePathCache cache) {
+        this(project, tasks, cache, RESPONSE_TIMEOUT_MS);
+    }
+
+    ActivePathPrefetcher(Project project, TaskGroup tasks, ActivePathCache cache, long responseTimeoutMs) {
+        this.project = project;
+        this.tasks = tasks;
+        this.cache = cache;
+        this.responseTimeoutMs = responseTimeoutMs;
+    }
+
+    /**
+     * Schedule a prefetch pass once the user has been idle for a moment.
+     * Any pass already in progress is abandoned.
+     */
+    public void schedulePass() {
+        int passGeneration = cancelAndAdvance();
+        schedule(() -> runPass(passGeneration), IDLE_DELAY_MS);
+    }
+
+    /**
+     * Abandon the current pass, if any.
+     */
+    public void cancel() {
+        cancelAndAdvance();
+    }
+
+    /**
+     * Check if prefetch requests may still be awaiting a response.
+     * Responses that cannot be attributed to a file are ambiguous while this is true.
+     * Abandoning a pass does not end this; its requests are still on their way.
+     */
+    public synchronized boolean isPrefetching() {
+        expireAwaitedResponses();
+        return awaitingResponses > 0;
+    }
+
+    /**
+     * Account for an active-path response. Must be called for every response, in arrival order.
+     *
+     * @return true if the response answers a prefetch request rather than one for the focused file
+     */
+    public synchronized boolean onActivePathResponse() {
+        expireAwaitedResponses();
+        if (awaitingResponses == 0) {
+            return false;
+        }
+        awaitingResponses--;
+        return true;
+    }
+
+    private synchronized void onPrefetchSent() {
+        awaitingResponses++;
+        awaitingUntil = System.currentTimeMillis() + responseTimeoutMs;
+    }
+
+    private synchronized void onPrefetchNotSent() {
+        if (awaitingResponses > 0) {
+            awaitingResponses--;
+        }
+    }
+
+    private void expireAwaitedResponses() {
+        if (awaitingResponses > 0 && System.currentTimeMillis() > awaitingUntil) {
+            Logger.debug("Gave up waiting for " + awaitingResponses + " prefetch response(s)");
+            awaitingResponses = 0;
+        }
+    }
+
+    private int cancelAndAdvance() {
+        int next = generation.incrementAndGet();
+        ScheduledTask task = pendingTask.getAndSet(null);
+        if (task != null) {
+            task.cancel();
+        }
+        return next;
+    }
+
+    private void schedule(Runnable action, long delayMs) {
+        ScheduledTask task = tasks.schedule(SchedulerLane.PREFETCH, action, delayMs);
+        ScheduledTask previous = pendingTask.getAndSet(task);
+        if (previous != null && previous != task) {
+            previous.cancel();
+        }
+    }
+
+    private void runPass(int passGeneration) {
+        if (passGeneration != generation.get() || project.isDisposed()) {
+            return;
+        }
+
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+        if (projectService == null || !canPrefetch(projectService.getActiveFileTracker())) {
+            return;
+        }
+
+        List<VirtualFile> candidates = collectCandidates(projectService);
+        if (candidates.isEmpty()) {
+            Logger.debug("Nothing to prefetch for project: " + project.getName());
+            return;
+        }
+
+        Logger.debug("Prefetching highlights for " + candidates.size() + " file(s) in project: " + project.getName());
+        sendNext(passGeneration, candidates, 0);
+    }
+
+    private void sendNext(int passGeneration, List<VirtualFile> candidates, int index) {
+        if (passGeneration != generation.get() || project.isDisposed()) {
+            return;
+        }
+
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+        if (projectService == null) {
+            return;
+        }
+        ActiveFileTracker tracker = projectService.getActiveFileTracker();
+        if (!canPrefetch(tracker)) {
+            Logger.debug("Abandoning prefetch pass for project: " + project.getName());
+            return;
+        }
+
+        if (index >= candidates.size()) {
+            // Leave the backend pointing at the file the user is actually looking at
+            VirtualFile activeFile = projectService.getActiveFile();
+            if (activeFile != null && activeFile.isValid()) {
+                tracker.sendActivePathMessage(activeFile.getPath(), activeFile.getName());
+            }
+            return;
+        }
+
+        VirtualFile file = candidates.get(index);
+        if (file.isValid() && !cache.contains(projectService.createActivePathCacheKey(file))) {
+            Logger.trace("Prefetching highlights for: " + file.getPath());
+            // Counted first, so the answer cannot arrive before it is expected
+            onPrefetchSent();
+            if (!tracker.sendSpeculativeActivePathMessage(file.getPath(), file.getName())) {
+                onPrefetchNotSent();
+                return;
+            }
+        }
+
+        schedule(() -> sendNext(passGeneration, candidates, index + 1), REQUEST_INTERVAL_MS);
+    }
+
+    /**
+     * Prefetch only while its answers can be told apart and sent right away; nothing
+     * speculative is worth replaying after a reconnect.
+     */
+    private static boolean canPrefetch(ActiveFileTracker tracker) {
+        return tracker.isRequestingVisibleEditors() && tracker.isConnected();
+    }
+
+    /**
+     * Collect uncached project files worth prefetching: open tabs ordered by distance
+     * from the selected tab, then recently used files.
+     */
+    private List<VirtualFile> collectCandidates(CodeAwarenessProjectService projectService) {
+        ActiveFileTracker tracker = projectService.getActiveFileTracker();
+        String activePath = tracker.getCurrentActiveFile();
+        Map<String, VirtualFile> candidates = new LinkedHashMap<>();
+
+        VirtualFile[] openFiles = FileEditorManager.getInstance(project).getOpenFiles();
+        int activeIndex = 0;
+        for (int i = 0; i < openFiles.length; i++) {
+            if (openFiles[i].getPath().equals(activePath)) {
+                activeIndex = i;
+                break;
+            }
+        }
+
+        List<Integer> tabOrder = new ArrayList<>();
+        for (int i = 0; i < openFiles.length; i++) {
+            tabOrder.add(i);
+        }
+        int selectedIndex = activeIndex;
+        tabOrder.sort(Comparator.comparingInt(i -> Math.abs(i - selectedIndex)));
+
+        for (int i : tabOrder) {
+            addCandidate(candidates, openFiles[i], activePath, projectService);
+        }
+        for (VirtualFile file : tracker.getRecentFiles()) {
+            addCandidate(candidates, file, activePath, projectService);
+        }
+
+        List<VirtualFile> result = new ArrayList<>(candidates.values());
+        return result.size() > MAX_REQUESTS_PER_PASS ? result.subList(0, MAX_REQUESTS_PER_PASS) : result;
+    }
+
+    private void addCandidate(Map<String, VirtualFile> candidates, VirtualFile file, String activePath,
+                              CodeAwarenessProjectService projectService) {
+        if (file == null || !file.isValid() || file.isDirectory()) {
+            return;
+        }
+        String path = file.getPath();
+        if (path.equals(activePath) || candidates.containsKey(path) ||
+            cache.contains(projectService.createActivePathCacheKey(file))) {
+            return;
+        }
+        if (projectService.getActiveFileTracker().isProjectFile(file)) {
+            candidates.put(path, file);
+        }
+    }
+}
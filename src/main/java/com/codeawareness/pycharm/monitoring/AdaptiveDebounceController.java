@@ -0,0 +1,163 @@
+package com.codeawareness.pycharm.monitoring;
+
+import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.settings.CodeAwarenessSettings;
+import com.codeawareness.pycharm.utils.Logger;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Application-level controller of the debounce delays used by {@link ActiveFileTracker}
+ * and {@link FileMonitor}. It measures the round-trip time of active-path and file-saved
+ * requests on the IPC connection and lets a {@link DebounceWindow} per channel shrink or
+ * grow within the bounds configured in {@link CodeAwarenessSettings}. The bounds are read
+ * from the settings whenever a window is used, so edits apply without a restart.
+ */
+@Service
+public final class AdaptiveDebounceController {
+
+    private static final int MAX_PENDING_REQUESTS = 64;
+    private static final long STALE_REQUEST_MS = 30000; // Requests the backend never answered
+
+    /**
+     * Debounced request types whose latency is measured.
+     */
+    public enum Channel {
+        ACTIVE_PATH("active-path"),
+        FILE_SAVED("file-saved");
+
+        private final String action;
+
+        Channel(String action) {
+            this.action = action;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        static Channel forMessage(Message message) {
+            if (message == null || !"code".equals(message.getDomain())) {
+                return null;
+            }
+            for (Channel channel : values()) {
+                if (channel.action.equals(message.getAction())) {
+                    return channel;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final CodeAwarenessSettings settings;
+    private final Map<Channel, DebounceWindow> windows = new EnumMap<>(Channel.class);
+    private final Map<Channel, Deque<Long>> pendingRequests = new EnumMap<>(Channel.class);
+
+    public AdaptiveDebounceController() {
+        this(CodeAwarenessSettings.getInstance());
+    }
+
+    /**
+     * @param settings Settings to take the delays and their bounds from, or null for the defaults
+     */
+    public AdaptiveDebounceController(CodeAwarenessSettings settings) {
+        this.settings = settings != null ? settings : new CodeAwarenessSettings();
+
+        windows.put(Channel.ACTIVE_PATH, new DebounceWindow(this.settings.activeFileDebounceMs,
+            this.settings.activeFileDebounceMinMs, this.settings.activeFileDebounceMaxMs));
+        windows.put(Channel.FILE_SAVED, new DebounceWindow(this.settings.fileSaveDebounceMs,
+            this.settings.fileSaveDebounceMinMs, this.settings.fileSaveDebounceMaxMs));
+        for (Channel channel : Channel.values()) {
+            pendingRequests.put(channel, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Get the application-level controller instance.
+     */
+    public static AdaptiveDebounceController getInstance() {
+        return ApplicationManager.getApplication().getService(AdaptiveDebounceController.class);
+    }
+
+    /**
+     * Get the debounce delay to use for the next notification on a channel.
+     * Falls back to the fixed delay from the settings when adaptation is turned off.
+     */
+    public long getDelayMs(Channel channel) {
+        if (!settings.adaptiveDebounceEnabled) {
+            return channel == Channel.ACTIVE_PATH ? settings.activeFileDebounceMs : settings.fileSaveDebounceMs;
+        }
+        return getWindow(channel).getDelayMs();
+    }
+
+    /**
+     * Get the adaptive window of a channel (current delay, smoothed round trip, history).
+     */
+    public DebounceWindow getWindow(Channel channel) {
+        DebounceWindow window = windows.get(channel);
+        if (channel == Channel.ACTIVE_PATH) {
+            window.setBounds(settings.activeFileDebounceMinMs, settings.activeFileDebounceMaxMs);
+        } else {
+            window.setBounds(settings.fileSaveDebounceMinMs, settings.fileSaveDebounceMaxMs);
+        }
+        return window;
+    }
+
+    /**
+     * Record the send time of an outgoing request.
+     */
+    public void onMessageSent(Message message) {
+        if (message.getFlow() != Message.Flow.REQ) {
+            return;
+        }
+        Channel channel = Channel.forMessage(message);
+        if (channel == null) {
+            return;
+        }
+
+        Deque<Long> pending = pendingRequests.get(channel);
+        synchronized (pending) {
+            if (pending.size() >= MAX_PENDING_REQUESTS) {
+                pending.removeFirst();
+            }
+            pending.addLast(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Match an incoming response with the oldest outstanding request of its channel.
+     * Gardener answers requests of one channel in order, so FIFO matching is sufficient.
+     */
+    public void onMessageReceived(Message message) {
+        if (message.getFlow() != Message.Flow.RES && message.getFlow() != Message.Flow.ERR) {
+            return;
+        }
+        Channel channel = Channel.forMessage(message);
+        if (channel == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Long sentAt;
+        Deque<Long> pending = pendingRequests.get(channel);
+        synchronized (pending) {
+            while (!pending.isEmpty() && now - pending.peekFirst() > STALE_REQUEST_MS) {
+                pending.removeFirst();
+            }
+            sentAt = pending.pollFirst();
+        }
+        if (sentAt == null) {
+            return;
+        }
+
+        DebounceWindow window = getWindow(channel);
+        window.recordRoundTrip(now - sentAt);
+        Logger.trace(channel.getAction() + " round trip: " + (now - sentAt) + "ms, debounce now " +
+            window.getDelayMs() + "ms");
+    }
+}
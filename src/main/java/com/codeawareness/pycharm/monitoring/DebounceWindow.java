@@ -0,0 +1,134 @@
+package com.codeawareness.pycharm.monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Debounce delay of a single channel that follows the backend's measured round-trip time.
+ * Round trips are smoothed with an exponentially weighted moving average; the delay is a
+ * multiple of that average clamped to [min, max]. A fast backend therefore gets short
+ * windows (snappier tab switches), a slow one gets long windows (fewer requests queued up).
+ */
+public class DebounceWindow {
+
+    private static final double SMOOTHING = 0.2;      // Weight of the newest round-trip sample
+    private static final double RTT_MULTIPLIER = 2.0; // Delay relative to the smoothed round trip
+    private static final int HISTORY_SIZE = 32;
+
+    private long minDelayMs;
+    private long maxDelayMs;
+    private final long[] history = new long[HISTORY_SIZE];
+    private int historyStart = 0;
+    private int historyCount = 0;
+    private double averageRoundTripMs = -1;
+    private long sampleCount = 0;
+    private long currentDelayMs;
+
+    /**
+     * @param initialDelayMs Delay used until the first round trip is measured
+     * @param minDelayMs Lower bound of the delay
+     * @param maxDelayMs Upper bound of the delay
+     */
+    public DebounceWindow(long initialDelayMs, long minDelayMs, long maxDelayMs) {
+        this.minDelayMs = Math.max(0, Math.min(minDelayMs, maxDelayMs));
+        this.maxDelayMs = Math.max(this.minDelayMs, maxDelayMs);
+        this.currentDelayMs = clamp(initialDelayMs);
+        addToHistory(currentDelayMs);
+    }
+
+    /**
+     * Change the bounds, e.g. after the settings were edited, and clamp the current delay to them.
+     * Round trips measured so far are kept.
+     */
+    public synchronized void setBounds(long minDelayMs, long maxDelayMs) {
+        long min = Math.max(0, Math.min(minDelayMs, maxDelayMs));
+        long max = Math.max(min, maxDelayMs);
+        if (min == this.minDelayMs && max == this.maxDelayMs) {
+            return;
+        }
+        this.minDelayMs = min;
+        this.maxDelayMs = max;
+
+        long delay = averageRoundTripMs < 0
+            ? clamp(currentDelayMs)
+            : clamp(Math.round(averageRoundTripMs * RTT_MULTIPLIER));
+        if (delay != currentDelayMs) {
+            currentDelayMs = delay;
+            addToHistory(delay);
+        }
+    }
+
+    /**
+     * Feed a measured round-trip time and adjust the delay.
+     */
+    public synchronized void recordRoundTrip(long roundTripMs) {
+        if (roundTripMs < 0) {
+            return;
+        }
+
+        averageRoundTripMs = averageRoundTripMs < 0
+            ? roundTripMs
+            : SMOOTHING * roundTripMs + (1 - SMOOTHING) * averageRoundTripMs;
+        sampleCount++;
+
+        long delay = clamp(Math.round(averageRoundTripMs * RTT_MULTIPLIER));
+        if (delay != currentDelayMs) {
+            currentDelayMs = delay;
+            addToHistory(delay);
+        }
+    }
+
+    /**
+     * Get the delay to use for the next debounced notification.
+     */
+    public synchronized long getDelayMs() {
+        return currentDelayMs;
+    }
+
+    /**
+     * Get the smoothed round-trip time, or -1 if nothing was measured yet.
+     */
+    public synchronized long getAverageRoundTripMs() {
+        return averageRoundTripMs < 0 ? -1 : Math.round(averageRoundTripMs);
+    }
+
+    /**
+     * Get the number of round trips measured so far.
+     */
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Get the most recent delay values, oldest first.
+     */
+    public synchronized List<Long> getHistory() {
+        List<Long> result = new ArrayList<>(historyCount);
+        for (int i = 0; i < historyCount; i++) {
+            result.add(history[(historyStart + i) % HISTORY_SIZE]);
+        }
+        return result;
+    }
+
+    public synchronized long getMinDelayMs() {
+        return minDelayMs;
+    }
+
+    public synchronized long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    private void addToHistory(long delay) {
+        if (historyCount < HISTORY_SIZE) {
+            history[(historyStart + historyCount) % HISTORY_SIZE] = delay;
+            historyCount++;
+        } else {
+            history[historyStart] = delay;
+            historyStart = (historyStart + 1) % HISTORY_SIZE;
+        }
+    }
+
+    private long clamp(long delay) {
+        return Math.max(minDelayMs, Math.min(maxDelayMs, delay));
+    }
+}
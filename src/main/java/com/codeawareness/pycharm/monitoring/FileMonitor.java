@@ -3,6 +3,10 @@ package com.codeawareness.pycharm.monitoring;
 import com.codeawareness.pycharm.CodeAwarenessApplicationService;
 import com.codeawareness.pycharm.communication.Message;
 import com.codeawareness.pycharm.communication.MessageBuilder;
+import com.codeawareness.pycharm.communication.OutboundJournal;
+import com.codeawareness.pycharm.scheduling.ScheduledTask;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
 import com.codeawareness.pycharm.utils.Logger;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
@@ -11,9 +15,8 @@ import com.intellij.openapi.vfs.VirtualFile;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 /**
  * Monitors file changes and notifies the Code Awareness backend.
@@ -21,25 +24,31 @@ import java.util.concurrent.TimeUnit;
  */
 public class FileMonitor {
 
-    private static final int DEFAULT_DEBOUNCE_DELAY_MS = 500;
-
     private final Project project;
-    private final ScheduledExecutorService scheduler;
-    private final Map<String, Runnable> pendingNotifications = new ConcurrentHashMap<>();
-    private final int debounceDelayMs;
+    private final TaskGroup tasks;
+    private final Map<String, ScheduledTask> pendingNotifications = new ConcurrentHashMap<>();
+    private final LongSupplier debounceDelayMs;
 
-    public FileMonitor(Project project) {
-        this(project, DEFAULT_DEBOUNCE_DELAY_MS);
+    /**
+     * Create a file monitor scheduling its work in the given project task group.
+     * The debounce delay follows the {@link AdaptiveDebounceController}.
+     */
+    public FileMonitor(Project project, TaskGroup tasks) {
+        this(project, tasks,
+            () -> AdaptiveDebounceController.getInstance().getDelayMs(AdaptiveDebounceController.Channel.FILE_SAVED));
     }
 
-    public FileMonitor(Project project, int debounceDelayMs) {
+    /**
+     * Create a file monitor with a fixed debounce delay.
+     */
+    public FileMonitor(Project project, TaskGroup tasks, int debounceDelayMs) {
+        this(project, tasks, () -> debounceDelayMs);
+    }
+
+    private FileMonitor(Project project, TaskGroup tasks, LongSupplier debounceDelayMs) {
         this.project = project;
+        this.tasks = tasks;
         this.debounceDelayMs = debounceDelayMs;
-        this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
-            Thread thread = new Thread(r, "CodeAwareness-FileMonitor");
-            thread.setDaemon(true);
-            return thread;
-        });
     }
 
     /**
@@ -62,20 +71,28 @@ public class FileMonitor {
 
         Logger.debug("File saved: " + filePath);
 
+        // The backend recomputes highlights for the saved content, so cached answers are stale
+        com.codeawareness.pycharm.CodeAwarenessProjectService projectService =
+            project.getService(com.codeawareness.pycharm.CodeAwarenessProjectService.class);
+        if (projectService != null) {
+            projectService.getActivePathCache().invalidate(filePath);
+        }
+
         // Cancel any pending notification for this file
-        Runnable existingTask = pendingNotifications.remove(filePath);
-        if (existingTask != null) {
+        ScheduledTask existingTask = pendingNotifications.remove(filePath);
+        if (existingTask != null && existingTask.cancel()) {
             Logger.trace("Cancelled pending notification for: " + filePath);
         }
 
         // Schedule new notification with debounce
-        Runnable notificationTask = () -> {
-            pendingNotifications.remove(filePath);
+        AtomicReference<ScheduledTask> self = new AtomicReference<>();
+        ScheduledTask notificationTask = tasks.schedule(SchedulerLane.FILE_SAVED, () -> {
+            pendingNotifications.remove(filePath, self.get());
             sendFileSavedMessage(filePath, fileName);
-        };
+        }, debounceDelayMs.getAsLong());
+        self.set(notificationTask);
 
         pendingNotifications.put(filePath, notificationTask);
-        scheduler.schedule(notificationTask, debounceDelayMs, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -85,8 +102,12 @@ public class FileMonitor {
         CodeAwarenessApplicationService appService =
             ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
 
-        if (appService == null || !appService.isConnected()) {
-            Logger.debug("Not connected - skipping file-saved notification");
+        if (appService == null) {
+            return;
+        }
+        if (!appService.isConnected()) {
+            Logger.debug("Not connected - recording file-saved notification for later");
+            appService.recordUnsent(OutboundJournal.Kind.FILE_SAVED, filePath, fileName);
             return;
         }
 
@@ -101,6 +122,7 @@ public class FileMonitor {
             Logger.debug("Sent file-saved notification: " + fileName);
         } catch (IOException e) {
             Logger.warn("Failed to send file-saved notification: " + e.getMessage());
+            appService.recordUnsent(OutboundJournal.Kind.FILE_SAVED, filePath, fileName);
         }
     }
 
@@ -134,20 +156,21 @@ public class FileMonitor {
         return true;
     }
 
+    /**
+     * Get the number of saves waiting out their debounce.
+     */
+    public int getPendingNotificationCount() {
+        return pendingNotifications.size();
+    }
+
     /**
      * Shutdown the file monitor and cancel pending notifications.
      */
     public void shutdown() {
         Logger.debug("Shutting down file monitor");
-        pendingNotifications.clear();
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
+        for (ScheduledTask task : pendingNotifications.values()) {
+            task.cancel();
         }
+        pendingNotifications.clear();
     }
 }
@@ -0,0 +1,128 @@
+package com.codeawareness.pycharm.monitoring;
+
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.utils.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the files shown in every visible editor of the project, across splitters and
+ * detached editor windows, not only the focused one.
+ * When a file becomes visible again its cached highlights are painted right away, and
+ * files without cached data trigger a batched active-path request from {@link ActiveFileTracker}
+ * once the backend is known to name the file in each response.
+ */
+public class VisibleEditorTracker {
+
+    private final Project project;
+    private final ActiveFileTracker activeFileTracker;
+    private Set<String> visiblePaths = new HashSet<>();
+
+    public VisibleEditorTracker(Project project, ActiveFileTracker activeFileTracker) {
+        this.project = project;
+        this.activeFileTracker = activeFileTracker;
+    }
+
+    /**
+     * Get the project files currently shown in any editor, with the focused file last.
+     * Gardener treats the last active-path it receives as the active file, so
+     * the focused file must come last in a batch.
+     *
+     * @param focusedPath Path of the focused file, or null
+     */
+    public List<VirtualFile> getVisibleFiles(String focusedPath) {
+        Map<String, VirtualFile> files = new LinkedHashMap<>();
+        VirtualFile focused = null;
+
+        // Selected files of every splitter in every editor window
+        for (VirtualFile file : FileEditorManager.getInstance(project).getSelectedFiles()) {
+            if (file == null || !file.isValid() || file.isDirectory() || !activeFileTracker.isProjectFile(file)) {
+                continue;
+            }
+            if (file.getPath().equals(focusedPath)) {
+                focused = file;
+            } else {
+                files.putIfAbsent(file.getPath(), file);
+            }
+        }
+
+        List<VirtualFile> result = new ArrayList<>(files.values());
+        if (focused != null) {
+            result.add(focused);
+        }
+        return result;
+    }
+
+    /**
+     * Get the visible files other than the focused one that have no cached highlights
+     * for their current version.
+     *
+     * @param focusedPath Path of the focused file, or null
+     */
+    public List<VirtualFile> getUncachedFiles(String focusedPath) {
+        List<VirtualFile> result = new ArrayList<>();
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+        if (projectService == null) {
+            return result;
+        }
+        for (VirtualFile file : getVisibleFiles(focusedPath)) {
+            if (!file.getPath().equals(focusedPath) &&
+                !projectService.getActivePathCache().contains(projectService.createActivePathCacheKey(file))) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Called when editors are opened, closed or switched in any splitter.
+     * Paints cached highlights for files that just became visible and asks for a
+     * refresh when some of them have nothing cached for their current version.
+     */
+    public void onVisibleEditorsChanged() {
+        if (project.isDisposed()) {
+            return;
+        }
+
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+        if (projectService == null) {
+            return;
+        }
+
+        List<VirtualFile> files = getVisibleFiles(activeFileTracker.getCurrentActiveFile());
+        Set<String> nowVisible = new HashSet<>();
+        boolean needsRequest = false;
+
+        for (VirtualFile file : files) {
+            String path = file.getPath();
+            nowVisible.add(path);
+            if (visiblePaths.contains(path)) {
+                continue;
+            }
+
+            List<Integer> cachedLines = projectService.getActivePathCache()
+                .get(projectService.createActivePathCacheKey(file));
+            if (cachedLines != null) {
+                Logger.debug("Re-applying " + cachedLines.size() + " cached highlights to visible editor: " + path);
+                projectService.getHighlightManager().setHighlights(path, cachedLines);
+            } else {
+                needsRequest = true;
+            }
+        }
+
+        visiblePaths = nowVisible;
+
+        // Otherwise only the focused file is requested, and it has not changed
+        if (needsRequest && activeFileTracker.isRequestingVisibleEditors()) {
+            activeFileTracker.refreshVisibleEditors();
+        }
+    }
+}
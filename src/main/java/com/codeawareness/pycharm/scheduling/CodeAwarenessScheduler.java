@@ -0,0 +1,223 @@
+package com.codeawareness.pycharm.scheduling;
+
+import com.codeawareness.pycharm.utils.Logger;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Application-level scheduler shared by every Code Awareness component and project.
+ * A single timer thread only tracks due times and hands work over to a small, bounded
+ * worker pool. Loops that block for as long as they run, like socket readers, get threads of
+ * their own instead, so they never hold a worker the short tasks are waiting for. All pools let
+ * idle threads expire, so an idle IDE holds no plugin threads regardless of how many projects
+ * are open.
+ */
+@Service
+public final class CodeAwarenessScheduler implements Disposable {
+
+    private static final int DEFAULT_WORKER_COUNT =
+        Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor blocking;
+    private final Map<SchedulerLane, LaneMetrics> metrics;
+
+    public CodeAwarenessScheduler() {
+        this(DEFAULT_WORKER_COUNT);
+    }
+
+    /**
+     * Create a scheduler with a custom worker pool size.
+     *
+     * @param workerCount Maximum number of concurrently running tasks
+     */
+    public CodeAwarenessScheduler(int workerCount) {
+        this.timer = new ScheduledThreadPoolExecutor(1, namedThreadFactory("CodeAwareness-Timer"));
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.timer.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        this.timer.allowCoreThreadTimeOut(true);
+
+        this.workers = new ThreadPoolExecutor(
+            workerCount, workerCount,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            namedThreadFactory("CodeAwareness-Worker")
+        );
+        this.workers.allowCoreThreadTimeOut(true);
+
+        // One thread per blocking loop; there are only a few, and each lasts as long as its loop
+        this.blocking = new ThreadPoolExecutor(
+            0, Integer.MAX_VALUE,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            namedThreadFactory("CodeAwareness-Blocking")
+        );
+
+        Map<SchedulerLane, LaneMetrics> laneMetrics = new EnumMap<>(SchedulerLane.class);
+        for (SchedulerLane lane : SchedulerLane.values()) {
+            laneMetrics.put(lane, new LaneMetrics(lane));
+        }
+        this.metrics = Collections.unmodifiableMap(laneMetrics);
+
+        Logger.info("Code Awareness scheduler initialized with " + workerCount + " worker(s)");
+    }
+
+    /**
+     * Get the application-level scheduler instance.
+     */
+    public static CodeAwarenessScheduler getInstance() {
+        return ApplicationManager.getApplication().getService(CodeAwarenessScheduler.class);
+    }
+
+    /**
+     * Create a task group whose pending work can be cancelled at once, e.g. on project dispose.
+     *
+     * @param name Name used in logs (e.g. the project name)
+     */
+    public TaskGroup createGroup(String name) {
+        return new TaskGroup(name, this);
+    }
+
+    /**
+     * Run a task on a worker as soon as possible.
+     */
+    public ScheduledTask submit(SchedulerLane lane, Runnable action) {
+        return schedule(lane, action, 0, null);
+    }
+
+    /**
+     * Run a task on a worker after the given delay.
+     */
+    public ScheduledTask schedule(SchedulerLane lane, Runnable action, long delayMs) {
+        return schedule(lane, action, delayMs, null);
+    }
+
+    /**
+     * Run a task that blocks for most of its life, e.g. a read loop, on a thread of its own.
+     * It is counted in its lane's metrics like any other task but never occupies a worker.
+     * Cancelling it only prevents a start; a running loop must be ended by its own means,
+     * such as closing what it reads from.
+     */
+    public ScheduledTask submitBlocking(SchedulerLane lane, Runnable action) {
+        LaneMetrics laneMetrics = metrics.get(lane);
+        ScheduledTask task = new ScheduledTask(lane, action, laneMetrics, null, System.nanoTime());
+        laneMetrics.recordSubmitted();
+        try {
+            blocking.execute(task::run);
+        } catch (RejectedExecutionException e) {
+            Logger.debug("Scheduler is shut down, dropping task on lane: " + lane.getDisplayName());
+            task.cancel();
+        }
+        return task;
+    }
+
+    ScheduledTask schedule(SchedulerLane lane, Runnable action, long delayMs, TaskGroup group) {
+        LaneMetrics laneMetrics = metrics.get(lane);
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+        ScheduledTask task = new ScheduledTask(lane, action, laneMetrics, group, System.nanoTime() + delayNanos);
+        laneMetrics.recordSubmitted();
+
+        if (group != null) {
+            group.onTaskScheduled(task);
+        }
+
+        try {
+            if (delayNanos == 0) {
+                dispatch(task);
+            } else {
+                task.setTimerFuture(timer.schedule(() -> dispatch(task), delayNanos, TimeUnit.NANOSECONDS));
+            }
+        } catch (RejectedExecutionException e) {
+            Logger.debug("Scheduler is shut down, dropping task on lane: " + lane.getDisplayName());
+            task.cancel();
+        }
+
+        return task;
+    }
+
+    /**
+     * Hand a due task over to the worker pool.
+     */
+    private void dispatch(ScheduledTask task) {
+        if (task.isDone()) {
+            return;
+        }
+        try {
+            workers.execute(task::run);
+        } catch (RejectedExecutionException e) {
+            Logger.debug("Scheduler is shut down, dropping task on lane: " + task.getLane().getDisplayName());
+            task.cancel();
+        }
+    }
+
+    /**
+     * Get the metrics of a single lane.
+     */
+    public LaneMetrics getMetrics(SchedulerLane lane) {
+        return metrics.get(lane);
+    }
+
+    /**
+     * Get the metrics of all lanes.
+     */
+    public Collection<LaneMetrics> getAllMetrics() {
+        return metrics.values();
+    }
+
+    /**
+     * Get the number of threads currently alive in the timer and worker pools.
+     */
+    public int getLiveThreadCount() {
+        return timer.getPoolSize() + workers.getPoolSize();
+    }
+
+    /**
+     * Get the number of threads currently running blocking tasks.
+     */
+    public int getBlockingThreadCount() {
+        return blocking.getPoolSize();
+    }
+
+    /**
+     * Stop accepting work and discard everything that has not started yet.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+        blocking.shutdownNow();
+        for (LaneMetrics laneMetrics : metrics.values()) {
+            Logger.debug("Scheduler lane " + laneMetrics);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        Logger.info("Disposing Code Awareness scheduler");
+        shutdown();
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
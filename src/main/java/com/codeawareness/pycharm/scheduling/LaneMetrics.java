@@ -0,0 +1,111 @@
+package com.codeawareness.pycharm.scheduling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for a single scheduler lane.
+ * Updated lock-free by the scheduler; read by diagnostics.
+ */
+public class LaneMetrics {
+
+    private final SchedulerLane lane;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+    private final AtomicLong totalStartDelayNanos = new AtomicLong();
+
+    LaneMetrics(SchedulerLane lane) {
+        this.lane = lane;
+    }
+
+    void recordSubmitted() {
+        submitted.incrementAndGet();
+    }
+
+    void recordCancelled() {
+        cancelled.incrementAndGet();
+    }
+
+    void recordStarted(long startDelayNanos) {
+        active.incrementAndGet();
+        totalStartDelayNanos.addAndGet(Math.max(0, startDelayNanos));
+    }
+
+    void recordFinished(long runNanos, boolean success) {
+        active.decrementAndGet();
+        if (success) {
+            completed.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+        totalRunNanos.addAndGet(runNanos);
+        maxRunNanos.accumulateAndGet(runNanos, Math::max);
+    }
+
+    public SchedulerLane getLane() {
+        return lane;
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Number of tasks of this lane currently running on a worker.
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * Tasks submitted but not yet finished or cancelled (includes running ones).
+     */
+    public long getPending() {
+        return Math.max(0, submitted.get() - completed.get() - failed.get() - cancelled.get());
+    }
+
+    /**
+     * Average run time in milliseconds of finished tasks.
+     */
+    public double getAverageRunMs() {
+        long finished = completed.get() + failed.get();
+        return finished == 0 ? 0 : (double) totalRunNanos.get() / finished / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxRunMs() {
+        return (double) maxRunNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Average time in milliseconds between a task becoming due and a worker picking it up.
+     */
+    public double getAverageStartDelayMs() {
+        long started = completed.get() + failed.get() + active.get();
+        return started == 0 ? 0 : (double) totalStartDelayNanos.get() / started / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: submitted=%d, completed=%d, failed=%d, cancelled=%d, active=%d, avgRun=%.1fms, maxRun=%.1fms, avgStartDelay=%.1fms",
+            lane.getDisplayName(), getSubmitted(), getCompleted(), getFailed(), getCancelled(), getActive(),
+            getAverageRunMs(), getMaxRunMs(), getAverageStartDelayMs());
+    }
+}
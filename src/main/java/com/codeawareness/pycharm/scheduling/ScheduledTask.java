@@ -0,0 +1,112 @@
+package com.codeawareness.pycharm.scheduling;
+
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle to a unit of work submitted to the {@link CodeAwarenessScheduler}.
+ * Cancelling a task that has not started yet guarantees it will never run;
+ * a task that is already running is allowed to finish.
+ */
+public final class ScheduledTask {
+
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private final SchedulerLane lane;
+    private final Runnable action;
+    private final LaneMetrics metrics;
+    private final TaskGroup group;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private volatile long dueNanos;
+    private volatile Future<?> timerFuture;
+
+    ScheduledTask(SchedulerLane lane, Runnable action, LaneMetrics metrics, TaskGroup group, long dueNanos) {
+        this.lane = lane;
+        this.action = action;
+        this.metrics = metrics;
+        this.group = group;
+        this.dueNanos = dueNanos;
+    }
+
+    /**
+     * Create a task that was rejected before it could be scheduled (e.g. its group was cancelled).
+     */
+    static ScheduledTask rejected(SchedulerLane lane, Runnable action, LaneMetrics metrics) {
+        ScheduledTask task = new ScheduledTask(lane, action, metrics, null, System.nanoTime());
+        task.state.set(CANCELLED);
+        return task;
+    }
+
+    void setTimerFuture(Future<?> timerFuture) {
+        this.timerFuture = timerFuture;
+    }
+
+    /**
+     * Executed on a worker thread once the task is due.
+     */
+    void run() {
+        if (!state.compareAndSet(PENDING, RUNNING)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        metrics.recordStarted(start - dueNanos);
+        boolean success = false;
+        try {
+            action.run();
+            success = true;
+        } catch (Throwable t) {
+            // Task failures are logged but never kill a shared worker thread
+            // Use warn instead of error since the scheduler handles it gracefully
+            Logger.warn("Error in scheduled task on lane: " + lane.getDisplayName(), t);
+        } finally {
+            metrics.recordFinished(System.nanoTime() - start, success);
+            if (group != null) {
+                group.onTaskFinished(this);
+            }
+            state.set(DONE);
+        }
+    }
+
+    /**
+     * Cancel the task if it has not started yet.
+     *
+     * @return true if the task was cancelled and will never run
+     */
+    public boolean cancel() {
+        if (!state.compareAndSet(PENDING, CANCELLED)) {
+            return false;
+        }
+
+        Future<?> future = timerFuture;
+        if (future != null) {
+            future.cancel(false);
+        }
+        metrics.recordCancelled();
+        if (group != null) {
+            group.onTaskFinished(this);
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    /**
+     * Check if the task has finished running or was cancelled.
+     */
+    public boolean isDone() {
+        int current = state.get();
+        return current == DONE || current == CANCELLED;
+    }
+
+    public SchedulerLane getLane() {
+        return lane;
+    }
+}
@@ -0,0 +1,27 @@
+package com.codeawareness.pycharm.scheduling;
+
+/**
+ * Logical lanes of the shared Code Awareness scheduler.
+ * Lanes don't own threads; they label work so metrics can be reported per kind of task.
+ */
+public enum SchedulerLane {
+    FILE_SAVED("file-saved"),         // Debounced file-saved notifications
+    ACTIVE_PATH("active-path"),       // Debounced active-path notifications
+    PREFETCH("prefetch"),             // Speculative, rate-limited active-path requests
+    DIFF("diff"),                     // Background line diffs against peer content
+    VFS("vfs"),                       // Batched VFS refreshes for paths received from the backend
+    CONNECT("connect"),               // Steps of the backend connection state machine
+    SOCKET_WATCH("socket-watch"),     // Blocking wait for backend sockets to appear, on its own thread
+    IPC_READER("ipc-reader"),         // Blocking IPC socket reader, on its own thread
+    STARTUP("startup");               // Plugin startup work
+
+    private final String displayName;
+
+    SchedulerLane(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
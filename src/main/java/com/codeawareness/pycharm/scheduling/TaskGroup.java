@@ -0,0 +1,84 @@
+package com.codeawareness.pycharm.scheduling;
+
+import com.codeawareness.pycharm.utils.Logger;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A named set of tasks owned by one component (typically one project).
+ * Cancelling the group cancels every pending task and rejects new submissions,
+ * so a disposed project never has work running on its behalf afterwards.
+ */
+public final class TaskGroup {
+
+    private final String name;
+    private final CodeAwarenessScheduler scheduler;
+    private final Set<ScheduledTask> tasks = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    TaskGroup(String name, CodeAwarenessScheduler scheduler) {
+        this.name = name;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Run a task on a worker as soon as possible.
+     */
+    public ScheduledTask submit(SchedulerLane lane, Runnable action) {
+        return schedule(lane, action, 0);
+    }
+
+    /**
+     * Run a task on a worker after the given delay.
+     */
+    public ScheduledTask schedule(SchedulerLane lane, Runnable action, long delayMs) {
+        if (cancelled) {
+            Logger.debug("Rejecting task on lane " + lane.getDisplayName() + ": group cancelled: " + name);
+            return ScheduledTask.rejected(lane, action, scheduler.getMetrics(lane));
+        }
+        return scheduler.schedule(lane, action, delayMs, this);
+    }
+
+    void onTaskScheduled(ScheduledTask task) {
+        tasks.add(task);
+        // Close the race with a concurrent cancelAll()
+        if (cancelled) {
+            task.cancel();
+        }
+    }
+
+    void onTaskFinished(ScheduledTask task) {
+        tasks.remove(task);
+    }
+
+    /**
+     * Cancel all pending tasks and reject any further submissions.
+     */
+    public void cancelAll() {
+        cancelled = true;
+        int count = 0;
+        for (ScheduledTask task : tasks) {
+            if (task.cancel()) {
+                count++;
+            }
+        }
+        tasks.clear();
+        Logger.debug("Cancelled " + count + " pending task(s) for group: " + name);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Get the number of tasks that have not finished yet.
+     */
+    public int getPendingCount() {
+        return tasks.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
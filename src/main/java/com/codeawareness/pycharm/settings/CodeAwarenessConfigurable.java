@@ -1,7 +1,10 @@
 package com.codeawareness.pycharm.settings;
 
 import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.options.ConfigurationException;
 import com.intellij.ui.ColorPanel;
+import com.intellij.ui.JBIntSpinner;
+import com.intellij.ui.components.JBCheckBox;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.util.ui.FormBuilder;
 import com.intellij.util.ui.JBUI;
@@ -17,8 +20,15 @@ import java.awt.*;
  */
 public class CodeAwarenessConfigurable implements Configurable {
 
+    private static final int MAX_DEBOUNCE_MS = 10000;
+
     private ColorPanel lightThemeColorPanel;
     private ColorPanel darkThemeColorPanel;
+    private JBCheckBox adaptiveDebounceCheckBox;
+    private JBIntSpinner activeFileMinSpinner;
+    private JBIntSpinner activeFileMaxSpinner;
+    private JBIntSpinner fileSaveMinSpinner;
+    private JBIntSpinner fileSaveMaxSpinner;
     private JPanel mainPanel;
 
     @Nls
@@ -39,6 +49,16 @@ public class CodeAwarenessConfigurable implements Configurable {
         darkThemeColorPanel = new ColorPanel();
         darkThemeColorPanel.setSelectedColor(parseColor(settings.getDarkThemeColor()));
 
+        // Bounds the debounce delays adapt within
+        adaptiveDebounceCheckBox = new JBCheckBox("Adapt debounce delays to backend response time");
+        activeFileMinSpinner = new JBIntSpinner(settings.activeFileDebounceMinMs, 0, MAX_DEBOUNCE_MS);
+        activeFileMaxSpinner = new JBIntSpinner(settings.activeFileDebounceMaxMs, 0, MAX_DEBOUNCE_MS);
+        fileSaveMinSpinner = new JBIntSpinner(settings.fileSaveDebounceMinMs, 0, MAX_DEBOUNCE_MS);
+        fileSaveMaxSpinner = new JBIntSpinner(settings.fileSaveDebounceMaxMs, 0, MAX_DEBOUNCE_MS);
+        adaptiveDebounceCheckBox.addItemListener(e -> updateDebounceSpinners());
+        adaptiveDebounceCheckBox.setSelected(settings.adaptiveDebounceEnabled);
+        updateDebounceSpinners();
+
         // Create reset button
         JButton resetButton = new JButton("Reset to Defaults");
         resetButton.addActionListener(e -> {
@@ -52,6 +72,12 @@ public class CodeAwarenessConfigurable implements Configurable {
             .addLabeledComponent(new JBLabel("Dark theme highlight color:"), darkThemeColorPanel, 1, false)
             .addComponentFillVertically(new JPanel(), 0)
             .addComponent(resetButton)
+            .addSeparator()
+            .addComponent(adaptiveDebounceCheckBox)
+            .addLabeledComponent(new JBLabel("Active file debounce min (ms):"), activeFileMinSpinner, 1, false)
+            .addLabeledComponent(new JBLabel("Active file debounce max (ms):"), activeFileMaxSpinner, 1, false)
+            .addLabeledComponent(new JBLabel("File save debounce min (ms):"), fileSaveMinSpinner, 1, false)
+            .addLabeledComponent(new JBLabel("File save debounce max (ms):"), fileSaveMaxSpinner, 1, false)
             .addComponentFillVertically(new JPanel(), 0)
             .getPanel();
 
@@ -71,15 +97,34 @@ public class CodeAwarenessConfigurable implements Configurable {
         Color selectedDarkColor = darkThemeColorPanel.getSelectedColor();
 
         return !currentLightColor.equals(selectedLightColor) ||
-               !currentDarkColor.equals(selectedDarkColor);
+               !currentDarkColor.equals(selectedDarkColor) ||
+               settings.adaptiveDebounceEnabled != adaptiveDebounceCheckBox.isSelected() ||
+               settings.activeFileDebounceMinMs != activeFileMinSpinner.getNumber() ||
+               settings.activeFileDebounceMaxMs != activeFileMaxSpinner.getNumber() ||
+               settings.fileSaveDebounceMinMs != fileSaveMinSpinner.getNumber() ||
+               settings.fileSaveDebounceMaxMs != fileSaveMaxSpinner.getNumber();
     }
 
     @Override
-    public void apply() {
+    public void apply() throws ConfigurationException {
+        if (activeFileMinSpinner.getNumber() > activeFileMaxSpinner.getNumber()) {
+            throw new ConfigurationException("Active file debounce min must not exceed its max");
+        }
+        if (fileSaveMinSpinner.getNumber() > fileSaveMaxSpinner.getNumber()) {
+            throw new ConfigurationException("File save debounce min must not exceed its max");
+        }
+
         CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
 
         settings.setLightThemeColor(colorToHex(lightThemeColorPanel.getSelectedColor()));
         settings.setDarkThemeColor(colorToHex(darkThemeColorPanel.getSelectedColor()));
+
+        // Read by the debounce controller each time it is asked for a delay
+        settings.adaptiveDebounceEnabled = adaptiveDebounceCheckBox.isSelected();
+        settings.activeFileDebounceMinMs = activeFileMinSpinner.getNumber();
+        settings.activeFileDebounceMaxMs = activeFileMaxSpinner.getNumber();
+        settings.fileSaveDebounceMinMs = fileSaveMinSpinner.getNumber();
+        settings.fileSaveDebounceMaxMs = fileSaveMaxSpinner.getNumber();
     }
 
     @Override
@@ -87,6 +132,23 @@ public class CodeAwarenessConfigurable implements Configurable {
         CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
         lightThemeColorPanel.setSelectedColor(parseColor(settings.getLightThemeColor()));
         darkThemeColorPanel.setSelectedColor(parseColor(settings.getDarkThemeColor()));
+        adaptiveDebounceCheckBox.setSelected(settings.adaptiveDebounceEnabled);
+        activeFileMinSpinner.setNumber(settings.activeFileDebounceMinMs);
+        activeFileMaxSpinner.setNumber(settings.activeFileDebounceMaxMs);
+        fileSaveMinSpinner.setNumber(settings.fileSaveDebounceMinMs);
+        fileSaveMaxSpinner.setNumber(settings.fileSaveDebounceMaxMs);
+        updateDebounceSpinners();
+    }
+
+    /**
+     * The bounds only matter while the delays adapt.
+     */
+    private void updateDebounceSpinners() {
+        boolean adaptive = adaptiveDebounceCheckBox.isSelected();
+        activeFileMinSpinner.setEnabled(adaptive);
+        activeFileMaxSpinner.setEnabled(adaptive);
+        fileSaveMinSpinner.setEnabled(adaptive);
+        fileSaveMaxSpinner.setEnabled(adaptive);
     }
 
     /**
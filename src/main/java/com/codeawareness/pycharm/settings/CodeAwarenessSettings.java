@@ -11,6 +11,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Persistent settings for Code Awareness plugin.
@@ -28,7 +29,8 @@ public final class CodeAwarenessSettings implements PersistentStateComponent<Cod
     private static final String DEFAULT_DARK_COLOR = "0a071d";
 
     // Settings change listeners
-    private final List<SettingsChangeListener> listeners = new ArrayList<>();
+    // Copy-on-write: project services register from background threads during initialization
+    private final List<SettingsChangeListener> listeners = new CopyOnWriteArrayList<>();
 
     /**
      * Whether Code Awareness highlighting is enabled (ON/OFF).
@@ -47,6 +49,30 @@ public final class CodeAwarenessSettings implements PersistentStateComponent<Cod
      */
     public int activeFileDebounceMs = 300;
 
+    /**
+     * Whether debounce delays adapt to the measured backend round-trip time.
+     * The delays above are then only the starting values.
+     */
+    public boolean adaptiveDebounceEnabled = true;
+
+    /**
+     * Lower and upper bounds of the adaptive active file debounce (milliseconds).
+     */
+    public int activeFileDebounceMinMs = 50;
+    public int activeFileDebounceMaxMs = 1000;
+
+    /**
+     * Lower and upper bounds of the adaptive file save debounce (milliseconds).
+     */
+    public int fileSaveDebounceMinMs = 100;
+    public int fileSaveDebounceMaxMs = 2000;
+
+    /**
+     * Whether peer versions are shown as in-memory documents in the diff viewer.
+     * When OFF, they are written to temp files first.
+     */
+    public boolean inMemoryDiffs = true;
+
     /**
      * Highlight color for light theme (RGB hex format without #, e.g., "ffea83").
      */
@@ -1,5 +1,8 @@
 package com.codeawareness.pycharm.startup;
 
+import com.codeawareness.pycharm.CodeAwarenessApplicationService;
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.settings.CodeAwarenessSettings;
 import com.codeawareness.pycharm.utils.Logger;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
@@ -7,43 +10,38 @@ import com.intellij.openapi.startup.StartupActivity;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Delayed startup activity for Code Awareness plugin.
- * Waits for the IDE to fully initialize before activating the plugin.
- * This helps avoid conflicts with other plugins (like Gradle) that may not be ready immediately.
+ * Startup activity for Code Awareness plugin.
+ * Runs once the project is open, so the IDE and other plugins (like Gradle) are already initialized.
+ * Nothing here blocks the EDT: the project service initializes in the background, and connecting
+ * to the backend is event driven, completing as soon as the backend's sockets are ready.
  */
 public class CodeAwarenessStartupActivity implements StartupActivity.DumbAware {
 
-    private static final long INITIALIZATION_DELAY_MS = 2000; // 2 second delay
-
     @Override
     public void runActivity(@NotNull Project project) {
         Logger.info("Code Awareness startup activity triggered for project: " + project.getName());
 
-        // Delay initialization to allow IDE and other plugins to fully initialize
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
-            try {
-                Logger.info("Waiting " + INITIALIZATION_DELAY_MS + "ms before initializing Code Awareness plugin...");
-                Thread.sleep(INITIALIZATION_DELAY_MS);
-
-                // Run on EDT after delay
-                ApplicationManager.getApplication().invokeLater(() -> {
-                    if (project.isDisposed()) {
-                        Logger.warn("Project disposed before Code Awareness initialization");
-                        return;
-                    }
-
-                    Logger.info("Initializing Code Awareness plugin for project: " + project.getName());
-                    // The project service will be initialized automatically when accessed
-                    // We just need to ensure it exists
-                    project.getService(com.codeawareness.pycharm.CodeAwarenessProjectService.class);
-                });
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                Logger.warn("Code Awareness startup activity interrupted");
-            } catch (Exception e) {
-                Logger.error("Error in Code Awareness startup activity", e);
-            }
+        if (project.isDisposed()) {
+            Logger.warn("Project disposed before Code Awareness initialization");
+            return;
+        }
+
+        // Getting the service is cheap; it hooks itself up in the background
+        CodeAwarenessProjectService projectService = project.getService(CodeAwarenessProjectService.class);
+
+        CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
+        if (settings == null || !settings.isHighlightsEnabled()) {
+            return;
+        }
+        // Connect once the project's handlers are registered, so no early message goes unhandled
+        projectService.whenReady().thenRun(() -> {
+            CodeAwarenessApplicationService appService =
+                ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+            appService.connectAsync().whenComplete((result, error) -> {
+                if (error != null) {
+                    Logger.warn("Could not connect to Code Awareness backend: " + error);
+                }
+            });
         });
     }
 }
-
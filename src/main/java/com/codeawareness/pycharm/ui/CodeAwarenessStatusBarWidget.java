@@ -2,10 +2,17 @@ package com.codeawareness.pycharm.ui;
 
 import com.codeawareness.pycharm.CodeAwarenessApplicationService;
 import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.communication.ConnectionState;
+import com.codeawareness.pycharm.communication.ConnectionStateListener;
+import com.codeawareness.pycharm.diff.PeerDiffListener;
 import com.codeawareness.pycharm.settings.CodeAwarenessSettings;
 import com.codeawareness.pycharm.utils.Logger;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.StatusBar;
 import com.intellij.openapi.wm.StatusBarWidget;
 import com.intellij.openapi.wm.StatusBarWidgetFactory;
@@ -20,6 +27,7 @@ import java.awt.event.MouseEvent;
 /**
  * Status bar widget factory and implementation for Code Awareness.
  * Shows the current mode (ON/OFF) and allows toggling via click.
+ * While a peer's version of the selected file is diffed, also shows how many lines differ.
  */
 public class CodeAwarenessStatusBarWidget implements StatusBarWidgetFactory {
 
@@ -57,8 +65,10 @@ public class CodeAwarenessStatusBarWidget implements StatusBarWidgetFactory {
 
     /**
      * The actual status bar widget implementation.
+     * Shows the mode and, while highlights are ON, any connection problem or the peer diff summary.
      */
-    private static class CodeAwarenessWidget implements StatusBarWidget, StatusBarWidget.TextPresentation {
+    private static class CodeAwarenessWidget implements StatusBarWidget, StatusBarWidget.TextPresentation,
+        ConnectionStateListener, PeerDiffListener {
 
         private final Project project;
         private StatusBar statusBar;
@@ -75,13 +85,99 @@ public class CodeAwarenessStatusBarWidget implements StatusBarWidgetFactory {
         @Override
         public void install(@NotNull StatusBar statusBar) {
             this.statusBar = statusBar;
+            CodeAwarenessApplicationService appService = getAppService();
+            if (appService != null) {
+                appService.addConnectionStateListener(this);
+            }
+            CodeAwarenessProjectService projectService = getProjectService();
+            if (projectService != null) {
+                projectService.getPeerDiffService().addListener(this);
+            }
+            // The summary is for the selected file
+            project.getMessageBus().connect(this).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER,
+                new FileEditorManagerListener() {
+                    @Override
+                    public void selectionChanged(@NotNull FileEditorManagerEvent event) {
+                        if (statusBar != null) {
+                            statusBar.updateWidget(ID);
+                        }
+                    }
+                });
         }
 
         @Override
         public void dispose() {
+            CodeAwarenessApplicationService appService = getAppService();
+            if (appService != null) {
+                appService.removeConnectionStateListener(this);
+            }
+            CodeAwarenessProjectService projectService = getProjectService();
+            if (projectService != null) {
+                projectService.getPeerDiffService().removeListener(this);
+            }
             this.statusBar = null;
         }
 
+        @Override
+        public void onConnectionStateChanged(ConnectionState state) {
+            updateLater();
+        }
+
+        @Override
+        public void onPeerDiffChanged(String localFilePath) {
+            VirtualFile selected = getSelectedFile();
+            if (localFilePath == null || (selected != null && localFilePath.equals(selected.getPath()))) {
+                updateLater();
+            }
+        }
+
+        private void updateLater() {
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (statusBar != null) {
+                    statusBar.updateWidget(ID);
+                }
+            });
+        }
+
+        private CodeAwarenessProjectService getProjectService() {
+            return project.isDisposed() ? null : project.getService(CodeAwarenessProjectService.class);
+        }
+
+        private VirtualFile getSelectedFile() {
+            if (project.isDisposed()) {
+                return null;
+            }
+            VirtualFile[] selected = FileEditorManager.getInstance(project).getSelectedFiles();
+            return selected.length > 0 ? selected[0] : null;
+        }
+
+        /**
+         * Get the peer diff summary of the selected file, or null if no diff is kept for it.
+         */
+        private String getDiffSummary() {
+            CodeAwarenessProjectService projectService = getProjectService();
+            VirtualFile selected = getSelectedFile();
+            if (projectService == null || selected == null) {
+                return null;
+            }
+            return projectService.getPeerDiffService().getSummary(selected.getPath());
+        }
+
+        private static CodeAwarenessApplicationService getAppService() {
+            return ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+        }
+
+        /**
+         * Get the connection state worth showing, or null if there is nothing to report.
+         */
+        private static ConnectionState getReportedState() {
+            CodeAwarenessApplicationService appService = getAppService();
+            if (appService == null || appService.getConnectionState() == ConnectionState.CONNECTED) {
+                return null;
+            }
+            return appService.getConnectionState();
+        }
+
         @Override
         public @Nullable WidgetPresentation getPresentation() {
             return this;
@@ -90,15 +186,25 @@ public class CodeAwarenessStatusBarWidget implements StatusBarWidgetFactory {
         @Override
         public @NotNull String getText() {
             CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
-            return settings.isHighlightsEnabled() ? "Code Awareness: ON" : "Code Awareness: OFF";
+            if (!settings.isHighlightsEnabled()) {
+                return "Code Awareness: OFF";
+            }
+            ConnectionState state = getReportedState();
+            if (state != null) {
+                return "Code Awareness: ON (" + state.getDisplayName() + ")";
+            }
+            String summary = getDiffSummary();
+            return summary != null ? "Code Awareness: ON (" + summary + ")" : "Code Awareness: ON";
         }
 
         @Override
         public @NotNull String getTooltipText() {
             CodeAwarenessSettings settings = CodeAwarenessSettings.getInstance();
-            return settings.isHighlightsEnabled()
+            String tooltip = settings.isHighlightsEnabled()
                 ? "Click to turn OFF Code Awareness highlights"
                 : "Click to turn ON Code Awareness highlights";
+            ConnectionState state = getReportedState();
+            return state != null ? tooltip + " (backend: " + state.getDisplayName() + ")" : tooltip;
         }
 
         @Override
@@ -139,22 +245,12 @@ public class CodeAwarenessStatusBarWidget implements StatusBarWidgetFactory {
                         // Enable highlights - connect to Gardener asynchronously
                         if (!appService.isConnected()) {
                             Logger.info("Highlights enabled - connecting to Code Awareness backend asynchronously...");
-                            // Run connection on background thread to avoid blocking EDT and accessing APIs too early
-                            ApplicationManager.getApplication().executeOnPooledThread(() -> {
-                                try {
-                                    appService.connect();
-                                    Logger.info("Successfully connected to Code Awareness backend");
-                                    
-                                    // Update status bar on EDT after successful connection
-                                    ApplicationManager.getApplication().invokeLater(() -> {
-                                        if (statusBar != null) {
-                                            statusBar.updateWidget(ID);
-                                        }
-                                    });
-                                } catch (Exception e) {
-                                    Logger.error("Failed to connect to Code Awareness backend when enabling highlights", e);
-                                    // Don't throw - allow highlights to be enabled even if connection fails
-                                    // The connection might fail if Gardener is not running, which is OK
+                            // Connects as soon as the backend's sockets are ready; nothing blocks meanwhile.
+                            // The widget and the project services follow the connection state from there.
+                            appService.connectAsync().whenComplete((result, error) -> {
+                                if (error != null) {
+                                    // Highlights stay enabled; Gardener may simply not be running
+                                    Logger.warn("Failed to connect to Code Awareness backend when enabling highlights: " + error);
                                 }
                             });
                         } else {
@@ -1,6 +1,7 @@
 package com.codeawareness.pycharm.ui;
 
 import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationAction;
 import com.intellij.notification.NotificationGroup;
 import com.intellij.notification.NotificationGroupManager;
 import com.intellij.notification.NotificationType;
@@ -52,6 +53,14 @@ public class NotificationHelper {
         showNotification(title, content, NotificationType.WARNING, project);
     }
 
+    /**
+     * Show a warning notification with one action button.
+     */
+    public static void showWarning(String title, String content, @Nullable Project project,
+                                   String actionText, Runnable action) {
+        showNotification(title, content, NotificationType.WARNING, project, actionText, action);
+    }
+
     /**
      * Show an error notification.
      */
@@ -63,6 +72,14 @@ public class NotificationHelper {
      * Show a notification.
      */
     private static void showNotification(String title, String content, NotificationType type, @Nullable Project project) {
+        showNotification(title, content, type, project, null, null);
+    }
+
+    /**
+     * Show a notification, optionally with an action button.
+     */
+    private static void showNotification(String title, String content, NotificationType type, @Nullable Project project,
+                                         @Nullable String actionText, @Nullable Runnable action) {
         try {
             NotificationGroupManager manager = NotificationGroupManager.getInstance();
             if (manager == null) {
@@ -75,6 +92,9 @@ public class NotificationHelper {
             }
 
             Notification notification = group.createNotification(title, content, type);
+            if (actionText != null && action != null) {
+                notification.addAction(NotificationAction.createSimpleExpiring(actionText, action));
+            }
 
             notification.notify(project);
         } catch (Throwable ignored) {
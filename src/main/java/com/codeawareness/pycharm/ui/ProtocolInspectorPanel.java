@@ -0,0 +1,241 @@
+package com.codeawareness.pycharm.ui;
+
+import com.codeawareness.pycharm.communication.FrameDirection;
+import com.codeawareness.pycharm.communication.FrameRingBuffer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.SearchTextField;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextArea;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Protocol inspector: a filterable table of the frames kept by the {@link FrameRingBuffer},
+ * with the selected frame's content below.
+ *
+ * Frames are only kept while the panel is showing; it registers as a viewer when shown and
+ * unregisters when hidden, so a closed tool window leaves the buffer counting only.
+ */
+public class ProtocolInspectorPanel extends JPanel implements Disposable {
+
+    private static final int REFRESH_INTERVAL_MS = 500;
+    private static final String ALL_DIRECTIONS = "All";
+    private static final String INBOUND = "Inbound";
+    private static final String OUTBOUND = "Outbound";
+
+    private final FrameRingBuffer buffer;
+    private final FrameTableModel model = new FrameTableModel();
+    private final JBTable table = new JBTable(model);
+    private final JBTextArea payloadArea = new JBTextArea();
+    private final SearchTextField filterField = new SearchTextField(false);
+    private final ComboBox<String> directionBox = new ComboBox<>(new String[]{ALL_DIRECTIONS, INBOUND, OUTBOUND});
+    private final JBCheckBox payloadBox = new JBCheckBox("Capture payloads");
+    private final JBLabel countersLabel = new JBLabel();
+    private final Timer refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+    private boolean viewing = false;
+    private long lastSequence = -1;
+
+    public ProtocolInspectorPanel() {
+        this(FrameRingBuffer.getInstance());
+    }
+
+    ProtocolInspectorPanel(FrameRingBuffer buffer) {
+        super(new BorderLayout());
+        this.buffer = buffer;
+
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> {
+            buffer.clear();
+            refresh();
+        });
+        payloadBox.setSelected(buffer.isCapturePayloads());
+        payloadBox.addActionListener(e -> buffer.setCapturePayloads(payloadBox.isSelected()));
+        directionBox.addActionListener(e -> refresh());
+        filterField.addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                refresh();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                refresh();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                refresh();
+            }
+        });
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, JBUI.scale(6), 0));
+        toolbar.add(new JBLabel("Action:"));
+        toolbar.add(filterField);
+        toolbar.add(directionBox);
+        toolbar.add(payloadBox);
+        toolbar.add(clearButton);
+        toolbar.add(countersLabel);
+        add(toolbar, BorderLayout.NORTH);
+
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showSelectedPayload();
+            }
+        });
+        payloadArea.setEditable(false);
+        payloadArea.setLineWrap(true);
+
+        JBSplitter splitter = new JBSplitter(true, 0.7f);
+        splitter.setFirstComponent(new JBScrollPane(table));
+        splitter.setSecondComponent(new JBScrollPane(payloadArea));
+        add(splitter, BorderLayout.CENTER);
+
+        // Keep frames only while visible
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                setViewing(isShowing());
+            }
+        });
+    }
+
+    private void setViewing(boolean showing) {
+        if (showing == viewing) {
+            return;
+        }
+        viewing = showing;
+        if (showing) {
+            buffer.addViewer();
+            refreshTimer.start();
+            refresh();
+        } else {
+            refreshTimer.stop();
+            buffer.removeViewer();
+        }
+    }
+
+    private void refresh() {
+        countersLabel.setText("In: " + buffer.getFrameCount(FrameDirection.INBOUND) +
+            "  Out: " + buffer.getFrameCount(FrameDirection.OUTBOUND));
+
+        String filter = filterField.getText().trim().toLowerCase(Locale.ROOT);
+        Object direction = directionBox.getSelectedItem();
+        List<FrameRingBuffer.Frame> frames = new ArrayList<>();
+        for (FrameRingBuffer.Frame frame : buffer.snapshot()) {
+            if (INBOUND.equals(direction) && frame.getDirection() != FrameDirection.INBOUND
+                || OUTBOUND.equals(direction) && frame.getDirection() != FrameDirection.OUTBOUND) {
+                continue;
+            }
+            if (!filter.isEmpty() && !frame.getAction().toLowerCase(Locale.ROOT).contains(filter)) {
+                continue;
+            }
+            frames.add(frame);
+        }
+
+        // Keep the selection across refreshes
+        FrameRingBuffer.Frame selected = getSelectedFrame();
+        model.setFrames(frames);
+        if (selected != null) {
+            int row = frames.indexOf(selected);
+            if (row >= 0) {
+                table.getSelectionModel().setSelectionInterval(row, row);
+            }
+        }
+
+        long newest = frames.isEmpty() ? -1 : frames.get(frames.size() - 1).getSequence();
+        if (newest != lastSequence && selected == null && !frames.isEmpty()) {
+            table.scrollRectToVisible(table.getCellRect(frames.size() - 1, 0, true));
+        }
+        lastSequence = newest;
+    }
+
+    private FrameRingBuffer.Frame getSelectedFrame() {
+        int row = table.getSelectedRow();
+        return row >= 0 && row < model.getRowCount() ? model.getFrame(row) : null;
+    }
+
+    private void showSelectedPayload() {
+        FrameRingBuffer.Frame frame = getSelectedFrame();
+        if (frame == null) {
+            payloadArea.setText("");
+        } else if (frame.getPayload() == null) {
+            payloadArea.setText("(payload not captured; enable \"Capture payloads\" to keep frame content)");
+        } else {
+            payloadArea.setText(frame.getPayload());
+            payloadArea.setCaretPosition(0);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        setViewing(false);
+    }
+
+    /**
+     * Table model over a list of frames.
+     */
+    private static final class FrameTableModel extends AbstractTableModel {
+
+        private static final String[] COLUMNS = {"Time", "Direction", "Action", "Flow", "Size"};
+
+        private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+        private List<FrameRingBuffer.Frame> frames = new ArrayList<>();
+
+        void setFrames(List<FrameRingBuffer.Frame> frames) {
+            this.frames = frames;
+            fireTableDataChanged();
+        }
+
+        FrameRingBuffer.Frame getFrame(int row) {
+            return frames.get(row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return frames.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            FrameRingBuffer.Frame frame = frames.get(row);
+            switch (column) {
+                case 0:
+                    return timeFormat.format(new Date(frame.getTimestamp()));
+                case 1:
+                    return frame.getDirection() == FrameDirection.INBOUND ? "in" : "out";
+                case 2:
+                    return frame.getAction();
+                case 3:
+                    return frame.getFlow() != null ? frame.getFlow().getValue() : "";
+                default:
+                    return frame.getSize();
+            }
+        }
+    }
+}
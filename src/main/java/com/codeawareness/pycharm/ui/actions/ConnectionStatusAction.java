@@ -1,16 +1,57 @@
 package com.codeawareness.pycharm.ui.actions;
 
+import com.codeawareness.pycharm.CodeAwarenessApplicationService;
+import com.codeawareness.pycharm.monitoring.AdaptiveDebounceController;
+import com.codeawareness.pycharm.monitoring.DebounceWindow;
+import com.codeawareness.pycharm.ui.NotificationHelper;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 /**
  * Action to show Code Awareness connection status.
+ * Includes the current adaptive debounce delays and their recent history.
  */
 public class ConnectionStatusAction extends AnAction {
 
+    private static final int HISTORY_SHOWN = 10;
+
     @Override
     public void actionPerformed(@NotNull AnActionEvent e) {
-        // Implementation will be added in Phase 3.4
+        CodeAwarenessApplicationService appService =
+            ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+
+        StringBuilder content = new StringBuilder();
+        boolean connected = appService != null && appService.isConnected();
+        content.append("Connected: ").append(connected ? "yes" : "no");
+        if (appService != null) {
+            content.append("<br>Client GUID: ").append(appService.getClientGuid());
+        }
+
+        AdaptiveDebounceController controller = AdaptiveDebounceController.getInstance();
+        for (AdaptiveDebounceController.Channel channel : AdaptiveDebounceController.Channel.values()) {
+            content.append("<br>").append(describe(channel, controller));
+        }
+
+        NotificationHelper.showInfo("Code Awareness Status", content.toString(), e.getProject());
+    }
+
+    private static String describe(AdaptiveDebounceController.Channel channel, AdaptiveDebounceController controller) {
+        DebounceWindow window = controller.getWindow(channel);
+        long roundTrip = window.getAverageRoundTripMs();
+
+        StringBuilder line = new StringBuilder();
+        line.append(channel.getAction()).append(" debounce: ").append(controller.getDelayMs(channel)).append("ms");
+        line.append(" (bounds ").append(window.getMinDelayMs()).append("-").append(window.getMaxDelayMs()).append("ms");
+        line.append(", round trip ").append(roundTrip >= 0 ? roundTrip + "ms" : "not measured");
+        line.append(", ").append(window.getSampleCount()).append(" samples)");
+
+        List<Long> history = window.getHistory();
+        List<Long> recent = history.subList(Math.max(0, history.size() - HISTORY_SHOWN), history.size());
+        line.append(" history: ").append(recent);
+        return line.toString();
     }
 }
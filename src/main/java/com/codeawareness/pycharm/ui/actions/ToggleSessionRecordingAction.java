@@ -0,0 +1,56 @@
+package com.codeawareness.pycharm.ui.actions;
+
+import com.codeawareness.pycharm.CodeAwarenessApplicationService;
+import com.codeawareness.pycharm.ui.NotificationHelper;
+import com.codeawareness.pycharm.utils.Logger;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.application.ApplicationManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Action to start and stop recording the IPC session to a file, for replaying it later.
+ */
+public class ToggleSessionRecordingAction extends ToggleAction {
+
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent e) {
+        CodeAwarenessApplicationService appService = getAppService();
+        return appService != null && appService.isRecordingSession();
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent e, boolean state) {
+        CodeAwarenessApplicationService appService = getAppService();
+        if (appService == null) {
+            return;
+        }
+        if (!state) {
+            Path file = appService.stopSessionRecording();
+            if (file != null) {
+                NotificationHelper.showInfo("Code Awareness", "Session recorded to " + file, e.getProject());
+            }
+            return;
+        }
+        try {
+            Path file = appService.startSessionRecording();
+            NotificationHelper.showInfo("Code Awareness", "Recording session to " + file, e.getProject());
+        } catch (IOException ex) {
+            Logger.warn("Failed to start session recording", ex);
+            NotificationHelper.showError("Code Awareness", "Could not start recording: " + ex.getMessage(), e.getProject());
+        }
+    }
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
+    private static CodeAwarenessApplicationService getAppService() {
+        return ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+    }
+}
@@ -0,0 +1,26 @@
+package com.codeawareness.pycharm.utils;
+
+/**
+ * Areas of the plugin whose logging can be turned up or down independently.
+ * Each can be set at startup with a system property, e.g. {@code -Dcodeawareness.log.ipc=debug}.
+ */
+public enum LogCategory {
+    GENERAL("general"),
+    IPC("ipc"),             // Socket reads and writes, message parsing
+    EVENTS("events"),       // Dispatching and handling backend messages
+    HIGHLIGHTS("highlights"),
+    DIFF("diff");
+
+    private final String key;
+
+    LogCategory(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Get the name used for this category in system properties and log lines.
+     */
+    public String getKey() {
+        return key;
+    }
+}
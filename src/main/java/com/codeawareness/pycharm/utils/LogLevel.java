@@ -0,0 +1,29 @@
+package com.codeawareness.pycharm.utils;
+
+/**
+ * Log levels, from the most to the least severe.
+ */
+public enum LogLevel {
+    ERROR,
+    WARN,
+    INFO,
+    DEBUG,
+    TRACE;
+
+    /**
+     * Parse a level name, case-insensitively.
+     *
+     * @return The level, or null if the name is unknown
+     */
+    public static LogLevel parse(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (LogLevel level : values()) {
+            if (level.name().equalsIgnoreCase(name.trim())) {
+                return level;
+            }
+        }
+        return null;
+    }
+}
@@ -1,69 +1,146 @@
 package com.codeawareness.pycharm.utils;
 
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 /**
  * Logging utility for Code Awareness plugin.
  * Wraps IntelliJ's Logger for consistent logging throughout the plugin.
+ *
+ * Each {@link LogCategory} has its own level, checked before a message is built: the
+ * parameterized overloads ({@code "{}"} placeholders) neither concatenate nor allocate when the
+ * level is off, so they are the ones to use on hot paths. {@link Supplier} overloads defer
+ * building the message too, but a lambda that captures is allocated on every call. Debug and trace
+ * lines are written at IntelliJ's INFO level, tagged, so turning a category up is all it takes
+ * to see them. Large payloads, like whole messages, go through {@link #payload}, which is
+ * sampled as well as gated.
  */
 public class Logger {
 
     private static final com.intellij.openapi.diagnostic.Logger LOG = com.intellij.openapi.diagnostic.Logger.getInstance(Logger.class);
-    private static boolean debugEnabled = false;
+    private static final String PREFIX = "[Code Awareness] ";
+    private static final String PROPERTY_PREFIX = "codeawareness.log.";
+    private static final LogLevel DEFAULT_LEVEL = LogLevel.INFO;
+    private static final int DEFAULT_PAYLOAD_SAMPLE_RATE = 20; // Log one payload in this many
+    private static final int MAX_PAYLOAD_LENGTH = 2000;
+
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    // Per category ordinal: ordinal of the most verbose level that is logged
+    private static final AtomicIntegerArray categoryLevels = new AtomicIntegerArray(LogCategory.values().length);
+    private static final AtomicLongArray payloadCounters = new AtomicLongArray(LogCategory.values().length);
+    private static volatile int payloadSampleRate = DEFAULT_PAYLOAD_SAMPLE_RATE;
+
+    static {
+        resetLevels();
+    }
 
     /**
-     * Enable or disable debug logging.
+     * Enable or disable debug logging in every category.
      */
     public static void setDebugEnabled(boolean enabled) {
-        debugEnabled = enabled;
+        if (enabled) {
+            for (LogCategory category : LogCategory.values()) {
+                setLevel(category, LogLevel.TRACE);
+            }
+        } else {
+            resetLevels();
+        }
     }
 
     /**
      * Check if debug logging is enabled.
      */
     public static boolean isDebugEnabled() {
-        return debugEnabled;
+        return isEnabled(LogCategory.GENERAL, LogLevel.DEBUG);
+    }
+
+    /**
+     * Set the most verbose level logged in a category.
+     */
+    public static void setLevel(LogCategory category, LogLevel level) {
+        categoryLevels.set(category.ordinal(), level.ordinal());
+    }
+
+    /**
+     * Get the most verbose level logged in a category.
+     */
+    public static LogLevel getLevel(LogCategory category) {
+        return LEVELS[categoryLevels.get(category.ordinal())];
+    }
+
+    /**
+     * Restore every category to its startup level: the one set by its
+     * {@code codeawareness.log.<category>} system property, or INFO.
+     */
+    public static void resetLevels() {
+        for (LogCategory category : LogCategory.values()) {
+            LogLevel level = LogLevel.parse(System.getProperty(PROPERTY_PREFIX + category.getKey()));
+            setLevel(category, level != null ? level : DEFAULT_LEVEL);
+        }
+        payloadSampleRate = Integer.getInteger(PROPERTY_PREFIX + "payloadSampleRate", DEFAULT_PAYLOAD_SAMPLE_RATE);
+    }
+
+    /**
+     * Set how many payloads are passed over for each one logged.
+     *
+     * @param rate 1 to log every payload
+     */
+    public static void setPayloadSampleRate(int rate) {
+        payloadSampleRate = Math.max(1, rate);
+    }
+
+    /**
+     * Check if messages of a level are logged in a category. Does not allocate.
+     */
+    public static boolean isEnabled(LogCategory category, LogLevel level) {
+        return level.ordinal() <= categoryLevels.get(category.ordinal());
     }
 
     /**
      * Log an error message.
      */
     public static void error(String message) {
-        LOG.error("[Code Awareness] " + message);
+        LOG.error(PREFIX + message);
     }
 
     /**
      * Log an error message with exception.
      */
     public static void error(String message, Throwable throwable) {
-        LOG.error("[Code Awareness] " + message, throwable);
+        LOG.error(PREFIX + message, throwable);
     }
 
     /**
      * Log a warning message.
      */
     public static void warn(String message) {
-        LOG.warn("[Code Awareness] " + message);
+        LOG.warn(PREFIX + message);
     }
 
     /**
      * Log a warning message with exception.
      */
     public static void warn(String message, Throwable throwable) {
-        LOG.warn("[Code Awareness] " + message, throwable);
+        LOG.warn(PREFIX + message, throwable);
     }
 
     /**
      * Log an info message.
      */
     public static void info(String message) {
-        LOG.info("[Code Awareness] " + message);
+        if (isEnabled(LogCategory.GENERAL, LogLevel.INFO)) {
+            LOG.info(PREFIX + message);
+        }
     }
 
     /**
      * Log a debug message (only if debug is enabled).
      */
     public static void debug(String message) {
-        if (debugEnabled) {
-            LOG.debug("[Code Awareness] " + message);
+        if (isEnabled(LogCategory.GENERAL, LogLevel.DEBUG)) {
+            write(LogCategory.GENERAL, LogLevel.DEBUG, message, null);
         }
     }
 
@@ -71,8 +148,8 @@ public class Logger {
      * Log a debug message with exception (only if debug is enabled).
      */
     public static void debug(String message, Throwable throwable) {
-        if (debugEnabled) {
-            LOG.debug("[Code Awareness] " + message, throwable);
+        if (isEnabled(LogCategory.GENERAL, LogLevel.DEBUG)) {
+            write(LogCategory.GENERAL, LogLevel.DEBUG, message, throwable);
         }
     }
 
@@ -80,8 +157,169 @@ public class Logger {
      * Log a trace message (only if debug is enabled).
      */
     public static void trace(String message) {
-        if (debugEnabled) {
-            LOG.trace("[Code Awareness] " + message);
+        if (isEnabled(LogCategory.GENERAL, LogLevel.TRACE)) {
+            write(LogCategory.GENERAL, LogLevel.TRACE, message, null);
+        }
+    }
+
+    public static void info(LogCategory category, String message) {
+        log(category, LogLevel.INFO, message);
+    }
+
+    public static void info(LogCategory category, Supplier<String> message) {
+        log(category, LogLevel.INFO, message);
+    }
+
+    public static void info(LogCategory category, String format, Object arg) {
+        log(category, LogLevel.INFO, format, arg, null, null);
+    }
+
+    public static void info(LogCategory category, String format, Object arg1, Object arg2) {
+        log(category, LogLevel.INFO, format, arg1, arg2, null);
+    }
+
+    public static void info(LogCategory category, String format, Object arg1, Object arg2, Object arg3) {
+        log(category, LogLevel.INFO, format, arg1, arg2, arg3);
+    }
+
+    public static void info(LogCategory category, String format, long arg) {
+        log(category, LogLevel.INFO, format, arg);
+    }
+
+    public static void debug(LogCategory category, String message) {
+        log(category, LogLevel.DEBUG, message);
+    }
+
+    public static void debug(LogCategory category, Supplier<String> message) {
+        log(category, LogLevel.DEBUG, message);
+    }
+
+    public static void debug(LogCategory category, String format, Object arg) {
+        log(category, LogLevel.DEBUG, format, arg, null, null);
+    }
+
+    public static void debug(LogCategory category, String format, Object arg1, Object arg2) {
+        log(category, LogLevel.DEBUG, format, arg1, arg2, null);
+    }
+
+    public static void debug(LogCategory category, String format, Object arg1, Object arg2, Object arg3) {
+        log(category, LogLevel.DEBUG, format, arg1, arg2, arg3);
+    }
+
+    public static void debug(LogCategory category, String format, long arg) {
+        log(category, LogLevel.DEBUG, format, arg);
+    }
+
+    public static void trace(LogCategory category, String message) {
+        log(category, LogLevel.TRACE, message);
+    }
+
+    public static void trace(LogCategory category, Supplier<String> message) {
+        log(category, LogLevel.TRACE, message);
+    }
+
+    public static void trace(LogCategory category, String format, Object arg) {
+        log(category, LogLevel.TRACE, format, arg, null, null);
+    }
+
+    public static void trace(LogCategory category, String format, Object arg1, Object arg2) {
+        log(category, LogLevel.TRACE, format, arg1, arg2, null);
+    }
+
+    public static void trace(LogCategory category, String format, long arg) {
+        log(category, LogLevel.TRACE, format, arg);
+    }
+
+    /**
+     * Log a large payload, such as a whole message, on the sampled debug channel: only when
+     * debug is on for the category, only one call in {@link #setPayloadSampleRate rate}, and
+     * cut to a bounded length.
+     */
+    public static void payload(LogCategory category, String label, Object payload) {
+        if (isSampled(category)) {
+            write(category, LogLevel.DEBUG, label + ": " + truncate(String.valueOf(payload)), null);
+        }
+    }
+
+    /**
+     * Log a payload that is costly to render on the sampled debug channel. The renderer only
+     * runs for sampled calls; pass a method reference so nothing is captured per call.
+     */
+    public static <T> void payload(LogCategory category, String label, Function<T, String> renderer, T payload) {
+        if (isSampled(category)) {
+            write(category, LogLevel.DEBUG, label + ": " + truncate(renderer.apply(payload)), null);
+        }
+    }
+
+    private static boolean isSampled(LogCategory category) {
+        if (!isEnabled(category, LogLevel.DEBUG)) {
+            return false;
+        }
+        // Counts only calls that pass the gate, so a quiet category costs no contended write
+        return (payloadCounters.getAndIncrement(category.ordinal()) % payloadSampleRate) == 0;
+    }
+
+    private static void log(LogCategory category, LogLevel level, String message) {
+        if (isEnabled(category, level)) {
+            write(category, level, message, null);
+        }
+    }
+
+    private static void log(LogCategory category, LogLevel level, Supplier<String> message) {
+        if (isEnabled(category, level)) {
+            write(category, level, message.get(), null);
+        }
+    }
+
+    private static void log(LogCategory category, LogLevel level, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(category, level)) {
+            write(category, level, format(format, arg1, arg2, arg3), null);
+        }
+    }
+
+    private static void log(LogCategory category, LogLevel level, String format, long arg) {
+        if (isEnabled(category, level)) {
+            write(category, level, format(format, arg, null, null), null);
+        }
+    }
+
+    /**
+     * Replace each {@code {}} in a format with the next argument.
+     */
+    static String format(String format, Object arg1, Object arg2, Object arg3) {
+        StringBuilder builder = new StringBuilder(format.length() + 32);
+        Object[] args = {arg1, arg2, arg3};
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < args.length && (placeholder = format.indexOf("{}", start)) >= 0) {
+            builder.append(format, start, placeholder).append(args[argIndex++]);
+            start = placeholder + 2;
+        }
+        return builder.append(format, start, format.length()).toString();
+    }
+
+    private static String truncate(String text) {
+        if (text.length() <= MAX_PAYLOAD_LENGTH) {
+            return text;
+        }
+        return text.substring(0, MAX_PAYLOAD_LENGTH) + "... (" + text.length() + " chars)";
+    }
+
+    private static void write(LogCategory category, LogLevel level, String message, Throwable throwable) {
+        StringBuilder line = new StringBuilder(PREFIX);
+        if (category != LogCategory.GENERAL) {
+            line.append('[').append(category.getKey()).append("] ");
+        }
+        if (level == LogLevel.DEBUG || level == LogLevel.TRACE) {
+            line.append(level).append(' ');
+        }
+        line.append(message);
+
+        if (throwable != null) {
+            LOG.info(line.toString(), throwable);
+        } else {
+            LOG.info(line.toString());
         }
     }
 }
@@ -12,6 +12,12 @@ public class PathUtils {
     private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
     private static final String HOME_DIR = System.getProperty("user.home");
 
+    /**
+     * System property that moves the socket directory, e.g. to a stand-in backend's temporary
+     * directory in integration tests. Ignored on Windows.
+     */
+    public static final String SOCKET_DIR_PROPERTY = "codeawareness.socketDir";
+
     /**
      * Check if running on Windows.
      */
@@ -35,13 +41,17 @@ public class PathUtils {
 
     /**
      * Get the Code Awareness socket directory path.
-     * Unix/Linux/macOS: ~/.kawa-code/sockets/
+     * Unix/Linux/macOS: ~/.kawa-code/sockets/, unless overridden with {@link #SOCKET_DIR_PROPERTY}
      * Windows: Uses named pipes (no directory needed)
      */
     public static String getSocketDirectory() {
         if (IS_WINDOWS) {
             return null; // Windows uses named pipes, not files
         }
+        String override = System.getProperty(SOCKET_DIR_PROPERTY);
+        if (override != null && !override.isEmpty()) {
+            return expandHome(override);
+        }
         return expandHome("~/.kawa-code/sockets");
     }
 
@@ -54,7 +64,7 @@ public class PathUtils {
         if (IS_WINDOWS) {
             return "\\\\.\\pipe\\caw.catalog";
         }
-        return expandHome("~/.kawa-code/sockets/caw.catalog");
+        return getSocketDirectory() + "/caw.catalog";
     }
 
     /**
@@ -69,7 +79,7 @@ public class PathUtils {
         if (IS_WINDOWS) {
             return "\\\\.\\pipe\\caw." + clientGuid;
         }
-        return expandHome("~/.kawa-code/sockets/caw." + clientGuid);
+        return getSocketDirectory() + "/caw." + clientGuid;
     }
 
     /**
@@ -83,6 +93,24 @@ public class PathUtils {
         return Paths.get(path).normalize().toString();
     }
 
+    /**
+     * Get the path of a file relative to a base directory, as Gardener expects it.
+     *
+     * @return The relative path without leading separator, or null if the file is not under the base
+     */
+    public static String getRelativePath(String basePath, String filePath) {
+        if (basePath == null || filePath == null || !filePath.startsWith(basePath)) {
+            return null;
+        }
+        String relativePath = filePath.substring(basePath.length());
+        if (relativePath.startsWith("/") || relativePath.startsWith("\\")) {
+            relativePath = relativePath.substring(1);
+        } else if (!relativePath.isEmpty() && !basePath.endsWith("/") && !basePath.endsWith("\\")) {
+            return null; // A sibling sharing the name prefix, e.g. /project2 for /project
+        }
+        return relativePath;
+    }
+
     /**
      * Check if a file exists.
      */
@@ -0,0 +1,231 @@
+package com.codeawareness.pycharm.vfs;
+
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
+import com.codeawareness.pycharm.utils.Logger;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves file paths received from the backend to {@link VirtualFile}s and their documents,
+ * off the EDT, and remembers the result.
+ *
+ * Lookups run in non-blocking read actions, so they never hold up a write action. Paths the
+ * VFS does not know yet are collected and refreshed together in one asynchronous refresh
+ * instead of one synchronous refresh each. Paths still missing after the refresh are
+ * remembered as missing until the next VFS change, so repeated requests for them do not
+ * trigger another refresh each. UI code should only use handles returned by
+ * {@link #getIfResolved} or delivered by {@link #resolve}. Entries are dropped when the
+ * VFS reports that a file was deleted, moved or renamed.
+ */
+public class FileResolver {
+
+    private static final long REFRESH_BATCH_DELAY_MS = 50;
+
+    private final Project project;
+    private final TaskGroup tasks;
+    private final Map<String, ResolvedFile> resolved = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<ResolvedFile>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<ResolvedFile>> pendingRefresh = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+    // Bumped on every VFS change; a miss seen across a change is not remembered
+    private final AtomicLong vfsGeneration = new AtomicLong();
+
+    /**
+     * A resolved path.
+     */
+    public static final class ResolvedFile {
+        private final VirtualFile file;
+        private final Document document;
+
+        ResolvedFile(VirtualFile file, Document document) {
+            this.file = file;
+            this.document = document;
+        }
+
+        public VirtualFile getFile() {
+            return file;
+        }
+
+        /**
+         * Get the file's document, if it was loaded when the path was resolved.
+         */
+        public Document getDocument() {
+            return document;
+        }
+
+        boolean isValid() {
+            return file.isValid();
+        }
+    }
+
+    public FileResolver(Project project, TaskGroup tasks) {
+        this.project = project;
+        this.tasks = tasks;
+    }
+
+    /**
+     * Get an already resolved file without doing any lookup. Safe to call on the EDT.
+     *
+     * @return The resolved file, or null if it was not resolved yet or is no longer valid
+     */
+    public ResolvedFile getIfResolved(String path) {
+        ResolvedFile file = path != null ? resolved.get(path) : null;
+        if (file != null && !file.isValid()) {
+            resolved.remove(path, file);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Resolve a path in the background. Concurrent calls for the same path share one lookup.
+     *
+     * @return A future completed with the resolved file, or with null if there is no such file
+     */
+    public CompletableFuture<ResolvedFile> resolve(String path) {
+        ResolvedFile cached = getIfResolved(path);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (path == null || missing.contains(path)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<ResolvedFile> future = new CompletableFuture<>();
+        CompletableFuture<ResolvedFile> existing = inFlight.putIfAbsent(path, future);
+        if (existing != null) {
+            return existing;
+        }
+        lookup(path, future, -1);
+        return future;
+    }
+
+    /**
+     * Forget a path, and every path below it if it is a directory.
+     */
+    public void invalidate(String path) {
+        if (path == null) {
+            return;
+        }
+        String prefix = path.endsWith("/") ? path : path + "/";
+        resolved.keySet().removeIf(p -> p.equals(path) || p.startsWith(prefix));
+        missing.removeIf(p -> p.equals(path) || p.startsWith(prefix));
+    }
+
+    /**
+     * Forget which paths were missing; any VFS change may have created them.
+     */
+    public void onVfsChanged() {
+        vfsGeneration.incrementAndGet();
+        missing.clear();
+    }
+
+    /**
+     * Forget all resolved and missing paths.
+     */
+    public void invalidateAll() {
+        resolved.clear();
+        missing.clear();
+    }
+
+    /**
+     * Get the number of resolved paths.
+     */
+    public int size() {
+        return resolved.size();
+    }
+
+    /**
+     * @param refreshedAt VFS generation at which the path was refreshed, or -1 to refresh it if missing
+     */
+    private void lookup(String path, CompletableFuture<ResolvedFile> future, long refreshedAt) {
+        ReadAction.nonBlocking(() -> find(path))
+            .expireWith(project)
+            .submit(AppExecutorUtil.getAppExecutorService())
+            .onSuccess(file -> {
+                if (file != null) {
+                    resolved.put(path, file);
+                    finish(path, future, file);
+                } else if (refreshedAt < 0) {
+                    queueRefresh(path, future);
+                } else {
+                    Logger.debug("File not found: " + path);
+                    if (vfsGeneration.get() == refreshedAt) {
+                        missing.add(path);
+                    }
+                    finish(path, future, null);
+                }
+            })
+            .onError(e -> finish(path, future, null));
+    }
+
+    private static ResolvedFile find(String path) {
+        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+        if (file == null || !file.isValid()) {
+            return null;
+        }
+        // Only a document that is already loaded; loading one is up to the caller
+        Document document = file.isDirectory() ? null : FileDocumentManager.getInstance().getCachedDocument(file);
+        return new ResolvedFile(file, document);
+    }
+
+    /**
+     * Queue a path unknown to the VFS for the next batched refresh.
+     */
+    private void queueRefresh(String path, CompletableFuture<ResolvedFile> future) {
+        pendingRefresh.put(path, future);
+        if (refreshScheduled.compareAndSet(false, true)) {
+            tasks.schedule(SchedulerLane.VFS, this::flushRefresh, REFRESH_BATCH_DELAY_MS);
+        }
+    }
+
+    private void flushRefresh() {
+        refreshScheduled.set(false);
+        Map<String, CompletableFuture<ResolvedFile>> batch = new HashMap<>();
+        for (String path : new ArrayList<>(pendingRefresh.keySet())) {
+            CompletableFuture<ResolvedFile> future = pendingRefresh.remove(path);
+            if (future != null) {
+                batch.put(path, future);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<File> files = new ArrayList<>();
+        for (String path : batch.keySet()) {
+            files.add(new File(path));
+        }
+        Logger.debug("Refreshing " + files.size() + " path(s) unknown to the VFS");
+        LocalFileSystem.getInstance().refreshIoFiles(files, true, false, () -> {
+            // Taken after the refresh, whose own events must not void its result
+            long generation = vfsGeneration.get();
+            for (Map.Entry<String, CompletableFuture<ResolvedFile>> entry : batch.entrySet()) {
+                lookup(entry.getKey(), entry.getValue(), generation);
+            }
+        });
+    }
+
+    private void finish(String path, CompletableFuture<ResolvedFile> future, ResolvedFile file) {
+        inFlight.remove(path, future);
+        future.complete(file);
+    }
+}
@@ -0,0 +1,193 @@
+package com.codeawareness.pycharm.benchmark;
+
+import com.codeawareness.pycharm.highlighting.HighlightManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.impl.DocumentMarkupModel;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of painting highlights in an open editor, the part of the plugin users see.
+ *
+ * Opens synthetic Python files of 1k, 10k and 100k lines and applies, replaces, toggles,
+ * recolors and clears highlight sets of several densities. For each operation it reports the
+ * EDT time until the editor is up to date, the highlighters left in the document's markup model
+ * and the heap retained, one line per operation, so runs before and after a rendering change
+ * can be diffed. Not part of {@code test}; run it with {@code ./gradlew benchmarkTest}, with
+ * {@code -Dcodeawareness.benchmark.highlightRounds} to change the number of rounds.
+ */
+public class HighlightRenderingBenchmark extends BasePlatformTestCase {
+
+    private static final double[] DENSITIES = {0.01, 0.1, 0.5};
+    private static final int ROUNDS = Integer.getInteger("codeawareness.benchmark.highlightRounds", 5);
+
+    private File directory;
+
+    /**
+     * Result of one timed operation.
+     */
+    private static final class Sample {
+        final long edtNanos;
+        final int highlighters;
+        final long retainedBytes;
+
+        Sample(long edtNanos, int highlighters, long retainedBytes) {
+            this.edtNanos = edtNanos;
+            this.highlighters = highlighters;
+            this.retainedBytes = retainedBytes;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = FileUtil.createTempDirectory("highlight-benchmark", null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            FileUtil.delete(directory);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testHighlights1kLines() throws Exception {
+        benchmark(1_000);
+    }
+
+    public void testHighlights10kLines() throws Exception {
+        benchmark(10_000);
+    }
+
+    public void testHighlights100kLines() throws Exception {
+        benchmark(100_000);
+    }
+
+    private void benchmark(int lineCount) throws Exception {
+        VirtualFile file = createPythonFile(lineCount);
+        myFixture.openFileInEditor(file);
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        assertNotNull(document);
+        String path = file.getPath();
+        Random random = new Random(lineCount);
+
+        for (double density : DENSITIES) {
+            int count = Math.max(1, (int) (lineCount * density));
+            String label = String.format("%d lines, %.0f%% (%d lines)", lineCount, density * 100, count);
+            HighlightManager manager = new HighlightManager(getProject());
+            List<Sample> apply = new ArrayList<>();
+            List<Sample> replace = new ArrayList<>();
+            List<Sample> recolor = new ArrayList<>();
+            List<Sample> toggle = new ArrayList<>();
+            List<Sample> clear = new ArrayList<>();
+
+            for (int round = 0; round < ROUNDS; round++) {
+                List<Integer> first = pickLines(random, lineCount, count);
+                List<Integer> second = pickLines(random, lineCount, count);
+
+                apply.add(measure(document, () -> manager.setHighlights(path, first)));
+                assertEquals(count, manager.getHighlightCount(path));
+
+                replace.add(measure(document, () -> manager.setHighlights(path, second)));
+                recolor.add(measure(document, manager::refreshHighlightColors));
+                assertEquals(count, manager.getHighlightCount(path));
+
+                // Toggling off drops the highlights; on again, the next update repaints them
+                toggle.add(measure(document, () -> {
+                    manager.setHighlightsEnabled(false);
+                    manager.setHighlightsEnabled(true);
+                    manager.setHighlights(path, second);
+                }));
+
+                clear.add(measure(document, () -> manager.clearHighlights(path)));
+                assertEquals(0, manager.getHighlightCount(path));
+            }
+
+            report(label, "apply", apply);
+            report(label, "replace", replace);
+            report(label, "recolor", recolor);
+            report(label, "toggle", toggle);
+            report(label, "clear", clear);
+        }
+    }
+
+    /**
+     * Run an operation on the EDT and wait until everything it queued has run.
+     */
+    private Sample measure(Document document, Runnable operation) throws Exception {
+        long heapBefore = usedHeapAfterGc();
+        long start = System.nanoTime();
+        operation.run();
+        PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+        long edtNanos = System.nanoTime() - start;
+        long retained = usedHeapAfterGc() - heapBefore;
+        int highlighters = DocumentMarkupModel.forDocument(document, getProject(), true).getAllHighlighters().length;
+        return new Sample(edtNanos, highlighters, retained);
+    }
+
+    private VirtualFile createPythonFile(int lineCount) throws Exception {
+        StringBuilder content = new StringBuilder(lineCount * 40);
+        for (int i = 0; i < lineCount; i++) {
+            if (i % 10 == 0) {
+                content.append("def function_").append(i).append("(value):\n");
+            } else {
+                content.append("    value = value * ").append(i).append(" + 1  # line ").append(i).append('\n');
+            }
+        }
+        File file = new File(directory, "synthetic_" + lineCount + ".py");
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+        VirtualFile virtualFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(file);
+        assertNotNull(virtualFile);
+        return virtualFile;
+    }
+
+    private static List<Integer> pickLines(Random random, int lineCount, int count) {
+        List<Integer> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            lines.add(i);
+        }
+        Collections.shuffle(lines, random);
+        List<Integer> picked = new ArrayList<>(lines.subList(0, count));
+        Collections.sort(picked);
+        return picked;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void report(String label, String operation, List<Sample> samples) {
+        long[] nanos = samples.stream().mapToLong(sample -> sample.edtNanos).toArray();
+        long[] retained = samples.stream().mapToLong(sample -> sample.retainedBytes).toArray();
+        Sample last = samples.get(samples.size() - 1);
+        System.out.printf("Highlights, %s, %s: edt p50=%.2fms max=%.2fms highlighters=%d retained p50=%+dKB%n",
+            label, operation, percentile(nanos, 50) / 1_000_000.0, percentile(nanos, 100) / 1_000_000.0,
+            last.highlighters, percentile(retained, 50) / 1024);
+    }
+
+    private static long percentile(long[] values, int percentile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
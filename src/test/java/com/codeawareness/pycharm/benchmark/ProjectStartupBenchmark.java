@@ -0,0 +1,78 @@
+package com.codeawareness.pycharm.benchmark;
+
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the time the plugin adds to opening a project.
+ *
+ * Measures the part the opening thread pays for (constructing the project service) separately
+ * from the background initialization that follows. Not part of {@code test}; run it with
+ * {@code ./gradlew benchmarkTest}. The EDT budget can be set with {@code -Dcodeawareness.benchmark.edtBudgetMs}.
+ */
+public class ProjectStartupBenchmark extends BasePlatformTestCase {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 30;
+    private static final long READY_TIMEOUT_SECONDS = 10;
+
+    public void testProjectServiceStartup() throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            measure();
+        }
+
+        long[] constructNanos = new long[ROUNDS];
+        long[] readyNanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long[] sample = measure();
+            constructNanos[i] = sample[0];
+            readyNanos[i] = sample[1];
+        }
+
+        report("constructor (opening thread)", constructNanos);
+        report("until ready (background)", readyNanos);
+
+        long budgetMs = Long.getLong("codeawareness.benchmark.edtBudgetMs", 50);
+        long medianConstructMs = TimeUnit.NANOSECONDS.toMillis(percentile(constructNanos, 50));
+        assertTrue("Project service constructor took " + medianConstructMs + "ms, budget is " + budgetMs + "ms",
+            medianConstructMs <= budgetMs);
+    }
+
+    /**
+     * Construct a project service as the platform would and wait until it is ready.
+     *
+     * @return Nanoseconds spent in the constructor and until the service was ready
+     */
+    private long[] measure() throws Exception {
+        long start = System.nanoTime();
+        CodeAwarenessProjectService service = new CodeAwarenessProjectService(getProject());
+        long constructed = System.nanoTime();
+        try {
+            service.whenReady().get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            long ready = System.nanoTime();
+            return new long[]{constructed - start, ready - start};
+        } finally {
+            Disposer.dispose(service);
+        }
+    }
+
+    private static void report(String label, long[] nanos) {
+        System.out.printf("Project startup, %s: p50=%.2fms p90=%.2fms max=%.2fms%n", label,
+            millis(percentile(nanos, 50)), millis(percentile(nanos, 90)), millis(percentile(nanos, 100)));
+    }
+
+    private static long percentile(long[] values, int percentile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
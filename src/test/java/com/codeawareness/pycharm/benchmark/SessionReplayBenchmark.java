@@ -0,0 +1,74 @@
+package com.codeawareness.pycharm.benchmark;
+
+import com.codeawareness.pycharm.CodeAwarenessApplicationService;
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.communication.SessionReplayer;
+import com.codeawareness.pycharm.events.EventDispatcher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a recorded IPC session (see Tools | Code Awareness | Record IPC Session) through the
+ * event dispatcher and the handlers of a headless project, turning it into a repeatable benchmark.
+ *
+ * The application's dispatcher hands messages to pooled threads, so timing it would only measure
+ * queueing. The replay instead goes through a dispatcher with the same handlers that runs them
+ * inline, and the clock keeps running until the UI updates and project tasks they queued are done.
+ *
+ * Run with {@code ./gradlew benchmarkTest -Dcodeawareness.replay.session=<file>}, and optionally
+ * {@code -Dcodeawareness.replay.speed=original} to keep the recorded timing. Skipped without a session.
+ */
+public class SessionReplayBenchmark extends BasePlatformTestCase {
+
+    private static final long READY_TIMEOUT_SECONDS = 10;
+    private static final long IDLE_TIMEOUT_SECONDS = 60;
+
+    public void testReplaySession() throws Exception {
+        String session = System.getProperty("codeawareness.replay.session");
+        if (session == null || !Files.isRegularFile(Path.of(session))) {
+            System.out.println("No session to replay; set -Dcodeawareness.replay.session");
+            return;
+        }
+        SessionReplayer.Speed speed = "original".equalsIgnoreCase(System.getProperty("codeawareness.replay.speed"))
+            ? SessionReplayer.Speed.ORIGINAL
+            : SessionReplayer.Speed.AS_FAST_AS_POSSIBLE;
+
+        // Register the project's handlers, as opening a project would
+        CodeAwarenessProjectService projectService = getProject().getService(CodeAwarenessProjectService.class);
+        projectService.whenReady().get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        CodeAwarenessApplicationService appService =
+            ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+        EventDispatcher inline = new EventDispatcher(Runnable::run);
+        appService.getEventDispatcher().getHandlers().forEach(inline::registerHandler);
+
+        long start = System.nanoTime();
+        SessionReplayer.Result result = new SessionReplayer(inline::dispatch).replay(Path.of(session), speed);
+        awaitIdle(projectService);
+        long totalNanos = System.nanoTime() - start;
+
+        System.out.printf("Replayed %s at %s speed: %d message(s), handlers %.1fms, until idle %.1fms (%.0f msg/s)%n",
+            session, speed, result.getMessages(), result.getElapsedNanos() / 1_000_000.0, totalNanos / 1_000_000.0,
+            result.getMessages() * 1_000_000_000.0 / Math.max(1, totalNanos));
+        assertTrue("Session has no inbound frames", result.getInboundFrames() > 0);
+    }
+
+    /**
+     * Wait until the project's queued tasks, and the UI updates they post, are done.
+     */
+    private static void awaitIdle(CodeAwarenessProjectService projectService) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(IDLE_TIMEOUT_SECONDS);
+        do {
+            PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+            if (projectService.getProjectTasks().getPendingCount() == 0) {
+                break;
+            }
+            Thread.sleep(1);
+        } while (System.nanoTime() < deadline);
+        PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+    }
+}
@@ -0,0 +1,124 @@
+package com.codeawareness.pycharm.communication;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuthSessionCache.
+ */
+class AuthSessionCacheTest {
+
+    private static final AuthSession ALICE = new AuthSession(true, "Alice", "alice@example.com", "/tmp/caw");
+
+    @Test
+    void testConcurrentCallersShareOneRequest() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AuthSessionCache cache = new AuthSessionCache(() -> {
+            requests.incrementAndGet();
+            return true;
+        });
+
+        List<CompletableFuture<AuthSession>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(cache.get());
+        }
+        assertEquals(1, requests.get());
+
+        cache.update(ALICE);
+        for (CompletableFuture<AuthSession> future : futures) {
+            assertSame(ALICE, future.get(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testKnownSessionNeedsNoRequest() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AuthSessionCache cache = new AuthSessionCache(() -> {
+            requests.incrementAndGet();
+            return true;
+        });
+        cache.get();
+        cache.update(ALICE);
+
+        assertSame(ALICE, cache.get().get(1, TimeUnit.SECONDS));
+        assertSame(ALICE, cache.getSnapshot());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void testInvalidateFetchesAgainButKeepsSnapshot() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AuthSessionCache cache = new AuthSessionCache(() -> {
+            requests.incrementAndGet();
+            return true;
+        });
+        cache.update(ALICE);
+
+        cache.invalidate();
+        assertSame(ALICE, cache.getSnapshot());
+        CompletableFuture<AuthSession> refreshed = cache.get();
+        assertEquals(1, requests.get());
+        assertFalse(refreshed.isDone());
+
+        cache.update(AuthSession.NOT_AUTHENTICATED);
+        assertFalse(refreshed.get(1, TimeUnit.SECONDS).isAuthenticated());
+    }
+
+    @Test
+    void testFailedSendLetsNextCallerRetry() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AuthSessionCache cache = new AuthSessionCache(() -> requests.incrementAndGet() > 1);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> cache.get().get(1, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof IOException);
+
+        CompletableFuture<AuthSession> retry = cache.get();
+        assertEquals(2, requests.get());
+        cache.update(ALICE);
+        assertSame(ALICE, retry.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testUnansweredRequestTimesOut() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AuthSessionCache cache = new AuthSessionCache(() -> {
+            requests.incrementAndGet();
+            return true;
+        }, 50);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> cache.get().get(1, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof TimeoutException);
+
+        cache.get();
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testFromAuthInfo() {
+        JsonObject user = new JsonObject();
+        user.addProperty("name", "Alice");
+        user.addProperty("email", "alice@example.com");
+        JsonObject data = new JsonObject();
+        data.add("user", user);
+        data.addProperty("tmpDir", "/tmp/caw");
+        assertEquals(ALICE, AuthSession.fromAuthInfo(data));
+
+        JsonObject anonymous = new JsonObject();
+        anonymous.addProperty("tmpDir", "/tmp/caw");
+        AuthSession session = AuthSession.fromAuthInfo(anonymous);
+        assertFalse(session.isAuthenticated());
+        assertNull(session.getUserName());
+        assertEquals("/tmp/caw", session.getTmpDir());
+    }
+}
@@ -0,0 +1,96 @@
+package com.codeawareness.pycharm.communication;
+
+import com.codeawareness.pycharm.scheduling.CodeAwarenessScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ConnectionSupervisor.
+ */
+class ConnectionSupervisorTest {
+
+    private CodeAwarenessScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new CodeAwarenessScheduler(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testDelayGrowsWithJitterAndIsCapped() {
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(
+            () -> CompletableFuture.completedFuture(null), scheduler, 100, 1000, new Random(42));
+
+        for (int attempt = 0; attempt < 30; attempt++) {
+            long ceiling = Math.min(1000, 100L << Math.min(attempt, 20));
+            long delay = supervisor.getDelayMs(attempt);
+            assertTrue(delay >= ceiling / 2 && delay <= ceiling,
+                "Delay " + delay + " of attempt " + attempt + " should be within [" + ceiling / 2 + ", " + ceiling + "]");
+        }
+    }
+
+    @Test
+    void testReconnectsAfterFailures() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch connected = new CountDownLatch(1);
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                return CompletableFuture.failedFuture(new IOException("Backend not ready"));
+            }
+            connected.countDown();
+            return CompletableFuture.completedFuture(null);
+        }, scheduler, 5, 20, new Random(1));
+
+        supervisor.start();
+        supervisor.connectionLost(new IOException("Broken pipe"));
+
+        assertTrue(connected.await(5, TimeUnit.SECONDS), "Should reconnect");
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void testNoReconnectWhenNotSupervising() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(() -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }, scheduler, 5, 20, new Random(1));
+
+        supervisor.connectionLost(new IOException("Broken pipe"));
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertEquals(0, attempts.get());
+    }
+
+    @Test
+    void testStopCancelsPendingReconnect() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        ConnectionSupervisor supervisor = new ConnectionSupervisor(() -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }, scheduler, 50, 50, new Random(1));
+
+        supervisor.start();
+        supervisor.connectionLost(new IOException("Broken pipe"));
+        supervisor.stop();
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        assertEquals(0, attempts.get());
+        assertFalse(supervisor.isActive());
+    }
+}
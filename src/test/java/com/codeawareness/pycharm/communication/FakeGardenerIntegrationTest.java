@@ -0,0 +1,144 @@
+package com.codeawareness.pycharm.communication;
+
+import com.codeawareness.pycharm.testing.FakeGardener;
+import com.codeawareness.pycharm.utils.PathUtils;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Integration tests for the socket layer against a {@link FakeGardener}.
+ */
+public class FakeGardenerIntegrationTest {
+
+    private static final String GUID = "test-client-guid";
+
+    private FakeGardener gardener;
+    private SocketManager catalog;
+    private SocketManager ipc;
+
+    @BeforeEach
+    void setUp() {
+        assumeFalse(PathUtils.isWindows(), "Unix domain sockets only");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ipc != null) {
+            ipc.close();
+        }
+        if (catalog != null) {
+            catalog.close();
+        }
+        if (gardener != null) {
+            gardener.close();
+        }
+        System.clearProperty(PathUtils.SOCKET_DIR_PROPERTY);
+    }
+
+    private void connect(FakeGardener.Builder builder) throws Exception {
+        gardener = builder.build().start();
+        System.setProperty(PathUtils.SOCKET_DIR_PROPERTY, gardener.getSocketDirectory().toString());
+
+        catalog = new SocketManager(PathUtils.getCatalogSocketPath());
+        catalog.connect();
+        catalog.write(MessageProtocol.serialize(MessageBuilder.buildClientId(GUID)));
+
+        Path ipcSocket = Path.of(PathUtils.getIpcSocketPath(GUID));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.exists(ipcSocket) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        ipc = new SocketManager(ipcSocket.toString());
+        ipc.connect();
+        assertEquals(GUID, gardener.awaitClient(5, TimeUnit.SECONDS));
+    }
+
+    private Message request(Message message) throws Exception {
+        ipc.write(MessageProtocol.serialize(message));
+        return MessageProtocol.deserialize(ipc.readUntilDelimiter(MessageProtocol.DELIMITER));
+    }
+
+    @Test
+    void testAuthInfo() throws Exception {
+        connect(FakeGardener.builder());
+
+        Message response = request(MessageBuilder.buildAuthInfo(GUID));
+
+        assertTrue(response.isResponse());
+        assertEquals("auth:info", response.getAction());
+        AuthSession session = AuthSession.fromAuthInfo(response.getData().getAsJsonObject());
+        assertTrue(session.isAuthenticated());
+        assertEquals(gardener.getTmpDirectory().toString(), session.getTmpDir());
+        assertEquals(1, gardener.getRequestCount("clientId"));
+    }
+
+    @Test
+    void testActivePathHighlightSize() throws Exception {
+        connect(FakeGardener.builder().highlightLines(250));
+
+        Message response = request(MessageBuilder.buildActivePath(GUID, "/project/main.py", "main.py"));
+
+        assertEquals("code", response.getDomain());
+        assertEquals("active-path", response.getAction());
+        assertEquals(250, response.getData().getAsJsonObject().getAsJsonArray("hl").size());
+    }
+
+    @Test
+    void testDiffPeerExtractsFileOfConfiguredSize() throws Exception {
+        connect(FakeGardener.builder().peerFileBytes(100_000));
+
+        Message response = request(MessageBuilder.buildDiffPeer(GUID, "/project", "src/main.py", "peer-1"));
+
+        JsonObject data = response.getData().getAsJsonObject();
+        assertEquals("peer-1", data.get("userId").getAsString());
+        assertEquals(100_000, Files.size(Path.of(data.get("peerFile").getAsString())));
+    }
+
+    @Test
+    void testScriptedResponse() throws Exception {
+        connect(FakeGardener.builder().respond("auth:info", request -> new JsonPrimitive("scripted")));
+
+        Message response = request(MessageBuilder.buildAuthInfo(GUID));
+
+        assertEquals("scripted", response.getData().getAsString());
+    }
+
+    @Test
+    void testPeerSelectPush() throws Exception {
+        connect(FakeGardener.builder());
+
+        gardener.selectPeer(GUID, "peer-1", "Peer One", List.of("a.py", "b.py"));
+        Message message = MessageProtocol.deserialize(ipc.readUntilDelimiter(MessageProtocol.DELIMITER));
+
+        assertEquals("peer:select", message.getAction());
+        JsonObject peer = message.getData().getAsJsonObject().getAsJsonObject("peer");
+        assertEquals("peer-1", peer.get("_id").getAsString());
+        assertEquals(2, peer.getAsJsonArray("files").size());
+    }
+
+    @Test
+    void testLatencyIsApplied() throws Exception {
+        connect(FakeGardener.builder().latency(50, 80));
+
+        int requests = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            request(MessageBuilder.buildAuthInfo(GUID));
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMs >= requests * 50L, "Round trips took only " + elapsedMs + " ms");
+        assertEquals(requests, gardener.getRequestCount("auth:info"));
+    }
+}
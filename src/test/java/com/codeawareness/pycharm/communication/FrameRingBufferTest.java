@@ -0,0 +1,124 @@
+package com.codeawareness.pycharm.communication;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FrameRingBuffer.
+ */
+class FrameRingBufferTest {
+
+    private static final Message ACTIVE_PATH = new Message(Message.Flow.RES, "code", "active-path", null, "1");
+    private static final Message AUTH_INFO = new Message(Message.Flow.REQ, "*", "auth:info", null, "1");
+
+    @Test
+    void testOnlyCountsWithoutViewer() {
+        FrameRingBuffer buffer = new FrameRingBuffer(8);
+
+        buffer.record(FrameDirection.INBOUND, ACTIVE_PATH, "{}");
+        buffer.record(FrameDirection.OUTBOUND, AUTH_INFO, "{}");
+
+        assertFalse(buffer.isCapturing());
+        assertTrue(buffer.snapshot().isEmpty());
+        assertEquals(1, buffer.getFrameCount(FrameDirection.INBOUND));
+        assertEquals(1, buffer.getFrameCount(FrameDirection.OUTBOUND));
+    }
+
+    @Test
+    void testKeepsFramesWhileViewed() {
+        FrameRingBuffer buffer = new FrameRingBuffer(8);
+        buffer.addViewer();
+
+        buffer.record(FrameDirection.OUTBOUND, AUTH_INFO, "{\"action\":\"auth:info\"}");
+        buffer.record(FrameDirection.INBOUND, ACTIVE_PATH, "{\"hl\":[1]}");
+
+        List<FrameRingBuffer.Frame> frames = buffer.snapshot();
+        assertEquals(2, frames.size());
+        assertEquals(FrameDirection.OUTBOUND, frames.get(0).getDirection());
+        assertEquals("auth:info", frames.get(0).getAction());
+        assertEquals("code:active-path", frames.get(1).getAction());
+        assertEquals(Message.Flow.RES, frames.get(1).getFlow());
+        assertEquals(10, frames.get(1).getSize());
+        assertNull(frames.get(1).getPayload(), "Payloads are off by default");
+
+        buffer.removeViewer();
+        buffer.record(FrameDirection.INBOUND, ACTIVE_PATH, "{}");
+        assertEquals(2, buffer.snapshot().size());
+    }
+
+    @Test
+    void testCapturesPayloadsWhenEnabled() {
+        FrameRingBuffer buffer = new FrameRingBuffer(8);
+        buffer.addViewer();
+        buffer.setCapturePayloads(true);
+
+        buffer.record(FrameDirection.INBOUND, ACTIVE_PATH, "{\"hl\":[1]}");
+
+        assertEquals("{\"hl\":[1]}", buffer.snapshot().get(0).getPayload());
+    }
+
+    @Test
+    void testOverwritesOldestWhenFull() {
+        FrameRingBuffer buffer = new FrameRingBuffer(4);
+        buffer.addViewer();
+
+        for (int i = 0; i < 10; i++) {
+            buffer.record(FrameDirection.INBOUND, ACTIVE_PATH, "x".repeat(i));
+        }
+
+        List<FrameRingBuffer.Frame> frames = buffer.snapshot();
+        assertEquals(4, frames.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(6 + i, frames.get(i).getSize());
+        }
+    }
+
+    @Test
+    void testClearDropsFramesButNotCounts() {
+        FrameRingBuffer buffer = new FrameRingBuffer(8);
+        buffer.addViewer();
+        buffer.record(FrameDirection.INBOUND, ACTIVE_PATH, "{}");
+
+        buffer.clear();
+        assertTrue(buffer.snapshot().isEmpty());
+        assertEquals(1, buffer.getFrameCount(FrameDirection.INBOUND));
+
+        buffer.record(FrameDirection.INBOUND, ACTIVE_PATH, "{}");
+        assertEquals(1, buffer.snapshot().size());
+    }
+
+    @Test
+    void testConcurrentWriters() throws Exception {
+        FrameRingBuffer buffer = new FrameRingBuffer(64);
+        buffer.addViewer();
+        int writers = 4;
+        int framesPerWriter = 10_000;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            FrameDirection direction = w % 2 == 0 ? FrameDirection.INBOUND : FrameDirection.OUTBOUND;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < framesPerWriter; i++) {
+                    buffer.record(direction, ACTIVE_PATH, "{}");
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(writers / 2 * framesPerWriter, buffer.getFrameCount(FrameDirection.INBOUND));
+        assertEquals(writers / 2 * framesPerWriter, buffer.getFrameCount(FrameDirection.OUTBOUND));
+        List<FrameRingBuffer.Frame> frames = buffer.snapshot();
+        assertEquals(64, frames.size());
+        for (int i = 1; i < frames.size(); i++) {
+            assertEquals(frames.get(i - 1).getSequence() + 1, frames.get(i).getSequence());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.codeawareness.pycharm.communication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OutboundJournal.
+ */
+class OutboundJournalTest {
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("caw-journal");
+        file = directory.resolve("outbound.journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    void testDrainCompactsToLatestIntentPerFile() throws IOException {
+        OutboundJournal journal = new OutboundJournal(file, 4096);
+        journal.append(OutboundJournal.Kind.FILE_SAVED, "/p/a.py", "a.py");
+        journal.append(OutboundJournal.Kind.ACTIVE_PATH, "/p/a.py", "a.py");
+        journal.append(OutboundJournal.Kind.FILE_SAVED, "/p/b.py", "b.py");
+        journal.append(OutboundJournal.Kind.FILE_SAVED, "/p/a.py", "a.py");
+        journal.append(OutboundJournal.Kind.ACTIVE_PATH, "/p/b.py", "b.py");
+
+        List<OutboundJournal.Entry> entries = journal.drain();
+
+        assertEquals(List.of(
+            new OutboundJournal.Entry(OutboundJournal.Kind.FILE_SAVED, "/p/b.py", "b.py"),
+            new OutboundJournal.Entry(OutboundJournal.Kind.FILE_SAVED, "/p/a.py", "a.py"),
+            new OutboundJournal.Entry(OutboundJournal.Kind.ACTIVE_PATH, "/p/b.py", "b.py")
+        ), entries);
+        assertTrue(journal.isEmpty());
+        assertTrue(journal.drain().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    void testRecordsSurviveReopen() throws IOException {
+        OutboundJournal journal = new OutboundJournal(file, 4096);
+        journal.append(OutboundJournal.Kind.FILE_SAVED, "/p/caf\u00e9.py", "caf\u00e9.py");
+        journal.append(OutboundJournal.Kind.ACTIVE_PATH, null, null);
+        journal.close();
+
+        OutboundJournal reopened = new OutboundJournal(file, 4096);
+        List<OutboundJournal.Entry> entries = reopened.drain();
+        reopened.close();
+
+        assertEquals(2, entries.size());
+        assertEquals("/p/caf\u00e9.py", entries.get(0).getFilePath());
+        assertEquals(OutboundJournal.Kind.ACTIVE_PATH, entries.get(1).getKind());
+        assertEquals("", entries.get(1).getFilePath());
+    }
+
+    @Test
+    void testUncommittedRecordIsIgnored() throws IOException {
+        OutboundJournal journal = new OutboundJournal(file, 4096);
+        journal.append(OutboundJournal.Kind.FILE_SAVED, "/p/a.py", "a.py");
+        journal.close();
+
+        // Simulate a crash after writing record bytes but before moving the end offset
+        byte[] bytes = Files.readAllBytes(file);
+        int end = java.nio.ByteBuffer.wrap(bytes).getInt(4);
+        bytes[end] = 0;
+        bytes[end + 4] = 100;
+        Files.write(file, bytes);
+
+        OutboundJournal reopened = new OutboundJournal(file, 4096);
+        List<OutboundJournal.Entry> entries = reopened.drain();
+        reopened.close();
+
+        assertEquals(1, entries.size());
+        assertEquals("/p/a.py", entries.get(0).getFilePath());
+    }
+
+    @Test
+    void testGarbageFileIsReset() throws IOException {
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        OutboundJournal journal = new OutboundJournal(file, 4096);
+
+        assertTrue(journal.isEmpty());
+        journal.close();
+    }
+
+    @Test
+    void testFullJournalCompactsInPlace() throws IOException {
+        OutboundJournal journal = new OutboundJournal(file, 128);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(journal.append(OutboundJournal.Kind.FILE_SAVED, "/p/a.py", "a.py"));
+            assertTrue(journal.append(OutboundJournal.Kind.ACTIVE_PATH, "/p/b.py", "b.py"));
+        }
+
+        assertEquals(2, journal.drain().size());
+        journal.close();
+    }
+
+    @Test
+    void testDropsIntentsThatDoNotFit() throws IOException {
+        OutboundJournal journal = new OutboundJournal(file, 64);
+        assertTrue(journal.append(OutboundJournal.Kind.FILE_SAVED, "/p/a.py", "a.py"));
+        assertTrue(journal.append(OutboundJournal.Kind.FILE_SAVED, "/p/b.py", "b.py"));
+
+        assertFalse(journal.append(OutboundJournal.Kind.FILE_SAVED, "/p/c.py", "c.py"));
+        assertEquals(2, journal.drain().size());
+        journal.close();
+    }
+}
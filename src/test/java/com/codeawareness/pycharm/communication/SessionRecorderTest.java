@@ -0,0 +1,126 @@
+package com.codeawareness.pycharm.communication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SessionRecorder, SessionReader and SessionReplayer.
+ */
+class SessionRecorderTest {
+
+    private static final String ACTIVE_PATH = "{\"flow\":\"res\",\"domain\":\"code\",\"action\":\"active-path\",\"data\":{\"hl\":[1,2]}}";
+    private static final String AUTH_INFO = "{\"flow\":\"res\",\"domain\":\"*\",\"action\":\"auth:info\",\"data\":{}}";
+
+    private Path tmpDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("caw-session-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var paths = Files.walk(tmpDir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    void testRoundTrip() throws Exception {
+        Path file = tmpDir.resolve("session.cawsession");
+        AtomicLong clock = new AtomicLong(1_000);
+        try (SessionRecorder recorder = new SessionRecorder(file, clock::get)) {
+            clock.addAndGet(5);
+            recorder.record(FrameDirection.OUTBOUND, "{\"action\":\"auth:info\"}" + MessageProtocol.DELIMITER);
+            clock.addAndGet(10);
+            recorder.record(FrameDirection.INBOUND, "caf\u00e9");
+            assertEquals(2, recorder.getFrameCount());
+        }
+
+        try (SessionReader reader = new SessionReader(file)) {
+            SessionReader.RecordedFrame first = reader.next();
+            assertEquals(5, first.getOffsetNanos());
+            assertEquals(FrameDirection.OUTBOUND, first.getDirection());
+            assertEquals("{\"action\":\"auth:info\"}", first.getFrame(), "Delimiter is not recorded");
+
+            SessionReader.RecordedFrame second = reader.next();
+            assertEquals(15, second.getOffsetNanos());
+            assertEquals(FrameDirection.INBOUND, second.getDirection());
+            assertEquals("caf\u00e9", second.getFrame());
+
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void testTornRecordIsIgnored() throws Exception {
+        Path file = tmpDir.resolve("torn.cawsession");
+        try (SessionRecorder recorder = new SessionRecorder(file)) {
+            recorder.record(FrameDirection.INBOUND, ACTIVE_PATH);
+            recorder.record(FrameDirection.INBOUND, AUTH_INFO);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 3));
+
+        try (SessionReader reader = new SessionReader(file)) {
+            assertEquals(ACTIVE_PATH, reader.next().getFrame());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws Exception {
+        Path file = tmpDir.resolve("other.txt");
+        Files.writeString(file, "not a session");
+        assertThrows(IOException.class, () -> new SessionReader(file));
+    }
+
+    @Test
+    void testReplayDeliversInboundMessages() throws Exception {
+        Path file = tmpDir.resolve("replay.cawsession");
+        try (SessionRecorder recorder = new SessionRecorder(file)) {
+            recorder.record(FrameDirection.OUTBOUND, AUTH_INFO + MessageProtocol.DELIMITER);
+            recorder.record(FrameDirection.INBOUND, AUTH_INFO);
+            recorder.record(FrameDirection.INBOUND, ACTIVE_PATH);
+        }
+
+        List<Message> delivered = new ArrayList<>();
+        SessionReplayer.Result result = new SessionReplayer(delivered::add)
+            .replay(file, SessionReplayer.Speed.AS_FAST_AS_POSSIBLE);
+
+        assertEquals(2, result.getInboundFrames());
+        assertEquals(1, result.getOutboundFrames());
+        assertEquals(2, result.getMessages());
+        assertEquals("auth:info", delivered.get(0).getAction());
+        assertEquals("active-path", delivered.get(1).getAction());
+    }
+
+    @Test
+    void testReplayAtOriginalSpeedKeepsGaps() throws Exception {
+        Path file = tmpDir.resolve("timed.cawsession");
+        AtomicLong clock = new AtomicLong();
+        try (SessionRecorder recorder = new SessionRecorder(file, clock::get)) {
+            recorder.record(FrameDirection.INBOUND, AUTH_INFO);
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            recorder.record(FrameDirection.INBOUND, ACTIVE_PATH);
+        }
+
+        SessionReplayer replayer = new SessionReplayer(message -> { });
+        SessionReplayer.Result original = replayer.replay(file, SessionReplayer.Speed.ORIGINAL);
+        SessionReplayer.Result fast = replayer.replay(file, SessionReplayer.Speed.AS_FAST_AS_POSSIBLE);
+
+        assertTrue(original.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(fast.getElapsedNanos() < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+}
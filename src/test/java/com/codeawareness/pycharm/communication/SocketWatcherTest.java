@@ -0,0 +1,110 @@
+package com.codeawareness.pycharm.communication;
+
+import com.codeawareness.pycharm.scheduling.CodeAwarenessScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SocketWatcher.
+ */
+class SocketWatcherTest {
+
+    private CodeAwarenessScheduler scheduler;
+    private Path directory;
+    private SocketWatcher watcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        scheduler = new CodeAwarenessScheduler(2);
+        directory = Files.createTempDirectory("caw-sockets");
+        watcher = new SocketWatcher(directory, scheduler);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        watcher.close();
+        scheduler.shutdown();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void testExistingSocketCompletesImmediately() throws IOException {
+        Path socket = Files.createFile(directory.resolve("caw.catalog"));
+
+        CompletableFuture<Void> ready = watcher.awaitSocket(socket.toString());
+
+        assertTrue(ready.isDone());
+        assertFalse(watcher.isWatching(), "No watch should be left running");
+    }
+
+    @Test
+    void testCompletesWhenSocketIsCreated() throws Exception {
+        Path socket = directory.resolve("caw.1234");
+        CompletableFuture<Void> ready = watcher.awaitSocket(socket.toString());
+        assertFalse(ready.isDone());
+        assertTrue(watcher.isWatching());
+
+        Files.createFile(socket);
+
+        ready.get(10, TimeUnit.SECONDS);
+        assertFalse(watcher.isWatching(), "Watch should stop once nobody waits");
+    }
+
+    @Test
+    void testOtherSocketsDoNotComplete() throws Exception {
+        CompletableFuture<Void> ready = watcher.awaitSocket(directory.resolve("caw.catalog").toString());
+        CompletableFuture<Void> other = watcher.awaitSocket(directory.resolve("caw.other").toString());
+
+        Files.createFile(directory.resolve("caw.other"));
+        other.get(10, TimeUnit.SECONDS);
+
+        assertFalse(ready.isDone());
+        assertTrue(watcher.isWatching());
+    }
+
+    @Test
+    void testAwaitRecreatedIgnoresExistingFile() throws Exception {
+        Path socket = Files.createFile(directory.resolve("caw.catalog"));
+
+        CompletableFuture<Void> recreated = watcher.awaitRecreated(socket.toString());
+        assertFalse(recreated.isDone());
+
+        Files.delete(socket);
+        Files.createFile(socket);
+
+        recreated.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testCancelStopsWatching() {
+        CompletableFuture<Void> ready = watcher.awaitSocket(directory.resolve("caw.catalog").toString());
+        assertTrue(watcher.isWatching());
+
+        ready.cancel(false);
+
+        assertFalse(watcher.isWatching());
+    }
+
+    @Test
+    void testCloseCancelsWaiters() {
+        CompletableFuture<Void> ready = watcher.awaitSocket(directory.resolve("caw.catalog").toString());
+
+        watcher.close();
+
+        assertTrue(ready.isCancelled());
+        assertFalse(watcher.isWatching());
+    }
+}
@@ -0,0 +1,116 @@
+package com.codeawareness.pycharm.diff;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DiffPeerRequests.
+ */
+class DiffPeerRequestsTest {
+
+    private final DiffPeerRequests requests = new DiffPeerRequests();
+    private final PeerContentLoader first = new PeerContentLoader(null, null, null, null, requests);
+    private final PeerContentLoader second = new PeerContentLoader(null, null, null, null, requests);
+
+    @Test
+    void testResponsesReachTheProjectThatAsked() {
+        assertTrue(requests.send(first, "peer", "src/x.py", false, () -> true));
+        assertTrue(requests.send(second, "peer", "src/y.py", true, () -> true));
+
+        assertSame(second, requests.take("src/y.py", "peer").getOwner());
+        assertSame(first, requests.take("src/x.py", "peer").getOwner());
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    void testSameFileFromTwoProjectsIsAnsweredOncePerRequest() {
+        requests.send(first, "peer", "src/x.py", true, () -> true);
+        requests.send(second, "peer", "src/x.py", true, () -> true);
+
+        assertSame(first, requests.take("src/x.py", "peer").getOwner());
+        assertSame(second, requests.take("src/x.py", "peer").getOwner());
+        assertNull(requests.take("src/x.py", "peer"));
+    }
+
+    @Test
+    void testUnrequestedFileOfKnownPeerIsNotTaken() {
+        requests.send(first, "peer-a", "src/x.py", false, () -> true);
+        requests.send(first, "peer-a", "src/y.py", false, () -> true);
+
+        assertNull(requests.take("src/z.py", "peer-a"), "Ambiguous fallback must not guess");
+        assertNotNull(requests.take("src/x.py", "peer-a"));
+    }
+
+    @Test
+    void testMismatchedUserIdFallsBackToPath() {
+        // Sent with the peer's guid, answered with its user id
+        requests.send(first, "guid-a", "src/x.py", false, () -> true);
+        requests.send(second, "guid-a", "src/y.py", true, () -> true);
+
+        DiffPeerRequests.PendingRequest request = requests.take("src/y.py", "user-a");
+
+        assertNotNull(request, "A diff must still open when the backend names the peer differently");
+        assertSame(second, request.getOwner());
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void testMismatchedUserIdAndPathTakesOldest() {
+        requests.send(first, "guid-a", "src/x.py", false, () -> true);
+        requests.send(second, "guid-a", "src/y.py", false, () -> true);
+
+        assertEquals("src/x.py", requests.take("/elsewhere/z.py", "user-a").getRelativePath());
+        assertEquals("src/y.py", requests.take(null, "user-a").getRelativePath());
+    }
+
+    @Test
+    void testNothingPendingTakesNothing() {
+        assertNull(requests.take("src/x.py", "peer"));
+        assertNull(requests.take(null, null));
+    }
+
+    @Test
+    void testFailedSendIsNotTracked() {
+        assertFalse(requests.send(first, "peer", "src/x.py", true, () -> false));
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    void testAbsoluteReportedPathMatches() {
+        requests.send(first, "peer", "src/x.py", false, () -> true);
+
+        DiffPeerRequests.PendingRequest request = requests.take("/home/me/project/src/x.py", "peer");
+
+        assertNotNull(request);
+        assertEquals("src/x.py", request.getRelativePath());
+    }
+
+    @Test
+    void testUnattributedErrorTakesOldest() {
+        requests.send(first, "peer", "src/x.py", false, () -> true);
+        requests.send(second, "peer", "src/y.py", false, () -> true);
+
+        assertEquals("src/x.py", requests.take(null, null).getRelativePath());
+        assertEquals("src/y.py", requests.take(null, null).getRelativePath());
+    }
+
+    @Test
+    void testRemoveAllForgetsOnlyThatProject() {
+        requests.send(first, "peer", "src/x.py", true, () -> true);
+        requests.send(second, "peer", "src/y.py", true, () -> true);
+
+        requests.removeAll(first);
+
+        assertEquals(1, requests.size());
+        assertSame(second, requests.take("src/y.py", "peer").getOwner());
+    }
+
+    @Test
+    void testPathMatches() {
+        assertTrue(DiffPeerRequests.pathMatches("src/x.py", "src/x.py"));
+        assertTrue(DiffPeerRequests.pathMatches("src/x.py", "C:\\work\\project\\src\\x.py"));
+        assertFalse(DiffPeerRequests.pathMatches("src/x.py", "/work/project/lib/src/xx.py"));
+        assertFalse(DiffPeerRequests.pathMatches("x.py", "/work/project/src/ax.py"));
+    }
+}
@@ -0,0 +1,214 @@
+package com.codeawareness.pycharm.diff;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LineDiff.
+ */
+class LineDiffTest {
+
+    @Test
+    void testIdenticalTexts() {
+        LineDiff diff = LineDiff.compute("a\nb\nc", "a\nb\nc");
+
+        assertTrue(diff.getBlocks().isEmpty());
+        assertEquals(0, diff.getChangedLineCount());
+    }
+
+    @Test
+    void testModifiedLine() {
+        LineDiff diff = LineDiff.compute("a\nb\nc", "a\nB\nc");
+
+        assertEquals(Collections.singletonList(new ChangeBlock(1, 2, 1, 2)), diff.getBlocks());
+        assertEquals(ChangeBlock.Type.MODIFIED, diff.getBlocks().get(0).getType());
+        assertEquals(1, diff.getChangedLineCount());
+    }
+
+    @Test
+    void testInsertedAndDeletedLines() {
+        LineDiff inserted = LineDiff.compute("a\nc", "a\nb1\nb2\nc");
+        assertEquals(Collections.singletonList(new ChangeBlock(1, 1, 1, 3)), inserted.getBlocks());
+        assertEquals(ChangeBlock.Type.INSERTED, inserted.getBlocks().get(0).getType());
+        assertEquals(2, inserted.getChangedLineCount());
+
+        LineDiff deleted = LineDiff.compute("a\nb\nc", "a\nc");
+        assertEquals(Collections.singletonList(new ChangeBlock(1, 2, 1, 1)), deleted.getBlocks());
+        assertEquals(ChangeBlock.Type.DELETED, deleted.getBlocks().get(0).getType());
+    }
+
+    @Test
+    void testEmptyTexts() {
+        assertTrue(LineDiff.compute("", "").getBlocks().isEmpty());
+        assertEquals(1, LineDiff.compute("", "x").getBlocks().size());
+    }
+
+    @Test
+    void testSeparateChanges() {
+        LineDiff diff = LineDiff.compute("a\nb\nc\nd\ne\nf", "a\nX\nc\nd\nf\ng");
+
+        assertValid(diff);
+        assertEquals(3, diff.getBlocks().size());
+    }
+
+    @Test
+    void testRandomDiffsAreValid() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            List<String> local = randomLines(random, random.nextInt(40));
+            List<String> peer = mutate(random, local);
+            assertValid(LineDiff.compute(local, peer));
+        }
+    }
+
+    @Test
+    void testRandomDiffsAreShortest() {
+        Random random = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            List<String> local = randomLines(random, random.nextInt(60));
+            List<String> peer = randomLines(random, random.nextInt(60));
+            LineDiff diff = LineDiff.compute(local, peer);
+
+            assertValid(diff);
+            int edits = 0;
+            for (ChangeBlock block : diff.getBlocks()) {
+                edits += (block.getLocalEnd() - block.getLocalStart()) + (block.getPeerEnd() - block.getPeerStart());
+            }
+            assertEquals(local.size() + peer.size() - 2 * longestCommonSubsequence(local, peer), edits);
+        }
+    }
+
+    @Test
+    void testEditDistanceLimit() {
+        // Every other line differs: 1000 replacements are 2000 edits, right at the limit
+        LineDiff withinLimit = LineDiff.compute(alternating(2000, "local"), alternating(2000, "peer"));
+        assertValid(withinLimit);
+        assertEquals(1000, withinLimit.getBlocks().size());
+
+        LineDiff beyondLimit = LineDiff.compute(alternating(2004, "local"), alternating(2004, "peer"));
+        assertValid(beyondLimit);
+        assertEquals(1, beyondLimit.getBlocks().size(), "Beyond the limit the middle should be one block");
+    }
+
+    @Test
+    void testEditReusesUnchangedBlocks() {
+        LineDiff diff = LineDiff.compute("a\nb\nc\nd\ne\nf", "a\nB\nc\nd\ne\nF");
+
+        LineDiff edited = diff.withEdit(3, 4, Arrays.asList("D1", "D2"));
+
+        assertEquals(Arrays.asList("a", "b", "c", "D1", "D2", "e", "f"), edited.getLocalLines());
+        assertEquals(Arrays.asList(
+            new ChangeBlock(1, 2, 1, 2),
+            new ChangeBlock(3, 5, 3, 4),
+            new ChangeBlock(6, 7, 5, 6)), edited.getBlocks());
+        assertValid(edited);
+    }
+
+    @Test
+    void testEditThatRemovesDifference() {
+        LineDiff diff = LineDiff.compute("a\nb\nc", "a\nB\nc");
+
+        LineDiff edited = diff.withEdit(1, 2, Collections.singletonList("B"));
+
+        assertTrue(edited.getBlocks().isEmpty());
+    }
+
+    @Test
+    void testRandomEditsStayValid() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            List<String> peer = randomLines(random, 10 + random.nextInt(40));
+            LineDiff diff = LineDiff.compute(mutate(random, peer), peer);
+
+            for (int e = 0; e < 10; e++) {
+                int size = diff.getLocalLines().size();
+                int start = random.nextInt(size + 1);
+                int end = start + random.nextInt(Math.min(3, size - start) + 1);
+                diff = diff.withEdit(start, end, randomLines(random, random.nextInt(3)));
+
+                assertValid(diff);
+                assertEquals(peer, diff.getPeerLines());
+            }
+        }
+    }
+
+    @Test
+    void testEditOutsideOfDocumentIsRejected() {
+        LineDiff diff = LineDiff.compute("a", "a");
+
+        assertThrows(IllegalArgumentException.class, () -> diff.withEdit(0, 2, Collections.emptyList()));
+    }
+
+    /**
+     * Replaying the blocks on the local lines must produce the peer lines,
+     * and every line outside of a block must match.
+     */
+    private static void assertValid(LineDiff diff) {
+        List<String> local = diff.getLocalLines();
+        List<String> peer = diff.getPeerLines();
+        List<String> rebuilt = new ArrayList<>();
+        int x = 0;
+        int y = 0;
+        for (ChangeBlock block : diff.getBlocks()) {
+            assertTrue(block.getLocalStart() >= x && block.getPeerStart() >= y, "Blocks must be ordered: " + diff.getBlocks());
+            assertEquals(block.getLocalStart() - x, block.getPeerStart() - y, "Unchanged runs must line up");
+            rebuilt.addAll(local.subList(x, block.getLocalStart()));
+            rebuilt.addAll(peer.subList(block.getPeerStart(), block.getPeerEnd()));
+            x = block.getLocalEnd();
+            y = block.getPeerEnd();
+        }
+        assertEquals(local.size() - x, peer.size() - y, "Trailing unchanged run must line up");
+        rebuilt.addAll(local.subList(x, local.size()));
+        assertEquals(peer, rebuilt);
+    }
+
+    private static List<String> alternating(int count, String name) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add(i % 2 == 0 ? "same " + i : name + " " + i);
+        }
+        return lines;
+    }
+
+    private static int longestCommonSubsequence(List<String> a, List<String> b) {
+        int[][] lengths = new int[a.size() + 1][b.size() + 1];
+        for (int i = 1; i <= a.size(); i++) {
+            for (int j = 1; j <= b.size(); j++) {
+                lengths[i][j] = a.get(i - 1).equals(b.get(j - 1))
+                    ? lengths[i - 1][j - 1] + 1
+                    : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+        return lengths[a.size()][b.size()];
+    }
+
+    private static List<String> randomLines(Random random, int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Small alphabet so lines repeat, as braces and blank lines do in code
+            lines.add(String.valueOf((char) ('a' + random.nextInt(6))));
+        }
+        return lines;
+    }
+
+    private static List<String> mutate(Random random, List<String> lines) {
+        List<String> result = new ArrayList<>(lines);
+        int edits = random.nextInt(5);
+        for (int i = 0; i < edits; i++) {
+            int at = random.nextInt(result.size() + 1);
+            if (random.nextBoolean() && at < result.size()) {
+                result.remove(at);
+            } else {
+                result.add(at, String.valueOf((char) ('a' + random.nextInt(8))));
+            }
+        }
+        return result;
+    }
+}
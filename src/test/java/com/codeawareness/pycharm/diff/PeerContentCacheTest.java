@@ -0,0 +1,113 @@
+package com.codeawareness.pycharm.diff;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PeerContentCache.
+ */
+class PeerContentCacheTest {
+
+    private Path tmpDir;
+    private TempFileManager diskStore;
+    private PeerContentCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("caw-peer-cache-test");
+        diskStore = new TempFileManager(tmpDir.toString());
+        // 100 bytes in memory, contents over 40 bytes (20 chars) go to disk
+        cache = new PeerContentCache(diskStore, 100, 40, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        diskStore.cleanupAll();
+        new File(tmpDir.toFile(), "codeawareness-peers").delete();
+        tmpDir.toFile().delete();
+    }
+
+    @Test
+    void testPutAndGet() {
+        cache.put("alice", "src/main.py", "rev1", "main.py - alice", "x = 1");
+
+        PeerContentCache.CachedContent hit = cache.get("alice", "src/main.py");
+        assertNotNull(hit);
+        assertEquals("x = 1", hit.getContent());
+        assertEquals("main.py - alice", hit.getTitle());
+        assertEquals("rev1", cache.getRevision("alice", "src/main.py"));
+        assertNull(cache.get("bob", "src/main.py"));
+        assertNull(cache.get(null, "src/main.py"));
+    }
+
+    @Test
+    void testLargeContentGoesToDisk() {
+        String large = "y".repeat(100);
+        cache.put("alice", "src/big.py", null, "big.py", large);
+
+        assertEquals(0, cache.getMemoryBytes(), "Large content should not count against the memory budget");
+        assertEquals(1, diskStore.getTempFileCount());
+        assertEquals(large, cache.get("alice", "src/big.py").getContent());
+    }
+
+    @Test
+    void testLargeContentDroppedWithoutDiskStore() {
+        PeerContentCache memoryOnly = new PeerContentCache(null, 100, 40, 60000);
+        memoryOnly.put("alice", "src/big.py", null, "big.py", "y".repeat(100));
+
+        assertEquals(0, memoryOnly.size());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedOverBudget() {
+        cache.put("alice", "a.py", null, "a", "a".repeat(20)); // 40 bytes
+        cache.put("alice", "b.py", null, "b", "b".repeat(20));
+        cache.get("alice", "a.py");
+        cache.put("alice", "c.py", null, "c", "c".repeat(20));
+
+        assertTrue(cache.getMemoryBytes() <= 100);
+        assertNotNull(cache.get("alice", "a.py"));
+        assertNull(cache.get("alice", "b.py"), "Least recently used entry should be evicted");
+        assertNotNull(cache.get("alice", "c.py"));
+    }
+
+    @Test
+    void testNewerRevisionInvalidatesPeer() {
+        cache.put("alice", "a.py", "rev1", "a", "old");
+        cache.put("bob", "a.py", "rev7", "a", "bob's");
+
+        cache.onPeerRevision("alice", "rev1");
+        assertNotNull(cache.get("alice", "a.py"), "Same revision should keep the entry");
+
+        cache.onPeerRevision("alice", "rev2");
+        assertNull(cache.get("alice", "a.py"));
+        assertNotNull(cache.get("bob", "a.py"), "Other peers should not be affected");
+    }
+
+    @Test
+    void testExpiredEntriesMiss() throws InterruptedException {
+        PeerContentCache shortLived = new PeerContentCache(null, 100, 40, 1);
+        shortLived.put("alice", "a.py", null, "a", "x");
+        Thread.sleep(10);
+
+        assertNull(shortLived.get("alice", "a.py"));
+        assertEquals(0, shortLived.size());
+    }
+
+    @Test
+    void testMissingDiskFileMisses() {
+        cache.put("alice", "src/big.py", null, "big.py", "y".repeat(100));
+        diskStore.cleanupAll();
+
+        assertNull(cache.get("alice", "src/big.py"));
+        assertEquals(0, cache.size());
+    }
+}
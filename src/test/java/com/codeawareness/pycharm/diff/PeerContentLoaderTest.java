@@ -0,0 +1,108 @@
+package com.codeawareness.pycharm.diff;
+
+import com.codeawareness.pycharm.scheduling.CodeAwarenessScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PeerContentLoader.
+ */
+class PeerContentLoaderTest {
+
+    private CodeAwarenessScheduler scheduler;
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final DiffPeerRequests requests = new DiffPeerRequests();
+    private PeerContentLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new CodeAwarenessScheduler(2);
+        loader = new PeerContentLoader(new PeerContentCache(null), new PeerFileReader(),
+            scheduler.createGroup("test"), (relativePath, peerId) -> sent.add(relativePath), requests);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, sent.size());
+    }
+
+    @Test
+    void testTwoLoadsAnsweredInOrder() throws Exception {
+        CompletableFuture<String> x = loader.load("peer", "src/x.py", null);
+        awaitSent(1);
+        CompletableFuture<String> y = loader.load("peer", "src/y.py", null);
+        awaitSent(2);
+
+        for (String fpath : new String[] {"src/x.py", "src/y.py"}) {
+            DiffPeerRequests.PendingRequest request = requests.take(fpath, "peer");
+            assertTrue(request.isLoad());
+            loader.complete(request.getPeerId(), request.getRelativePath(), "content of " + fpath);
+        }
+
+        assertEquals("content of src/x.py", x.get(1, TimeUnit.SECONDS));
+        assertEquals("content of src/y.py", y.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testResponsesTakenOutOfOrderKeepTheirFiles() throws Exception {
+        loader.load("peer", "src/x.py", null);
+        awaitSent(1);
+        loader.load("peer", "src/y.py", null);
+        awaitSent(2);
+
+        // The handler for the second response gets to run first
+        assertEquals("src/y.py", requests.take("src/y.py", "peer").getRelativePath());
+        assertEquals("src/x.py", requests.take("src/x.py", "peer").getRelativePath());
+        assertNull(requests.take(null, null));
+    }
+
+    @Test
+    void testUserRequestInterleavedWithPrefetch() throws Exception {
+        loader.prefetch("peer", "src/prefetched.py", null);
+        awaitSent(1);
+        assertTrue(loader.requestForUser("src/active.py", "peer"));
+        loader.prefetch("peer", "src/other.py", null);
+        awaitSent(3);
+
+        DiffPeerRequests.PendingRequest user = requests.take("src/active.py", "peer");
+        assertFalse(user.isLoad(), "The user's diff must not be taken for a load");
+        DiffPeerRequests.PendingRequest other = requests.take("src/other.py", "peer");
+        assertTrue(other.isLoad());
+        assertEquals("src/other.py", other.getRelativePath());
+        assertEquals("src/prefetched.py", requests.take("src/prefetched.py", "peer").getRelativePath());
+    }
+
+    @Test
+    void testOnlyLoadsAreWaitedFor() throws Exception {
+        loader.prefetch("peer", "src/prefetched.py", null);
+        CompletableFuture<String> navigated = loader.load("peer", "src/navigated.py", null);
+        awaitSent(2);
+
+        assertFalse(loader.isWaitedFor("peer", "src/prefetched.py"));
+        assertTrue(loader.isWaitedFor("peer", "src/navigated.py"));
+
+        // Navigating to a file being prefetched makes it waited for
+        loader.load("peer", "src/prefetched.py", null);
+        assertTrue(loader.isWaitedFor("peer", "src/prefetched.py"));
+
+        loader.complete("peer", "src/navigated.py", "content");
+        assertEquals("content", navigated.get(1, TimeUnit.SECONDS));
+        assertFalse(loader.isWaitedFor("peer", "src/navigated.py"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.codeawareness.pycharm.diff;
+
+import com.intellij.diff.editor.ChainDiffVirtualFile;
+import com.intellij.diff.editor.DiffRequestProcessorEditor;
+import com.intellij.diff.impl.CacheDiffRequestChainProcessor;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PeerDiffChainManager.
+ */
+class PeerDiffChainManagerTest {
+
+    private final Project project = Mockito.mock(Project.class);
+    private final Application application = Mockito.mock(Application.class);
+    private final FileEditorManager editorManager = Mockito.mock(FileEditorManager.class);
+    private final CacheDiffRequestChainProcessor processor = Mockito.mock(CacheDiffRequestChainProcessor.class);
+    private MockedStatic<ApplicationManager> applicationStatic;
+    private MockedStatic<FileEditorManager> editorManagerStatic;
+    private PeerDiffChainManager manager;
+
+    @BeforeEach
+    void setUp() {
+        // Work queued for the EDT runs right away
+        Mockito.doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(application).invokeLater(Mockito.any(Runnable.class));
+        applicationStatic = Mockito.mockStatic(ApplicationManager.class);
+        applicationStatic.when(ApplicationManager::getApplication).thenReturn(application);
+        editorManagerStatic = Mockito.mockStatic(FileEditorManager.class);
+        editorManagerStatic.when(() -> FileEditorManager.getInstance(project)).thenReturn(editorManager);
+        Mockito.when(editorManager.getEditors(Mockito.any())).thenReturn(new FileEditor[0]);
+        manager = new PeerDiffChainManager(project, Mockito.mock(PeerContentLoader.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        applicationStatic.close();
+        editorManagerStatic.close();
+    }
+
+    @Test
+    void testFirstFileOpensTab() {
+        manager.show("peer-1", "Alice", "src/a.py", "/work/src/a.py", "/tmp/a.py");
+
+        ChainDiffVirtualFile file = openedFile();
+        assertEquals(0, file.getChain().getIndex());
+        assertEquals(1, file.getChain().getRequests().size());
+        Mockito.verify(editorManager, Mockito.never()).closeFile(Mockito.any());
+    }
+
+    @Test
+    void testOpenViewerMovesToNextFile() {
+        manager.show("peer-1", "Alice", "src/a.py", "/work/src/a.py", "/tmp/a.py");
+        ChainDiffVirtualFile file = openedFile();
+        viewerIsOpen(file);
+
+        manager.show("peer-1", "Alice", "src/b.py", "/work/src/b.py", "/tmp/b.py");
+
+        Mockito.verify(processor).setCurrentRequest(1);
+        Mockito.verify(editorManager, Mockito.never()).closeFile(Mockito.any());
+        Mockito.verify(editorManager, Mockito.times(2)).openFile(file, true);
+        assertEquals(1, file.getChain().getIndex());
+    }
+
+    @Test
+    void testKnownFileMovesBackToItsEntry() {
+        manager.show("peer-1", "Alice", "src/a.py", "/work/src/a.py", "/tmp/a.py");
+        ChainDiffVirtualFile file = openedFile();
+        viewerIsOpen(file);
+        manager.show("peer-1", "Alice", "src/b.py", "/work/src/b.py", "/tmp/b.py");
+
+        manager.show("peer-1", "Alice", "src/a.py", "/work/src/a.py", null);
+
+        Mockito.verify(processor).setCurrentRequest(0);
+        assertEquals(2, file.getChain().getRequests().size());
+    }
+
+    @Test
+    void testOpenTabWithoutViewerIsReopened() {
+        manager.show("peer-1", "Alice", "src/a.py", "/work/src/a.py", "/tmp/a.py");
+        ChainDiffVirtualFile file = openedFile();
+        Mockito.when(editorManager.isFileOpen(file)).thenReturn(true);
+
+        manager.show("peer-1", "Alice", "src/b.py", "/work/src/b.py", "/tmp/b.py");
+
+        Mockito.verify(editorManager).closeFile(file);
+        Mockito.verify(editorManager, Mockito.times(2)).openFile(file, true);
+        assertEquals(1, file.getChain().getIndex(), "A new viewer starts at the chain index");
+    }
+
+    @Test
+    void testDisposedViewerIsNotMoved() {
+        manager.show("peer-1", "Alice", "src/a.py", "/work/src/a.py", "/tmp/a.py");
+        ChainDiffVirtualFile file = openedFile();
+        viewerIsOpen(file);
+        Mockito.when(processor.isDisposed()).thenReturn(true);
+
+        manager.show("peer-1", "Alice", "src/b.py", "/work/src/b.py", "/tmp/b.py");
+
+        Mockito.verify(processor, Mockito.never()).setCurrentRequest(Mockito.anyInt());
+        Mockito.verify(editorManager).closeFile(file);
+    }
+
+    @Test
+    void testPeersGetTheirOwnTabs() {
+        manager.show("peer-1", "Alice", "src/a.py", "/work/src/a.py", "/tmp/a.py");
+        manager.show("peer-2", "Bob", "src/a.py", "/work/src/a.py", "/tmp/a2.py");
+
+        ArgumentCaptor<ChainDiffVirtualFile> files = ArgumentCaptor.forClass(ChainDiffVirtualFile.class);
+        Mockito.verify(editorManager, Mockito.times(2)).openFile(files.capture(), Mockito.eq(true));
+        assertNotSame(files.getAllValues().get(0), files.getAllValues().get(1));
+    }
+
+    @Test
+    void testNothingIsShownForDisposedProject() {
+        Mockito.when(project.isDisposed()).thenReturn(true);
+
+        manager.show("peer-1", "Alice", "src/a.py", "/work/src/a.py", "/tmp/a.py");
+
+        Mockito.verifyNoInteractions(editorManager);
+    }
+
+    /**
+     * Get the tab the first show opened.
+     */
+    private ChainDiffVirtualFile openedFile() {
+        ArgumentCaptor<ChainDiffVirtualFile> file = ArgumentCaptor.forClass(ChainDiffVirtualFile.class);
+        Mockito.verify(editorManager).openFile(file.capture(), Mockito.eq(true));
+        return file.getValue();
+    }
+
+    private void viewerIsOpen(ChainDiffVirtualFile file) {
+        DiffRequestProcessorEditor editor = Mockito.mock(DiffRequestProcessorEditor.class);
+        Mockito.when(editor.getProcessor()).thenReturn(processor);
+        Mockito.when(editorManager.isFileOpen(file)).thenReturn(true);
+        Mockito.when(editorManager.getEditors(file)).thenReturn(new FileEditor[] {editor});
+    }
+}
@@ -0,0 +1,234 @@
+package com.codeawareness.pycharm.diff;
+
+import com.codeawareness.pycharm.scheduling.ScheduledTask;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.EditorEventMulticaster;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PeerDiffService.
+ */
+class PeerDiffServiceTest {
+
+    private static final String PATH = "/work/src/a.py";
+
+    private final Project project = Mockito.mock(Project.class);
+    private final TaskGroup tasks = Mockito.mock(TaskGroup.class);
+    private final Application application = Mockito.mock(Application.class);
+    private final FileDocumentManager documentManager = Mockito.mock(FileDocumentManager.class);
+    private final LocalFileSystem fileSystem = Mockito.mock(LocalFileSystem.class);
+    private final EditorEventMulticaster multicaster = Mockito.mock(EditorEventMulticaster.class);
+    private final StringBuilder text = new StringBuilder();
+    private final Document document = document(text);
+    private MockedStatic<ApplicationManager> applicationStatic;
+    private MockedStatic<FileDocumentManager> documentManagerStatic;
+    private MockedStatic<LocalFileSystem> fileSystemStatic;
+    private MockedStatic<EditorFactory> editorFactoryStatic;
+    private MockedStatic<Disposer> disposerStatic;
+    private PeerDiffService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // Background work runs right away; debounced work waits for the test
+        Mockito.when(tasks.submit(Mockito.eq(SchedulerLane.DIFF), Mockito.any())).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(1)).run();
+            return Mockito.mock(ScheduledTask.class);
+        });
+        Mockito.when(tasks.schedule(Mockito.eq(SchedulerLane.DIFF), Mockito.any(), Mockito.anyLong()))
+            .thenReturn(Mockito.mock(ScheduledTask.class));
+        Mockito.when(application.runReadAction(Mockito.any(Computable.class)))
+            .thenAnswer(invocation -> ((Computable<Object>) invocation.getArgument(0)).compute());
+        applicationStatic = Mockito.mockStatic(ApplicationManager.class);
+        applicationStatic.when(ApplicationManager::getApplication).thenReturn(application);
+
+        VirtualFile file = Mockito.mock(VirtualFile.class);
+        Mockito.when(file.getPath()).thenReturn(PATH);
+        Mockito.when(file.isValid()).thenReturn(true);
+        Mockito.when(fileSystem.findFileByPath(PATH)).thenReturn(file);
+        Mockito.when(documentManager.getDocument(file)).thenReturn(document);
+        Mockito.when(documentManager.getFile(document)).thenReturn(file);
+        fileSystemStatic = Mockito.mockStatic(LocalFileSystem.class);
+        fileSystemStatic.when(LocalFileSystem::getInstance).thenReturn(fileSystem);
+        documentManagerStatic = Mockito.mockStatic(FileDocumentManager.class);
+        documentManagerStatic.when(FileDocumentManager::getInstance).thenReturn(documentManager);
+
+        EditorFactory editorFactory = Mockito.mock(EditorFactory.class);
+        Mockito.when(editorFactory.getEventMulticaster()).thenReturn(multicaster);
+        editorFactoryStatic = Mockito.mockStatic(EditorFactory.class);
+        editorFactoryStatic.when(EditorFactory::getInstance).thenReturn(editorFactory);
+        disposerStatic = Mockito.mockStatic(Disposer.class);
+        disposerStatic.when(() -> Disposer.newDisposable(Mockito.any(Disposable.class), Mockito.anyString()))
+            .thenAnswer(invocation -> Mockito.mock(Disposable.class));
+
+        service = new PeerDiffService(project, tasks);
+    }
+
+    @AfterEach
+    void tearDown() {
+        applicationStatic.close();
+        fileSystemStatic.close();
+        documentManagerStatic.close();
+        editorFactoryStatic.close();
+        disposerStatic.close();
+    }
+
+    @Test
+    void testEditIsAppliedWithoutReadingTheDocumentAgain() {
+        text.append("a\nb\nc");
+        service.computeDiff(PATH, "alice", "a\nb\nc");
+        assertEquals("0 lines differ from alice", service.getSummary(PATH));
+        assertTrue(service.isListening());
+
+        // Replace "b" with "x" and "y" on two lines
+        edit(2, 1, "x\ny");
+        assertEquals("0 lines differ from alice", service.getSummary(PATH), "Edits wait for a pause in typing");
+        scheduledDrain().run();
+
+        assertEquals("2 lines differ from alice", service.getSummary(PATH));
+        assertEquals(List.of("a", "x", "y", "c"), service.getDiff(PATH).getLocalLines());
+        Mockito.verify(document, Mockito.times(1)).getText();
+    }
+
+    @Test
+    void testEditsMadeBeforeThePauseAreAppliedTogether() {
+        text.append("a\nb\nc");
+        service.computeDiff(PATH, "alice", "a\nb\nc");
+
+        edit(0, 1, "z");
+        edit(4, 1, "w");
+        List<Runnable> drains = scheduledDrains(2);
+        drains.get(1).run();
+
+        assertEquals(List.of("z", "b", "w"), service.getDiff(PATH).getLocalLines());
+        assertEquals(LineDiff.compute("z\nb\nw", "a\nb\nc").getChangedLineCount(),
+            service.getDiff(PATH).getChangedLineCount());
+        Mockito.verify(document, Mockito.times(1)).getText();
+    }
+
+    @Test
+    void testListenersHearOfEveryUpdate() {
+        List<String> changed = new ArrayList<>();
+        service.addListener(changed::add);
+        text.append("a\nb");
+
+        service.computeDiff(PATH, "alice", "a\nb");
+        edit(0, 1, "z");
+        scheduledDrain().run();
+        service.clear();
+
+        assertEquals(Arrays.asList(PATH, PATH, null), changed);
+        assertFalse(service.isListening());
+    }
+
+    @Test
+    void testEditsToOtherDocumentsAreIgnored() {
+        text.append("a\nb");
+        service.computeDiff(PATH, "alice", "a\nb");
+        Document other = document(new StringBuilder("q"));
+
+        DocumentEvent event = event(other, 0, 1, 1);
+        service.beforeDocumentChange(event);
+        service.documentChanged(event);
+
+        Mockito.verify(tasks, Mockito.never()).schedule(Mockito.any(), Mockito.any(), Mockito.anyLong());
+    }
+
+    @Test
+    void testNotListeningWithoutDiffs() {
+        assertFalse(service.isListening());
+        Mockito.verifyNoInteractions(multicaster);
+    }
+
+    /**
+     * Replace text of the tracked document, notifying the service like the platform does.
+     */
+    private void edit(int offset, int oldLength, String newText) {
+        DocumentEvent event = event(document, offset, oldLength, newText.length());
+        service.beforeDocumentChange(event);
+        text.replace(offset, offset + oldLength, newText);
+        service.documentChanged(event);
+    }
+
+    private Runnable scheduledDrain() {
+        return scheduledDrains(1).get(0);
+    }
+
+    private List<Runnable> scheduledDrains(int count) {
+        ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(tasks, Mockito.times(count)).schedule(Mockito.eq(SchedulerLane.DIFF), drain.capture(),
+            Mockito.anyLong());
+        return drain.getAllValues();
+    }
+
+    private static DocumentEvent event(Document document, int offset, int oldLength, int newLength) {
+        DocumentEvent event = Mockito.mock(DocumentEvent.class);
+        Mockito.when(event.getDocument()).thenReturn(document);
+        Mockito.when(event.getOffset()).thenReturn(offset);
+        Mockito.when(event.getOldLength()).thenReturn(oldLength);
+        Mockito.when(event.getNewLength()).thenReturn(newLength);
+        return event;
+    }
+
+    /**
+     * A document backed by a string builder, answering the line queries the service makes.
+     */
+    private static Document document(StringBuilder text) {
+        Document document = Mockito.mock(Document.class);
+        Mockito.when(document.getText()).thenAnswer(invocation -> text.toString());
+        Mockito.when(document.getText(Mockito.any(TextRange.class))).thenAnswer(invocation -> {
+            TextRange range = invocation.getArgument(0);
+            return text.substring(range.getStartOffset(), range.getEndOffset());
+        });
+        Mockito.when(document.getLineNumber(Mockito.anyInt())).thenAnswer(invocation -> {
+            int offset = invocation.getArgument(0);
+            int line = 0;
+            for (int i = 0; i < offset; i++) {
+                if (text.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+            return line;
+        });
+        Mockito.when(document.getLineStartOffset(Mockito.anyInt())).thenAnswer(invocation ->
+            lineStart(text, invocation.getArgument(0)));
+        Mockito.when(document.getLineEndOffset(Mockito.anyInt())).thenAnswer(invocation -> {
+            int end = text.indexOf("\n", lineStart(text, invocation.getArgument(0)));
+            return end >= 0 ? end : text.length();
+        });
+        return document;
+    }
+
+    private static int lineStart(StringBuilder text, int line) {
+        int start = 0;
+        for (int i = 0; i < line; i++) {
+            start = text.indexOf("\n", start) + 1;
+        }
+        return start;
+    }
+}
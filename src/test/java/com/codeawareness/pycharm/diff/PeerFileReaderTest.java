@@ -0,0 +1,111 @@
+package com.codeawareness.pycharm.diff;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PeerFileReader.
+ */
+class PeerFileReaderTest {
+
+    private Path file;
+    private PeerFileReader reader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("caw-peer-reader", ".txt");
+        reader = new PeerFileReader(100, 40);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testSmallUtf8File() throws IOException {
+        Files.write(file, "h\u00e9llo\nw\u00f6rld\n".getBytes(StandardCharsets.UTF_8));
+
+        PeerFileReader.PeerFileContent content = reader.read(file);
+
+        assertEquals("h\u00e9llo\nw\u00f6rld\n", content.getText());
+        assertEquals(StandardCharsets.UTF_8, content.getCharset());
+        assertFalse(content.isTruncated());
+        assertFalse(content.isBinary());
+    }
+
+    @Test
+    void testLatin1FallbackForInvalidUtf8() throws IOException {
+        Files.write(file, "caf\u00e9\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        PeerFileReader.PeerFileContent content = reader.read(file);
+
+        assertEquals(StandardCharsets.ISO_8859_1, content.getCharset());
+        assertEquals("caf\u00e9\n", content.getText());
+    }
+
+    @Test
+    void testByteOrderMarks() throws IOException {
+        byte[] utf8Bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'a', '\n'};
+        Files.write(file, utf8Bom);
+        assertEquals("a\n", reader.read(file).getText());
+
+        byte[] text = "ab\n".getBytes(StandardCharsets.UTF_16LE);
+        byte[] utf16 = new byte[text.length + 2];
+        utf16[0] = (byte) 0xFF;
+        utf16[1] = (byte) 0xFE;
+        System.arraycopy(text, 0, utf16, 2, text.length);
+        Files.write(file, utf16);
+
+        PeerFileReader.PeerFileContent content = reader.read(file);
+        assertEquals(StandardCharsets.UTF_16LE, content.getCharset());
+        assertEquals("ab\n", content.getText());
+    }
+
+    @Test
+    void testLargeFileIsTruncatedAtLineBreak() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+        PeerFileReader.PeerFileContent content = reader.read(file);
+
+        assertTrue(content.isTruncated());
+        assertEquals(text.length(), content.getFileSize());
+        assertTrue(content.getText().length() <= 40);
+        assertTrue(content.getText().endsWith("\n"), "Preview should end with a whole line");
+        assertTrue(text.toString().startsWith(content.getText()));
+    }
+
+    @Test
+    void testPreviewDoesNotSplitMultibyteCharacters() throws IOException {
+        // Each e-acute takes two bytes; with 21-byte lines the 40-byte preview boundary falls inside one
+        String line = "\u00e9".repeat(10) + "\n";
+        Files.write(file, (line + line + line + line + line + line).getBytes(StandardCharsets.UTF_8));
+
+        PeerFileReader.PeerFileContent content = reader.read(file);
+
+        assertEquals(StandardCharsets.UTF_8, content.getCharset());
+        assertEquals(line, content.getText());
+    }
+
+    @Test
+    void testBinaryFile() throws IOException {
+        Files.write(file, new byte[] {'P', 'K', 3, 4, 0, 0, 1});
+
+        PeerFileReader.PeerFileContent content = reader.read(file);
+
+        assertTrue(content.isBinary());
+        assertNull(content.getText());
+    }
+}
@@ -0,0 +1,228 @@
+package com.codeawareness.pycharm.diff;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TempFileManager.
+ */
+class TempFileManagerTest {
+
+    private Path tmpDir;
+    private TempFileManager manager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("caw-temp-test");
+        manager = new TempFileManager(tmpDir.toString(), 100);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        manager.cleanupAll();
+        try (Stream<Path> paths = Files.walk(tmpDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+                p.toFile().setWritable(true);
+                p.toFile().delete();
+            });
+        }
+    }
+
+    @Test
+    void testCreateTempFile() throws IOException {
+        File file = manager.createTempFile("main.py", "alice", "print('hi')\n");
+
+        assertTrue(file.exists());
+        assertEquals("main.alice.py", file.getName());
+        assertEquals("print('hi')\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertEquals(file, manager.getTempFile("main.py", "alice"));
+        assertTrue(file.toPath().startsWith(manager.getSessionDir()));
+    }
+
+    @Test
+    void testIdenticalContentIsReused() throws IOException {
+        File first = manager.createTempFile("main.py", "alice", "same");
+        long modified = first.lastModified();
+        File second = manager.createTempFile("main.py", "alice", "same");
+
+        assertEquals(first, second);
+        assertEquals(modified, second.lastModified(), "Identical content should not be rewritten");
+        assertEquals(4, manager.getTotalBytes());
+    }
+
+    @Test
+    void testSharedContentIsCountedOnce() throws IOException {
+        File alice = manager.createTempFile("main.py", "alice", "same");
+        File bob = manager.createTempFile("main.py", "bob", "same");
+
+        assertNotEquals(alice, bob);
+        assertEquals("same", new String(Files.readAllBytes(bob.toPath()), StandardCharsets.UTF_8));
+        assertEquals(alice.getParentFile(), bob.getParentFile(), "Same content should share one store entry");
+        assertEquals(4, manager.getTotalBytes());
+        assertEquals(2, manager.getTempFileCount());
+    }
+
+    @Test
+    void testNewVersionReplacesOldOne() throws IOException {
+        File v1 = manager.createTempFile("main.py", "alice", "version 1");
+        File v2 = manager.createTempFile("main.py", "alice", "version 2");
+
+        assertNotEquals(v1.getParentFile(), v2.getParentFile());
+        assertFalse(v1.exists(), "Unreferenced old version should be deleted");
+        assertEquals(9, manager.getTotalBytes());
+        assertEquals(1, manager.getTempFileCount());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedOverBudget() throws IOException {
+        String forty = "x".repeat(40);
+        File a = manager.createTempFile("a.py", "alice", forty + "a");
+        File b = manager.createTempFile("b.py", "alice", forty + "b");
+
+        // Touch a so b becomes the least recently used content
+        manager.createTempFile("a.py", "alice", forty + "a");
+        File c = manager.createTempFile("c.py", "alice", forty + "c");
+
+        assertTrue(manager.getTotalBytes() <= 100);
+        assertTrue(a.exists());
+        assertFalse(b.exists(), "Least recently used content should be evicted");
+        assertNull(manager.getTempFile("b.py", "alice"));
+        assertTrue(c.exists());
+    }
+
+    @Test
+    void testOversizedContentIsKept() throws IOException {
+        File big = manager.createTempFile("big.py", "alice", "y".repeat(500));
+
+        assertTrue(big.exists(), "The content just written should never be evicted");
+        assertEquals(500, manager.getTotalBytes());
+    }
+
+    @Test
+    void testCleanupTempFile() throws IOException {
+        File alice = manager.createTempFile("main.py", "alice", "same");
+        File bob = manager.createTempFile("main.py", "bob", "same");
+
+        manager.cleanupTempFile("main.py", "alice");
+        assertFalse(alice.exists());
+        assertTrue(bob.exists(), "Content still referenced by another name should remain");
+        assertEquals(4, manager.getTotalBytes());
+
+        manager.cleanupTempFile("main.py", "bob");
+        assertFalse(bob.exists());
+        assertEquals(0, manager.getTotalBytes());
+        assertEquals(0, manager.getTempFileCount());
+    }
+
+    @Test
+    void testCleanupAll() throws IOException {
+        manager.createTempFile("a.py", "alice", "a");
+        manager.createTempFile("b.py", "bob", "b");
+
+        manager.cleanupAll();
+
+        assertEquals(0, manager.getTempFileCount());
+        assertEquals(0, manager.getTotalBytes());
+        assertFalse(Files.exists(manager.getSessionDir()));
+    }
+
+    @Test
+    void testOwnersKeepTheirOwnVersions() throws IOException {
+        File first = manager.createTempFile("project-a", "main.py", "alice", "version a");
+        File second = manager.createTempFile("project-b", "main.py", "alice", "version b");
+
+        assertTrue(first.exists(), "Another owner's file of the same name must not replace it");
+        assertTrue(second.exists());
+        assertEquals(first, manager.getTempFile("project-a", "main.py", "alice"));
+        assertEquals(second, manager.getTempFile("project-b", "main.py", "alice"));
+        assertNull(manager.getTempFile("main.py", "alice"));
+    }
+
+    @Test
+    void testCleanupOwnerLeavesOtherOwners() throws IOException {
+        File shared = manager.createTempFile("project-a", "main.py", "alice", "same");
+        manager.createTempFile("project-a", "util.py", "alice", "only a");
+        File kept = manager.createTempFile("project-b", "main.py", "alice", "same");
+
+        manager.cleanupOwner("project-a");
+
+        assertEquals(1, manager.getTempFileCount());
+        assertNull(manager.getTempFile("project-a", "util.py", "alice"));
+        assertEquals(shared, kept, "Same name and content resolve to the same stored file");
+        assertTrue(kept.exists(), "Content still used by another owner should remain");
+        assertEquals(4, manager.getTotalBytes());
+    }
+
+    @Test
+    void testSweepOrphanedSessions() throws IOException {
+        manager.createTempFile("a.py", "alice", "a");
+        Path storeDir = manager.getSessionDir().getParent();
+
+        Path deadSession = storeDir.resolve(Long.MAX_VALUE + "-deadbeef");
+        Files.createDirectories(deadSession.resolve("hash"));
+        Files.write(deadSession.resolve("hash").resolve("old.py"), "old".getBytes(StandardCharsets.UTF_8));
+        Path liveSession = storeDir.resolve(ProcessHandle.current().pid() + "-cafebabe");
+        Files.createDirectories(liveSession);
+
+        assertEquals(1, manager.sweepOrphanedSessions());
+        assertFalse(Files.exists(deadSession));
+        assertTrue(Files.exists(liveSession), "Sessions of running processes should be kept");
+        assertTrue(Files.exists(manager.getSessionDir()));
+    }
+
+    @Test
+    void testParseSessionPid() {
+        assertEquals(Long.valueOf(1234L), TempFileManager.parseSessionPid("1234-abcd"));
+        assertNull(TempFileManager.parseSessionPid("abcd-1234"));
+        assertNull(TempFileManager.parseSessionPid("1234"));
+    }
+
+    @Test
+    void testConcurrentCreates() throws Exception {
+        TempFileManager large = new TempFileManager(tmpDir.toString(), 1024 * 1024);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            String peer = "peer" + t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 20; i++) {
+                        large.createTempFile("f" + (i % 5) + ".py", peer, "content " + (i % 5));
+                    }
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(errors.isEmpty(), "Concurrent creates should not fail: " + errors);
+        assertEquals(40, large.getTempFileCount());
+        assertEquals(5 * "content 0".length(), large.getTotalBytes(), "Each distinct content should be stored once");
+        large.cleanupAll();
+    }
+}
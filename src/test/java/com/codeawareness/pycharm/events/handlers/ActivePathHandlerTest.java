@@ -0,0 +1,156 @@
+package com.codeawareness.pycharm.events.handlers;
+
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.highlighting.ActivePathCache;
+import com.codeawareness.pycharm.highlighting.HighlightManager;
+import com.codeawareness.pycharm.monitoring.ActiveFileTracker;
+import com.codeawareness.pycharm.monitoring.ActivePathPrefetcher;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ActivePathHandler.
+ */
+class ActivePathHandlerTest {
+
+    private static final String BASE_PATH = "/work/project";
+
+    private final Project project = Mockito.mock(Project.class);
+    private final CodeAwarenessProjectService projectService = Mockito.mock(CodeAwarenessProjectService.class);
+    private final HighlightManager highlightManager = Mockito.mock(HighlightManager.class);
+    private final ActiveFileTracker activeFileTracker = Mockito.mock(ActiveFileTracker.class);
+    private final ActivePathPrefetcher prefetcher = Mockito.mock(ActivePathPrefetcher.class);
+    private final ActivePathCache cache = new ActivePathCache();
+    private ActivePathHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(project.getName()).thenReturn("project");
+        Mockito.when(project.getBasePath()).thenReturn(BASE_PATH);
+        Mockito.when(project.getService(CodeAwarenessProjectService.class)).thenReturn(projectService);
+        Mockito.when(projectService.getActivePathCache()).thenReturn(cache);
+        Mockito.when(projectService.getActiveFileTracker()).thenReturn(activeFileTracker);
+        Mockito.when(projectService.getActivePathPrefetcher()).thenReturn(prefetcher);
+        Mockito.when(projectService.createActivePathCacheKey(Mockito.anyString()))
+            .thenAnswer(invocation -> new ActivePathCache.Key(invocation.getArgument(0), 1, "peer"));
+        handler = new ActivePathHandler(project, highlightManager);
+    }
+
+    @Test
+    void testBatchResponsesAreAppliedToTheFilesTheyName() {
+        focus(BASE_PATH + "/focused.py");
+
+        // A batch for two visible editors and the focused file, answered in order
+        handler.handle(response("src/left.py", 1, 2));
+        handler.handle(response(BASE_PATH + "/src/right.py", 3));
+        handler.handle(response("focused.py", 4));
+
+        Mockito.verify(highlightManager).setHighlights(BASE_PATH + "/src/left.py", List.of(1, 2));
+        Mockito.verify(highlightManager).setHighlights(BASE_PATH + "/src/right.py", List.of(3));
+        Mockito.verify(highlightManager).setHighlights(BASE_PATH + "/focused.py", List.of(4));
+        assertEquals(List.of(1, 2), cache.get(new ActivePathCache.Key(BASE_PATH + "/src/left.py", 1, "peer")));
+        Mockito.verify(activeFileTracker, Mockito.times(3)).onActivePathResponse(true);
+    }
+
+    @Test
+    void testRequestedVersionIsCachedForTheNamedFile() {
+        ActivePathCache.Key requested = new ActivePathCache.Key(BASE_PATH + "/src/left.py", 7, "peer");
+        cache.recordRequest(requested);
+
+        handler.handle(response("src/left.py", 9));
+
+        assertEquals(List.of(9), cache.get(requested));
+    }
+
+    @Test
+    void testResponseForAnotherProjectIsIgnored() {
+        handler.handle(response("/work/other/src/left.py", 1));
+
+        Mockito.verifyNoInteractions(highlightManager, prefetcher);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testUnattributedResponseGoesToTheFocusedFile() {
+        focus(BASE_PATH + "/focused.py");
+
+        handler.handle(response(null, 5));
+
+        Mockito.verify(highlightManager).setHighlights(BASE_PATH + "/focused.py", List.of(5));
+        // So only the focused file is asked about from now on
+        Mockito.verify(activeFileTracker).onActivePathResponse(false);
+    }
+
+    @Test
+    void testResponseForSiblingProjectIsIgnored() {
+        // Same name prefix as the project directory, but another project
+        handler.handle(response(BASE_PATH + "2/src/left.py", 1));
+
+        Mockito.verifyNoInteractions(highlightManager, prefetcher);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testUnattributedAnswerToPrefetchIsIgnored() {
+        focus(BASE_PATH + "/focused.py");
+        Mockito.when(prefetcher.onActivePathResponse()).thenReturn(true, false);
+
+        handler.handle(response(null, 5));
+        Mockito.verifyNoInteractions(highlightManager);
+
+        // The prefetch requests are answered; what follows is for the focused file
+        handler.handle(response(null, 6));
+        Mockito.verify(highlightManager).setHighlights(BASE_PATH + "/focused.py", List.of(6));
+    }
+
+    @Test
+    void testAttributedAnswerToPrefetchIsCached() {
+        focus(BASE_PATH + "/focused.py");
+        Mockito.when(prefetcher.onActivePathResponse()).thenReturn(true);
+
+        handler.handle(response("src/left.py", 1));
+
+        Mockito.verify(highlightManager).setHighlights(BASE_PATH + "/src/left.py", List.of(1));
+        assertEquals(List.of(1), cache.get(new ActivePathCache.Key(BASE_PATH + "/src/left.py", 1, "peer")));
+    }
+
+    @Test
+    void testErrorsAreIgnored() {
+        handler.handle(new Message(Message.Flow.ERR, "code", "active-path", new JsonObject(), null));
+
+        Mockito.verifyNoInteractions(highlightManager, activeFileTracker);
+    }
+
+    private void focus(String path) {
+        VirtualFile file = Mockito.mock(VirtualFile.class);
+        Mockito.when(file.getPath()).thenReturn(path);
+        Mockito.when(projectService.getActiveFile()).thenReturn(file);
+    }
+
+    /**
+     * An active-path response as Gardener sends it, relative to the project root unless the path is absolute.
+     */
+    private static Message response(String activePath, int... lines) {
+        JsonArray hl = new JsonArray();
+        for (int line : lines) {
+            hl.add(line);
+        }
+        JsonObject data = new JsonObject();
+        data.add("hl", hl);
+        if (activePath != null) {
+            data.addProperty("root", BASE_PATH);
+            data.addProperty("activePath", activePath);
+        }
+        return new Message(Message.Flow.RES, "code", "active-path", data, null);
+    }
+}
@@ -0,0 +1,132 @@
+package com.codeawareness.pycharm.highlighting;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ActivePathCache.
+ */
+class ActivePathCacheTest {
+
+    private static final String CONTEXT = "peer=;branch=main";
+
+    private ActivePathCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ActivePathCache(3);
+    }
+
+    private static ActivePathCache.Key key(String path) {
+        return new ActivePathCache.Key(path, 1, CONTEXT);
+    }
+
+    @Test
+    void testPutAndGet() {
+        cache.put(key("/project/a.py"), Arrays.asList(1, 4, 7));
+
+        assertEquals(Arrays.asList(1, 4, 7), cache.get(key("/project/a.py")));
+        assertTrue(cache.contains(key("/project/a.py")));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testGetMissing() {
+        assertNull(cache.get(key("/project/missing.py")));
+        assertNull(cache.get(null));
+        assertFalse(cache.contains(null));
+    }
+
+    @Test
+    void testModificationStampMismatchMisses() {
+        cache.put(new ActivePathCache.Key("/project/a.py", 1, CONTEXT), Arrays.asList(1));
+
+        assertNull(cache.get(new ActivePathCache.Key("/project/a.py", 2, CONTEXT)),
+            "An edited document should not reuse highlights computed for older content");
+    }
+
+    @Test
+    void testContextMismatchMisses() {
+        cache.put(new ActivePathCache.Key("/project/a.py", 1, "peer=alice;branch=main"), Arrays.asList(1));
+        cache.put(new ActivePathCache.Key("/project/a.py", 1, "peer=bob;branch=main"), Arrays.asList(2));
+
+        assertEquals(Arrays.asList(1), cache.get(new ActivePathCache.Key("/project/a.py", 1, "peer=alice;branch=main")));
+        assertEquals(Arrays.asList(2), cache.get(new ActivePathCache.Key("/project/a.py", 1, "peer=bob;branch=main")));
+        assertNull(cache.get(new ActivePathCache.Key("/project/a.py", 1, "peer=;branch=dev")));
+    }
+
+    @Test
+    void testStoresDefensiveCopy() {
+        List<Integer> lines = new ArrayList<>(Arrays.asList(1, 2));
+        cache.put(key("/project/a.py"), lines);
+        lines.add(3);
+
+        List<Integer> cached = cache.get(key("/project/a.py"));
+        assertEquals(Arrays.asList(1, 2), cached, "Cache should not see later changes to the caller's list");
+        assertThrows(UnsupportedOperationException.class, () -> cached.add(5));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        cache.put(key("/project/a.py"), Arrays.asList(1));
+        cache.put(key("/project/b.py"), Arrays.asList(2));
+        cache.put(key("/project/c.py"), Arrays.asList(3));
+
+        // Touch a.py so b.py becomes the least recently used entry
+        cache.get(key("/project/a.py"));
+        cache.put(key("/project/d.py"), Arrays.asList(4));
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.contains(key("/project/a.py")));
+        assertFalse(cache.contains(key("/project/b.py")), "Least recently used entry should be evicted");
+        assertTrue(cache.contains(key("/project/c.py")));
+        assertTrue(cache.contains(key("/project/d.py")));
+    }
+
+    @Test
+    void testInvalidateRemovesAllVersionsOfFile() {
+        cache.put(new ActivePathCache.Key("/project/a.py", 1, CONTEXT), Arrays.asList(1));
+        cache.put(new ActivePathCache.Key("/project/a.py", 2, CONTEXT), Arrays.asList(2));
+        cache.put(key("/project/b.py"), Arrays.asList(3));
+
+        cache.invalidate("/project/a.py");
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains(key("/project/b.py")));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testRecordAndTakeRequest() {
+        ActivePathCache.Key requested = new ActivePathCache.Key("/project/a.py", 5, CONTEXT);
+        cache.recordRequest(requested);
+
+        assertEquals(requested, cache.takeRequest("/project/a.py"));
+        assertNull(cache.takeRequest("/project/a.py"), "A request should only be taken once");
+        assertNull(cache.takeRequest(null));
+    }
+
+    @Test
+    void testInvalidateAllDropsPendingRequests() {
+        cache.recordRequest(key("/project/a.py"));
+        cache.invalidateAll();
+
+        assertNull(cache.takeRequest("/project/a.py"));
+    }
+
+    @Test
+    void testIgnoresNullInput() {
+        cache.put(null, Arrays.asList(1));
+        cache.put(key("/project/a.py"), null);
+        cache.put(new ActivePathCache.Key(null, 1, CONTEXT), Arrays.asList(1));
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,168 @@
+package com.codeawareness.pycharm.monitoring;
+
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.highlighting.ActivePathCache;
+import com.codeawareness.pycharm.scheduling.ScheduledTask;
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ActivePathPrefetcher.
+ */
+class ActivePathPrefetcherTest {
+
+    private final Project project = Mockito.mock(Project.class);
+    private final TaskGroup tasks = Mockito.mock(TaskGroup.class);
+    private final CodeAwarenessProjectService projectService = Mockito.mock(CodeAwarenessProjectService.class);
+    private final ActiveFileTracker tracker = Mockito.mock(ActiveFileTracker.class);
+    private final FileEditorManager editorManager = Mockito.mock(FileEditorManager.class);
+    private final ActivePathCache cache = new ActivePathCache();
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private MockedStatic<FileEditorManager> editorManagerStatic;
+    private VirtualFile focused;
+
+    @BeforeEach
+    void setUp() {
+        editorManagerStatic = Mockito.mockStatic(FileEditorManager.class);
+        editorManagerStatic.when(() -> FileEditorManager.getInstance(project)).thenReturn(editorManager);
+        Mockito.when(project.getName()).thenReturn("project");
+        Mockito.when(project.getService(CodeAwarenessProjectService.class)).thenReturn(projectService);
+        Mockito.when(projectService.getActiveFileTracker()).thenReturn(tracker);
+        Mockito.when(projectService.createActivePathCacheKey(Mockito.any(VirtualFile.class)))
+            .thenAnswer(invocation -> new ActivePathCache.Key(((VirtualFile) invocation.getArgument(0)).getPath(), 1, "peer"));
+        Mockito.when(tasks.schedule(Mockito.eq(SchedulerLane.PREFETCH), Mockito.any(), Mockito.anyLong()))
+            .thenAnswer(invocation -> {
+                scheduled.add(invocation.getArgument(1));
+                return Mockito.mock(ScheduledTask.class);
+            });
+
+        focused = file("/project/focused.py");
+        VirtualFile[] openFiles = {focused, file("/project/a.py"), file("/project/b.py")};
+        Mockito.when(editorManager.getOpenFiles()).thenReturn(openFiles);
+        Mockito.when(tracker.getCurrentActiveFile()).thenReturn(focused.getPath());
+        Mockito.when(tracker.getRecentFiles()).thenReturn(Collections.emptyList());
+        Mockito.when(tracker.isProjectFile(Mockito.any())).thenReturn(true);
+        Mockito.when(tracker.isRequestingVisibleEditors()).thenReturn(true);
+        Mockito.when(tracker.isConnected()).thenReturn(true);
+        Mockito.when(tracker.sendSpeculativeActivePathMessage(Mockito.anyString(), Mockito.anyString())).thenReturn(true);
+        Mockito.when(projectService.getActiveFile()).thenReturn(focused);
+    }
+
+    @AfterEach
+    void tearDown() {
+        editorManagerStatic.close();
+    }
+
+    @Test
+    void testPassRequestsOpenTabsThenRefocuses() {
+        ActivePathPrefetcher prefetcher = new ActivePathPrefetcher(project, tasks, cache);
+
+        prefetcher.schedulePass();
+        runAllScheduled();
+
+        Mockito.verify(tracker).sendSpeculativeActivePathMessage("/project/a.py", "a.py");
+        Mockito.verify(tracker).sendSpeculativeActivePathMessage("/project/b.py", "b.py");
+        Mockito.verify(tracker).sendActivePathMessage(focused.getPath(), focused.getName());
+        assertTrue(prefetcher.isPrefetching(), "Answers to the prefetch requests are still on their way");
+    }
+
+    @Test
+    void testNoPassForBackendsThatDoNotNameFiles() {
+        Mockito.when(tracker.isRequestingVisibleEditors()).thenReturn(false);
+        ActivePathPrefetcher prefetcher = new ActivePathPrefetcher(project, tasks, cache);
+
+        prefetcher.schedulePass();
+        runAllScheduled();
+
+        assertNoRequests(prefetcher);
+    }
+
+    @Test
+    void testNoPassWhileDisconnected() {
+        Mockito.when(tracker.isConnected()).thenReturn(false);
+        ActivePathPrefetcher prefetcher = new ActivePathPrefetcher(project, tasks, cache);
+
+        prefetcher.schedulePass();
+        runAllScheduled();
+
+        assertNoRequests(prefetcher);
+    }
+
+    @Test
+    void testCancelledPassStillAwaitsSentRequests() {
+        ActivePathPrefetcher prefetcher = new ActivePathPrefetcher(project, tasks, cache);
+        prefetcher.schedulePass();
+        scheduled.remove(0).run(); // Pass starts and sends the first request
+        scheduled.remove(0).run(); // Second request
+
+        // A tab switch abandons the pass, but two answers are still due
+        prefetcher.cancel();
+        runAllScheduled();
+
+        assertTrue(prefetcher.isPrefetching());
+        assertTrue(prefetcher.onActivePathResponse());
+        assertTrue(prefetcher.onActivePathResponse());
+        assertFalse(prefetcher.isPrefetching());
+        assertFalse(prefetcher.onActivePathResponse(), "Later answers are for the focused file");
+        Mockito.verify(tracker, Mockito.never()).sendActivePathMessage(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void testUnsentRequestIsNotAwaited() {
+        Mockito.when(tracker.sendSpeculativeActivePathMessage(Mockito.anyString(), Mockito.anyString())).thenReturn(false);
+        ActivePathPrefetcher prefetcher = new ActivePathPrefetcher(project, tasks, cache);
+
+        prefetcher.schedulePass();
+        runAllScheduled();
+
+        assertFalse(prefetcher.isPrefetching());
+        Mockito.verify(tracker, Mockito.times(1)).sendSpeculativeActivePathMessage(Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    void testAwaitingGivesUpAfterTimeout() throws InterruptedException {
+        ActivePathPrefetcher prefetcher = new ActivePathPrefetcher(project, tasks, cache, 200);
+        prefetcher.schedulePass();
+        runAllScheduled();
+        assertTrue(prefetcher.isPrefetching());
+
+        Thread.sleep(400);
+
+        assertFalse(prefetcher.isPrefetching(), "Answers the backend dropped should not block attribution forever");
+        assertFalse(prefetcher.onActivePathResponse());
+    }
+
+    private void assertNoRequests(ActivePathPrefetcher prefetcher) {
+        Mockito.verify(tracker, Mockito.never()).sendSpeculativeActivePathMessage(Mockito.any(), Mockito.any());
+        Mockito.verify(tracker, Mockito.never()).sendActivePathMessage(Mockito.any(), Mockito.any());
+        assertFalse(prefetcher.isPrefetching());
+    }
+
+    private void runAllScheduled() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+        }
+    }
+
+    private static VirtualFile file(String path) {
+        VirtualFile file = Mockito.mock(VirtualFile.class);
+        Mockito.when(file.getPath()).thenReturn(path);
+        Mockito.when(file.getName()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        Mockito.when(file.isValid()).thenReturn(true);
+        return file;
+    }
+}
@@ -0,0 +1,67 @@
+package com.codeawareness.pycharm.monitoring;
+
+import com.codeawareness.pycharm.communication.Message;
+import com.codeawareness.pycharm.settings.CodeAwarenessSettings;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AdaptiveDebounceController.
+ */
+class AdaptiveDebounceControllerTest {
+
+    private final CodeAwarenessSettings settings = new CodeAwarenessSettings();
+    private final AdaptiveDebounceController controller = new AdaptiveDebounceController(settings);
+
+    @Test
+    void testStartsWithConfiguredDelays() {
+        assertEquals(settings.activeFileDebounceMs,
+            controller.getDelayMs(AdaptiveDebounceController.Channel.ACTIVE_PATH));
+        assertEquals(settings.fileSaveDebounceMs,
+            controller.getDelayMs(AdaptiveDebounceController.Channel.FILE_SAVED));
+    }
+
+    @Test
+    void testRoundTripsAreMeasuredPerChannel() {
+        controller.onMessageSent(message(Message.Flow.REQ, "active-path"));
+        controller.onMessageReceived(message(Message.Flow.RES, "active-path"));
+
+        DebounceWindow activePath = controller.getWindow(AdaptiveDebounceController.Channel.ACTIVE_PATH);
+        assertEquals(1, activePath.getSampleCount());
+        assertEquals(settings.activeFileDebounceMinMs, activePath.getDelayMs(), "An instant answer should shrink the delay");
+        assertEquals(0, controller.getWindow(AdaptiveDebounceController.Channel.FILE_SAVED).getSampleCount());
+    }
+
+    @Test
+    void testUnrequestedResponseIsNotMeasured() {
+        controller.onMessageReceived(message(Message.Flow.RES, "file-saved"));
+        controller.onMessageReceived(message(Message.Flow.RES, "other"));
+
+        assertEquals(0, controller.getWindow(AdaptiveDebounceController.Channel.FILE_SAVED).getSampleCount());
+    }
+
+    @Test
+    void testEditedBoundsApplyWithoutRestart() {
+        settings.activeFileDebounceMinMs = 600;
+        settings.activeFileDebounceMaxMs = 700;
+
+        assertEquals(600, controller.getDelayMs(AdaptiveDebounceController.Channel.ACTIVE_PATH));
+        DebounceWindow window = controller.getWindow(AdaptiveDebounceController.Channel.ACTIVE_PATH);
+        assertEquals(600, window.getMinDelayMs());
+        assertEquals(700, window.getMaxDelayMs());
+    }
+
+    @Test
+    void testFixedDelayWhenAdaptationIsOff() {
+        settings.adaptiveDebounceEnabled = false;
+        settings.fileSaveDebounceMs = 1234;
+
+        assertEquals(1234, controller.getDelayMs(AdaptiveDebounceController.Channel.FILE_SAVED));
+    }
+
+    private static Message message(Message.Flow flow, String action) {
+        return new Message(flow, "code", action, new JsonObject(), null);
+    }
+}
@@ -0,0 +1,126 @@
+package com.codeawareness.pycharm.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DebounceWindow.
+ */
+class DebounceWindowTest {
+
+    @Test
+    void testInitialDelayUntilMeasured() {
+        DebounceWindow window = new DebounceWindow(300, 50, 1000);
+
+        assertEquals(300, window.getDelayMs());
+        assertEquals(-1, window.getAverageRoundTripMs());
+        assertEquals(0, window.getSampleCount());
+        assertEquals(Arrays.asList(300L), window.getHistory());
+    }
+
+    @Test
+    void testInitialDelayIsClamped() {
+        assertEquals(1000, new DebounceWindow(5000, 50, 1000).getDelayMs());
+        assertEquals(50, new DebounceWindow(10, 50, 1000).getDelayMs());
+    }
+
+    @Test
+    void testShrinksForFastBackend() {
+        DebounceWindow window = new DebounceWindow(300, 50, 1000);
+
+        for (int i = 0; i < 20; i++) {
+            window.recordRoundTrip(10);
+        }
+
+        assertEquals(50, window.getDelayMs(), "Fast round trips should shrink the delay to the lower bound");
+        assertEquals(10, window.getAverageRoundTripMs());
+        assertEquals(20, window.getSampleCount());
+    }
+
+    @Test
+    void testGrowsForSlowBackend() {
+        DebounceWindow window = new DebounceWindow(300, 50, 1000);
+
+        for (int i = 0; i < 20; i++) {
+            window.recordRoundTrip(900);
+        }
+
+        assertEquals(1000, window.getDelayMs(), "Slow round trips should grow the delay to the upper bound");
+    }
+
+    @Test
+    void testSmoothsOutliers() {
+        DebounceWindow window = new DebounceWindow(300, 0, 10000);
+        window.recordRoundTrip(100);
+        window.recordRoundTrip(1100);
+
+        // 0.2 * 1100 + 0.8 * 100 = 300
+        assertEquals(300, window.getAverageRoundTripMs());
+        assertEquals(600, window.getDelayMs());
+    }
+
+    @Test
+    void testIgnoresNegativeRoundTrip() {
+        DebounceWindow window = new DebounceWindow(300, 50, 1000);
+        window.recordRoundTrip(-5);
+
+        assertEquals(300, window.getDelayMs());
+        assertEquals(0, window.getSampleCount());
+    }
+
+    @Test
+    void testHistoryKeepsMostRecentChanges() {
+        DebounceWindow window = new DebounceWindow(0, 0, 100000);
+
+        for (int i = 1; i <= 40; i++) {
+            // First sample sets the average directly; later ones move it, changing the delay each time
+            window.recordRoundTrip(i * 1000L);
+        }
+
+        List<Long> history = window.getHistory();
+        assertEquals(32, history.size(), "History should be bounded");
+        assertEquals(window.getDelayMs(), history.get(history.size() - 1).longValue());
+        for (int i = 1; i < history.size(); i++) {
+            assertTrue(history.get(i) > history.get(i - 1), "History should be ordered oldest first");
+        }
+    }
+
+    @Test
+    void testInvertedBounds() {
+        DebounceWindow window = new DebounceWindow(300, 800, 200);
+
+        assertEquals(window.getMinDelayMs(), window.getMaxDelayMs());
+        assertEquals(200, window.getDelayMs());
+    }
+
+    @Test
+    void testNewBoundsApplyToMeasuredDelay() {
+        DebounceWindow window = new DebounceWindow(300, 50, 1000);
+        for (int i = 0; i < 20; i++) {
+            window.recordRoundTrip(900);
+        }
+        assertEquals(1000, window.getDelayMs());
+
+        window.setBounds(50, 5000);
+        assertEquals(1800, window.getDelayMs(), "A higher max should let the measured delay through");
+        assertEquals(5000, window.getMaxDelayMs());
+
+        window.setBounds(50, 400);
+        assertEquals(400, window.getDelayMs());
+        assertEquals(900, window.getAverageRoundTripMs(), "Measurements should survive a bounds change");
+    }
+
+    @Test
+    void testNewBoundsClampUnmeasuredDelay() {
+        DebounceWindow window = new DebounceWindow(300, 50, 1000);
+
+        window.setBounds(500, 1000);
+
+        assertEquals(500, window.getDelayMs());
+        assertEquals(Arrays.asList(300L, 500L), window.getHistory());
+    }
+}
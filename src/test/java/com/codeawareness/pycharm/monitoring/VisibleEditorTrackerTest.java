@@ -0,0 +1,140 @@
+package com.codeawareness.pycharm.monitoring;
+
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.highlighting.ActivePathCache;
+import com.codeawareness.pycharm.highlighting.HighlightManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for VisibleEditorTracker.
+ */
+class VisibleEditorTrackerTest {
+
+    private final Project project = Mockito.mock(Project.class);
+    private final FileEditorManager editorManager = Mockito.mock(FileEditorManager.class);
+    private final ActiveFileTracker activeFileTracker = Mockito.mock(ActiveFileTracker.class);
+    private final CodeAwarenessProjectService projectService = Mockito.mock(CodeAwarenessProjectService.class);
+    private final HighlightManager highlightManager = Mockito.mock(HighlightManager.class);
+    private final ActivePathCache cache = new ActivePathCache();
+    private MockedStatic<FileEditorManager> editorManagerStatic;
+    private VisibleEditorTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        editorManagerStatic = Mockito.mockStatic(FileEditorManager.class);
+        editorManagerStatic.when(() -> FileEditorManager.getInstance(project)).thenReturn(editorManager);
+        Mockito.when(project.getService(CodeAwarenessProjectService.class)).thenReturn(projectService);
+        Mockito.when(projectService.getActivePathCache()).thenReturn(cache);
+        Mockito.when(projectService.getHighlightManager()).thenReturn(highlightManager);
+        Mockito.when(projectService.createActivePathCacheKey(Mockito.any(VirtualFile.class)))
+            .thenAnswer(invocation -> key(invocation.getArgument(0)));
+        Mockito.when(activeFileTracker.isProjectFile(Mockito.any())).thenReturn(true);
+        tracker = new VisibleEditorTracker(project, activeFileTracker);
+    }
+
+    @AfterEach
+    void tearDown() {
+        editorManagerStatic.close();
+    }
+
+    @Test
+    void testFocusedFileComesLast() {
+        VirtualFile focused = file("/project/focused.py");
+        VirtualFile left = file("/project/left.py");
+        VirtualFile right = file("/project/right.py");
+        showing(focused, left, right);
+
+        assertEquals(List.of(left, right, focused), tracker.getVisibleFiles(focused.getPath()));
+    }
+
+    @Test
+    void testSkipsDuplicatesAndFilesThatAreNotProjectFiles() {
+        VirtualFile shown = file("/project/shown.py");
+        VirtualFile directory = file("/project/src");
+        Mockito.when(directory.isDirectory()).thenReturn(true);
+        VirtualFile deleted = file("/project/deleted.py");
+        Mockito.when(deleted.isValid()).thenReturn(false);
+        VirtualFile external = file("/elsewhere/external.py");
+        Mockito.when(activeFileTracker.isProjectFile(external)).thenReturn(false);
+        // The same file in two splitters
+        showing(shown, directory, null, deleted, shown, external);
+
+        assertEquals(List.of(shown), tracker.getVisibleFiles(null));
+    }
+
+    @Test
+    void testUncachedFilesLeaveOutTheFocusedAndCachedOnes() {
+        VirtualFile focused = file("/project/focused.py");
+        VirtualFile cached = file("/project/cached.py");
+        VirtualFile uncached = file("/project/uncached.py");
+        showing(focused, cached, uncached);
+        cache.put(key(cached), List.of(1, 2));
+
+        assertEquals(List.of(uncached), tracker.getUncachedFiles(focused.getPath()));
+    }
+
+    @Test
+    void testNewlyVisibleFileIsPaintedFromCache() {
+        VirtualFile focused = file("/project/focused.py");
+        VirtualFile cached = file("/project/cached.py");
+        showing(focused, cached);
+        cache.put(key(cached), List.of(3, 5));
+        cache.put(key(focused), List.of(1));
+        Mockito.when(activeFileTracker.getCurrentActiveFile()).thenReturn(focused.getPath());
+
+        tracker.onVisibleEditorsChanged();
+
+        Mockito.verify(highlightManager).setHighlights(cached.getPath(), List.of(3, 5));
+        Mockito.verify(activeFileTracker, Mockito.never()).refreshVisibleEditors();
+
+        // Still visible, so not painted again
+        tracker.onVisibleEditorsChanged();
+        Mockito.verify(highlightManager, Mockito.times(1)).setHighlights(cached.getPath(), List.of(3, 5));
+    }
+
+    @Test
+    void testUncachedFileIsRequestedOnlyWhenBatching() {
+        VirtualFile focused = file("/project/focused.py");
+        VirtualFile left = file("/project/left.py");
+        Mockito.when(activeFileTracker.getCurrentActiveFile()).thenReturn(focused.getPath());
+        showing(focused, left);
+
+        // Answers would not say which file they are for
+        Mockito.when(activeFileTracker.isRequestingVisibleEditors()).thenReturn(false);
+        tracker.onVisibleEditorsChanged();
+        Mockito.verify(activeFileTracker, Mockito.never()).refreshVisibleEditors();
+
+        Mockito.when(activeFileTracker.isRequestingVisibleEditors()).thenReturn(true);
+        VirtualFile right = file("/project/right.py");
+        showing(focused, left, right);
+        tracker.onVisibleEditorsChanged();
+        Mockito.verify(activeFileTracker).refreshVisibleEditors();
+    }
+
+    private void showing(VirtualFile... files) {
+        Mockito.when(editorManager.getSelectedFiles()).thenReturn(files);
+    }
+
+    private static VirtualFile file(String path) {
+        VirtualFile file = Mockito.mock(VirtualFile.class);
+        Mockito.when(file.getPath()).thenReturn(path);
+        Mockito.when(file.getName()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        Mockito.when(file.isValid()).thenReturn(true);
+        return file;
+    }
+
+    private static ActivePathCache.Key key(VirtualFile file) {
+        return new ActivePathCache.Key(file.getPath(), 1, "peer");
+    }
+}
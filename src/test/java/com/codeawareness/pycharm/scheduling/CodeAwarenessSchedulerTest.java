@@ -0,0 +1,183 @@
+package com.codeawareness.pycharm.scheduling;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CodeAwarenessScheduler.
+ */
+class CodeAwarenessSchedulerTest {
+
+    private CodeAwarenessScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new CodeAwarenessScheduler(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testSubmitRunsTask() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        ScheduledTask task = scheduler.submit(SchedulerLane.FILE_SAVED, latch::countDown);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS), "Task should run");
+        waitUntilDone(task);
+        assertEquals(1, scheduler.getMetrics(SchedulerLane.FILE_SAVED).getCompleted());
+    }
+
+    @Test
+    void testScheduleRespectsDelay() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        scheduler.schedule(SchedulerLane.ACTIVE_PATH, latch::countDown, 100);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS), "Task should run");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= 90, "Task should not run before its delay (ran after " + elapsedMs + "ms)");
+    }
+
+    @Test
+    void testCancelBeforeRun() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean(false);
+
+        ScheduledTask task = scheduler.schedule(SchedulerLane.ACTIVE_PATH, () -> ran.set(true), 200);
+        assertTrue(task.cancel(), "Pending task should be cancellable");
+        assertTrue(task.isCancelled());
+
+        Thread.sleep(400);
+        assertFalse(ran.get(), "Cancelled task must not run");
+        assertEquals(1, scheduler.getMetrics(SchedulerLane.ACTIVE_PATH).getCancelled());
+        assertFalse(task.cancel(), "Task cannot be cancelled twice");
+    }
+
+    @Test
+    void testGroupCancelAll() throws InterruptedException {
+        TaskGroup group = scheduler.createGroup("test-project");
+        AtomicInteger runs = new AtomicInteger();
+
+        group.schedule(SchedulerLane.FILE_SAVED, runs::incrementAndGet, 200);
+        group.schedule(SchedulerLane.FILE_SAVED, runs::incrementAndGet, 200);
+        assertEquals(2, group.getPendingCount());
+
+        group.cancelAll();
+        assertEquals(0, group.getPendingCount());
+        assertTrue(group.isCancelled());
+
+        // New work is rejected once the group is cancelled
+        ScheduledTask rejected = group.submit(SchedulerLane.FILE_SAVED, runs::incrementAndGet);
+        assertTrue(rejected.isCancelled());
+
+        Thread.sleep(400);
+        assertEquals(0, runs.get(), "No task of a cancelled group should run");
+    }
+
+    @Test
+    void testGroupForgetsFinishedTasks() throws InterruptedException {
+        TaskGroup group = scheduler.createGroup("test-project");
+        CountDownLatch latch = new CountDownLatch(1);
+
+        ScheduledTask task = group.submit(SchedulerLane.STARTUP, latch::countDown);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        waitUntilDone(task);
+        assertEquals(0, group.getPendingCount());
+    }
+
+    @Test
+    void testFailingTaskIsCountedAndDoesNotKillWorkers() throws InterruptedException {
+        ScheduledTask failing = scheduler.submit(SchedulerLane.IPC_READER, () -> {
+            throw new RuntimeException("Test exception");
+        });
+        waitUntilDone(failing);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        scheduler.submit(SchedulerLane.IPC_READER, latch::countDown);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS), "Workers should survive a failing task");
+        assertEquals(1, scheduler.getMetrics(SchedulerLane.IPC_READER).getFailed());
+    }
+
+    @Test
+    void testMetricsPerLane() throws InterruptedException {
+        ScheduledTask task = scheduler.submit(SchedulerLane.STARTUP, () -> {});
+        waitUntilDone(task);
+
+        LaneMetrics startup = scheduler.getMetrics(SchedulerLane.STARTUP);
+        assertEquals(1, startup.getSubmitted());
+        assertEquals(1, startup.getCompleted());
+        assertEquals(0, startup.getPending());
+        assertEquals(0, scheduler.getMetrics(SchedulerLane.FILE_SAVED).getSubmitted());
+        assertEquals(SchedulerLane.values().length, scheduler.getAllMetrics().size());
+        assertTrue(startup.toString().startsWith("startup:"));
+    }
+
+    @Test
+    void testThreadCountIsBounded() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            scheduler.submit(SchedulerLane.FILE_SAVED, latch::countDown);
+        }
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        // One timer thread at most plus the two workers
+        assertTrue(scheduler.getLiveThreadCount() <= 3, "Thread count should stay bounded");
+    }
+
+    @Test
+    void testBlockingTasksDoNotOccupyWorkers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            scheduler.submitBlocking(SchedulerLane.IPC_READER, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(started.await(2, TimeUnit.SECONDS), "Every blocking task should get a thread");
+
+        // More blocking loops than workers, and short tasks still run
+        CountDownLatch latch = new CountDownLatch(1);
+        scheduler.submit(SchedulerLane.FILE_SAVED, latch::countDown);
+        assertTrue(latch.await(2, TimeUnit.SECONDS), "Short tasks should not wait for blocking ones");
+        assertEquals(3, scheduler.getBlockingThreadCount());
+        assertEquals(3, scheduler.getMetrics(SchedulerLane.IPC_READER).getSubmitted());
+
+        release.countDown();
+    }
+
+    @Test
+    void testSubmitAfterShutdownIsDropped() {
+        scheduler.shutdown();
+
+        ScheduledTask task = scheduler.submit(SchedulerLane.FILE_SAVED, () -> {});
+
+        assertTrue(task.isCancelled(), "Tasks submitted after shutdown should be dropped");
+    }
+
+    private static void waitUntilDone(ScheduledTask task) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!task.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(task.isDone(), "Task should finish");
+    }
+}
@@ -26,6 +26,15 @@ class CodeAwarenessSettingsTest {
         assertEquals("0a071d", settings.getDarkThemeColor(), "Dark theme color should be default");
     }
 
+    @Test
+    void testAdaptiveDebounceDefaults() {
+        assertTrue(settings.adaptiveDebounceEnabled, "Adaptive debounce should be enabled by default");
+        assertTrue(settings.activeFileDebounceMinMs <= settings.activeFileDebounceMs);
+        assertTrue(settings.activeFileDebounceMs <= settings.activeFileDebounceMaxMs);
+        assertTrue(settings.fileSaveDebounceMinMs <= settings.fileSaveDebounceMs);
+        assertTrue(settings.fileSaveDebounceMs <= settings.fileSaveDebounceMaxMs);
+    }
+
     @Test
     void testToggleHighlights() {
         // Start with default (enabled)
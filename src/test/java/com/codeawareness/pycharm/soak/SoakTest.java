@@ -0,0 +1,304 @@
+package com.codeawareness.pycharm.soak;
+
+import com.codeawareness.pycharm.CodeAwarenessApplicationService;
+import com.codeawareness.pycharm.CodeAwarenessProjectService;
+import com.codeawareness.pycharm.testing.FakeGardener;
+import com.codeawareness.pycharm.utils.PathUtils;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Soak test: sustained traffic from a {@link FakeGardener} while project services are opened and
+ * closed, asserting that the plugin's footprint levels off instead of growing with the traffic.
+ *
+ * Each cycle opens extra project services next to the fixture's own, pushes active-path
+ * responses for a few open and many closed files, switches tabs, saves files and selects peers, then closes the extra services.
+ * After a warm-up cycle sets the baseline, every cycle must stay within fixed bounds on live
+ * heap, thread count, open file descriptors and temp-dir size, and the plugin's own maps and
+ * queues must not exceed what the working set of files and peers can explain.
+ *
+ * Takes minutes; not part of {@code test}. Run it with {@code ./gradlew soakTest}, scaled with
+ * {@code -Dcodeawareness.soak.cycles} and {@code -Dcodeawareness.soak.messagesPerCycle}.
+ */
+public class SoakTest extends BasePlatformTestCase {
+
+    private static final int CYCLES = Integer.getInteger("codeawareness.soak.cycles", 10);
+    private static final int MESSAGES_PER_CYCLE = Integer.getInteger("codeawareness.soak.messagesPerCycle", 5000);
+    private static final int PROJECTS_PER_CYCLE = 3;
+    private static final int FILES = 20;
+    private static final int OPEN_FILES = 5;
+    private static final int PEERS = 5;
+    private static final int LINES_PER_FILE = 500;
+    private static final int HIGHLIGHTS_PER_MESSAGE = 50;
+    private static final int PUMP_EVERY = 250;
+
+    private static final long HEAP_GROWTH_BOUND = 64L * 1024 * 1024;
+    private static final int THREAD_GROWTH_BOUND = 16;
+    private static final long FD_GROWTH_BOUND = 32;
+    private static final long TEMP_DIR_BOUND = 64L * 1024 * 1024;
+    private static final long QUIET_TIMEOUT_MS = 30_000;
+
+    // The plugin may connect as soon as the fixture's project opens, so point it at the fake first
+    private static final Path SOCKET_DIR = createSocketDirectory();
+
+    private FakeGardener gardener;
+    private CodeAwarenessApplicationService appService;
+    private final List<VirtualFile> files = new ArrayList<>();
+    private final Random random = new Random(7);
+
+    /**
+     * Footprint at the end of a cycle.
+     */
+    private static final class Footprint {
+        final long heapBytes;
+        final int threads;
+        final long openFiles;
+        final long tempDirBytes;
+
+        Footprint(long heapBytes, int threads, long openFiles, long tempDirBytes) {
+            this.heapBytes = heapBytes;
+            this.threads = threads;
+            this.openFiles = openFiles;
+            this.tempDirBytes = tempDirBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("heap=%dMB threads=%d fds=%d temp=%dKB",
+                heapBytes / (1024 * 1024), threads, openFiles, tempDirBytes / 1024);
+        }
+    }
+
+    private static Path createSocketDirectory() {
+        try {
+            Path directory = Files.createTempDirectory("kawa-code-soak-sockets");
+            System.setProperty(PathUtils.SOCKET_DIR_PROPERTY, directory.toString());
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        gardener = FakeGardener.builder()
+            .socketDirectory(SOCKET_DIR)
+            .latency(0, 5)
+            .highlightLines(HIGHLIGHTS_PER_MESSAGE)
+            .peerFileBytes(16 * 1024)
+            .build()
+            .start();
+        appService = ApplicationManager.getApplication().getService(CodeAwarenessApplicationService.class);
+        appService.connectAsync().get(15, TimeUnit.SECONDS);
+        createProjectFiles();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            appService.disconnect();
+            gardener.close();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testFootprintStaysBounded() throws Exception {
+        CodeAwarenessProjectService service = getProject().getService(CodeAwarenessProjectService.class);
+        service.whenReady().get(10, TimeUnit.SECONDS);
+        int baselineHandlers = appService.getEventDispatcher().size();
+
+        runCycle(service, 0);
+        Footprint baseline = measure(service);
+        System.out.println("Soak baseline: " + baseline);
+
+        for (int cycle = 1; cycle <= CYCLES; cycle++) {
+            runCycle(service, cycle);
+            Footprint footprint = measure(service);
+            System.out.println("Soak cycle " + cycle + "/" + CYCLES + ": " + footprint);
+
+            assertTrue("Live heap grew from " + baseline + " to " + footprint,
+                footprint.heapBytes - baseline.heapBytes <= HEAP_GROWTH_BOUND);
+            assertTrue("Threads grew from " + baseline + " to " + footprint,
+                footprint.threads - baseline.threads <= THREAD_GROWTH_BOUND);
+            if (baseline.openFiles >= 0) {
+                assertTrue("Open files grew from " + baseline + " to " + footprint,
+                    footprint.openFiles - baseline.openFiles <= FD_GROWTH_BOUND);
+            }
+            assertTrue("Temp dirs hold " + footprint.tempDirBytes + " bytes",
+                footprint.tempDirBytes <= TEMP_DIR_BOUND);
+
+            // Closed projects leave no handlers behind
+            assertEquals(baselineHandlers, appService.getEventDispatcher().size());
+            // Structures bounded by the working set, not by the traffic
+            assertTrue(service.getHighlightManager().getTotalHighlightCount() <= FILES * HIGHLIGHTS_PER_MESSAGE);
+            assertTrue(service.getTempFileManager().getTempFileCount() <= FILES * PEERS);
+            assertTrue(service.getFileMonitor().getPendingNotificationCount() <= FILES);
+            assertTrue(appService.getResponseHandlerRegistry().size() <= 16);
+            // Responses were painted on the files they name, not all on the focused one
+            assertTrue("Only " + highlightedFileCount(service) + " open file(s) got highlights",
+                highlightedFileCount(service) > 1);
+        }
+        System.out.println("Soak: " + gardener.getRequestCount("code:active-path") + " active-path and "
+            + gardener.getRequestCount("code:diff-peer") + " diff-peer requests served");
+    }
+
+    /**
+     * Open extra projects, run a cycle of traffic, close them and let everything settle.
+     */
+    private void runCycle(CodeAwarenessProjectService service, int cycle) throws Exception {
+        List<CodeAwarenessProjectService> opened = new ArrayList<>();
+        for (int i = 0; i < PROJECTS_PER_CYCLE; i++) {
+            CodeAwarenessProjectService extra = new CodeAwarenessProjectService(getProject());
+            extra.whenReady().get(10, TimeUnit.SECONDS);
+            opened.add(extra);
+        }
+
+        String guid = appService.getClientGuid();
+        for (int i = 0; i < MESSAGES_PER_CYCLE; i++) {
+            VirtualFile file = files.get(random.nextInt(files.size()));
+            switch (i % 50) {
+                case 0:
+                    service.getActiveFileTracker().notifyActiveFileChanged(file);
+                    break;
+                case 1:
+                    service.getFileMonitor().notifyFileSaved(file);
+                    break;
+                case 2:
+                    int peer = random.nextInt(PEERS);
+                    gardener.selectPeer(guid, "peer-" + peer, "Peer " + peer, List.of(relativePath(file)));
+                    break;
+                default:
+                    gardener.push(guid, "code", "active-path", activePath(file));
+                    break;
+            }
+            if (i % PUMP_EVERY == 0) {
+                PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+            }
+        }
+
+        for (CodeAwarenessProjectService extra : opened) {
+            Disposer.dispose(extra);
+        }
+        awaitQuiet(service);
+    }
+
+    /**
+     * An active-path push the way Gardener sends it: the file relative to its repository root.
+     */
+    private JsonObject activePath(VirtualFile file) {
+        JsonArray lines = new JsonArray();
+        for (int i = 0; i < HIGHLIGHTS_PER_MESSAGE; i++) {
+            lines.add(random.nextInt(LINES_PER_FILE));
+        }
+        JsonObject data = new JsonObject();
+        data.add("hl", lines);
+        data.addProperty("root", getProject().getBasePath());
+        data.addProperty("activePath", relativePath(file));
+        return data;
+    }
+
+    private int highlightedFileCount(CodeAwarenessProjectService service) {
+        int count = 0;
+        for (VirtualFile file : files) {
+            if (service.getHighlightManager().getHighlightCount(file.getPath()) > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Wait until the project's queued work, and the UI updates it posts, have drained.
+     */
+    private void awaitQuiet(CodeAwarenessProjectService service) throws Exception {
+        long deadline = System.currentTimeMillis() + QUIET_TIMEOUT_MS;
+        do {
+            PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+            Thread.sleep(50);
+        } while (service.getProjectTasks().getPendingCount() > 0 && System.currentTimeMillis() < deadline);
+        PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+    }
+
+    private Footprint measure(CodeAwarenessProjectService service) throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        long openFiles = -1;
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            openFiles = ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+        }
+
+        long temp = directorySize(gardener.getTmpDirectory()) + directorySize(SOCKET_DIR);
+        Path sessionDir = service.getTempFileManager().getSessionDir();
+        if (sessionDir != null && !sessionDir.startsWith(gardener.getTmpDirectory())) {
+            temp += directorySize(sessionDir);
+        }
+        return new Footprint(heap, threads, openFiles, temp);
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    /**
+     * Files on disk under the project's base path, so they count as project files and resolve
+     * through the local file system like real ones.
+     */
+    private void createProjectFiles() throws IOException {
+        File root = new File(getProject().getBasePath(), "soak");
+        Files.createDirectories(root.toPath());
+        StringBuilder content = new StringBuilder();
+        for (int line = 0; line < LINES_PER_FILE; line++) {
+            content.append("value_").append(line).append(" = ").append(line).append('\n');
+        }
+        for (int i = 0; i < FILES; i++) {
+            File file = new File(root, "module_" + i + ".py");
+            Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+            VirtualFile virtualFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(file);
+            assertNotNull(virtualFile);
+            files.add(virtualFile);
+        }
+        // Highlights are painted in open editors only; the rest are just cached
+        for (int i = OPEN_FILES - 1; i > 0; i--) {
+            FileEditorManager.getInstance(getProject()).openFile(files.get(i), false);
+        }
+        myFixture.openFileInEditor(files.get(0));
+    }
+
+    private String relativePath(VirtualFile file) {
+        return file.getPath().substring(getProject().getBasePath().length() + 1);
+    }
+}
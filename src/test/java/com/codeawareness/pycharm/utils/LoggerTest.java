@@ -0,0 +1,119 @@
+package com.codeawareness.pycharm.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for Logger.
+ */
+class LoggerTest {
+
+    private static final AtomicInteger rendered = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        Logger.resetLevels();
+    }
+
+    @Test
+    void testDefaultLevelIsInfo() {
+        for (LogCategory category : LogCategory.values()) {
+            assertTrue(Logger.isEnabled(category, LogLevel.INFO));
+            assertFalse(Logger.isEnabled(category, LogLevel.DEBUG));
+        }
+    }
+
+    @Test
+    void testLevelsArePerCategory() {
+        Logger.setLevel(LogCategory.IPC, LogLevel.TRACE);
+        Logger.setLevel(LogCategory.EVENTS, LogLevel.WARN);
+
+        assertTrue(Logger.isEnabled(LogCategory.IPC, LogLevel.TRACE));
+        assertFalse(Logger.isEnabled(LogCategory.EVENTS, LogLevel.INFO));
+        assertTrue(Logger.isEnabled(LogCategory.EVENTS, LogLevel.WARN));
+        assertEquals(LogLevel.INFO, Logger.getLevel(LogCategory.DIFF));
+    }
+
+    @Test
+    void testSupplierRunsOnlyWhenEnabled() {
+        rendered.set(0);
+        Logger.debug(LogCategory.IPC, LoggerTest::render);
+        assertEquals(0, rendered.get());
+
+        Logger.setLevel(LogCategory.IPC, LogLevel.DEBUG);
+        Logger.debug(LogCategory.IPC, LoggerTest::render);
+        assertEquals(1, rendered.get());
+    }
+
+    @Test
+    void testPayloadIsSampled() {
+        rendered.set(0);
+        Logger.payload(LogCategory.IPC, "payload", LoggerTest::render, "ignored");
+        assertEquals(0, rendered.get(), "Payloads are off below DEBUG");
+
+        Logger.setLevel(LogCategory.IPC, LogLevel.DEBUG);
+        Logger.setPayloadSampleRate(3);
+        for (int i = 0; i < 9; i++) {
+            Logger.payload(LogCategory.IPC, "payload", LoggerTest::render, "ignored");
+        }
+        assertEquals(3, rendered.get());
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("a 1 b 2", Logger.format("a {} b {}", 1, 2, null));
+        assertEquals("x: null", Logger.format("x: {}", null, null, null));
+        assertEquals("no placeholders", Logger.format("no placeholders", "unused", null, null));
+    }
+
+    @Test
+    void testNoAllocationAtDefaultLevel() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Allocation counters not available");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation counters not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        String data = "{\"action\":\"code:active-path\",\"data\":{\"hl\":[1,2,3]}}";
+        Object message = new Object();
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up, so class loading and the counters themselves are out of the way
+        logHotPath(data, message, 10_000);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        logHotPath(data, message, 100_000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // A few bytes of slack for the measurement itself; a single formatted line would exceed it
+        assertTrue(allocated < 1024, "Logging allocated " + allocated + " bytes at the default level");
+    }
+
+    /**
+     * The kinds of calls the IPC and event hot paths make for every message.
+     */
+    private static void logHotPath(String data, Object message, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            Logger.debug(LogCategory.IPC, "Received {} bytes from IPC socket", data.length());
+            Logger.payload(LogCategory.IPC, "Raw IPC data", data);
+            Logger.payload(LogCategory.IPC, "HL section", LoggerTest::render, data);
+            Logger.debug(LogCategory.IPC, "Handling message: {}:{} (flow: {})", message, data, message);
+            Logger.trace(LogCategory.EVENTS, "  -> Invoking handler: {}", message);
+            Logger.debug(LogCategory.HIGHLIGHTS, LoggerTest::render);
+        }
+    }
+
+    private static String render(Object ignored) {
+        rendered.incrementAndGet();
+        return "rendered";
+    }
+
+    private static String render() {
+        return render(null);
+    }
+}
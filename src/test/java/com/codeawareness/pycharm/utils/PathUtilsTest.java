@@ -62,6 +62,16 @@ class PathUtilsTest {
         assertNull(PathUtils.normalizePath(null));
     }
 
+    @Test
+    void testGetRelativePath() {
+        assertEquals("src/main.py", PathUtils.getRelativePath("/project", "/project/src/main.py"));
+        assertEquals("main.py", PathUtils.getRelativePath("C:\\project", "C:\\project\\main.py"));
+        assertNull(PathUtils.getRelativePath("/project", "/other/main.py"));
+        assertNull(PathUtils.getRelativePath("/project", "/project2/main.py"));
+        assertEquals("main.py", PathUtils.getRelativePath("/project/", "/project/main.py"));
+        assertNull(PathUtils.getRelativePath(null, "/project/main.py"));
+    }
+
     @Test
     void testGetHomeDirectory() {
         String home = PathUtils.getHomeDirectory();
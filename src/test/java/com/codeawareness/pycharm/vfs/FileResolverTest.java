@@ -0,0 +1,217 @@
+package com.codeawareness.pycharm.vfs;
+
+import com.codeawareness.pycharm.scheduling.SchedulerLane;
+import com.codeawareness.pycharm.scheduling.TaskGroup;
+import com.intellij.openapi.application.NonBlockingReadAction;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.concurrency.AsyncPromise;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FileResolver.
+ */
+class FileResolverTest {
+
+    private final Project project = Mockito.mock(Project.class);
+    private final TaskGroup tasks = Mockito.mock(TaskGroup.class);
+    private final LocalFileSystem fileSystem = Mockito.mock(LocalFileSystem.class);
+    private MockedStatic<ReadAction> readActionStatic;
+    private MockedStatic<LocalFileSystem> fileSystemStatic;
+    private MockedStatic<FileDocumentManager> documentManagerStatic;
+    private MockedStatic<AppExecutorUtil> executorStatic;
+    private FileResolver resolver;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // Read actions run right away on the calling thread
+        readActionStatic = Mockito.mockStatic(ReadAction.class);
+        readActionStatic.when(() -> ReadAction.nonBlocking((Callable<Object>) Mockito.any())).thenAnswer(invocation -> {
+            Callable<Object> callable = invocation.getArgument(0);
+            NonBlockingReadAction<Object> action = Mockito.mock(NonBlockingReadAction.class);
+            Mockito.when(action.expireWith(Mockito.any())).thenReturn(action);
+            Mockito.when(action.submit(Mockito.any())).thenAnswer(submit -> {
+                AsyncPromise<Object> promise = new AsyncPromise<>();
+                promise.setResult(callable.call());
+                return promise;
+            });
+            return action;
+        });
+        fileSystemStatic = Mockito.mockStatic(LocalFileSystem.class);
+        fileSystemStatic.when(LocalFileSystem::getInstance).thenReturn(fileSystem);
+        documentManagerStatic = Mockito.mockStatic(FileDocumentManager.class);
+        documentManagerStatic.when(FileDocumentManager::getInstance).thenReturn(Mockito.mock(FileDocumentManager.class));
+        executorStatic = Mockito.mockStatic(AppExecutorUtil.class);
+        resolver = new FileResolver(project, tasks);
+    }
+
+    @AfterEach
+    void tearDown() {
+        readActionStatic.close();
+        fileSystemStatic.close();
+        documentManagerStatic.close();
+        executorStatic.close();
+    }
+
+    @Test
+    void testKnownFileIsResolvedAndRemembered() {
+        VirtualFile file = exists("/work/src/a.py");
+
+        assertSame(file, resolver.resolve("/work/src/a.py").join().getFile());
+        assertSame(file, resolver.getIfResolved("/work/src/a.py").getFile());
+        resolver.resolve("/work/src/a.py");
+
+        Mockito.verify(fileSystem, Mockito.times(1)).findFileByPath("/work/src/a.py");
+        Mockito.verifyNoInteractions(tasks);
+    }
+
+    @Test
+    void testUnknownPathsAreRefreshedInOneBatch() {
+        CompletableFuture<FileResolver.ResolvedFile> first = resolver.resolve("/work/new/a.py");
+        CompletableFuture<FileResolver.ResolvedFile> second = resolver.resolve("/work/new/b.py");
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        // One refresh is scheduled for both paths
+        Runnable flush = scheduledFlush();
+        flush.run();
+        Runnable afterRefresh = refreshed(List.of(new File("/work/new/a.py"), new File("/work/new/b.py")));
+
+        // The refresh found one of them
+        VirtualFile created = exists("/work/new/a.py");
+        afterRefresh.run();
+
+        assertSame(created, first.join().getFile());
+        assertNull(second.join());
+    }
+
+    @Test
+    void testConcurrentResolvesShareOneLookup() {
+        CompletableFuture<FileResolver.ResolvedFile> first = resolver.resolve("/work/new/a.py");
+        CompletableFuture<FileResolver.ResolvedFile> second = resolver.resolve("/work/new/a.py");
+
+        assertSame(first, second);
+        Mockito.verify(fileSystem, Mockito.times(1)).findFileByPath("/work/new/a.py");
+
+        scheduledFlush().run();
+        exists("/work/new/a.py");
+        refreshed(List.of(new File("/work/new/a.py"))).run();
+
+        assertNotNull(first.join());
+        // Once for the batch, once after the refresh
+        Mockito.verify(fileSystem, Mockito.times(2)).findFileByPath("/work/new/a.py");
+        assertTrue(resolver.resolve("/work/new/a.py").isDone(), "A finished lookup should be remembered");
+    }
+
+    @Test
+    void testMissingPathIsRememberedUntilTheVfsChanges() {
+        CompletableFuture<FileResolver.ResolvedFile> lookup = resolver.resolve("/work/gone.py");
+        scheduledFlush().run();
+        refreshed(List.of(new File("/work/gone.py"))).run();
+        assertNull(lookup.join());
+
+        // Asked again: answered from memory, without another lookup or refresh
+        CompletableFuture<FileResolver.ResolvedFile> again = resolver.resolve("/work/gone.py");
+        assertTrue(again.isDone());
+        assertNull(again.join());
+        Mockito.verify(fileSystem, Mockito.times(2)).findFileByPath("/work/gone.py");
+        Mockito.verify(fileSystem, Mockito.times(1)).refreshIoFiles(Mockito.any(), Mockito.anyBoolean(),
+            Mockito.anyBoolean(), Mockito.any());
+
+        // The file may have been created since
+        resolver.onVfsChanged();
+        VirtualFile created = exists("/work/gone.py");
+        assertSame(created, resolver.resolve("/work/gone.py").join().getFile());
+    }
+
+    @Test
+    void testRefreshEventsDoNotVoidTheMiss() {
+        CompletableFuture<FileResolver.ResolvedFile> lookup = resolver.resolve("/work/gone.py");
+        scheduledFlush().run();
+        Runnable afterRefresh = refreshed(List.of(new File("/work/gone.py")));
+        // The refresh's own events arrive before it reports being done
+        resolver.onVfsChanged();
+        afterRefresh.run();
+        assertNull(lookup.join());
+
+        assertTrue(resolver.resolve("/work/gone.py").isDone(), "A miss confirmed after the refresh is remembered");
+    }
+
+    @Test
+    void testInvalidateDropsPathsBelowDirectory() {
+        exists("/work/src/a.py");
+        exists("/work/src/sub/b.py");
+        exists("/work/srcx/c.py");
+        resolver.resolve("/work/src/a.py");
+        resolver.resolve("/work/src/sub/b.py");
+        resolver.resolve("/work/srcx/c.py");
+        assertEquals(3, resolver.size());
+
+        resolver.invalidate("/work/src");
+
+        assertEquals(1, resolver.size());
+        assertNull(resolver.getIfResolved("/work/src/a.py"));
+        assertNull(resolver.getIfResolved("/work/src/sub/b.py"));
+        assertNotNull(resolver.getIfResolved("/work/srcx/c.py"), "A sibling sharing the name prefix should stay");
+    }
+
+    @Test
+    void testInvalidFileIsDropped() {
+        VirtualFile file = exists("/work/src/a.py");
+        resolver.resolve("/work/src/a.py");
+
+        Mockito.when(file.isValid()).thenReturn(false);
+
+        assertNull(resolver.getIfResolved("/work/src/a.py"));
+        assertEquals(0, resolver.size());
+    }
+
+    private VirtualFile exists(String path) {
+        VirtualFile file = Mockito.mock(VirtualFile.class);
+        Mockito.when(file.getPath()).thenReturn(path);
+        Mockito.when(file.isValid()).thenReturn(true);
+        Mockito.when(fileSystem.findFileByPath(path)).thenReturn(file);
+        return file;
+    }
+
+    /**
+     * Get the single batched refresh scheduled so far.
+     */
+    private Runnable scheduledFlush() {
+        ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(tasks, Mockito.times(1)).schedule(Mockito.eq(SchedulerLane.VFS), flush.capture(), Mockito.anyLong());
+        return flush.getValue();
+    }
+
+    /**
+     * Check that exactly these files were refreshed together, and get what runs once the refresh is done.
+     */
+    @SuppressWarnings("unchecked")
+    private Runnable refreshed(List<File> files) {
+        ArgumentCaptor<Collection<File>> refreshedFiles = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Runnable> onFinish = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(fileSystem).refreshIoFiles(refreshedFiles.capture(), Mockito.eq(true), Mockito.eq(false),
+            onFinish.capture());
+        assertEquals(files.size(), refreshedFiles.getValue().size());
+        assertTrue(refreshedFiles.getValue().containsAll(files));
+        return onFinish.getValue();
+    }
+}
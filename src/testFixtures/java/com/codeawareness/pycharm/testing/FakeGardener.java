@@ -0,0 +1,535 @@
+package com.codeawareness.pycharm.testing;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for the Kawa Code backend (Gardener), for integration and load tests on a
+ * machine without Kawa Code installed.
+ *
+ * Serves the catalog socket and a per-client IPC socket in a socket directory of its own, speaking
+ * the same form-feed delimited JSON protocol. Point the plugin at it with the
+ * {@code codeawareness.socketDir} system property ({@link #getSocketDirectory()}).
+ *
+ * Responses to {@code auth:info}, {@code code:active-path} and {@code code:diff-peer} are generated
+ * with configurable sizes, or scripted per action with {@link Builder#respond}; each is delayed by
+ * a configurable, optionally random, latency. Backend-initiated events such as
+ * {@code code:peer:select} are sent with {@link #push}.
+ *
+ * Deliberately independent of the plugin's own protocol classes, so it tests them rather than
+ * mirroring them.
+ */
+public class FakeGardener implements AutoCloseable {
+
+    private static final char DELIMITER = '\f';
+    private static final String CATALOG_SOCKET = "caw.catalog";
+
+    private final Path socketDirectory;
+    private final Path tmpDirectory;
+    private final long minLatencyMs;
+    private final long maxLatencyMs;
+    private final int highlightLines;
+    private final int peerFileBytes;
+    private final Map<String, Function<JsonObject, JsonElement>> scripts;
+    private final Random random;
+
+    private final ExecutorService acceptors = Executors.newCachedThreadPool(daemonThreads("fake-gardener"));
+    private final ScheduledExecutorService responders =
+        Executors.newSingleThreadScheduledExecutor(daemonThreads("fake-gardener-responder"));
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final Set<SocketChannel> openChannels = ConcurrentHashMap.newKeySet();
+    private final List<ServerSocketChannel> servers = new ArrayList<>();
+    private final CountDownLatch firstClient = new CountDownLatch(1);
+    private volatile boolean running = false;
+
+    /**
+     * Configuration for a {@link FakeGardener}.
+     */
+    public static final class Builder {
+        private Path socketDirectory;
+        private long minLatencyMs = 0;
+        private long maxLatencyMs = 0;
+        private int highlightLines = 10;
+        private int peerFileBytes = 4096;
+        private long seed = 42;
+        private final Map<String, Function<JsonObject, JsonElement>> scripts = new ConcurrentHashMap<>();
+
+        /**
+         * Serve sockets in this directory instead of a new temporary one.
+         */
+        public Builder socketDirectory(Path socketDirectory) {
+            this.socketDirectory = socketDirectory;
+            return this;
+        }
+
+        /**
+         * Delay every response by a fixed time.
+         */
+        public Builder latency(long latencyMs) {
+            return latency(latencyMs, latencyMs);
+        }
+
+        /**
+         * Delay every response by a random time between the bounds, inclusive.
+         */
+        public Builder latency(long minLatencyMs, long maxLatencyMs) {
+            if (minLatencyMs < 0 || maxLatencyMs < minLatencyMs) {
+                throw new IllegalArgumentException("Invalid latency bounds: " + minLatencyMs + "-" + maxLatencyMs);
+            }
+            this.minLatencyMs = minLatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+            return this;
+        }
+
+        /**
+         * Set the number of highlighted lines in generated active-path responses.
+         */
+        public Builder highlightLines(int highlightLines) {
+            this.highlightLines = highlightLines;
+            return this;
+        }
+
+        /**
+         * Set the size of the peer files extracted for generated diff-peer responses.
+         */
+        public Builder peerFileBytes(int peerFileBytes) {
+            this.peerFileBytes = peerFileBytes;
+            return this;
+        }
+
+        /**
+         * Seed the generator of latencies and generated content, for repeatable runs.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Answer an action with a script instead of generated data.
+         *
+         * @param action Full action, e.g. {@code code:active-path}
+         * @param script Maps the request's data (an empty object if none) to the response data,
+         *               or to null to not respond at all
+         */
+        public Builder respond(String action, Function<JsonObject, JsonElement> script) {
+            scripts.put(action, script);
+            return this;
+        }
+
+        public FakeGardener build() throws IOException {
+            return new FakeGardener(this);
+        }
+    }
+
+    /**
+     * A connected client.
+     */
+    private static final class Client {
+        final String guid;
+        final Path socketPath;
+        final ServerSocketChannel server;
+        volatile SocketChannel channel;
+
+        Client(String guid, Path socketPath, ServerSocketChannel server) {
+            this.guid = guid;
+            this.socketPath = socketPath;
+            this.server = server;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private FakeGardener(Builder builder) throws IOException {
+        this.socketDirectory = builder.socketDirectory != null
+            ? builder.socketDirectory
+            : Files.createTempDirectory("kawa-code-sockets");
+        this.tmpDirectory = Files.createTempDirectory("kawa-code-tmp");
+        this.minLatencyMs = builder.minLatencyMs;
+        this.maxLatencyMs = builder.maxLatencyMs;
+        this.highlightLines = builder.highlightLines;
+        this.peerFileBytes = builder.peerFileBytes;
+        this.scripts = Map.copyOf(builder.scripts);
+        this.random = new Random(builder.seed);
+    }
+
+    /**
+     * Start serving the catalog socket.
+     *
+     * @return this
+     */
+    public FakeGardener start() throws IOException {
+        Files.createDirectories(socketDirectory);
+        ServerSocketChannel catalog = bind(socketDirectory.resolve(CATALOG_SOCKET));
+        running = true;
+        acceptors.submit(() -> acceptLoop(catalog, channel -> serveCatalog(channel)));
+        return this;
+    }
+
+    /**
+     * Get the directory the sockets are served in.
+     */
+    public Path getSocketDirectory() {
+        return socketDirectory;
+    }
+
+    /**
+     * Get the directory peer files are extracted to, reported as {@code tmpDir} in auth:info.
+     */
+    public Path getTmpDirectory() {
+        return tmpDirectory;
+    }
+
+    /**
+     * Wait for the first client to register and connect to its IPC socket.
+     *
+     * @return The client's GUID, or null on timeout
+     */
+    public String awaitClient(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!firstClient.await(timeout, unit)) {
+            return null;
+        }
+        for (Client client : clients.values()) {
+            if (client.channel != null) {
+                return client.guid;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get how many requests for an action were received, from all clients.
+     */
+    public int getRequestCount(String action) {
+        AtomicInteger count = requestCounts.get(action);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Send a backend-initiated message, such as {@code code:peer:select}, to a client.
+     */
+    public void push(String clientGuid, String domain, String action, JsonElement data) throws IOException {
+        Client client = clients.get(clientGuid);
+        if (client == null || client.channel == null) {
+            throw new IOException("Client not connected: " + clientGuid);
+        }
+        send(client, message("res", domain, action, data, clientGuid));
+    }
+
+    /**
+     * Select a peer in a client, as the Kawa Code panel would.
+     */
+    public void selectPeer(String clientGuid, String peerGuid, String peerName, List<String> changedFiles) throws IOException {
+        JsonObject peer = new JsonObject();
+        peer.addProperty("_id", peerGuid);
+        peer.addProperty("name", peerName);
+        JsonArray files = new JsonArray();
+        changedFiles.forEach(files::add);
+        peer.add("files", files);
+        JsonObject data = new JsonObject();
+        data.add("peer", peer);
+        push(clientGuid, "code", "peer:select", data);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        responders.shutdownNow();
+        acceptors.shutdownNow();
+        for (SocketChannel channel : openChannels) {
+            closeQuietly(channel);
+        }
+        synchronized (servers) {
+            for (ServerSocketChannel server : servers) {
+                closeQuietly(server);
+            }
+        }
+        try {
+            Files.deleteIfExists(socketDirectory.resolve(CATALOG_SOCKET));
+            for (Client client : clients.values()) {
+                Files.deleteIfExists(client.socketPath);
+            }
+        } catch (IOException e) {
+            // Temporary files; nothing to do
+        }
+    }
+
+    private ServerSocketChannel bind(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        synchronized (servers) {
+            servers.add(server);
+        }
+        return server;
+    }
+
+    private interface ChannelHandler {
+        void serve(SocketChannel channel) throws IOException;
+    }
+
+    private void acceptLoop(ServerSocketChannel server, ChannelHandler handler) {
+        while (running && server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                openChannels.add(channel);
+                acceptors.submit(() -> {
+                    try {
+                        handler.serve(channel);
+                    } catch (IOException e) {
+                        // Client went away
+                    } finally {
+                        openChannels.remove(channel);
+                        closeQuietly(channel);
+                    }
+                });
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Catalog: a client registers with clientId and gets its own IPC socket.
+     */
+    private void serveCatalog(SocketChannel channel) throws IOException {
+        readFrames(channel, frame -> {
+            JsonObject request = JsonParser.parseString(frame).getAsJsonObject();
+            String action = request.has("action") ? request.get("action").getAsString() : "";
+            count(action);
+            if ("clientId".equals(action)) {
+                String guid = request.get("data").getAsString();
+                openClientSocket(guid);
+            } else if ("clientDisconnect".equals(action)) {
+                Client client = clients.remove(request.get("caw").getAsString());
+                if (client != null) {
+                    closeQuietly(client.server);
+                    Files.deleteIfExists(client.socketPath);
+                }
+            }
+        });
+    }
+
+    private void openClientSocket(String guid) throws IOException {
+        Path socketPath = socketDirectory.resolve("caw." + guid);
+        Client client = new Client(guid, socketPath, bind(socketPath));
+        Client previous = clients.put(guid, client);
+        if (previous != null) {
+            closeQuietly(previous.server);
+        }
+        acceptors.submit(() -> acceptLoop(client.server, channel -> serveClient(client, channel)));
+    }
+
+    /**
+     * IPC: answer each request after the configured latency.
+     */
+    private void serveClient(Client client, SocketChannel channel) throws IOException {
+        client.channel = channel;
+        firstClient.countDown();
+        readFrames(channel, frame -> {
+            JsonObject request = JsonParser.parseString(frame).getAsJsonObject();
+            String domain = request.has("domain") ? request.get("domain").getAsString() : "*";
+            String action = request.has("action") ? request.get("action").getAsString() : "";
+            String fullAction = "*".equals(domain) ? action : domain + ":" + action;
+            count(fullAction);
+
+            JsonObject data = request.has("data") && request.get("data").isJsonObject()
+                ? request.getAsJsonObject("data")
+                : new JsonObject();
+            JsonElement response = respond(fullAction, data);
+            if (response == null) {
+                return;
+            }
+            String reply = message("res", domain, action, response, client.guid);
+            responders.schedule(() -> {
+                try {
+                    send(client, reply);
+                } catch (IOException e) {
+                    // Client went away
+                }
+            }, nextLatencyMs(), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private JsonElement respond(String action, JsonObject data) throws IOException {
+        Function<JsonObject, JsonElement> script = scripts.get(action);
+        if (script != null) {
+            return script.apply(data);
+        }
+        switch (action) {
+            case "auth:info":
+                return authInfo();
+            case "code:active-path":
+                return activePath(data);
+            case "code:diff-peer":
+                return diffPeer(data);
+            default:
+                // Notifications like file-saved need no answer
+                return null;
+        }
+    }
+
+    private JsonObject authInfo() {
+        JsonObject user = new JsonObject();
+        user.addProperty("name", "Fake User");
+        user.addProperty("email", "fake.user@example.com");
+        JsonObject data = new JsonObject();
+        data.add("user", user);
+        data.addProperty("tmpDir", tmpDirectory.toString());
+        return data;
+    }
+
+    private JsonObject activePath(JsonObject request) {
+        JsonArray lines = new JsonArray();
+        synchronized (random) {
+            for (int i = 0; i < highlightLines; i++) {
+                lines.add(random.nextInt(Math.max(1, highlightLines * 10)));
+            }
+        }
+        JsonObject data = new JsonObject();
+        data.add("hl", lines);
+        // Gardener names the file it answers for, so the plugin can tell responses apart
+        if (request.has("fpath")) {
+            data.add("activePath", request.get("fpath"));
+        }
+        return data;
+    }
+
+    private JsonObject diffPeer(JsonObject request) throws IOException {
+        String relativePath = request.has("fpath") ? request.get("fpath").getAsString() : "file.txt";
+        Path peerFile = tmpDirectory.resolve("peer").resolve(relativePath.replace('/', '_'));
+        Files.createDirectories(peerFile.getParent());
+        Files.write(peerFile, generateContent(peerFileBytes));
+
+        String peerGuid = request.has("peer") && request.get("peer").isJsonObject()
+            && request.getAsJsonObject("peer").has("_id")
+            ? request.getAsJsonObject("peer").get("_id").getAsString()
+            : "peer";
+        JsonObject data = new JsonObject();
+        data.addProperty("title", "Peer " + peerGuid);
+        data.addProperty("extractDir", peerFile.getParent().toString());
+        data.addProperty("peerFile", peerFile.toString());
+        data.addProperty("userId", peerGuid);
+        data.addProperty("fpath", relativePath);
+        return data;
+    }
+
+    private byte[] generateContent(int size) {
+        StringBuilder content = new StringBuilder(size + 64);
+        int line = 0;
+        while (content.length() < size) {
+            content.append("line ").append(line++).append(": generated peer content\n");
+        }
+        content.setLength(size);
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long nextLatencyMs() {
+        if (maxLatencyMs == minLatencyMs) {
+            return minLatencyMs;
+        }
+        synchronized (random) {
+            return minLatencyMs + (long) (random.nextDouble() * (maxLatencyMs - minLatencyMs + 1));
+        }
+    }
+
+    private void count(String action) {
+        requestCounts.computeIfAbsent(action, a -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private static String message(String flow, String domain, String action, JsonElement data, String caw) {
+        JsonObject message = new JsonObject();
+        message.addProperty("flow", flow);
+        message.addProperty("domain", domain);
+        message.addProperty("action", action);
+        message.add("data", data);
+        message.addProperty("caw", caw);
+        return message + String.valueOf(DELIMITER);
+    }
+
+    private void send(Client client, String frame) throws IOException {
+        SocketChannel channel = client.channel;
+        if (channel == null) {
+            throw new IOException("Client not connected: " + client.guid);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(frame.getBytes(StandardCharsets.UTF_8));
+        synchronized (channel) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private interface FrameHandler {
+        void handle(String frame) throws IOException;
+    }
+
+    /**
+     * Read delimited frames until the channel closes.
+     */
+    private void readFrames(SocketChannel channel, FrameHandler handler) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        java.io.ByteArrayOutputStream pending = new java.io.ByteArrayOutputStream();
+        while (running && channel.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == DELIMITER) {
+                    String frame = pending.toString(StandardCharsets.UTF_8).trim();
+                    pending.reset();
+                    if (!frame.isEmpty()) {
+                        handler.handle(frame);
+                    }
+                } else {
+                    pending.write(b);
+                }
+            }
+            buffer.clear();
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+    }
+
+    private static java.util.concurrent.ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}